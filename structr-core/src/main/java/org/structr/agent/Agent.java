@@ -20,6 +20,7 @@ package org.structr.agent;
 
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,17 +68,12 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 
 			}
 
-			final Task<T> currentTask;
-
-			synchronized (taskQueue) {
-
-				currentTask = taskQueue.poll();
-
-			}
+			final Task<T> currentTask = nextTask();
 
 			if (currentTask != null) {
 
-				ReturnValue ret = null;
+				final long startTime = System.nanoTime();
+				ReturnValue ret      = null;
 
 				// only execute process if Service layer is ready
 				// (and not shutting down right now)
@@ -120,6 +116,10 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 					}
 				}
 
+				final long executionTime = System.nanoTime() - startTime;
+
+				agentService.notifyTaskProcessed(getSupportedTaskType(), executionTime);
+
 				if (ret != null && Retry.equals(ret) && currentTask.getRetryCount() < 2) {
 
 					// wait some time
@@ -132,15 +132,13 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 					}
 				}
 
-				long endTime = System.nanoTime();
-
 				// calc. average execution time
-				averageExecutionTime += endTime;
+				averageExecutionTime += TimeUnit.NANOSECONDS.toMillis(executionTime);
 				averageExecutionTime /= 2;
 
 			} else {
 
-				// queue is empty, quit.
+				// no task for some time, quit.
 				acceptingTasks.set(false);
 			}
 
@@ -271,4 +269,24 @@ public abstract class Agent<T> extends Thread implements StatusInfo {
 	public final boolean isAcceptingTasks() {
 		return acceptingTasks.get();
 	}
+
+	// ----- private methods -----
+	/**
+	 * Returns the next task from the local queue (tasks to retry or tasks
+	 * that were assigned directly) or waits for the next task of the
+	 * supported type in the agent service.
+	 */
+	private Task<T> nextTask() {
+
+		synchronized (taskQueue) {
+
+			final Task<T> task = taskQueue.poll();
+			if (task != null) {
+
+				return task;
+			}
+		}
+
+		return agentService.nextTask(getSupportedTaskType());
+	}
 }
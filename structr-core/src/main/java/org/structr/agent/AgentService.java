@@ -20,17 +20,24 @@ package org.structr.agent;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Setting;
+import org.structr.api.config.Settings;
 import org.structr.api.service.Command;
 import org.structr.api.service.RunnableService;
 import org.structr.api.service.ServiceDependency;
@@ -41,18 +48,27 @@ import org.structr.schema.SchemaService;
 
 /**
  * The agent service main class.
+ *
+ * Incoming tasks are put into a blocking priority queue and dispatched to
+ * a pool of agents per task type. Each pool has its own priority queue
+ * and starts up to a configurable number of agents, which stop after they
+ * have been idle for some time. Tasks that return a coalescing key are
+ * dropped while an equal task is still waiting to be processed.
  */
 @ServiceDependency(SchemaService.class)
 public class AgentService extends Thread implements RunnableService {
 
-	private static final Logger logger = LoggerFactory.getLogger(AgentService.class.getName());
+	private static final Logger logger     = LoggerFactory.getLogger(AgentService.class.getName());
+	private static final long AGENT_IDLE_MS = TimeUnit.SECONDS.toMillis(30);
 
-	private final int maxAgents                          = 10;    // TODO: make configurable
 	private final Map<String, List<Agent>> runningAgents = new ConcurrentHashMap<>(10, 0.9f, 8);
 	private final Map<String, Class> agentClassCache     = new ConcurrentHashMap<>(10, 0.9f, 8);
-	private final Queue<Task> taskQueue                  = new ConcurrentLinkedQueue<>();
+	private final Map<String, AgentPool> pools           = new ConcurrentHashMap<>(10, 0.9f, 8);
+	private final Map<Object, QueuedTask> pendingTasks   = new ConcurrentHashMap<>();
+	private final BlockingQueue<QueuedTask> taskQueue    = new PriorityBlockingQueue<>();
+	private final AtomicLong sequence                    = new AtomicLong();
 	private Set<Class> supportedCommands                 = null;
-	private boolean run                                  = false;
+	private volatile boolean run                         = false;
 
 	public AgentService() {
 
@@ -65,11 +81,19 @@ public class AgentService extends Thread implements RunnableService {
 
 	public void processTask(Task task) {
 
-		synchronized (taskQueue) {
+		final QueuedTask queuedTask = new QueuedTask(task, sequence.incrementAndGet());
+		final Object key            = task.getCoalescingKey();
+
+		if (key != null && pendingTasks.putIfAbsent(key, queuedTask) != null) {
+
+			getPool(task.getClass()).coalesced.increment();
+			logger.debug("Task {} is already queued, ignoring", task);
 
-			taskQueue.add(task);
-			logger.debug("Task {} added to task queue", task);
+			return;
 		}
+
+		taskQueue.add(queuedTask);
+		logger.debug("Task {} added to task queue", task);
 	}
 
 	@Override
@@ -79,14 +103,16 @@ public class AgentService extends Thread implements RunnableService {
 
 		while (run) {
 
-			Task nextTask = taskQueue.poll();
-			if (nextTask != null) {
+			try {
+
+				final QueuedTask nextTask = taskQueue.take();
 
 				assignNextAgentForTask(nextTask);
-			}
 
-			// let others act
-			try { Thread.sleep(10); } catch(Throwable ignore) {}
+			} catch (InterruptedException iex) {
+
+				// stopService() interrupts us
+			}
 		}
 	}
 
@@ -144,7 +170,9 @@ public class AgentService extends Thread implements RunnableService {
 
 	@Override
 	public void stopService() {
+
 		run = false;
+		this.interrupt();
 	}
 
 	@Override
@@ -152,52 +180,174 @@ public class AgentService extends Thread implements RunnableService {
 		return true;
 	}
 
-	private void assignNextAgentForTask(final Task nextTask) {
+	/**
+	 * Returns the current queue of remaining tasks.
+	 * @return tasks
+	 */
+	public Collection<Task> getTaskQueue() {
 
-		Class taskClass    = nextTask.getClass();
-		List<Agent> agents = getRunningAgentsForTask(taskClass);
+		final List<Task> tasks = new LinkedList<>();
 
-		// need to synchronize on agents
-		synchronized (agents) {
+		for (final QueuedTask queuedTask : taskQueue) {
+			tasks.add(queuedTask.task);
+		}
+
+		for (final AgentPool pool : pools.values()) {
+
+			for (final QueuedTask queuedTask : pool.queue) {
+				tasks.add(queuedTask.task);
+			}
+		}
+
+		return tasks;
+	}
+
+	/**
+	 * Returns the queue length, the number of agents and the latency
+	 * statistics for each task type.
+	 *
+	 * @return statistics
+	 */
+	public Map<String, Map<String, Object>> getStatistics() {
+
+		final Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+
+		for (final Entry<String, AgentPool> entry : pools.entrySet()) {
+			stats.put(entry.getKey(), entry.getValue().getStatistics());
+		}
+
+		return stats;
+	}
+
+	/**
+	 * Returns the current collection of running agents.
+	 * @return agents
+	 */
+	public Map<String, List<Agent>> getRunningAgents() {
+		return (runningAgents);
+	}
 
-			// find next free agent (agents should be sorted by load, so one
-			// of the first should do..
-			for (Agent agent : agents) {
+	@Override
+	public boolean isRunning() {
+		return (this.run);
+	}
 
-				if (agent.assignTask(nextTask)) {
+	@Override
+	public boolean isVital() {
+		return false;
+	}
+
+	@Override
+	public boolean waitAndRetry() {
+		return false;
+	}
+
+	// ----- interface Feature -----
+	@Override
+	public String getModuleName() {
+		return "agents";
+	}
+
+	// ----- package-private methods -----
+	/**
+	 * Waits for the next task of the given type, returns null if the
+	 * calling agent has been idle for too long and should stop.
+	 */
+	Task nextTask(final Class taskClass) {
+
+		final AgentPool pool = getPool(taskClass);
+
+		while (true) {
+
+			pool.idle.incrementAndGet();
+
+			QueuedTask queuedTask = null;
+
+			try {
+
+				queuedTask = pool.queue.poll(AGENT_IDLE_MS, TimeUnit.MILLISECONDS);
+
+			} catch (InterruptedException iex) {
+
+				// agent was killed
+				pool.agents.decrementAndGet();
+				return null;
+
+			} finally {
+
+				pool.idle.decrementAndGet();
+			}
 
-					// ok, task is assigned
-					logger.debug("Task assigned to agent {} ({})", agent.getName(), agent.hashCode());
+			if (queuedTask != null) {
 
-					return;
+				final Object key = queuedTask.task.getCoalescingKey();
+				if (key != null) {
+
+					pendingTasks.remove(key, queuedTask);
+				}
+
+				pool.recordWaitTime(System.nanoTime() - queuedTask.queuedAt);
+
+				return queuedTask.task;
+			}
+
+			// the pool lock makes sure that no task is added without an agent
+			synchronized (pool) {
+
+				if (pool.queue.isEmpty()) {
+
+					pool.agents.decrementAndGet();
+					return null;
 				}
 			}
 		}
+	}
 
-		if (agents.size() < maxAgents) {
+	void notifyTaskProcessed(final Class taskClass, final long executionTimeNanos) {
+		getPool(taskClass).recordExecutionTime(executionTimeNanos);
+	}
 
-			// if we get here, task was not assigned to any agent, need to create a new one.
-			Agent agent = createAgent(nextTask);
+	// ----- private methods -----
+	private void assignNextAgentForTask(final QueuedTask nextTask) {
 
-			if ((agent != null) && agent.assignTask(nextTask)) {
+		final AgentPool pool = getPool(nextTask.task.getClass());
 
+		pool.submitted.increment();
+		pool.queue.add(nextTask);
+
+		boolean startAgent = false;
+
+		synchronized (pool) {
+
+			// start another agent while there are more queued tasks than idle agents to take them
+			if (pool.queue.size() > pool.idle.get() && pool.agents.get() < pool.getMaxAgents()) {
+
+				pool.agents.incrementAndGet();
+				startAgent = true;
+			}
+		}
+
+		if (startAgent) {
+
+			// if we get here, not enough agents are waiting for tasks, need to create a new one.
+			final Agent agent = createAgent(nextTask.task);
+			if (agent != null) {
+
+				logger.debug("Starting agent {} for task type {}", agent.getName(), pool.name);
 				agent.start();
 
 			} else {
 
-				// re-add task..
-				synchronized (taskQueue) {
-					taskQueue.add(nextTask);
-				}
-			}
+				pool.agents.decrementAndGet();
+				pool.queue.remove(nextTask);
 
-		} else {
+				final Object key = nextTask.task.getCoalescingKey();
+				if (key != null) {
 
-			logger.debug("Overall agents limit reached, re-queueing task");
+					pendingTasks.remove(key, nextTask);
+				}
 
-			// re-add task..
-			synchronized (taskQueue) {
-				taskQueue.add(nextTask);
+				logger.warn("No agent found for task type {}, discarding task", pool.name);
 			}
 		}
 	}
@@ -278,55 +428,102 @@ public class AgentService extends Thread implements RunnableService {
 		return (agent);
 	}
 
-	/**
-	 * Returns the current queue of remaining tasks.
-	 * @return tasks
-	 */
-	public Collection<Task> getTaskQueue() {
-		return (taskQueue);
+	private List<Agent> getRunningAgentsForTask(Class taskClass) {
+		return runningAgents.computeIfAbsent(taskClass.getName(), k -> Collections.synchronizedList(new LinkedList<>()));
 	}
 
-	/**
-	 * Returns the current collection of running agents.
-	 * @return agents
-	 */
-	public Map<String, List<Agent>> getRunningAgents() {
-		return (runningAgents);
+	private AgentPool getPool(final Class taskClass) {
+		return pools.computeIfAbsent(taskClass.getName(), k -> new AgentPool(taskClass.getSimpleName()));
 	}
 
-	private List<Agent> getRunningAgentsForTask(Class taskClass) {
-
-		List<Agent> agents = runningAgents.get(taskClass.getName());
+	// ----- nested classes -----
+	private static class QueuedTask implements Comparable<QueuedTask> {
 
-		if (agents == null) {
+		private Task task     = null;
+		private long sequence = 0L;
+		private long queuedAt = 0L;
 
-			agents = Collections.synchronizedList(new LinkedList<>());
+		public QueuedTask(final Task task, final long sequence) {
 
-			// Hashtable is synchronized
-			runningAgents.put(taskClass.getName(), agents);
+			this.task     = task;
+			this.sequence = sequence;
+			this.queuedAt = System.nanoTime();
 		}
 
-		return (agents);
-	}
+		@Override
+		public int compareTo(final QueuedTask other) {
 
-	@Override
-	public boolean isRunning() {
-		return (this.run);
-	}
+			// higher priority first, tasks with the same priority in the order they were added
+			final int result = Integer.compare(other.task.priority(), task.priority());
+			if (result != 0) {
 
-	@Override
-	public boolean isVital() {
-		return false;
-	}
+				return result;
+			}
 
-	@Override
-	public boolean waitAndRetry() {
-		return false;
+			return Long.compare(sequence, other.sequence);
+		}
 	}
 
-	// ----- interface Feature -----
-	@Override
-	public String getModuleName() {
-		return "agents";
+	private static class AgentPool {
+
+		private final BlockingQueue<QueuedTask> queue = new PriorityBlockingQueue<>();
+		private final AtomicInteger agents            = new AtomicInteger();
+		private final AtomicInteger idle              = new AtomicInteger();
+		private final LongAdder submitted             = new LongAdder();
+		private final LongAdder coalesced             = new LongAdder();
+		private final LongAdder started               = new LongAdder();
+		private final LongAdder processed             = new LongAdder();
+		private final LongAdder waitTime              = new LongAdder();
+		private final LongAdder executionTime         = new LongAdder();
+		private final AtomicLong maxWaitTime          = new AtomicLong();
+		private String name                           = null;
+
+		public AgentPool(final String name) {
+			this.name = name;
+		}
+
+		public int getMaxAgents() {
+
+			final Setting<Integer> setting = Settings.getIntegerSetting("application.agents", name, "threads");
+			if (setting != null) {
+
+				return Math.max(1, setting.getValue(Settings.AgentThreads.getValue()));
+			}
+
+			return Math.max(1, Settings.AgentThreads.getValue());
+		}
+
+		public void recordWaitTime(final long nanos) {
+
+			started.increment();
+			waitTime.add(nanos);
+			maxWaitTime.accumulateAndGet(nanos, Math::max);
+		}
+
+		public void recordExecutionTime(final long nanos) {
+
+			processed.increment();
+			executionTime.add(nanos);
+		}
+
+		public Map<String, Object> getStatistics() {
+
+			final Map<String, Object> stats = new LinkedHashMap<>();
+			final long startCount           = started.sum();
+			final long count                = processed.sum();
+
+			stats.put("queued",               queue.size());
+			stats.put("agents",               agents.get());
+			stats.put("idleAgents",           idle.get());
+			stats.put("maxAgents",            getMaxAgents());
+			stats.put("submitted",            submitted.sum());
+			stats.put("coalesced",            coalesced.sum());
+			stats.put("processed",            count);
+			stats.put("averageWaitTime",      startCount > 0 ? TimeUnit.NANOSECONDS.toMillis(waitTime.sum() / startCount) : 0L);
+			stats.put("maxWaitTime",          TimeUnit.NANOSECONDS.toMillis(maxWaitTime.get()));
+			stats.put("averageExecutionTime", count > 0 ? TimeUnit.NANOSECONDS.toMillis(executionTime.sum() / count) : 0L);
+
+			return stats;
+		}
 	}
 }
@@ -19,9 +19,11 @@
 package org.structr.agent;
 
 import java.util.Collection;
+import java.util.Map;
 
 /**
- * Returns a Collection of the currently remaining {@link Task}s
+ * Returns a Collection of the currently remaining {@link Task}s, or the
+ * queue length and latency statistics of the agent service.
  *
  *
  */
@@ -37,4 +39,15 @@ public class ListTasksCommand extends AgentServiceCommand {
 
 		return null;
 	}
+
+	public Map<String, Map<String, Object>> getStatistics() {
+
+		AgentService agentService = (AgentService)arguments.get("agentService");
+		if(agentService != null) {
+
+			return agentService.getStatistics();
+		}
+
+		return null;
+	}
 }
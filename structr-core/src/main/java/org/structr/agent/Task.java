@@ -83,4 +83,15 @@ public interface Task<T> extends Delayed, StatusInfo {
 	 * @return the retry count
 	 */
 	int getRetryCount();
+
+	/**
+	 * Returns a key that identifies tasks with the same effect. A task
+	 * is not queued if an equal task with the same key is still waiting
+	 * to be processed. The default is null, i.e. no coalescing.
+	 *
+	 * @return the coalescing key or null
+	 */
+	default Object getCoalescingKey() {
+		return null;
+	}
 }
@@ -18,23 +18,45 @@
  */
 package org.structr.common;
 
-import java.util.HashSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.structr.api.config.Settings;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.PropertyContainer;
 import org.structr.api.graph.Relationship;
+import org.structr.api.util.Cachable;
+import org.structr.api.util.ConcurrentFixedSizeCache;
 import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.TransactionCommand;
 
 /**
+ * Cache for access paths and permission resolution results. Each entry
+ * records the UUIDs and relationship types it depends on, so that a
+ * modification only invalidates the entries that were derived from the
+ * modified object instead of the whole cache.
  *
+ * Permission entries are stored in a bounded cache. To avoid storing a
+ * result that was computed while a concurrent modification invalidated
+ * one of its dependencies, callers obtain the current generation before
+ * resolving a permission and pass it to the put method. Invalidations
+ * inside a transaction are repeated when the transaction is finished,
+ * because concurrent readers can cache results from the state before the
+ * commit until then.
  */
 public class AccessPathCache {
 
-	private static final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
-	private static final Set<String> allRelTypes       = new HashSet<>();
-	private static final Set<String> allUuids          = new HashSet<>();
+	private static final ConcurrentFixedSizeCache<String, CacheEntry> permissions = new ConcurrentFixedSizeCache<>(Settings.PermissionCacheSize.getValue());
+	private static final Map<String, CacheEntry> cache                            = new ConcurrentHashMap<>();
+	private static final Map<String, Set<CacheEntry>> entriesByUuid               = new ConcurrentHashMap<>();
+	private static final Map<String, Set<CacheEntry>> entriesByRelType            = new ConcurrentHashMap<>();
+	private static final AtomicLong generation                                    = new AtomicLong();
+	private static final LongAdder invalidations                                  = new LongAdder();
+	private static final LongAdder invalidatedEntries                             = new LongAdder();
 
 	public static PermissionResolutionMask get(final NodeInterface startNode, final NodeInterface endNode) {
 
@@ -53,8 +75,8 @@ public class AccessPathCache {
 		final CacheEntry entry = getOrCreateCacheEntry(startNode, endNode);
 
 		// remember UUIDs
-		allUuids.add(startNode.getUuid());
-		allUuids.add(endNode.getUuid());
+		addUuid(entry, startNode.getUuid());
+		addUuid(entry, endNode.getUuid());
 
 		entry.mask = mask;
 	}
@@ -66,8 +88,7 @@ public class AccessPathCache {
 
 		if (uuid != null) {
 
-			entry.uuids.add(uuid);
-			allUuids.add(uuid);
+			addUuid(entry, uuid);
 		}
 	}
 
@@ -78,75 +99,245 @@ public class AccessPathCache {
 
 		if (uuid != null) {
 
-			final String relType   = rel.getType().name();
+			addUuid(entry, uuid);
+			addRelType(entry, rel.getType().name());
+		}
+	}
 
-			entry.uuids.add(uuid);
-			allUuids.add(uuid);
+	/**
+	 * Returns the cached result of the permission resolution for the
+	 * given node, principal and permission, or null if no valid result
+	 * is cached.
+	 *
+	 * @param nodeId
+	 * @param principalId
+	 * @param permission
+	 * @return the cached result or null
+	 */
+	public static Boolean getPermission(final String nodeId, final String principalId, final Permission permission) {
+		return getValue(permissionKey("g", nodeId, principalId, permission));
+	}
 
-			entry.relTypes.add(relType);
-			allRelTypes.add(relType);
+	/**
+	 * Stores the result of a permission resolution, along with the UUIDs
+	 * of all nodes and principals that were visited to obtain it. Only
+	 * positive results are stored, and only if the cache was not
+	 * invalidated since the given generation was obtained.
+	 *
+	 * @param nodeId
+	 * @param principalId
+	 * @param permission
+	 * @param value
+	 * @param uuids
+	 * @param generation
+	 */
+	public static void putPermission(final String nodeId, final String principalId, final Permission permission, final boolean value, final Collection<String> uuids, final long generation) {
+		putValue(permissionKey("g", nodeId, principalId, permission), value, uuids, generation);
+	}
 
-		}
+	/**
+	 * Returns the cached intermediate result of a permission resolution
+	 * along permission-propagating relationships.
+	 *
+	 * @param nodeId
+	 * @param principalId
+	 * @param permission
+	 * @return the cached result or null
+	 */
+	public static Boolean getResolutionResult(final String nodeId, final String principalId, final Permission permission) {
+		return getValue(permissionKey("r", nodeId, principalId, permission));
+	}
+
+	/**
+	 * Stores an intermediate result of a permission resolution along
+	 * permission-propagating relationships. Only positive results are
+	 * stored.
+	 *
+	 * @param nodeId
+	 * @param principalId
+	 * @param permission
+	 * @param value
+	 * @param uuids
+	 * @param generation
+	 */
+	public static void putResolutionResult(final String nodeId, final String principalId, final Permission permission, final boolean value, final Collection<String> uuids, final long generation) {
+		putValue(permissionKey("r", nodeId, principalId, permission), value, uuids, generation);
+	}
+
+	/**
+	 * Returns the current generation of this cache. The generation is
+	 * incremented on every invalidation.
+	 *
+	 * @return the current generation
+	 */
+	public static long generation() {
+		return generation.get();
 	}
 
 	public static void invalidateForId(final String uuid) {
 
-		if (allUuids.contains(uuid)) {
+		TransactionCommand.invalidateAfterCommit(uuid, null);
 
-			for (final CacheEntry entry : cache.values()) {
+		generation.incrementAndGet();
+		invalidations.increment();
 
-				if (entry.uuids.contains(uuid)) {
-					cache.remove(entry.key);
-				}
-			}
+		final Set<CacheEntry> entries = entriesByUuid.remove(uuid);
+		if (entries != null) {
 
-			allUuids.remove(uuid);
+			removeAll(entries);
 		}
 	}
 
 	public static void invalidateForRelType(final String relType) {
 
-		if (allRelTypes.contains(relType)) {
+		TransactionCommand.invalidateAfterCommit(null, relType);
 
-			for (final CacheEntry entry : cache.values()) {
+		generation.incrementAndGet();
+		invalidations.increment();
 
-				if (entry.relTypes.contains(relType)) {
-					cache.remove(entry.key);
-				}
-			}
+		final Set<CacheEntry> entries = entriesByRelType.remove(relType);
+		if (entries != null) {
 
-			allRelTypes.remove(relType);
+			removeAll(entries);
 		}
 	}
 
 	public static void invalidate() {
 
-		allRelTypes.clear();
-		allUuids.clear();
+		generation.incrementAndGet();
+		invalidations.increment();
+
+		entriesByRelType.clear();
+		entriesByUuid.clear();
+		permissions.clear();
 		cache.clear();
 	}
 
+	public static Map<String, Object> getStatistics() {
+
+		final Map<String, Object> stats = new LinkedHashMap<>(permissions.getStatistics());
+
+		stats.put("accessPaths",        cache.size());
+		stats.put("invalidations",      invalidations.sum());
+		stats.put("invalidatedEntries", invalidatedEntries.sum());
+
+		return stats;
+	}
+
 	// ----- private methods -----
 	private static CacheEntry getOrCreateCacheEntry(final NodeInterface startNode, final NodeInterface endNode) {
 
-		final String cacheKey = cacheKey(startNode, endNode);
-		CacheEntry entry      = cache.get(cacheKey);
+		return cache.computeIfAbsent(cacheKey(startNode, endNode), key -> {
+
+			final CacheEntry entry = new CacheEntry();
+			entry.key = key;
+
+			return entry;
+		});
+	}
+
+	private static Boolean getValue(final String key) {
+
+		final CacheEntry entry = permissions.get(key);
+		if (entry != null) {
+
+			return entry.value;
+		}
+
+		return null;
+	}
+
+	private static void putValue(final String key, final boolean value, final Collection<String> uuids, final long generation) {
+
+		// negative results are not cached, a grant can come from changes that do not invalidate them
+		if (!value || generation != generation()) {
+			return;
+		}
+
+		final CacheEntry entry = new CacheEntry();
+
+		entry.key        = key;
+		entry.value      = value;
+		entry.permission = true;
+
+		for (final String uuid : uuids) {
+			addUuid(entry, uuid);
+		}
+
+		permissions.put(key, entry);
 
-		if (entry == null) {
+		// a concurrent invalidation may have missed the new entry
+		if (generation != generation()) {
+			remove(entry);
+		}
+	}
 
-			entry = new CacheEntry();
-			entry.key = cacheKey;
+	private static void addUuid(final CacheEntry entry, final String uuid) {
 
-			cache.put(cacheKey, entry);
+		if (entry.uuids.add(uuid)) {
+			entriesByUuid.computeIfAbsent(uuid, k -> ConcurrentHashMap.newKeySet()).add(entry);
 		}
+	}
+
+	private static void addRelType(final CacheEntry entry, final String relType) {
 
-		return entry;
+		if (entry.relTypes.add(relType)) {
+			entriesByRelType.computeIfAbsent(relType, k -> ConcurrentHashMap.newKeySet()).add(entry);
+		}
+	}
+
+	private static void removeAll(final Set<CacheEntry> entries) {
+
+		for (final CacheEntry entry : entries) {
+			remove(entry);
+		}
+	}
+
+	private static void remove(final CacheEntry entry) {
+
+		if (entry.permission) {
+
+			permissions.remove(entry.key);
+
+		} else {
+
+			cache.remove(entry.key, entry);
+		}
+
+		unregister(entry);
+
+		invalidatedEntries.increment();
+	}
+
+	private static void unregister(final CacheEntry entry) {
+
+		for (final String uuid : entry.uuids) {
+
+			entriesByUuid.computeIfPresent(uuid, (k, set) -> {
+
+				set.remove(entry);
+				return set.isEmpty() ? null : set;
+			});
+		}
+
+		for (final String relType : entry.relTypes) {
+
+			entriesByRelType.computeIfPresent(relType, (k, set) -> {
+
+				set.remove(entry);
+				return set.isEmpty() ? null : set;
+			});
+		}
 	}
 
 	private static String cacheKey(final NodeInterface startNode, final NodeInterface endNode) {
 		return startNode.getUuid() + endNode.getUuid();
 	}
 
+	private static String permissionKey(final String prefix, final String nodeId, final String principalId, final Permission permission) {
+		return prefix + "." + nodeId + "." + permission.name() + "." + principalId;
+	}
+
 	private static String getUuid(final PropertyContainer prop) {
 
 		if (prop.hasProperty("id")) {
@@ -157,11 +348,18 @@ public class AccessPathCache {
 	}
 
 	// ----- nested classes -----
-	private static class CacheEntry {
+	private static class CacheEntry implements Cachable {
 
-		protected Set<String> uuids             = new HashSet<>();
-		protected Set<String> relTypes          = new HashSet<>();
+		protected Set<String> uuids             = ConcurrentHashMap.newKeySet();
+		protected Set<String> relTypes          = ConcurrentHashMap.newKeySet();
 		protected PermissionResolutionMask mask = null;
+		protected Boolean value                 = null;
+		protected boolean permission            = false;
 		protected String key                    = null;
+
+		@Override
+		public void onRemoveFromCache() {
+			unregister(this);
+		}
 	}
 }
@@ -75,6 +75,7 @@ public class SecurityContext {
 
 	private final Map<String, QueryRange> ranges = new ConcurrentHashMap<>();
 	private final Map<String, Object> attrs      = new ConcurrentHashMap<>();
+	private final Set<String> creationGrants     = ConcurrentHashMap.newKeySet();
 	private AccessMode accessMode                = AccessMode.Frontend;
 	private Authenticator authenticator          = null;
 	private Principal cachedUser                 = null;
@@ -322,6 +323,23 @@ public class SecurityContext {
 		return cachedUserId;
 	}
 
+	/**
+	 * Remembers that the given permission was granted for a node that was
+	 * created with this context. Such grants come from the quick checks
+	 * for new nodes, so they are only valid for the creator and must not
+	 * be stored in the global permission cache.
+	 *
+	 * @param uuid
+	 * @param permission
+	 */
+	public void grantedOnCreation(final String uuid, final Permission permission) {
+		creationGrants.add(creationGrantKey(uuid, permission));
+	}
+
+	public boolean isGrantedOnCreation(final String uuid, final Permission permission) {
+		return !creationGrants.isEmpty() && creationGrants.contains(creationGrantKey(uuid, permission));
+	}
+
 	public String getCachedUserName() {
 		return cachedUserName;
 	}
@@ -521,6 +539,12 @@ public class SecurityContext {
 	}
 
 	// ----- private methods -----
+	private String creationGrantKey(final String uuid, final Permission permission) {
+
+		// the user of a context can change on login
+		return uuid + "." + permission.name() + "." + cachedUserId;
+	}
+
 	private boolean isVisibleInBackend(AccessControllable node) {
 
 		if (isVisibleInFrontend(node)) {
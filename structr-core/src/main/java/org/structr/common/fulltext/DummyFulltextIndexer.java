@@ -18,8 +18,12 @@
  */
 package org.structr.common.fulltext;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObjectMap;
 
@@ -42,4 +46,17 @@ public class DummyFulltextIndexer implements FulltextIndexer {
 
 		return new GraphObjectMap();
 	}
+
+	@Override
+	public List<GraphObjectMap> search(final SecurityContext securityContext, final String query, final int limit) throws FrameworkException {
+
+		logger.warn("No fulltext indexer installed, this is a dummy implementation that does nothing.");
+
+		return Collections.emptyList();
+	}
+
+	@Override
+	public Map<String, Object> getStatistics() {
+		return Collections.emptyMap();
+	}
 }
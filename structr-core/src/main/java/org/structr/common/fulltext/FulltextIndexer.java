@@ -18,6 +18,9 @@
  */
 package org.structr.common.fulltext;
 
+import java.util.List;
+import java.util.Map;
+import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObjectMap;
 
@@ -27,4 +30,20 @@ public interface FulltextIndexer {
 
 	void addToFulltextIndex(final Indexable indexable) throws FrameworkException;
 	GraphObjectMap getContextObject(final String searchTerm, final String text, final int contextLength);
+
+	/**
+	 * Searches the fulltext index for the given query and returns the
+	 * matching indexables that are visible in the given security context,
+	 * ordered by relevance. Each result contains the indexable under the
+	 * key "node" and its score under the key "score".
+	 *
+	 * @param securityContext
+	 * @param query
+	 * @param limit
+	 * @return the search results
+	 * @throws FrameworkException
+	 */
+	List<GraphObjectMap> search(final SecurityContext securityContext, final String query, final int limit) throws FrameworkException;
+
+	Map<String, Object> getStatistics();
 }
@@ -38,6 +38,23 @@ public interface StructrTransactionListener {
 	public void beforeCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents) throws FrameworkException;
 	public void afterCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents);
 
+	/**
+	 * Listeners that maintain caches of committed data must see every
+	 * commit, even if transaction notifications are disabled.
+	 *
+	 * @return whether afterCommit is called for every commit
+	 */
+	default public boolean requiresAllCommits() {
+		return false;
+	}
+
+	/**
+	 * Called when all caches are flushed, e.g. after a native query that
+	 * modified the database without modification events.
+	 */
+	default public void flushCaches() {
+	}
+
 	default public void simpleBroadcast(final String messageName, final Map<String, Object> data) {
 		simpleBroadcast(messageName, data, null);
 	};
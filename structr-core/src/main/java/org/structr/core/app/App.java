@@ -19,6 +19,7 @@
 package org.structr.core.app;
 
 import java.io.Closeable;
+import java.util.List;
 import java.util.Map;
 import org.structr.agent.Task;
 import org.structr.api.DatabaseService;
@@ -49,12 +50,14 @@ public interface App extends Closeable {
 	<T extends NodeInterface> T create(final Class<T> type, final String name) throws FrameworkException;
 	<T extends NodeInterface> T create(final Class<T> type, final PropertyMap properties) throws FrameworkException;
 	<T extends NodeInterface> T create(final Class<T> type, final NodeAttribute<?>... attributes) throws FrameworkException;
+	<T extends NodeInterface> List<T> create(final Class<T> type, final List<PropertyMap> properties) throws FrameworkException;
 	<T extends NodeInterface> void delete(final Class<T> type) throws FrameworkException;
 
 	void delete(final NodeInterface node) throws FrameworkException;
 
 	<A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> R create(final A fromNode, final B toNode, final Class<R> relType) throws FrameworkException;
 	<A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> R create(final A fromNode, final B toNode, final Class<R> relType, final PropertyMap properties) throws FrameworkException;
+	<A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> List<R> create(final Class<R> relType, final List<? extends A> fromNodes, final List<? extends B> toNodes, final List<PropertyMap> properties) throws FrameworkException;
 
 	void delete(final RelationshipInterface relationship);
 
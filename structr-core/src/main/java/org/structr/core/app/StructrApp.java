@@ -21,6 +21,7 @@ package org.structr.core.app;
 import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
@@ -34,11 +35,10 @@ import org.structr.api.DatabaseService;
 import org.structr.api.NotFoundException;
 import org.structr.api.config.Settings;
 import org.structr.api.graph.GraphProperties;
-import org.structr.api.graph.Identity;
 import org.structr.api.graph.PropertyContainer;
 import org.structr.api.service.Command;
 import org.structr.api.service.Service;
-import org.structr.api.util.FixedSizeCache;
+import org.structr.api.util.UuidIndex;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.fulltext.DummyFulltextIndexer;
@@ -79,10 +79,10 @@ public class StructrApp implements App {
 
 	private static final Logger logger = LoggerFactory.getLogger(StructrApp.class);
 
-	private static FixedSizeCache<String, Identity> nodeUuidMap = null;
-	private static FixedSizeCache<String, Identity> relUuidMap  = null;
-	private static final URI schemaBaseURI                      = URI.create("https://structr.org/v1.1/#");
-	private static final Object globalConfigLock                = new Object();
+	private static volatile UuidIndex nodeUuidMap = null;
+	private static volatile UuidIndex relUuidMap  = null;
+	private static final URI schemaBaseURI        = URI.create("https://structr.org/v1.1/#");
+	private static final Object globalConfigLock  = new Object();
 	private Map<String, Object> appContextStore                 = new LinkedHashMap<>();
 	private RelationshipFactory relFactory                      = null;
 	private NodeFactory nodeFactory                             = null;
@@ -110,32 +110,24 @@ public class StructrApp implements App {
 		}
 
 		final CreateNodeCommand<T> command = command(CreateNodeCommand.class);
-		final PropertyMap properties       = new PropertyMap(source);
-		String finalType                   = type.getSimpleName();
 
-		// try to identify the actual type from input set (creation wouldn't work otherwise anyway)
-		final String typeFromInput = properties.get(NodeInterface.type);
-		if (typeFromInput != null) {
-
-			Class actualType = StructrApp.getConfiguration().getNodeEntityClass(typeFromInput);
-			if (actualType == null) {
-
-				// overwrite type information when creating a node (adhere to type specified by resource!)
-				properties.put(AbstractNode.type, type.getSimpleName());
+		return command.execute(getPropertiesWithType(type, source));
+	}
 
-			} else if (actualType.isInterface() || Modifier.isAbstract(actualType.getModifiers())) {
+	@Override
+	public <T extends NodeInterface> List<T> create(final Class<T> type, final List<PropertyMap> source) throws FrameworkException {
 
-				throw new FrameworkException(422, "Invalid abstract type " + type.getSimpleName() + ", please supply a non-abstract class name in the type property");
+		if (type == null) {
+			throw new FrameworkException(422, "Empty type (null). Please supply a valid class name in the type property.");
+		}
 
-			} else {
+		final CreateNodeCommand<T> command = command(CreateNodeCommand.class);
+		final List<PropertyMap> properties = new ArrayList<>(source.size());
 
-				finalType = actualType.getSimpleName();
-			}
+		for (final PropertyMap map : source) {
+			properties.add(getPropertiesWithType(type, map));
 		}
 
-		// set type
-		properties.put(AbstractNode.type, finalType);
-
 		return command.execute(properties);
 	}
 
@@ -172,6 +164,11 @@ public class StructrApp implements App {
 		return command(CreateRelationshipCommand.class).execute(fromNode, toNode, relType, properties);
 	}
 
+	@Override
+	public <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> List<R> create(final Class<R> relType, final List<? extends A> fromNodes, final List<? extends B> toNodes, final List<PropertyMap> properties) throws FrameworkException {
+		return command(CreateRelationshipCommand.class).execute(relType, fromNodes, toNodes, properties);
+	}
+
 	@Override
 	public void delete(final RelationshipInterface relationship) {
 		removeRelFromCache(relationship);
@@ -190,8 +187,8 @@ public class StructrApp implements App {
 			return null;
 		}
 
-		final Identity nodeId = getNodeFromCache(uuid);
-		if (nodeId == null) {
+		final long nodeId = getNodeUuidMap().get(uuid);
+		if (nodeId == UuidIndex.NOT_FOUND) {
 
 			final Query query = nodeQuery().uuid(uuid);
 
@@ -205,7 +202,7 @@ public class StructrApp implements App {
 
 				final PropertyContainer container = entity.getPropertyContainer();
 
-				nodeUuidMap.put(uuid, container.getId());
+				getNodeUuidMap().put(uuid, container.getId().getId());
 				return (NodeInterface)entity;
 			}
 
@@ -215,7 +212,7 @@ public class StructrApp implements App {
 				return nodeFactory.instantiate(getDatabaseService().getNodeById(nodeId));
 
 			} catch (NotFoundException ignore) {
-				nodeUuidMap.remove(uuid);
+				getNodeUuidMap().remove(uuid);
 			}
 		}
 
@@ -234,8 +231,8 @@ public class StructrApp implements App {
 			return null;
 		}
 
-		final Identity id = getRelFromCache(uuid);
-		if (id == null) {
+		final long id = getRelUuidMap().get(uuid);
+		if (id == UuidIndex.NOT_FOUND) {
 
 			final Query query = relationshipQuery().uuid(uuid);
 
@@ -253,7 +250,7 @@ public class StructrApp implements App {
 
 				final PropertyContainer container = entity.getPropertyContainer();
 
-				relUuidMap.put(uuid, container.getId());
+				getRelUuidMap().put(uuid, container.getId().getId());
 				return (RelationshipInterface)entity;
 			}
 
@@ -263,7 +260,7 @@ public class StructrApp implements App {
 				return relFactory.instantiate(getDatabaseService().getRelationshipById(id));
 
 			} catch (NotFoundException ignore) {
-				relUuidMap.remove(uuid);
+				getRelUuidMap().remove(uuid);
 			}
 		}
 
@@ -508,6 +505,16 @@ public class StructrApp implements App {
 		}
 	}
 
+	public static Map<String, Object> getUuidCacheStatistics() {
+
+		final Map<String, Object> stats = new LinkedHashMap<>();
+
+		stats.put("nodes",         getNodeUuidMap().getStatistics());
+		stats.put("relationships", getRelUuidMap().getStatistics());
+
+		return stats;
+	}
+
 	public static <T> PropertyKey<T> key(final Class type, final String name) {
 		return StructrApp.key(type, name, true);
 	}
@@ -612,55 +619,88 @@ public class StructrApp implements App {
 	private static final Map<Class, URI> typeIdMap   = new LinkedHashMap<>();
 
 	// ---------- private methods -----
-	private synchronized Identity getNodeFromCache(final String uuid) {
+	private PropertyMap getPropertiesWithType(final Class type, final PropertyMap source) throws FrameworkException {
 
-		if (nodeUuidMap == null) {
+		final PropertyMap properties = new PropertyMap(source);
+		String finalType             = type.getSimpleName();
 
-			nodeUuidMap = new FixedSizeCache<>(Settings.UuidCacheSize.getValue());
-		}
+		// try to identify the actual type from input set (creation wouldn't work otherwise anyway)
+		final String typeFromInput = properties.get(NodeInterface.type);
+		if (typeFromInput != null) {
 
-		return nodeUuidMap.get(uuid);
-	}
+			Class actualType = StructrApp.getConfiguration().getNodeEntityClass(typeFromInput);
+			if (actualType == null) {
 
-	private synchronized Identity getRelFromCache(final String uuid) {
+				// overwrite type information when creating a node (adhere to type specified by resource!)
+				properties.put(AbstractNode.type, type.getSimpleName());
 
-		if (relUuidMap == null) {
+			} else if (actualType.isInterface() || Modifier.isAbstract(actualType.getModifiers())) {
 
-			relUuidMap = new FixedSizeCache<>(Settings.UuidCacheSize.getValue());
+				throw new FrameworkException(422, "Invalid abstract type " + type.getSimpleName() + ", please supply a non-abstract class name in the type property");
+
+			} else {
+
+				finalType = actualType.getSimpleName();
+			}
 		}
 
-		return relUuidMap.get(uuid);
+		// set type
+		properties.put(AbstractNode.type, finalType);
+
+		return properties;
 	}
 
-	private synchronized void removeNodeFromCache(final NodeInterface node) {
+	private void removeNodeFromCache(final NodeInterface node) {
 
 		if (node != null) {
 
 			final String uuid = node.getUuid();
 			if (uuid != null) {
 
-				if (nodeUuidMap == null) {
-
-					nodeUuidMap = new FixedSizeCache<>(Settings.UuidCacheSize.getValue());
-				}
-
+				getNodeUuidMap().remove(uuid);
 			}
 		}
 	}
 
-	private synchronized void removeRelFromCache(final RelationshipInterface rel) {
+	private void removeRelFromCache(final RelationshipInterface rel) {
 
 		if (rel != null) {
 
 			final String uuid = rel.getUuid();
 			if (uuid != null) {
 
-				if (relUuidMap == null) {
+				getRelUuidMap().remove(uuid);
+			}
+		}
+	}
+
+	private static UuidIndex getNodeUuidMap() {
+
+		if (nodeUuidMap == null) {
+
+			synchronized (StructrApp.class) {
 
-					relUuidMap = new FixedSizeCache<>(Settings.UuidCacheSize.getValue());
+				if (nodeUuidMap == null) {
+					nodeUuidMap = new UuidIndex(Settings.UuidCacheSize.getValue());
 				}
+			}
+		}
 
+		return nodeUuidMap;
+	}
+
+	private static UuidIndex getRelUuidMap() {
+
+		if (relUuidMap == null) {
+
+			synchronized (StructrApp.class) {
+
+				if (relUuidMap == null) {
+					relUuidMap = new UuidIndex(Settings.UuidCacheSize.getValue());
+				}
 			}
 		}
+
+		return relUuidMap;
 	}
 }
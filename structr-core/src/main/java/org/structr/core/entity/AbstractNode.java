@@ -63,6 +63,7 @@ import org.structr.cmis.info.CMISPolicyInfo;
 import org.structr.cmis.info.CMISRelationshipInfo;
 import org.structr.cmis.info.CMISSecondaryInfo;
 import org.structr.common.AccessControllable;
+import org.structr.common.AccessPathCache;
 import org.structr.common.Permission;
 import org.structr.common.PermissionPropagation;
 import org.structr.common.PermissionResolutionMask;
@@ -102,9 +103,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	private static final int permissionResolutionMaxLevel                                                     = Settings.ResolutionDepth.getValue();
 	private static final Logger logger                                                                        = LoggerFactory.getLogger(AbstractNode.class.getName());
-	private static final FixedSizeCache<String, Boolean> isGrantedResultCache                                 = new FixedSizeCache<String, Boolean>(100000);
 	private static final FixedSizeCache<String, Object> relationshipTemplateInstanceCache                     = new FixedSizeCache<>(1000);
-	private static final Map<String, Map<String, PermissionResolutionResult>> globalPermissionResolutionCache = new HashMap<>();
 
 	public static final View defaultView = new View(AbstractNode.class, PropertyView.Public, id, type, name);
 
@@ -775,17 +774,27 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			accessingUser = context.getUser(false);
 		}
 
-		final String cacheKey = getUuid() + "." + permission.name() + "." + context.getCachedUserId();
-		final Boolean cached  = isGrantedResultCache.get(cacheKey);
-
-		if (cached != null && cached == true) {
+		// only positive results are cached
+		if (Boolean.TRUE.equals(AccessPathCache.getPermission(getUuid(), context.getCachedUserId(), permission)) || context.isGrantedOnCreation(getUuid(), permission)) {
 			return true;
 		}
 
-		final boolean doLog  = securityContext.hasParameter("logPermissionResolution");
-		final boolean result = isGranted(permission, accessingUser, new PermissionResolutionMask(), 0, new AlreadyTraversed(), true, doLog, isCreation);
+		final AlreadyTraversed alreadyTraversed = new AlreadyTraversed();
+		final boolean doLog                     = securityContext.hasParameter("logPermissionResolution");
+		final boolean result                    = isGranted(permission, accessingUser, new PermissionResolutionMask(), 0, alreadyTraversed, true, doLog, isCreation);
+
+		if (isCreation) {
+
+			// the quick checks for a new node only apply to its creator, who may
+			// need to modify the node again later, e.g. in onCreation callbacks
+			if (result) {
+				context.grantedOnCreation(getUuid(), permission);
+			}
+
+		} else if (alreadyTraversed.isCacheable()) {
 
-		isGrantedResultCache.put(cacheKey, result);
+			AccessPathCache.putPermission(getUuid(), context.getCachedUserId(), permission, result, alreadyTraversed.getDependencies(), alreadyTraversed.getGeneration());
+		}
 
 		return result;
 	}
@@ -803,6 +812,13 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			return false;
 		}
 
+		// remember the nodes and principals the result depends on
+		alreadyTraversed.addDependency(getUuid());
+
+		if (accessingUser != null) {
+			alreadyTraversed.addDependency(accessingUser.getUuid());
+		}
+
 		// use quick checks for maximum performance
 		if (isCreation && (accessingUser == null || accessingUser.equals(this) || accessingUser.equals(getOwnerNode()) ) ) {
 			return true;
@@ -848,8 +864,13 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			}
 
 			final Security security = getSecurityRelationship(accessingUser, localIncomingSecurityRelationships);
-			if (security != null && security.isAllowed(permission)) {
-				return true;
+			if (security != null) {
+
+				alreadyTraversed.addDependency(security.getUuid());
+
+				if (security.isAllowed(permission)) {
+					return true;
+				}
 			}
 
 			// new experimental custom permission resultion based on query
@@ -858,6 +879,9 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 			if (StringUtils.isNotEmpty(customPermissionQuery)) {
 
+				// the result of a custom query can depend on anything
+				alreadyTraversed.setCacheable(false);
+
 				final Map<String, Object> params = new HashMap<>();
 
 				params.put("principalUuid", accessingUser.getUuid());
@@ -898,14 +922,14 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 					final BFSInfo info = bfsNodes.poll();
 					if (info != null && info.level < permissionResolutionMaxLevel) {
 
-						final Boolean value = info.node.getPermissionResolutionResult(accessingUser.getUuid(), permission);
+						final Boolean value = AccessPathCache.getResolutionResult(info.node.getUuid(), accessingUser.getUuid(), permission);
 						if (value != null) {
 
 							// returning immediately
 							if (Boolean.TRUE.equals(value)) {
 
 								// do backtracking
-								backtrack(info, accessingUser.getUuid(), permission, true, 0, doLog);
+								backtrack(info, accessingUser.getUuid(), permission, true, 0, alreadyTraversed, doLog);
 
 								return true;
 							}
@@ -915,7 +939,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 							if (info.node.hasEffectivePermissions(info, accessingUser, permission, mask, level, alreadyTraversed, bfsNodes, doLog, isCreation)) {
 
 								// do backtracking
-								backtrack(info, accessingUser.getUuid(), permission, true, 0, doLog);
+								backtrack(info, accessingUser.getUuid(), permission, true, 0, alreadyTraversed, doLog);
 
 								return true;
 							}
@@ -925,7 +949,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 				} while (!bfsNodes.isEmpty());
 
 				// do backtracking
-				backtrack(root, accessingUser.getUuid(), permission, false, 0, doLog);
+				backtrack(root, accessingUser.getUuid(), permission, false, 0, alreadyTraversed, doLog);
 			}
 
 			// Last: recursively check possible parent principals
@@ -940,7 +964,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		return false;
 	}
 
-	private void backtrack(final BFSInfo info, final String principalId, final Permission permission, final boolean value, final int level, final boolean doLog) {
+	private void backtrack(final BFSInfo info, final String principalId, final Permission permission, final boolean value, final int level, final AlreadyTraversed alreadyTraversed, final boolean doLog) {
 
 		if (doLog) {
 
@@ -959,12 +983,12 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			System.out.print(info.node.getType() + " (" + info.node.getUuid() + ") --> ");
 		}
 
-		info.node.storePermissionResolutionResult(principalId, permission, value);
+		info.node.storePermissionResolutionResult(principalId, permission, value, alreadyTraversed);
 
 		// go to parent(s)
 		if (info.parent != null) {
 
-			backtrack(info.parent, principalId, permission, value, level+1, doLog);
+			backtrack(info.parent, principalId, permission, value, level+1, alreadyTraversed, doLog);
 		}
 
 		if (doLog && level == 0) {
@@ -1002,7 +1026,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 							if (otherNode.isGranted(permission, principal, mask, level, alreadyTraversed, false, doLog, isCreation)) {
 
-								otherNode.storePermissionResolutionResult(principal.getUuid(), permission, true);
+								otherNode.storePermissionResolutionResult(principal.getUuid(), permission, true, alreadyTraversed);
 
 								// break early
 								return true;
@@ -1143,68 +1167,11 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		mask.handleProperties(rel.getDeltaProperties());
 	}
 
-	private Boolean getPermissionResolutionResult(final String principalId, final Permission permission) {
+	private void storePermissionResolutionResult(final String principalId, final Permission permission, final boolean value, final AlreadyTraversed alreadyTraversed) {
 
-		Map<String, PermissionResolutionResult> permissionResolutionCache = globalPermissionResolutionCache.get(getUuid());
-		if (permissionResolutionCache == null) {
+		if (alreadyTraversed.isCacheable()) {
 
-			permissionResolutionCache = new HashMap<>();
-			globalPermissionResolutionCache.put(getUuid(), permissionResolutionCache);
-		}
-
-		PermissionResolutionResult result = permissionResolutionCache.get(principalId);
-		if (result != null) {
-
-			if (permission.equals(Permission.read)) {
-				return result.read;
-			}
-
-			if (permission.equals(Permission.write)) {
-				return result.write;
-			}
-
-			if (permission.equals(Permission.delete)) {
-				return result.delete;
-			}
-
-			if (permission.equals(Permission.accessControl)) {
-				return result.accessControl;
-			}
-		}
-
-		return null;
-	}
-
-	private void storePermissionResolutionResult(final String principalId, final Permission permission, final boolean value) {
-
-		Map<String, PermissionResolutionResult> permissionResolutionCache = globalPermissionResolutionCache.get(getUuid());
-		if (permissionResolutionCache == null) {
-
-			permissionResolutionCache = new HashMap<>();
-			globalPermissionResolutionCache.put(getUuid(), permissionResolutionCache);
-		}
-
-		PermissionResolutionResult result = permissionResolutionCache.get(principalId);
-		if (result == null) {
-
-			result = new PermissionResolutionResult();
-			permissionResolutionCache.put(principalId, result);
-		}
-
-		if (permission.equals(Permission.read) && (result.read == null || result.read == false)) {
-			result.read = value;
-		}
-
-		if (permission.equals(Permission.write) && (result.write == null || result.write == false)) {
-			result.write = value;
-		}
-
-		if (permission.equals(Permission.delete) && (result.delete == null || result.delete == false)) {
-			result.delete = value;
-		}
-
-		if (permission.equals(Permission.accessControl) && (result.accessControl == null || result.accessControl == false)) {
-			result.accessControl = value;
+			AccessPathCache.putResolutionResult(getUuid(), principalId, permission, value, alreadyTraversed.getDependencies(), alreadyTraversed.getGeneration());
 		}
 	}
 
@@ -1247,12 +1214,12 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	@Override
 	public void onModification(SecurityContext securityContext, ErrorBuffer errorBuffer, final ModificationQueue modificationQueue) throws FrameworkException {
-		clearCaches();
+		AccessPathCache.invalidateForId(getUuid());
 	}
 
 	@Override
 	public void onDeletion(SecurityContext securityContext, ErrorBuffer errorBuffer, PropertyMap properties) throws FrameworkException {
-		clearCaches();
+		AccessPathCache.invalidateForId(getUuid());
 	}
 
 	@Override
@@ -1269,22 +1236,22 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 
 	@Override
 	public void ownerModified(SecurityContext securityContext) {
-		clearCaches();
+		AccessPathCache.invalidateForId(getUuid());
 	}
 
 	@Override
 	public void securityModified(SecurityContext securityContext) {
-		clearCaches();
+		AccessPathCache.invalidateForId(getUuid());
 	}
 
 	@Override
 	public void locationModified(SecurityContext securityContext) {
-		clearCaches();
+		AccessPathCache.invalidateForId(getUuid());
 	}
 
 	@Override
 	public void propagatedModification(SecurityContext securityContext) {
-		clearCaches();
+		AccessPathCache.invalidateForId(getUuid());
 	}
 
 	@Override
@@ -1504,8 +1471,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 	}
 
 	public static void clearCaches() {
-		globalPermissionResolutionCache.clear();
-		isGrantedResultCache.clear();
+		AccessPathCache.invalidate();
 	}
 
 	public static <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> R getRelationshipForType(final Class<R> type) {
@@ -1754,7 +1720,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			throw new FrameworkException(403, "Access control not permitted");
 		}
 
-		clearCaches();
+		AccessPathCache.invalidateForId(getUuid());
 
 		Security secRel = getSecurityRelationship(principal);
 		if (secRel == null) {
@@ -1802,7 +1768,7 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 			throw new FrameworkException(403, "Access control not permitted");
 		}
 
-		clearCaches();
+		AccessPathCache.invalidateForId(getUuid());
 
 		Security secRel = getSecurityRelationship(principal);
 		if (secRel != null) {
@@ -2079,6 +2045,32 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 	private static class AlreadyTraversed {
 
 		private Map<String, Set<String>> sets = new LinkedHashMap<>();
+		private Set<String> dependencies      = new HashSet<>();
+		private long generation               = AccessPathCache.generation();
+		private boolean cacheable             = true;
+
+		public void addDependency(final String uuid) {
+
+			if (uuid != null) {
+				dependencies.add(uuid);
+			}
+		}
+
+		public Set<String> getDependencies() {
+			return dependencies;
+		}
+
+		public long getGeneration() {
+			return generation;
+		}
+
+		public boolean isCacheable() {
+			return cacheable;
+		}
+
+		public void setCacheable(final boolean cacheable) {
+			this.cacheable = cacheable;
+		}
 
 		public boolean contains(final String key, final String uuid) {
 
@@ -2121,11 +2113,4 @@ public abstract class AbstractNode implements NodeInterface, AccessControllable,
 		}
 	}
 
-	private static class PermissionResolutionResult {
-
-		Boolean read          = null;
-		Boolean write         = null;
-		Boolean delete        = null;
-		Boolean accessControl = null;
-	}
 }
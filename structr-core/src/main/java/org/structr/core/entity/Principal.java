@@ -31,6 +31,7 @@ import org.structr.api.Predicate;
 import org.structr.api.config.Settings;
 import org.structr.api.graph.Node;
 import org.structr.common.AccessControllable;
+import org.structr.common.AccessPathCache;
 import org.structr.common.EMailValidator;
 import org.structr.common.LowercaseTransformator;
 import org.structr.common.PropertyView;
@@ -151,7 +152,7 @@ public interface Principal extends NodeInterface, AccessControllable {
 			.addParameter("arg0", PropertyKey.class.getName() + "<T>")
 			.addParameter("arg1", "T")
 			.addException(FrameworkException.class.getName())
-			.setSource("AbstractNode.clearCaches(); return super.setProperty(arg0, arg1);");
+			.setSource(AccessPathCache.class.getName() + ".invalidateForId(getUuid()); return super.setProperty(arg0, arg1);");
 
 		// create relationships
 		principal.relate(favoritable, "FAVORITE", Relation.Cardinality.ManyToMany, "favoriteUsers", "favorites");
@@ -18,9 +18,6 @@
  */
 package org.structr.core.function;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import java.io.IOException;
 import java.text.ParseException;
@@ -28,6 +25,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import org.apache.commons.io.FileUtils;
 import org.mozilla.javascript.NativeObject;
@@ -44,6 +42,8 @@ import org.structr.core.GraphObjectMap;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.SegmentedChangelog;
+import org.structr.core.graph.SegmentedChangelog.Record;
 import org.structr.core.property.EndNodeProperty;
 import org.structr.core.property.Property;
 import org.structr.core.property.StringProperty;
@@ -76,44 +76,38 @@ public class ChangelogFunction extends Function<Object, Object> {
 
 			assertArrayHasMinLengthAndAllElementsNotNull(sources, 1);
 
-			final String changelog = getChangelogForObject(sources[0]);
+			final ChangelogFilter changelogFilter = new ChangelogFilter();
+			changelogFilter.setIsUserCentricChangelog(isUserCentric());
 
-			if (changelog != null && !("".equals(changelog))) {
+			if (sources.length >= 3 && sources[2] != null) {
 
-				final ChangelogFilter changelogFilter = new ChangelogFilter();
-				changelogFilter.setIsUserCentricChangelog(isUserCentric());
+				if (sources[2] instanceof NativeObject) {
 
-				if (sources.length >= 3 && sources[2] != null) {
+					changelogFilter.processJavaScriptConfigurationObject((NativeObject) sources[2]);
 
-					if (sources[2] instanceof NativeObject) {
+				} else {
 
-						changelogFilter.processJavaScriptConfigurationObject((NativeObject) sources[2]);
+					final int maxLength = sources.length;
 
-					} else {
+					for (int i = 2; (i + 2) <= maxLength; i += 2) {
 
-						final int maxLength = sources.length;
-
-						for (int i = 2; (i + 2) <= maxLength; i += 2) {
-
-							if (sources[i] != null && sources[i+1] != null) {
-								changelogFilter.addFilterEntry(sources[i].toString(), sources[i+1]);
-							}
-						}
-
-						if (maxLength % 2 == 1 && sources[maxLength-1] != null) {
-							logger.warn("Ignoring dangling filterKey: {}", sources[maxLength-1]);
+						if (sources[i] != null && sources[i+1] != null) {
+							changelogFilter.addFilterEntry(sources[i].toString(), sources[i+1]);
 						}
 					}
-				}
 
-				if (sources.length >= 2 && Boolean.TRUE.equals(sources[1])) {
-					changelogFilter.setResolveTargets(true);
+					if (maxLength % 2 == 1 && sources[maxLength-1] != null) {
+						logger.warn("Ignoring dangling filterKey: {}", sources[maxLength-1]);
+					}
 				}
+			}
 
-				return changelogFilter.getFilteredChangelog(changelog);
+			if (sources.length >= 2 && Boolean.TRUE.equals(sources[1])) {
+				changelogFilter.setResolveTargets(true);
 			}
 
-			return new ArrayList();
+			// the filter is applied while the changelog is read
+			return changelogFilter.getFilteredChangelog(getChangelogForObject(sources[0], changelogFilter));
 
 		} catch (IOException ioex) {
 
@@ -147,15 +141,15 @@ public class ChangelogFunction extends Function<Object, Object> {
 		return "Returns the changelog object";
 	}
 
-	private String getChangelogForObject (final Object obj) throws IOException {
+	private List<Record> getChangelogForObject (final Object obj, final Predicate<Record> filter) throws IOException {
 
 		if (obj instanceof GraphObject) {
 
-			return getChangelogForGraphObject((GraphObject)obj);
+			return getChangelogForGraphObject((GraphObject)obj, filter);
 
 		} else if (obj instanceof String) {
 
-			return getChangelogForString((String) obj);
+			return getChangelogForString((String) obj, filter);
 
 		} else {
 
@@ -163,20 +157,20 @@ public class ChangelogFunction extends Function<Object, Object> {
 		}
 	}
 
-	protected String getChangelogForGraphObject (final GraphObject obj) throws IOException {
+	protected List<Record> getChangelogForGraphObject (final GraphObject obj, final Predicate<Record> filter) throws IOException {
 
-		return getChangelogForUUID(obj.getUuid(), (obj.isNode() ? "n" : "r"));
+		return getChangelogForUUID(obj.getUuid(), (obj.isNode() ? "n" : "r"), filter);
 
 	}
 
-	protected String getChangelogForString (final String inputString) throws IOException {
+	protected List<Record> getChangelogForString (final String inputString, final Predicate<Record> filter) throws IOException {
 
 		if (uuidPattern.matcher(inputString).matches()) {
 
-			String changelog = getChangelogForUUID(inputString, "n");
+			List<Record> changelog = getChangelogForUUID(inputString, "n", filter);
 
-			if (changelog.equals("")) {
-				changelog = getChangelogForUUID(inputString, "r");
+			if (changelog.isEmpty()) {
+				changelog = getChangelogForUUID(inputString, "r", filter);
 			}
 
 			return changelog;
@@ -187,18 +181,35 @@ public class ChangelogFunction extends Function<Object, Object> {
 		}
 	}
 
-	protected String getChangelogForUUID (final String uuid, final String changelogType) throws IOException {
+	protected List<Record> getChangelogForUUID (final String uuid, final String changelogType, final Predicate<Record> filter) throws IOException {
 
-		java.io.File file = getChangeLogFileOnDisk(changelogType, uuid, false);
+		if (SegmentedChangelog.isEnabled()) {
+
+			// reads only the records of the given object
+			return SegmentedChangelog.getInstance().read(changelogType.charAt(0), uuid, filter);
+		}
+
+		final java.io.File file    = getChangeLogFileOnDisk(changelogType, uuid, false);
+		final List<Record> records = new ArrayList<>();
 
 		if (file.exists()) {
 
-			return FileUtils.readFileToString(file, "utf-8");
+			final JsonParser parser = new JsonParser();
 
-		} else {
+			for (final String entry : FileUtils.readFileToString(file, "utf-8").split("\n")) {
+
+				if (!entry.isEmpty()) {
+
+					final Record record = Record.fromJson(parser.parse(entry).getAsJsonObject());
+					if (filter.test(record)) {
 
-			return "";
+						records.add(record);
+					}
+				}
+			}
 		}
+
+		return records;
 	}
 
 	public static java.io.File getChangeLogFileOnDisk(final String typeFolderName, final String uuid, final boolean create) {
@@ -238,10 +249,8 @@ public class ChangelogFunction extends Function<Object, Object> {
 		return false;
 	}
 
-	private class ChangelogFilter {
+	private class ChangelogFilter implements Predicate<Record> {
 
-		private final JsonParser _jsonParser = new JsonParser();
-		private final Gson _gson = new GsonBuilder().disableHtmlEscaping().create();
 		private final App _app = StructrApp.getInstance();
 
 		private final ArrayList<String> _filterVerbs    = new ArrayList();
@@ -362,99 +371,89 @@ public class ChangelogFunction extends Function<Object, Object> {
 			_resolveTargets = resolve;
 		}
 
-		public List getFilteredChangelog (final String changelog) throws FrameworkException {
+		public List getFilteredChangelog (final List<Record> changelog) throws FrameworkException {
 
 			final List list = new ArrayList();
 
-			_noFilterConfig = (
-					_filterVerbs.isEmpty() && _filterTimeFrom == null && _filterTimeTo == null && _filterUserId.isEmpty() &&
-					_filterUserName.isEmpty() && _filterRelType.isEmpty() && _filterRelDir == null && _filterTarget.isEmpty() && _filterKey.isEmpty()
-			);
+			for (final Record record : changelog) {
 
-			for (final String entry : changelog.split("\n")) {
+				final String verb = record.getVerb();
 
-				final JsonObject jsonObj = _jsonParser.parse(entry).getAsJsonObject();
-				final String verb     = jsonObj.get("verb").getAsString();
-				final long time       = jsonObj.get("time").getAsLong();
-				final String userId   = (jsonObj.has("userId") ? jsonObj.get("userId").getAsString() : null);
-				final String userName = (jsonObj.has("userName") ? jsonObj.get("userName").getAsString() : null);
-				final String relType  = (jsonObj.has("rel") ? jsonObj.get("rel").getAsString() : null);
-				final String relId    = (jsonObj.has("relId") ? jsonObj.get("relId").getAsString() : null);
-				final String relDir   = (jsonObj.has("relDir") ? jsonObj.get("relDir").getAsString() : null);
-				final String target   = (jsonObj.has("target") ? jsonObj.get("target").getAsString() : null);
-				final String key      = (jsonObj.has("key") ? jsonObj.get("key").getAsString() : null);
+				final GraphObjectMap obj = new GraphObjectMap();
 
-				if (doesFilterApply(verb, time, userId, userName, relType, relDir, target, key)) {
+				obj.put(changelog_verb, verb);
+				obj.put(changelog_time, record.getTime());
 
-					final GraphObjectMap obj = new GraphObjectMap();
+				if (!_isUserCentricChangelog) {
+					obj.put(changelog_userId, record.getUserId());
+					obj.put(changelog_userName, record.getUserName());
+				}
 
-					obj.put(changelog_verb, verb);
-					obj.put(changelog_time, time);
+				switch (verb) {
+					case "create":
+					case "delete":
+						obj.put(changelog_target, record.getTarget());
+						if (_resolveTargets) {
+							obj.put(changelog_targetObj, _app.getNodeById(record.getTarget()));
+						}
+						list.add(obj);
+						break;
+
+					case "link":
+					case "unlink":
+						obj.put(changelog_rel, record.getRel());
+						obj.put(changelog_relId, record.getRelId());
+						obj.put(changelog_relDir, record.getRelDir());
+						obj.put(changelog_target, record.getTarget());
+						if (_resolveTargets) {
+							obj.put(changelog_targetObj, _app.getNodeById(record.getTarget()));
+						}
+						list.add(obj);
+						break;
 
-					if (!_isUserCentricChangelog) {
-						obj.put(changelog_userId, userId);
-						obj.put(changelog_userName, userName);
-					}
+					case "change":
+						obj.put(changelog_key, record.getKey());
+						obj.put(changelog_prev, record.getPrev() != null ? record.getPrev() : "null");
+						obj.put(changelog_val, record.getVal() != null ? record.getVal() : "null");
 
-					switch (verb) {
-						case "create":
-						case "delete":
-							obj.put(changelog_target, target);
-							if (_resolveTargets) {
-								obj.put(changelog_targetObj, _app.getNodeById(target));
-							}
-							list.add(obj);
-							break;
-
-						case "link":
-						case "unlink":
-							obj.put(changelog_rel, relType);
-							obj.put(changelog_relId, relId);
-							obj.put(changelog_relDir, relDir);
-							obj.put(changelog_target, target);
-							if (_resolveTargets) {
-								obj.put(changelog_targetObj, _app.getNodeById(target));
-							}
-							list.add(obj);
-							break;
-
-						case "change":
-							obj.put(changelog_key, key);
-							obj.put(changelog_prev, _gson.toJson(jsonObj.get("prev")));
-							obj.put(changelog_val, _gson.toJson(jsonObj.get("val")));
-
-							obj.put(changelog_target, target);
-							if (_resolveTargets) {
-								obj.put(changelog_targetObj, _app.getNodeById(target));
-							}
-
-							list.add(obj);
-							break;
-
-						default:
-							logger.warn("Unknown verb in changelog: \"{}\"", verb);
-							break;
-					}
+						obj.put(changelog_target, record.getTarget());
+						if (_resolveTargets) {
+							obj.put(changelog_targetObj, _app.getNodeById(record.getTarget()));
+						}
+
+						list.add(obj);
+						break;
+
+					default:
+						logger.warn("Unknown verb in changelog: \"{}\"", verb);
+						break;
 				}
 			}
 
 			return list;
 		}
 
-		public boolean doesFilterApply (final String verb, final long time, final String userId, final String userName, final String relType, final String relDir, final String target, final String key) {
+		@Override
+		public boolean test(final Record record) {
+
+			_noFilterConfig = (
+					_filterVerbs.isEmpty() && _filterTimeFrom == null && _filterTimeTo == null && _filterUserId.isEmpty() &&
+					_filterUserName.isEmpty() && _filterRelType.isEmpty() && _filterRelDir == null && _filterTarget.isEmpty() && _filterKey.isEmpty()
+			);
 
+			// verb and time are checked first because the other fields are decoded on demand
 			return (
 				(_noFilterConfig == true) ||
 				(
-					(_filterVerbs.isEmpty()    || _filterVerbs.contains(verb)       ) &&
-					(_filterTimeFrom == null   || _filterTimeFrom <= time           ) &&
-					(_filterTimeTo == null     || _filterTimeTo >= time             ) &&
-					(_filterUserId.isEmpty()   || _filterUserId.contains(userId)    ) &&
-					(_filterUserName.isEmpty() || _filterUserName.contains(userName)) &&
-					(_filterRelType.isEmpty()  || _filterRelType.contains(relType)  ) &&
-					(_filterRelDir == null     || _filterRelDir.equals(relDir)      ) &&
-					(_filterTarget.isEmpty()   || _filterTarget.contains(target)    ) &&
-					(_filterKey.isEmpty()      || _filterKey.contains(key)          )
+					(_filterVerbs.isEmpty()    || _filterVerbs.contains(record.getVerb())          ) &&
+					(_filterTimeFrom == null   || _filterTimeFrom <= record.getTime()              ) &&
+					(_filterTimeTo == null     || _filterTimeTo >= record.getTime()                ) &&
+					(_filterUserId.isEmpty()   || _filterUserId.contains(record.getUserId())       ) &&
+					(_filterUserName.isEmpty() || _filterUserName.contains(record.getUserName())   ) &&
+					(_filterRelType.isEmpty()  || _filterRelType.contains(record.getRel())         ) &&
+					(_filterRelDir == null     || _filterRelDir.equals(record.getRelDir())         ) &&
+					(_filterTarget.isEmpty()   || _filterTarget.contains(record.getTarget())       ) &&
+					(_filterKey.isEmpty()      || _filterKey.contains(record.getKey())             )
 				)
 			);
 		}
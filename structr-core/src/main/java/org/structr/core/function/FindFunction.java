@@ -78,6 +78,9 @@ public class FindFunction extends AbstractQueryFunction {
 
 					query.andTypes(type);
 
+					// the result depends on all objects of this type
+					ctx.registerTypeDependency(type);
+
 				} else {
 
 					logger.warn("Error in find(): type \"{}\" not found.", typeString);
@@ -32,6 +32,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.service.LicenseManager;
+import org.structr.api.util.ConcurrentFixedSizeCache;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.error.UnlicensedScriptException;
 import org.structr.core.GraphObject;
@@ -65,6 +66,7 @@ public class Functions {
 
 	protected static final Logger logger = LoggerFactory.getLogger(Functions.class.getName());
 	private static final Map<String, Function<Object, Object>> functions = new LinkedHashMap<>();
+	private static final ConcurrentFixedSizeCache<String, Expression> expressionCache = new ConcurrentFixedSizeCache<>(10000);
 
 	public static void put(final LicenseManager licenseManager, final Function<Object, Object> function) {
 
@@ -83,6 +85,9 @@ public class Functions {
 			logger.warn("A function named '{}' is already registered! The previous function will be overwritten with this one.", name);
 		}
 
+		// cached expressions may refer to the previous function
+		expressionCache.clear();
+
 		if (licensed) {
 
 			functions.put(name, function);
@@ -106,6 +111,76 @@ public class Functions {
 	}
 
 	public static Object evaluate(final ActionContext actionContext, final GraphObject entity, final String expression) throws FrameworkException, UnlicensedScriptException {
+		return parse(expression).evaluate(actionContext, entity);
+	}
+
+	/**
+	 * Returns the expression tree for the given StructrScript source. Parsed
+	 * trees are cached by source text and shared between threads, so they
+	 * must not be modified during evaluation; evaluation state is kept in
+	 * the ActionContext.
+	 *
+	 * @param expression
+	 * @return the root of the expression tree
+	 * @throws FrameworkException
+	 */
+	public static Expression parse(final String expression) throws FrameworkException {
+
+		Expression root = expressionCache.get(expression);
+		if (root == null) {
+
+			root = parseExpression(expression);
+			expressionCache.put(expression, root);
+		}
+
+		return root;
+	}
+
+	public static Map<String, Object> getCacheStatistics() {
+		return expressionCache.getStatistics();
+	}
+
+	public static String cleanString(final Object input) {
+
+		if (input == null) {
+
+			return "";
+		}
+
+		String normalized = Normalizer.normalize(input.toString(), Normalizer.Form.NFD)
+			.replaceAll("\\<", "")
+			.replaceAll("\\>", "")
+			.replaceAll("\\.", "")
+			.replaceAll("\\'", "-")
+			.replaceAll("\\?", "")
+			.replaceAll("\\(", "")
+			.replaceAll("\\)", "")
+			.replaceAll("\\{", "")
+			.replaceAll("\\}", "")
+			.replaceAll("\\[", "")
+			.replaceAll("\\]", "")
+			.replaceAll("\\+", "-")
+			.replaceAll("/", "-")
+			.replaceAll("–", "-")
+			.replaceAll("\\\\", "-")
+			.replaceAll("\\|", "-")
+			.replaceAll("'", "-")
+			.replaceAll("!", "")
+			.replaceAll(",", "")
+			.replaceAll("-", " ")
+			.replaceAll("_", " ")
+			.replaceAll("`", "-");
+
+		String result = normalized.replaceAll("-", " ");
+		result = StringUtils.normalizeSpace(result.toLowerCase());
+		result = result.replaceAll("[^\\p{ASCII}]", "").replaceAll("\\p{P}", "-").replaceAll("\\-(\\s+\\-)+", "-");
+		result = result.replaceAll(" ", "-");
+
+		return result;
+	}
+
+	// ----- private methods -----
+	private static Expression parseExpression(final String expression) throws FrameworkException {
 
 		final String expressionWithoutNewlines = expression.replace('\n', ' ').replace('\r', ' ');
 		final StreamTokenizer tokenizer = new StreamTokenizer(new StringReader(expressionWithoutNewlines));
@@ -232,49 +307,9 @@ public class Functions {
 			throw new FrameworkException(422, "Invalid expression: mismatched closing bracket after " + lastToken);
 		}
 
-		return root.evaluate(actionContext, entity);
-	}
-
-	public static String cleanString(final Object input) {
-
-		if (input == null) {
-
-			return "";
-		}
-
-		String normalized = Normalizer.normalize(input.toString(), Normalizer.Form.NFD)
-			.replaceAll("\\<", "")
-			.replaceAll("\\>", "")
-			.replaceAll("\\.", "")
-			.replaceAll("\\'", "-")
-			.replaceAll("\\?", "")
-			.replaceAll("\\(", "")
-			.replaceAll("\\)", "")
-			.replaceAll("\\{", "")
-			.replaceAll("\\}", "")
-			.replaceAll("\\[", "")
-			.replaceAll("\\]", "")
-			.replaceAll("\\+", "-")
-			.replaceAll("/", "-")
-			.replaceAll("–", "-")
-			.replaceAll("\\\\", "-")
-			.replaceAll("\\|", "-")
-			.replaceAll("'", "-")
-			.replaceAll("!", "")
-			.replaceAll(",", "")
-			.replaceAll("-", " ")
-			.replaceAll("_", " ")
-			.replaceAll("`", "-");
-
-		String result = normalized.replaceAll("-", " ");
-		result = StringUtils.normalizeSpace(result.toLowerCase());
-		result = result.replaceAll("[^\\p{ASCII}]", "").replaceAll("\\p{P}", "-").replaceAll("\\-(\\s+\\-)+", "-");
-		result = result.replaceAll(" ", "-");
-
-		return result;
+		return root;
 	}
 
-	// ----- private methods -----
 	private static Expression checkReservedWords(final String word) throws FrameworkException {
 
 		if (word == null) {
@@ -74,6 +74,9 @@ public class SearchFunction extends AbstractQueryFunction {
 
 					query.andTypes(type);
 
+					// the result depends on all objects of this type
+					ctx.registerTypeDependency(type);
+
 				} else {
 
 					logger.warn("Error in search(): type {} not found.", typeString);
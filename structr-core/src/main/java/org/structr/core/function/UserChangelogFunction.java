@@ -19,10 +19,13 @@
 package org.structr.core.function;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.function.Predicate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.service.LicenseManager;
 import org.structr.core.GraphObject;
+import org.structr.core.graph.SegmentedChangelog.Record;
 
 public class UserChangelogFunction extends ChangelogFunction {
 
@@ -47,18 +50,18 @@ public class UserChangelogFunction extends ChangelogFunction {
 	}
 
 	@Override
-	protected String getChangelogForGraphObject (final GraphObject obj) throws IOException {
+	protected List<Record> getChangelogForGraphObject (final GraphObject obj, final Predicate<Record> filter) throws IOException {
 
-		return getChangelogForUUID(obj.getUuid(), "u");
+		return getChangelogForUUID(obj.getUuid(), "u", filter);
 
 	}
 
 	@Override
-	protected String getChangelogForString (final String inputString) throws IOException {
+	protected List<Record> getChangelogForString (final String inputString, final Predicate<Record> filter) throws IOException {
 
 		if (uuidPattern.matcher(inputString).matches()) {
 
-			return getChangelogForUUID(inputString, "u");
+			return getChangelogForUUID(inputString, "u", filter);
 
 		} else {
 
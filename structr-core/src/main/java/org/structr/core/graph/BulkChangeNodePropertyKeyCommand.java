@@ -117,6 +117,11 @@ public class BulkChangeNodePropertyKeyCommand extends NodeServiceCommand impleme
 				public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
 					logger.warn("Unable to set node properties: {}", t.getMessage() );
 				}
+
+				@Override
+				public boolean isParallelizable() {
+					return true;
+				}
 			});
 
 
@@ -90,6 +90,11 @@ public class BulkCopyRelationshipPropertyCommand extends NodeServiceCommand impl
 				public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
 					logger.warn("Unable to copy relationship properties: {}", t.getMessage() );
 				}
+
+				@Override
+				public boolean isParallelizable() {
+					return true;
+				}
 			});
 
 			logger.info("Finished setting properties on {} nodes", count);
@@ -74,6 +74,11 @@ public class BulkCreateLabelsCommand extends NodeServiceCommand implements Maint
 			public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
 				warn("Unable to create labels for node: {}", t.getMessage());
 			}
+
+			@Override
+			public boolean isParallelizable() {
+				return true;
+			}
 		});
 
 		info("Done with creating labels on {} nodes", count);
@@ -139,6 +139,11 @@ public class BulkFixNodePropertiesCommand extends NodeServiceCommand implements
 
 						return true;
 					}
+
+					@Override
+					public boolean isParallelizable() {
+						return true;
+					}
 				});
 
 				logger.info("Fixed {} nodes", nodeCount);
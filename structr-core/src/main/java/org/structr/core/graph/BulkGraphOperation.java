@@ -58,4 +58,16 @@ public abstract class BulkGraphOperation<T> {
 	public boolean doNotifications() {
 		return false;
 	}
+
+	/**
+	 * Indicates whether this operation can be executed on different objects
+	 * in concurrent transactions, i.e. whether handleGraphObject modifies
+	 * only the given object and does not depend on the order in which the
+	 * objects are processed.
+	 *
+	 * @return whether this operation can be parallelized
+	 */
+	public boolean isParallelizable() {
+		return false;
+	}
 }
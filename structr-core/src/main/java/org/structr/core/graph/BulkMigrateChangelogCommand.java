@@ -129,6 +129,18 @@ public class BulkMigrateChangelogCommand extends NodeServiceCommand implements M
 
 				final String uuid           = obj.getUuid();
 				final String typeFolderName = obj.isNode() ? "n" : "r";
+
+				if (SegmentedChangelog.isEnabled()) {
+
+					final SegmentedChangelog.Batch batch = new SegmentedChangelog.Batch();
+
+					batch.add(typeFolderName.charAt(0), uuid, changeLogValue);
+
+					SegmentedChangelog.getInstance().append(batch);
+
+					return true;
+				}
+
 				final File file             = ChangelogFunction.getChangeLogFileOnDisk(typeFolderName, uuid, true);
 				final StringBuilder buf     = new StringBuilder();
 
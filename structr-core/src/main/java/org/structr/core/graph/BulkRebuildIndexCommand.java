@@ -120,6 +120,11 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 			public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
 				logger.warn("Unable to index node: {}", t.getMessage());
 			}
+
+			@Override
+			public boolean isParallelizable() {
+				return true;
+			}
 		});
 
 		info("Done with (re-)indexing {} nodes", count);
@@ -160,6 +165,11 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 			public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
 				logger.warn("Unable to index relationship: {}", t.getMessage());
 			}
+
+			@Override
+			public boolean isParallelizable() {
+				return true;
+			}
 		});
 
 		info("Done with (re-)indexing {} relationships", count);
@@ -190,6 +200,11 @@ public class BulkRebuildIndexCommand extends NodeServiceCommand implements Maint
 			public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
 				logger.warn("Unable to build fulltext index: {}", t.getMessage());
 			}
+
+			@Override
+			public boolean isParallelizable() {
+				return true;
+			}
 		});
 
 		info("Rebuilding fulltext index done.");
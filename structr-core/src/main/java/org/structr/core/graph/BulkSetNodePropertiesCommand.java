@@ -147,6 +147,13 @@ public class BulkSetNodePropertiesCommand extends NodeServiceCommand implements
 				public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
 					logger.warn("Unable to set node properties: {}", t.getMessage() );
 				}
+
+				@Override
+				public boolean isParallelizable() {
+
+					// changing the type modifies the set of nodes that is being iterated
+					return !properties.containsKey("newType");
+				}
 			});
 
 
@@ -108,6 +108,11 @@ public class BulkSetRelationshipPropertiesCommand extends NodeServiceCommand imp
 				public void handleTransactionFailure(SecurityContext securityContext, Throwable t) {
 					logger.warn("Unable to set relationship properties: {}", t.getMessage() );
 				}
+
+				@Override
+				public boolean isParallelizable() {
+					return true;
+				}
 			});
 
 			logger.info("Finished setting properties on {} relationships", count);
@@ -110,6 +110,11 @@ public class BulkSetUuidCommand extends NodeServiceCommand implements Maintenanc
 				public boolean doValidation() {
 					return false;
 				}
+
+				@Override
+				public boolean isParallelizable() {
+					return true;
+				}
 			});
 
 			info("Done with setting UUID on {} nodes", count);
@@ -169,6 +174,11 @@ public class BulkSetUuidCommand extends NodeServiceCommand implements Maintenanc
 				public boolean doValidation() {
 					return false;
 				}
+
+				@Override
+				public boolean isParallelizable() {
+					return true;
+				}
 			});
 
 			info("Done with setting UUID on {} relationships", count);
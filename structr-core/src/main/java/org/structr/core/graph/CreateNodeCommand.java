@@ -18,9 +18,11 @@
  */
 package org.structr.core.graph;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -31,6 +33,7 @@ import org.structr.api.DataFormatException;
 import org.structr.api.DatabaseService;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
+import org.structr.api.util.NodeSpec;
 import org.structr.api.util.NodeWithOwnerResult;
 import org.structr.common.Permission;
 import org.structr.common.PropertyView;
@@ -88,161 +91,230 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 		if (graphDb != null) {
 
 			final NodeFactory<T> nodeFactory = new NodeFactory<>(securityContext);
-			final PropertyMap properties     = new PropertyMap(attributes);
-			final PropertyMap toNotify       = new PropertyMap();
-			final Object typeObject          = properties.get(AbstractNode.type);
-			final Class nodeType             = getTypeOrGeneric(typeObject);
-			final String typeName            = nodeType.getSimpleName();
-			final Set<String> labels         = TypeProperty.getLabelsForType(nodeType);
-			final CreationContainer tmp      = new CreationContainer(true);
-			final Date now                   = new Date();
-			final boolean isCreation         = true;
+			final NodeCreation creation      = prepare(user, attributes);
 
-			// use user-supplied UUID?
-			String uuid = properties.get(GraphObject.id);
-			if (uuid == null) {
+			node = finish(nodeFactory, user, creation, createNode(graphDb, user, creation.typeName, creation.labels, creation.tmp.getData()));
+		}
 
-				// no, create new one
-				uuid = getNextUuid();
+		if (node != null) {
 
-				properties.put(GraphObject.id, uuid);
+			notifyCreation(node);
+		}
 
-			} else {
+		return node;
+	}
 
-				// enable UUID validation
-				securityContext.uuidWasSetManually(true);
-			}
+	/**
+	 * Creates nodes for all the given property sets, using the bulk
+	 * creation methods of the database driver. All nodes are written to
+	 * the database first, the remaining properties are set and the
+	 * creation callbacks are called afterwards, in the order of the input.
+	 *
+	 * @param attributes
+	 * @return the new nodes, in the same order as the input
+	 * @throws FrameworkException
+	 */
+	public List<T> execute(final List<PropertyMap> attributes) throws FrameworkException {
 
-			// use property keys to set property values on creation dummy
-			// set default values for common properties in creation query
-			GraphObject.id.setProperty(securityContext, tmp, uuid);
-			GraphObject.type.setProperty(securityContext, tmp, typeName);
-			AbstractNode.createdDate.setProperty(securityContext, tmp, now);
-			AbstractNode.lastModifiedDate.setProperty(securityContext, tmp, now);
+		final DatabaseService graphDb = (DatabaseService) arguments.get("graphDb");
+		final Principal user          = securityContext.getUser(false);
+		final List<T> nodes           = new ArrayList<>(attributes.size());
 
-			// default property values
-			AbstractNode.visibleToPublicUsers.setProperty(securityContext, tmp,        getOrDefault(properties, AbstractNode.visibleToPublicUsers, false));
-			AbstractNode.visibleToAuthenticatedUsers.setProperty(securityContext, tmp, getOrDefault(properties, AbstractNode.visibleToAuthenticatedUsers, false));
-			AbstractNode.hidden.setProperty(securityContext, tmp,                      getOrDefault(properties, AbstractNode.hidden, false));
+		if (graphDb != null) {
 
-			if (user != null) {
+			final NodeFactory<T> nodeFactory   = new NodeFactory<>(securityContext);
+			final List<NodeCreation> creations = new ArrayList<>(attributes.size());
+			final List<NodeSpec> specs         = new ArrayList<>(attributes.size());
+			final boolean withOwner            = user != null && user.shouldSkipSecurityRelationships() == false;
 
-				final String userId = user.getProperty(GraphObject.id);
+			for (final PropertyMap properties : attributes) {
 
-				AbstractNode.createdBy.setProperty(securityContext, tmp, userId);
-				AbstractNode.lastModifiedBy.setProperty(securityContext, tmp, userId);
-			}
+				final NodeCreation creation    = prepare(user, properties);
+				final Map<String, Object> data = creation.tmp.getData();
 
-			// prevent double setting of properties
-			properties.remove(AbstractNode.id);
-			properties.remove(AbstractNode.type);
-			properties.remove(AbstractNode.visibleToPublicUsers);
-			properties.remove(AbstractNode.visibleToAuthenticatedUsers);
-			properties.remove(AbstractNode.hidden);
-			properties.remove(AbstractNode.lastModifiedDate);
-			properties.remove(AbstractNode.lastModifiedBy);
-			properties.remove(AbstractNode.createdDate);
-			properties.remove(AbstractNode.createdBy);
+				if (withOwner) {
 
-			// move properties to creation container that can be set directly on creation
-			tmp.filterIndexableForCreation(securityContext, properties, tmp, toNotify);
+					final String userId = user.getUuid();
 
-			// collect default values and try to set them on creation
-			for (final PropertyKey key : StructrApp.getConfiguration().getPropertySet(nodeType, PropertyView.All)) {
+					specs.add(new NodeSpec(user.getNode().getId(), creation.typeName, creation.labels, data, getOwnsProperties(graphDb, userId, creation.uuid), getSecurityProperties(graphDb, userId, creation.uuid)));
 
-				if (key instanceof AbstractPrimitiveProperty && !tmp.hasProperty(key.jsonName())) {
+				} else {
 
-					final Object defaultValue = key.defaultValue();
-					if (defaultValue != null) {
+					specs.add(new NodeSpec(creation.typeName, creation.labels, data));
+				}
 
-						key.setProperty(securityContext, tmp, defaultValue);
+				creations.add(creation);
+			}
+
+			final List<NodeWithOwnerResult> results = createNodes(graphDb, specs);
+			final int size                          = creations.size();
+
+			for (int i=0; i<size; i++) {
+
+				final NodeWithOwnerResult result = results.get(i);
+				if (result != null) {
+
+					if (withOwner) {
+
+						notifySecurityRelCreation(user, result.getSecurityRelationship());
+						notifyOwnsRelCreation(user, result.getOwnsRelationship());
 					}
+
+					nodes.add(finish(nodeFactory, user, creations.get(i), result.getNewNode()));
+
+				} else {
+
+					nodes.add(null);
 				}
 			}
+		}
+
+		for (final T node : nodes) {
 
-			node = (T) nodeFactory.instantiateWithType(createNode(graphDb, user, typeName, labels, tmp.getData()), nodeType, null, isCreation);
 			if (node != null) {
 
-				TransactionCommand.nodeCreated(user, node);
+				notifyCreation(node);
+			}
+		}
+
+		return nodes;
+	}
+
+	// ----- private methods -----
+	private NodeCreation prepare(final Principal user, final PropertyMap attributes) throws FrameworkException {
 
-				securityContext.disableModificationOfAccessTime();
-				node.setProperties(securityContext, properties, true);
-				securityContext.enableModificationOfAccessTime();
+		final PropertyMap properties = new PropertyMap(attributes);
+		final PropertyMap toNotify   = new PropertyMap();
+		final Object typeObject      = properties.get(AbstractNode.type);
+		final Class nodeType         = getTypeOrGeneric(typeObject);
+		final String typeName        = nodeType.getSimpleName();
+		final Set<String> labels     = TypeProperty.getLabelsForType(nodeType);
+		final CreationContainer tmp  = new CreationContainer(true);
+		final Date now               = new Date();
 
-				// ensure modification callbacks are called (necessary for validation)
-				for (final Entry<PropertyKey, Object> entry : toNotify.entrySet()) {
+		// use user-supplied UUID?
+		String uuid = properties.get(GraphObject.id);
+		if (uuid == null) {
 
-					final PropertyKey key = entry.getKey();
-					final Object value    = entry.getValue();
+			// no, create new one
+			uuid = getNextUuid();
 
-					if (!key.isUnvalidated()) {
-						TransactionCommand.nodeModified(securityContext.getCachedUser(), (AbstractNode)node, key, null, value);
-					}
-				}
+			properties.put(GraphObject.id, uuid);
+
+		} else {
+
+			// enable UUID validation
+			securityContext.uuidWasSetManually(true);
+		}
+
+		// use property keys to set property values on creation dummy
+		// set default values for common properties in creation query
+		GraphObject.id.setProperty(securityContext, tmp, uuid);
+		GraphObject.type.setProperty(securityContext, tmp, typeName);
+		AbstractNode.createdDate.setProperty(securityContext, tmp, now);
+		AbstractNode.lastModifiedDate.setProperty(securityContext, tmp, now);
+
+		// default property values
+		AbstractNode.visibleToPublicUsers.setProperty(securityContext, tmp,        getOrDefault(properties, AbstractNode.visibleToPublicUsers, false));
+		AbstractNode.visibleToAuthenticatedUsers.setProperty(securityContext, tmp, getOrDefault(properties, AbstractNode.visibleToAuthenticatedUsers, false));
+		AbstractNode.hidden.setProperty(securityContext, tmp,                      getOrDefault(properties, AbstractNode.hidden, false));
+
+		if (user != null) {
+
+			final String userId = user.getProperty(GraphObject.id);
+
+			AbstractNode.createdBy.setProperty(securityContext, tmp, userId);
+			AbstractNode.lastModifiedBy.setProperty(securityContext, tmp, userId);
+		}
+
+		// prevent double setting of properties
+		properties.remove(AbstractNode.id);
+		properties.remove(AbstractNode.type);
+		properties.remove(AbstractNode.visibleToPublicUsers);
+		properties.remove(AbstractNode.visibleToAuthenticatedUsers);
+		properties.remove(AbstractNode.hidden);
+		properties.remove(AbstractNode.lastModifiedDate);
+		properties.remove(AbstractNode.lastModifiedBy);
+		properties.remove(AbstractNode.createdDate);
+		properties.remove(AbstractNode.createdBy);
 
-				properties.clear();
+		// move properties to creation container that can be set directly on creation
+		tmp.filterIndexableForCreation(securityContext, properties, tmp, toNotify);
 
-				// ensure indexing of newly created node
-				node.addToIndex();
+		// collect default values and try to set them on creation
+		for (final PropertyKey key : StructrApp.getConfiguration().getPropertySet(nodeType, PropertyView.All)) {
 
-				// invalidate UUID cache
-				StructrApp.invalidate(uuid);
+			if (key instanceof AbstractPrimitiveProperty && !tmp.hasProperty(key.jsonName())) {
+
+				final Object defaultValue = key.defaultValue();
+				if (defaultValue != null) {
+
+					key.setProperty(securityContext, tmp, defaultValue);
+				}
 			}
 		}
 
+		return new NodeCreation(nodeType, typeName, labels, uuid, tmp, properties, toNotify);
+	}
+
+	private T finish(final NodeFactory<T> nodeFactory, final Principal user, final NodeCreation creation, final Node dbNode) throws FrameworkException {
+
+		final T node = (T) nodeFactory.instantiateWithType(dbNode, creation.nodeType, null, true);
 		if (node != null) {
 
-			// notify node of its creation
-			node.onNodeCreation();
+			TransactionCommand.nodeCreated(user, node);
 
-			// iterate post creation transformations
-			final Set<Transformation<GraphObject>> transformations = StructrApp.getConfiguration().getEntityCreationTransformations(node.getClass());
-			for (Transformation<GraphObject> transformation : transformations) {
+			securityContext.disableModificationOfAccessTime();
+			node.setProperties(securityContext, creation.properties, true);
+			securityContext.enableModificationOfAccessTime();
 
-				transformation.apply(securityContext, node);
+			// ensure modification callbacks are called (necessary for validation)
+			for (final Entry<PropertyKey, Object> entry : creation.toNotify.entrySet()) {
+
+				final PropertyKey key = entry.getKey();
+				final Object value    = entry.getValue();
+
+				if (!key.isUnvalidated()) {
+					TransactionCommand.nodeModified(securityContext.getCachedUser(), (AbstractNode)node, key, null, value);
+				}
 			}
+
+			creation.properties.clear();
+
+			// ensure indexing of newly created node
+			node.addToIndex();
+
+			// invalidate UUID cache
+			StructrApp.invalidate(creation.uuid);
 		}
 
 		return node;
 	}
 
-	// ----- private methods -----
+	private void notifyCreation(final T node) throws FrameworkException {
+
+		// notify node of its creation
+		node.onNodeCreation();
+
+		// iterate post creation transformations
+		final Set<Transformation<GraphObject>> transformations = StructrApp.getConfiguration().getEntityCreationTransformations(node.getClass());
+		for (Transformation<GraphObject> transformation : transformations) {
+
+			transformation.apply(securityContext, node);
+		}
+	}
+
 	private Node createNode(final DatabaseService graphDb, final Principal user, final String type, final Set<String> labels, final Map<String, Object> properties) throws FrameworkException {
 
-		final Map<String, Object> ownsProperties     = new HashMap<>();
-		final Map<String, Object> securityProperties = new HashMap<>();
-		final String newUuid                         = (String)properties.get("id");
+		final String newUuid = (String)properties.get("id");
 
 		if (user != null && user.shouldSkipSecurityRelationships() == false) {
 
 			final String userId = user.getUuid();
 
-			// configure OWNS relationship creation statement for maximum performance
-			ownsProperties.put(GraphObject.id.dbName(),                          getNextUuid());
-			ownsProperties.put(GraphObject.type.dbName(),                        PrincipalOwnsNode.class.getSimpleName());
-			ownsProperties.put(GraphObject.visibleToPublicUsers.dbName(),        false);
-			ownsProperties.put(GraphObject.visibleToAuthenticatedUsers.dbName(), false);
-			ownsProperties.put(AbstractRelationship.relType.dbName(),            "OWNS");
-			ownsProperties.put(AbstractRelationship.sourceId.dbName(),           userId);
-			ownsProperties.put(AbstractRelationship.targetId.dbName(),           newUuid);
-			ownsProperties.put(AbstractRelationship.internalTimestamp.dbName(),  graphDb.getInternalTimestamp());
-
-			// configure SECURITY relationship creation statement for maximum performance
-			securityProperties.put(GraphObject.id.dbName(),                          getNextUuid());
-			securityProperties.put(GraphObject.type.dbName(),                        Security.class.getSimpleName());
-			securityProperties.put(GraphObject.visibleToPublicUsers.dbName(),        false);
-			securityProperties.put(GraphObject.visibleToAuthenticatedUsers.dbName(), false);
-			securityProperties.put(AbstractRelationship.relType.dbName(),            "SECURITY");
-			securityProperties.put(AbstractRelationship.sourceId.dbName(),           userId);
-			securityProperties.put(AbstractRelationship.targetId.dbName(),           newUuid);
-			securityProperties.put(AbstractRelationship.internalTimestamp.dbName(),  graphDb.getInternalTimestamp());
-			securityProperties.put(Security.allowed.dbName(),                        new String[] { Permission.read.name(), Permission.write.name(), Permission.delete.name(), Permission.accessControl.name() } );
-			securityProperties.put(Security.principalId.dbName(),                    userId);
-			securityProperties.put(Security.accessControllableId.dbName(),           newUuid);
-
 			try {
 
-				final NodeWithOwnerResult result = graphDb.createNodeWithOwner(user.getNode().getId(), type, labels, properties, ownsProperties, securityProperties);
+				final NodeWithOwnerResult result = graphDb.createNodeWithOwner(user.getNode().getId(), type, labels, properties, getOwnsProperties(graphDb, userId, newUuid), getSecurityProperties(graphDb, userId, newUuid));
 				final Relationship securityRel   = result.getSecurityRelationship();
 				final Relationship ownsRel       = result.getOwnsRelationship();
 				final Node newNode               = result.getNewNode();
@@ -273,6 +345,56 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 		}
 	}
 
+	private List<NodeWithOwnerResult> createNodes(final DatabaseService graphDb, final List<NodeSpec> specs) throws FrameworkException {
+
+		try {
+
+			return graphDb.createNodes(specs);
+
+		} catch (DataFormatException dex) {
+			throw new FrameworkException(422, dex.getMessage());
+		} catch (ConstraintViolationException qex) {
+			throw new FrameworkException(422, qex.getMessage());
+		}
+	}
+
+	private Map<String, Object> getOwnsProperties(final DatabaseService graphDb, final String userId, final String newUuid) {
+
+		final Map<String, Object> ownsProperties = new HashMap<>();
+
+		// configure OWNS relationship creation statement for maximum performance
+		ownsProperties.put(GraphObject.id.dbName(),                          getNextUuid());
+		ownsProperties.put(GraphObject.type.dbName(),                        PrincipalOwnsNode.class.getSimpleName());
+		ownsProperties.put(GraphObject.visibleToPublicUsers.dbName(),        false);
+		ownsProperties.put(GraphObject.visibleToAuthenticatedUsers.dbName(), false);
+		ownsProperties.put(AbstractRelationship.relType.dbName(),            "OWNS");
+		ownsProperties.put(AbstractRelationship.sourceId.dbName(),           userId);
+		ownsProperties.put(AbstractRelationship.targetId.dbName(),           newUuid);
+		ownsProperties.put(AbstractRelationship.internalTimestamp.dbName(),  graphDb.getInternalTimestamp());
+
+		return ownsProperties;
+	}
+
+	private Map<String, Object> getSecurityProperties(final DatabaseService graphDb, final String userId, final String newUuid) {
+
+		final Map<String, Object> securityProperties = new HashMap<>();
+
+		// configure SECURITY relationship creation statement for maximum performance
+		securityProperties.put(GraphObject.id.dbName(),                          getNextUuid());
+		securityProperties.put(GraphObject.type.dbName(),                        Security.class.getSimpleName());
+		securityProperties.put(GraphObject.visibleToPublicUsers.dbName(),        false);
+		securityProperties.put(GraphObject.visibleToAuthenticatedUsers.dbName(), false);
+		securityProperties.put(AbstractRelationship.relType.dbName(),            "SECURITY");
+		securityProperties.put(AbstractRelationship.sourceId.dbName(),           userId);
+		securityProperties.put(AbstractRelationship.targetId.dbName(),           newUuid);
+		securityProperties.put(AbstractRelationship.internalTimestamp.dbName(),  graphDb.getInternalTimestamp());
+		securityProperties.put(Security.allowed.dbName(),                        new String[] { Permission.read.name(), Permission.write.name(), Permission.delete.name(), Permission.accessControl.name() } );
+		securityProperties.put(Security.principalId.dbName(),                    userId);
+		securityProperties.put(Security.accessControllableId.dbName(),           newUuid);
+
+		return securityProperties;
+	}
+
 	private Class getTypeOrGeneric(final Object typeObject) {
 
 		if (typeObject != null) {
@@ -365,4 +487,27 @@ public class CreateNodeCommand<T extends NodeInterface> extends NodeServiceComma
 
 		}
 	}
+
+	// ----- nested classes -----
+	private static class NodeCreation {
+
+		private PropertyMap properties = null;
+		private PropertyMap toNotify   = null;
+		private CreationContainer tmp  = null;
+		private Set<String> labels     = null;
+		private Class nodeType         = null;
+		private String typeName        = null;
+		private String uuid            = null;
+
+		public NodeCreation(final Class nodeType, final String typeName, final Set<String> labels, final String uuid, final CreationContainer tmp, final PropertyMap properties, final PropertyMap toNotify) {
+
+			this.properties = properties;
+			this.toNotify   = toNotify;
+			this.nodeType   = nodeType;
+			this.typeName   = typeName;
+			this.labels     = labels;
+			this.uuid       = uuid;
+			this.tmp        = tmp;
+		}
+	}
 }
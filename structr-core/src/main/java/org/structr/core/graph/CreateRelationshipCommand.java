@@ -18,13 +18,16 @@
  */
 package org.structr.core.graph;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Map.Entry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.DatabaseService;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
+import org.structr.api.util.RelationshipSpec;
 import org.structr.common.PropertyView;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
@@ -54,6 +57,75 @@ public class CreateRelationshipCommand extends NodeServiceCommand {
 		return createRelationship(fromNode, toNode, relType, properties);
 	}
 
+	/**
+	 * Creates relationships of the given type between the nodes at the same
+	 * positions of the given lists, using the bulk creation methods of the
+	 * database driver. Bulk creation is only used for many-to-many
+	 * relationships when cardinality checks are disabled, as the checks
+	 * depend on the relationships created before. All other relationships
+	 * are created one by one.
+	 *
+	 * @param relType
+	 * @param fromNodes
+	 * @param toNodes
+	 * @param properties the properties of each relationship, or null
+	 * @return the new relationships, in the same order as the input
+	 * @throws FrameworkException
+	 */
+	public synchronized <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> List<R> execute(final Class<R> relType, final List<? extends A> fromNodes, final List<? extends B> toNodes, final List<PropertyMap> properties) throws FrameworkException {
+
+		final R template = (R)Relation.getInstance(relType);
+		final int size   = fromNodes.size();
+
+		if (toNodes.size() != size || (properties != null && properties.size() != size)) {
+			throw new IllegalArgumentException("Number of source nodes, target nodes and property sets must be equal.");
+		}
+
+		if (!isBulkCreationPossible(template)) {
+
+			final List<R> rels = new ArrayList<>(size);
+
+			for (int i=0; i<size; i++) {
+				rels.add(createRelationship(fromNodes.get(i), toNodes.get(i), relType, properties != null ? properties.get(i) : null));
+			}
+
+			return rels;
+		}
+
+		// disable updating access time when creating relationships
+		securityContext.disableModificationOfAccessTime();
+
+		final DatabaseService db                   = (DatabaseService)this.getArgument("graphDb");
+		final RelationshipFactory<R> factory       = new RelationshipFactory(securityContext);
+		final List<RelationshipCreation> creations = new ArrayList<>(size);
+		final List<RelationshipSpec> specs         = new ArrayList<>(size);
+		final List<R> rels                         = new ArrayList<>(size);
+		final Principal user                       = securityContext.getCachedUser();
+
+		for (int i=0; i<size; i++) {
+
+			final A fromNode                    = fromNodes.get(i);
+			final B toNode                      = toNodes.get(i);
+			final RelationshipCreation creation = prepare(db, fromNode, toNode, relType, template, user, properties != null ? properties.get(i) : null);
+
+			specs.add(new RelationshipSpec(fromNode.getNode().getId(), toNode.getNode().getId(), template.name(), creation.tmp.getData()));
+			creations.add(creation);
+		}
+
+		final List<Relationship> created = db.createRelationships(specs);
+
+		for (int i=0; i<size; i++) {
+
+			rels.add(finish(factory, relType, user, creations.get(i), created.get(i)));
+		}
+
+		// enable access time update again for subsequent calls
+		securityContext.enableModificationOfAccessTime();
+
+		return rels;
+	}
+
+	// ----- private methods -----
 	private synchronized <A extends NodeInterface, B extends NodeInterface, R extends Relation<A, B, ?, ?>> R createRelationship(final A fromNode, final B toNode, final Class<R> relType, final PropertyMap attributes) throws FrameworkException {
 
 		// disable updating access time when creating relationships
@@ -61,17 +133,41 @@ public class CreateRelationshipCommand extends NodeServiceCommand {
 
 		final DatabaseService db             = (DatabaseService)this.getArgument("graphDb");
 		final RelationshipFactory<R> factory = new RelationshipFactory(securityContext);
-		final PropertyMap properties         = new PropertyMap(attributes);
-		final PropertyMap toNotify           = new PropertyMap();
-		final CreationContainer tmp          = new CreationContainer(false);
 		final R template                     = (R)Relation.getInstance(relType);
 		final Node startNode                 = fromNode.getNode();
 		final Node endNode                   = toNode.getNode();
-		final Date now                       = new Date();
 		final Principal user                 = securityContext.getCachedUser();
 
 		template.ensureCardinality(securityContext, fromNode, toNode);
 
+		final RelationshipCreation creation = prepare(db, fromNode, toNode, relType, template, user, attributes);
+
+		// create relationship including initial properties
+		final Relationship rel = startNode.createRelationshipTo(endNode, template, creation.tmp.getData());
+		final R newRel         = finish(factory, relType, user, creation, rel);
+
+		// enable access time update again for subsequent calls
+		securityContext.enableModificationOfAccessTime();
+
+		return newRel;
+	}
+
+	private boolean isBulkCreationPossible(final Relation template) {
+
+		if (securityContext.doEnsureCardinality()) {
+			return false;
+		}
+
+		return Relation.Multiplicity.Many.equals(template.getSourceMultiplicity()) && Relation.Multiplicity.Many.equals(template.getTargetMultiplicity());
+	}
+
+	private RelationshipCreation prepare(final DatabaseService db, final NodeInterface fromNode, final NodeInterface toNode, final Class relType, final Relation template, final Principal user, final PropertyMap attributes) throws FrameworkException {
+
+		final PropertyMap properties = new PropertyMap(attributes);
+		final PropertyMap toNotify   = new PropertyMap();
+		final CreationContainer tmp  = new CreationContainer(false);
+		final Date now               = new Date();
+
 		// date properties need converter
 		AbstractRelationship.internalTimestamp.setProperty(securityContext, tmp, db.getInternalTimestamp());
 		AbstractRelationship.createdDate.setProperty(securityContext, tmp, now);
@@ -106,9 +202,12 @@ public class CreateRelationshipCommand extends NodeServiceCommand {
 			}
 		}
 
-		// create relationship including initial properties
-		final Relationship rel = startNode.createRelationshipTo(endNode, template, tmp.getData());
-		final R newRel         = factory.instantiateWithType(rel, relType, null, true);
+		return new RelationshipCreation(tmp, properties, toNotify);
+	}
+
+	private <R extends Relation> R finish(final RelationshipFactory<R> factory, final Class<R> relType, final Principal user, final RelationshipCreation creation, final Relationship rel) throws FrameworkException {
+
+		final R newRel = factory.instantiateWithType(rel, relType, null, true);
 
 		if (newRel != null) {
 
@@ -116,11 +215,11 @@ public class CreateRelationshipCommand extends NodeServiceCommand {
 			TransactionCommand.relationshipCreated(user, newRel);
 
 			securityContext.disableModificationOfAccessTime();
-			newRel.setProperties(securityContext, properties);
+			newRel.setProperties(securityContext, creation.properties);
 			securityContext.enableModificationOfAccessTime();
 
 			// ensure modification callbacks are called (necessary for validation)
-			for (final Entry<PropertyKey, Object> entry : toNotify.entrySet()) {
+			for (final Entry<PropertyKey, Object> entry : creation.toNotify.entrySet()) {
 
 				final PropertyKey key = entry.getKey();
 				final Object value    = entry.getValue();
@@ -130,7 +229,7 @@ public class CreateRelationshipCommand extends NodeServiceCommand {
 				}
 			}
 
-			properties.clear();
+			creation.properties.clear();
 
 			// ensure indexing of newly created node
 			newRel.addToIndex();
@@ -145,9 +244,21 @@ public class CreateRelationshipCommand extends NodeServiceCommand {
 			}
 		}
 
-		// enable access time update again for subsequent calls
-		securityContext.enableModificationOfAccessTime();
-
 		return newRel;
 	}
+
+	// ----- nested classes -----
+	private static class RelationshipCreation {
+
+		private PropertyMap properties = null;
+		private PropertyMap toNotify   = null;
+		private CreationContainer tmp  = null;
+
+		public RelationshipCreation(final CreationContainer tmp, final PropertyMap properties, final PropertyMap toNotify) {
+
+			this.properties = properties;
+			this.toNotify   = toNotify;
+			this.tmp        = tmp;
+		}
+	}
 }
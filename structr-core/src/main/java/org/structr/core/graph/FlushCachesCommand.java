@@ -25,6 +25,7 @@ import org.structr.api.DatabaseService;
 import org.structr.common.AccessPathCache;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.Services;
+import org.structr.core.StructrTransactionListener;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.ResourceAccess;
 import org.structr.schema.action.Actions;
@@ -57,6 +58,10 @@ public class FlushCachesCommand extends NodeServiceCommand implements Maintenanc
 		AccessPathCache.invalidate();
 
 		StructrApp.getInstance().invalidateCache();
+
+		for (final StructrTransactionListener listener : TransactionCommand.getTransactionListeners()) {
+			listener.flushCaches();
+		}
 	}
 
 	@Override
@@ -40,6 +40,7 @@ import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Principal;
+import org.structr.core.entity.Security;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 
@@ -231,8 +232,9 @@ public class GraphObjectModificationState implements ModificationEvent {
 		}
 
 		// only update cache if key, prev and new values are null
-		// because that's when a relationship has been created / removed
-		if (key == null && previousValue == null && newValue == null) {
+		// because that's when a relationship has been created / removed,
+		// or if the modified property affects permission resolution
+		if ((key == null && previousValue == null && newValue == null) || isPermissionProperty(key)) {
 			updateCache();
 		}
 	}
@@ -679,6 +681,10 @@ public class GraphObjectModificationState implements ModificationEvent {
 		}
 	}
 
+	private boolean isPermissionProperty(final PropertyKey key) {
+		return GraphObject.visibleToPublicUsers.equals(key) || GraphObject.visibleToAuthenticatedUsers.equals(key) || Security.allowed.equals(key);
+	}
+
 	private void updateCache() {
 
 		if (uuid != null) {
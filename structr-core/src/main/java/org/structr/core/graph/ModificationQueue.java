@@ -40,6 +40,7 @@ import org.structr.api.graph.PropertyContainer;
 import org.structr.api.graph.Relationship;
 import org.structr.api.graph.RelationshipType;
 import org.structr.bolt.wrapper.EntityWrapper;
+import org.structr.common.AccessPathCache;
 import org.structr.common.RelType;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.ErrorBuffer;
@@ -195,6 +196,12 @@ public class ModificationQueue {
 
 		if (doUpateChangelogIfEnabled && (Settings.ChangelogEnabled.getValue() || Settings.UserChangelogEnabled.getValue())) {
 
+			if (SegmentedChangelog.isEnabled()) {
+
+				updateSegmentedChangelog();
+				return;
+			}
+
 			for (final ModificationEvent ev: modificationEvents) {
 
 				try {
@@ -490,6 +497,53 @@ public class ModificationQueue {
 	}
 
 	// ----- private methods -----
+	/**
+	 * Appends the changelog entries of all modified objects to the
+	 * segmented changelog with a single write.
+	 */
+	private void updateSegmentedChangelog() {
+
+		final SegmentedChangelog.Batch batch = new SegmentedChangelog.Batch();
+
+		for (final ModificationEvent ev: modificationEvents) {
+
+			try {
+
+				if (Settings.ChangelogEnabled.getValue()) {
+
+					final GraphObject obj = ev.getGraphObject();
+					if (obj != null) {
+
+						batch.add(obj.isNode() ? 'n' : 'r', ev.isDeleted() ? ev.getUuid() : obj.getUuid(), ev.getChangeLog());
+					}
+				}
+
+				if (Settings.UserChangelogEnabled.getValue()) {
+
+					for (Map.Entry<String, StringBuilder> entry : ev.getUserChangeLogs().entrySet()) {
+
+						batch.add('u', entry.getKey(), entry.getValue().toString());
+					}
+				}
+
+			} catch (IOException ioex) {
+				logger.error("Unable to write changelog to segment: {}", ioex.getMessage());
+			} catch (Throwable t) {
+				logger.warn("", t);
+			}
+		}
+
+		try {
+
+			SegmentedChangelog.getInstance().append(batch);
+
+		} catch (IOException ioex) {
+			logger.error("Unable to write changelog to segment: {}", ioex.getMessage());
+		} catch (Throwable t) {
+			logger.warn("", t);
+		}
+	}
+
 	private void modifyEndNodes(final Principal user, final NodeInterface startNode, final NodeInterface endNode, final RelationshipInterface rel, final boolean isDeletion) {
 
 		// only modify if nodes are accessible
@@ -497,6 +551,10 @@ public class ModificationQueue {
 
 			final RelationshipType relType = rel.getRelType();
 
+			// permissions of both nodes may have changed
+			AccessPathCache.invalidateForId(startNode.getUuid());
+			AccessPathCache.invalidateForId(endNode.getUuid());
+
 			if (RelType.OWNS.equals(relType)) {
 
 				modifyOwner(startNode);
@@ -19,18 +19,33 @@
 package org.structr.core.graph;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.Predicate;
+import org.structr.api.RetryException;
+import org.structr.api.config.Settings;
+import org.structr.api.graph.PropertyContainer;
 import org.structr.api.service.Command;
 import org.structr.common.Filter;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.util.Writable;
@@ -44,6 +59,7 @@ public abstract class NodeServiceCommand extends Command {
 
 	private static final Logger logger                        = LoggerFactory.getLogger(NodeServiceCommand.class.getName());
 	private static final ArrayBlockingQueue<String> uuidQueue = new ArrayBlockingQueue<>(100000);
+	private static final int MAX_RETRIES                      = 10;
 
 	protected SecurityContext securityContext = null;
 	private Writable logWritable              = null;
@@ -86,6 +102,13 @@ public abstract class NodeServiceCommand extends Command {
 	 */
 	public <T> long bulkGraphOperation(final SecurityContext securityContext, final Iterator<T> iterator, final long commitCount, String description, final BulkGraphOperation<T> operation, boolean validation) {
 
+		final int threadCount = Settings.MaintenanceThreads.getValue();
+
+		// a stop condition depends on the global object count, so it can only be evaluated sequentially
+		if (threadCount > 1 && operation.isParallelizable() && operation.getCondition() == null) {
+			return parallelBulkGraphOperation(securityContext, iterator, commitCount, description, operation, threadCount);
+		}
+
 		final Predicate<Long> condition = operation.getCondition();
 		final App app                   = StructrApp.getInstance(securityContext);
 		final boolean doValidation      = operation.doValidation();
@@ -139,6 +162,107 @@ public abstract class NodeServiceCommand extends Command {
 		return objectCount;
 	}
 
+	/**
+	 * Executes the given operation on all objects of the given iterator,
+	 * using the given number of worker threads.
+	 *
+	 * The iterator is read on the calling thread and cut into partitions
+	 * of commitCount objects, sorted by internal id, so that each worker
+	 * transaction operates on a contiguous range of ids. A partition whose
+	 * transaction fails with a {@link RetryException} (e.g. because of a
+	 * deadlock) is processed again.
+	 *
+	 * @param <T>
+	 * @param securityContext
+	 * @param iterator the iterator that provides the nodes to operate on
+	 * @param commitCount
+	 * @param description
+	 * @param operation the operation to execute
+	 * @param threadCount the number of worker threads
+	 * @return the number of nodes processed
+	 */
+	public <T> long parallelBulkGraphOperation(final SecurityContext securityContext, final Iterator<T> iterator, final long commitCount, final String description, final BulkGraphOperation<T> operation, final int threadCount) {
+
+		final String name               = description != null ? description : "BulkGraphOperation";
+		final App app                   = StructrApp.getInstance(securityContext);
+		final AtomicLong objectCount    = new AtomicLong(0L);
+		final AtomicInteger threadIndex = new AtomicInteger(0);
+		final Semaphore pending         = new Semaphore(threadCount * 2);
+		final List<Future> futures      = new LinkedList<>();
+		final ExecutorService executor  = Executors.newFixedThreadPool(threadCount, r -> {
+
+			final Thread thread = new Thread(r, name + "-" + threadIndex.incrementAndGet());
+
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		info("{}: processing objects with {} threads", name, threadCount);
+
+		try {
+
+			while (true) {
+
+				final List<T> partition = new ArrayList<>((int)Math.min(commitCount, 100000L));
+
+				// iteration needs a transaction, but nothing is modified here
+				try (final Tx tx = app.tx(false, false, false)) {
+
+					while (partition.size() < commitCount && iterator.hasNext()) {
+						partition.add(iterator.next());
+					}
+
+					tx.success();
+
+				} catch (Throwable t) {
+
+					operation.handleTransactionFailure(securityContext, t);
+					break;
+				}
+
+				if (partition.isEmpty()) {
+					break;
+				}
+
+				partition.sort(Comparator.comparingLong(NodeServiceCommand::getInternalId));
+
+				// limit the number of partitions in memory
+				pending.acquire();
+
+				futures.add(executor.submit(() -> {
+
+					try {
+
+						final long total = objectCount.addAndGet(processPartition(securityContext, app, partition, operation));
+
+						if (description != null) {
+							info("{}: {} objects processed", description, total);
+						}
+
+					} finally {
+
+						pending.release();
+					}
+				}));
+			}
+
+			for (final Future future : futures) {
+				future.get();
+			}
+
+		} catch (InterruptedException | ExecutionException ex) {
+
+			operation.handleTransactionFailure(securityContext, ex);
+
+		} finally {
+
+			executor.shutdownNow();
+		}
+
+		return objectCount.get();
+	}
+
 	/**
 	 * Executes the given transaction until the stop condition evaluates to
 	 * <b>true</b>.
@@ -194,7 +318,7 @@ public abstract class NodeServiceCommand extends Command {
 	}
 
 	// ----- protected methods -----
-	protected void info(final String msg, final Object... data) {
+	protected synchronized void info(final String msg, final Object... data) {
 
 		logger.info(msg, data);
 
@@ -202,7 +326,7 @@ public abstract class NodeServiceCommand extends Command {
 
 	}
 
-	protected void warn(final String msg, final Object... data) {
+	protected synchronized void warn(final String msg, final Object... data) {
 
 		logger.warn(msg, data);
 
@@ -235,6 +359,93 @@ public abstract class NodeServiceCommand extends Command {
 		}
 	}
 
+	// ----- private methods -----
+	private <T> long processPartition(final SecurityContext securityContext, final App app, final List<T> partition, final BulkGraphOperation<T> operation) {
+
+		for (int attempt=1; ; attempt++) {
+
+			long count = 0L;
+
+			try (final Tx tx = app.tx(operation.doValidation(), operation.doCallbacks(), operation.doNotifications())) {
+
+				for (final T obj : partition) {
+
+					try {
+
+						if (operation.handleGraphObject(securityContext, obj)) {
+							count++;
+						}
+
+					} catch (Throwable t) {
+
+						// the whole partition must be processed again
+						if (isRetryException(t)) {
+							throw new RetryException(t);
+						}
+
+						operation.handleThrowable(securityContext, t, obj);
+					}
+				}
+
+				tx.success();
+
+			} catch (Throwable t) {
+
+				if (isRetryException(t) && attempt < MAX_RETRIES) {
+
+					try {
+
+						// random backoff so that conflicting workers do not collide again
+						Thread.sleep(ThreadLocalRandom.current().nextLong(10L, 100L * attempt));
+
+					} catch (InterruptedException iex) {
+
+						operation.handleTransactionFailure(securityContext, iex);
+						return 0L;
+					}
+
+					continue;
+				}
+
+				operation.handleTransactionFailure(securityContext, t);
+
+				return 0L;
+			}
+
+			return count;
+		}
+	}
+
+	private static boolean isRetryException(final Throwable t) {
+
+		Throwable current = t;
+
+		while (current != null) {
+
+			if (current instanceof RetryException) {
+				return true;
+			}
+
+			current = current.getCause();
+		}
+
+		return false;
+	}
+
+	private static long getInternalId(final Object obj) {
+
+		if (obj instanceof GraphObject) {
+
+			final PropertyContainer container = ((GraphObject)obj).getPropertyContainer();
+			if (container != null) {
+
+				return container.getId().getId();
+			}
+		}
+
+		return Long.MAX_VALUE;
+	}
+
 	// create uuid producer that fills the queue
 	static {
 
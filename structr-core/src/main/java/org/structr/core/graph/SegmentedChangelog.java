@@ -0,0 +1,1067 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.core.graph.GraphObjectModificationState.Verb;
+
+/**
+ * Append-only changelog store that writes the changelog entries of all
+ * objects to a sequence of rolling segment files instead of one file per
+ * object.
+ *
+ * All entries of a transaction are encoded in a compact binary format and
+ * appended to the active segment with a single write. An in-memory index
+ * maps each object to the positions of its records, so reading the
+ * changelog of an object only touches its own records.
+ *
+ * When a segment is full, the positions of its records are written to an
+ * index file next to it. On open, the index is loaded from these files and
+ * only the last segment, and segments whose index file is missing or
+ * invalid, are scanned. An incomplete record at the end of the last
+ * segment is truncated.
+ *
+ * Segments are forced to disk by a background thread, so the commit path
+ * never waits for the disk unless the sync interval is set to 0. The same
+ * thread deletes the oldest segments when they exceed the configured
+ * retention time or the total size limit. Segments are only deleted as a
+ * whole, the active segment is never deleted.
+ *
+ * Record layout: int length, int CRC32 of the payload, payload. The payload
+ * consists of the kind ('n', 'r' or 'u'), the UUID, the time, the verb and
+ * the optional string fields, each encoded as a varint length + 1 (0 for
+ * null) followed by the UTF-8 bytes.
+ */
+public class SegmentedChangelog {
+
+	private static final Logger logger              = LoggerFactory.getLogger(SegmentedChangelog.class.getName());
+	private static final Gson gson                  = new GsonBuilder().disableHtmlEscaping().create();
+	private static final String SEGMENT_SUFFIX      = ".seg";
+	private static final String INDEX_SUFFIX        = ".idx";
+	private static final int INDEX_VERSION          = 1;
+	private static final int HEADER_SIZE            = 8;
+	private static final int READ_AHEAD             = 4096;
+	private static final long EXPIRY_INTERVAL       = TimeUnit.MINUTES.toMillis(1);
+	private static final String[] FIELDS            = { "userId", "userName", "rel", "relId", "relDir", "target", "key", "prev", "val" };
+	private static volatile SegmentedChangelog instance = null;
+
+	private final Map<String, Positions> index       = new ConcurrentHashMap<>();
+	private final Map<Integer, FileChannel> segments = new ConcurrentHashMap<>();
+	private final Map<Integer, Long> newest          = new ConcurrentHashMap<>();
+	private final Object writeLock                   = new Object();
+	private String path                              = null;
+	private File directory                           = null;
+	private Thread syncThread                        = null;
+	private FileChannel activeChannel                = null;
+	private int activeSegment                        = 0;
+	private long activeSize                          = 0L;
+	private long lastExpiry                          = 0L;
+	private volatile boolean dirty                   = false;
+	private volatile boolean closed                  = false;
+
+	private SegmentedChangelog(final String path) throws IOException {
+
+		this.path      = path;
+		this.directory = new File(path, "segments");
+
+		open();
+	}
+
+	public static boolean isEnabled() {
+		return "segments".equals(Settings.ChangelogBackend.getValue());
+	}
+
+	/**
+	 * Returns the store in the configured changelog path, opening it if
+	 * necessary.
+	 *
+	 * @return the store
+	 * @throws IOException
+	 */
+	public static SegmentedChangelog getInstance() throws IOException {
+
+		final String path                = Settings.ChangelogPath.getValue();
+		final SegmentedChangelog current = instance;
+
+		// called on every commit, so only lock when the store must be opened
+		if (current != null && current.path.equals(path)) {
+			return current;
+		}
+
+		synchronized (SegmentedChangelog.class) {
+
+			if (instance == null || !instance.path.equals(path)) {
+
+				if (instance != null) {
+					instance.close();
+				}
+
+				instance = new SegmentedChangelog(path);
+			}
+
+			return instance;
+		}
+	}
+
+	/**
+	 * Appends all records of the given batch to the active segment.
+	 *
+	 * @param batch
+	 * @throws IOException
+	 */
+	public void append(final Batch batch) throws IOException {
+
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		synchronized (writeLock) {
+
+			if (closed) {
+				throw new IOException("Changelog is closed");
+			}
+
+			final long maxSize = Settings.ChangelogSegmentSize.getValue() * 1024L * 1024L;
+			if (activeSize > 0 && activeSize + batch.bytes.size() > maxSize) {
+
+				roll();
+			}
+
+			final ByteBuffer buffer = ByteBuffer.wrap(batch.bytes.array(), 0, batch.bytes.size());
+			long position           = activeSize;
+
+			while (buffer.hasRemaining()) {
+				position += activeChannel.write(buffer, position);
+			}
+
+			for (int i=0; i<batch.keys.size(); i++) {
+				addToIndex(batch.keys.get(i), activeSegment, activeSize + batch.offsets.get(i));
+			}
+
+			newest.merge(activeSegment, batch.newest, Math::max);
+
+			activeSize = position;
+
+			if (Settings.ChangelogSyncInterval.getValue() > 0) {
+
+				dirty = true;
+
+			} else {
+
+				activeChannel.force(false);
+			}
+		}
+	}
+
+	/**
+	 * Reads the records of the object with the given kind and UUID that
+	 * match the given filter. Records are decoded lazily, so the filter
+	 * should test the cheap fields (verb and time) first.
+	 *
+	 * @param kind 'n' for nodes, 'r' for relationships, 'u' for users
+	 * @param uuid
+	 * @param filter the filter, or null for all records
+	 * @return the matching records in the order they were written
+	 * @throws IOException
+	 */
+	public List<Record> read(final char kind, final String uuid, final Predicate<Record> filter) throws IOException {
+
+		final Positions positions = index.get(kind + uuid);
+		if (positions == null) {
+
+			return Collections.emptyList();
+		}
+
+		final ByteBuffer buffer   = ByteBuffer.allocate(READ_AHEAD);
+		final List<Record> result = new ArrayList<>();
+
+		for (final long position : positions.toArray()) {
+
+			final FileChannel channel = segments.get((int)(position >>> 40));
+			if (channel != null) {
+
+				try {
+
+					final Record record = readRecord(channel, position & 0xFFFFFFFFFFL, buffer);
+					if (filter == null || filter.test(record)) {
+
+						result.add(record);
+					}
+
+				} catch (ClosedChannelException cex) {
+					// the segment has expired while it was read
+				}
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Deletes the oldest segments whose newest record is older than the
+	 * configured retention time, and the oldest segments that exceed the
+	 * configured total size. The active segment is never deleted.
+	 *
+	 * @return the number of deleted segments
+	 */
+	public int expire() {
+
+		final long retention = TimeUnit.DAYS.toMillis(Settings.ChangelogRetention.getValue());
+		final long maxSize   = Settings.ChangelogMaxSize.getValue() * 1024L * 1024L;
+		final long now       = System.currentTimeMillis();
+		int lastExpired      = -1;
+		int count            = 0;
+
+		if (retention <= 0 && maxSize <= 0) {
+			return 0;
+		}
+
+		synchronized (writeLock) {
+
+			if (closed) {
+				return 0;
+			}
+
+			long totalSize = 0L;
+
+			for (final FileChannel channel : segments.values()) {
+
+				try {
+					totalSize += channel.size();
+
+				} catch (IOException ioex) {
+					logger.warn("Unable to determine size of changelog segment: {}", ioex.getMessage());
+				}
+			}
+
+			for (final int id : new TreeSet<>(segments.keySet())) {
+
+				if (id == activeSegment) {
+					break;
+				}
+
+				final boolean expired  = retention > 0 && newest.getOrDefault(id, 0L) < now - retention;
+				final boolean tooLarge = maxSize > 0 && totalSize > maxSize;
+
+				if (!expired && !tooLarge) {
+					break;
+				}
+
+				final FileChannel channel = segments.remove(id);
+
+				newest.remove(id);
+
+				try {
+
+					totalSize -= channel.size();
+					channel.close();
+
+				} catch (IOException ioex) {
+					logger.warn("Unable to close changelog segment {}: {}", id, ioex.getMessage());
+				}
+
+				getSegmentFile(id).delete();
+				getIndexFile(id).delete();
+
+				lastExpired = id;
+				count++;
+			}
+
+			if (lastExpired >= 0) {
+
+				final long limit = (long)(lastExpired + 1) << 40;
+
+				index.values().removeIf(positions -> positions.removeBefore(limit));
+
+				logger.info("Deleted {} expired changelog segments", count);
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Forces all appended records to disk.
+	 *
+	 * @throws IOException
+	 */
+	public void sync() throws IOException {
+
+		final FileChannel channel;
+
+		synchronized (writeLock) {
+
+			if (!dirty || closed) {
+				return;
+			}
+
+			dirty   = false;
+			channel = activeChannel;
+		}
+
+		channel.force(false);
+	}
+
+	public void close() {
+
+		closed = true;
+
+		if (syncThread != null) {
+			syncThread.interrupt();
+		}
+
+		synchronized (writeLock) {
+
+			for (final FileChannel channel : segments.values()) {
+
+				try {
+
+					channel.force(false);
+					channel.close();
+
+				} catch (IOException ioex) {
+					logger.warn("Unable to close changelog segment: {}", ioex.getMessage());
+				}
+			}
+
+			segments.clear();
+			newest.clear();
+			index.clear();
+		}
+	}
+
+	// ----- private methods -----
+	private void open() throws IOException {
+
+		directory.mkdirs();
+
+		final File[] files = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+		if (files != null) {
+
+			Arrays.sort(files);
+
+			for (int i=0; i<files.length; i++) {
+
+				final File file           = files[i];
+				final int id              = Integer.parseInt(file.getName().substring(0, file.getName().length() - SEGMENT_SUFFIX.length()));
+				final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+				final boolean last        = i == files.length - 1;
+				final long size           = channel.size();
+
+				segments.put(id, channel);
+
+				// full segments are not modified any more, so their index file is still valid
+				if (!last && loadIndex(id, size)) {
+					continue;
+				}
+
+				final long validSize = scan(id, channel);
+
+				if (validSize < size) {
+
+					if (last) {
+
+						logger.warn("Truncating incomplete changelog segment {} from {} to {} bytes", file.getName(), size, validSize);
+						channel.truncate(validSize);
+
+					} else {
+
+						logger.warn("Ignoring {} bytes of corrupt data at the end of changelog segment {}", size - validSize, file.getName());
+					}
+				}
+
+				if (!last) {
+					writeIndex(id, size);
+				}
+
+				activeSegment = id;
+				activeSize    = validSize;
+				activeChannel = channel;
+			}
+		}
+
+		if (activeChannel == null) {
+			roll();
+		}
+
+		syncThread = new Thread(() -> {
+
+			while (!closed) {
+
+				try {
+
+					Thread.sleep(Math.max(10, Settings.ChangelogSyncInterval.getValue()));
+					sync();
+
+					final long now = System.currentTimeMillis();
+					if (now - lastExpiry > EXPIRY_INTERVAL) {
+
+						lastExpiry = now;
+						expire();
+					}
+
+				} catch (InterruptedException iex) {
+
+					break;
+
+				} catch (IOException ioex) {
+					logger.warn("Unable to sync changelog segment: {}", ioex.getMessage());
+				}
+			}
+
+		}, "ChangelogSync");
+
+		syncThread.setDaemon(true);
+		syncThread.start();
+	}
+
+	private long scan(final int id, final FileChannel channel) throws IOException {
+
+		final long size = channel.size();
+		long offset     = 0L;
+
+		// the stream must not be closed because that would close the channel
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(0L)), 65536));
+
+		try {
+
+			while (offset + HEADER_SIZE <= size) {
+
+				final int length = in.readInt();
+				final int crc    = in.readInt();
+
+				if (length <= 0 || offset + HEADER_SIZE + length > size) {
+					break;
+				}
+
+				final byte[] payload = new byte[length];
+				in.readFully(payload);
+
+				if (crc(payload, 0, length) != crc) {
+					break;
+				}
+
+				final Record record = new Record(payload);
+
+				addToIndex(record.getKind() + record.getUuid(), id, offset);
+				newest.merge(id, record.getTime(), Math::max);
+
+				offset += HEADER_SIZE + length;
+			}
+
+		} catch (EOFException eof) {
+			// incomplete record at the end of the segment
+		}
+
+		return offset;
+	}
+
+	private Record readRecord(final FileChannel channel, final long offset, final ByteBuffer buffer) throws IOException {
+
+		buffer.clear();
+
+		// read the header and, for small records, the whole payload at once
+		while (buffer.position() < HEADER_SIZE) {
+
+			if (channel.read(buffer, offset + buffer.position()) < 0) {
+				throw new EOFException("Unexpected end of changelog segment");
+			}
+		}
+
+		final int length     = buffer.getInt(0);
+		final byte[] payload = new byte[length];
+		final int available  = Math.min(length, buffer.position() - HEADER_SIZE);
+
+		System.arraycopy(buffer.array(), HEADER_SIZE, payload, 0, available);
+
+		final ByteBuffer rest = ByteBuffer.wrap(payload, available, length - available);
+		while (rest.hasRemaining()) {
+
+			if (channel.read(rest, offset + HEADER_SIZE + rest.position()) < 0) {
+				throw new EOFException("Unexpected end of changelog segment");
+			}
+		}
+
+		return new Record(payload);
+	}
+
+	private void roll() throws IOException {
+
+		if (activeChannel != null) {
+
+			activeChannel.force(false);
+
+			writeIndex(activeSegment, activeSize);
+		}
+
+		activeSegment++;
+
+		activeChannel = FileChannel.open(getSegmentFile(activeSegment).toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+		activeSize    = 0L;
+
+		segments.put(activeSegment, activeChannel);
+	}
+
+	/**
+	 * Writes the positions of all records of the given segment to its
+	 * index file. The index file is only an optimization for opening the
+	 * store, so errors are logged and otherwise ignored.
+	 */
+	private void writeIndex(final int id, final long size) {
+
+		final File file = getIndexFile(id);
+		final File temp = new File(directory, file.getName() + ".tmp");
+		final CRC32 crc = new CRC32();
+
+		try (final DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 65536), crc))) {
+
+			out.writeInt(INDEX_VERSION);
+			out.writeLong(size);
+			out.writeLong(newest.getOrDefault(id, 0L));
+
+			for (final Map.Entry<String, Positions> entry : index.entrySet()) {
+
+				final long[] offsets = entry.getValue().getOffsets(id);
+				if (offsets.length > 0) {
+
+					out.writeBoolean(true);
+					out.writeUTF(entry.getKey());
+					out.writeInt(offsets.length);
+
+					for (final long offset : offsets) {
+						out.writeLong(offset);
+					}
+				}
+			}
+
+			out.writeBoolean(false);
+			out.writeInt((int)crc.getValue());
+
+		} catch (IOException ioex) {
+
+			logger.warn("Unable to write index of changelog segment {}: {}", id, ioex.getMessage());
+			temp.delete();
+
+			return;
+		}
+
+		try {
+
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (IOException ioex) {
+
+			logger.warn("Unable to write index of changelog segment {}: {}", id, ioex.getMessage());
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Adds the positions from the index file of the given segment to the
+	 * index. The index file is only used if it is complete and matches
+	 * the size of the segment.
+	 *
+	 * @return whether the index file could be used
+	 */
+	private boolean loadIndex(final int id, final long size) {
+
+		final File file = getIndexFile(id);
+		if (!file.exists()) {
+
+			return false;
+		}
+
+		final Map<String, long[]> entries = new LinkedHashMap<>();
+		final CRC32 crc                   = new CRC32();
+		long time                         = 0L;
+
+		try (final DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(new FileInputStream(file), 65536), crc))) {
+
+			if (in.readInt() != INDEX_VERSION || in.readLong() != size) {
+
+				logger.info("Index of changelog segment {} is outdated, scanning segment", id);
+				return false;
+			}
+
+			time = in.readLong();
+
+			while (in.readBoolean()) {
+
+				final String key   = in.readUTF();
+				final int count    = in.readInt();
+
+				if (count <= 0 || count > size / HEADER_SIZE) {
+					throw new IOException("Invalid number of records");
+				}
+
+				final long[] offsets = new long[count];
+
+				for (int i=0; i<offsets.length; i++) {
+					offsets[i] = in.readLong();
+				}
+
+				entries.put(key, offsets);
+			}
+
+			final int expected = (int)crc.getValue();
+
+			if (in.readInt() != expected) {
+
+				logger.warn("Index of changelog segment {} is corrupt, scanning segment", id);
+				return false;
+			}
+
+		} catch (IOException | RuntimeException ex) {
+
+			logger.warn("Unable to read index of changelog segment {}, scanning segment: {}", id, ex.getMessage());
+			return false;
+		}
+
+		for (final Map.Entry<String, long[]> entry : entries.entrySet()) {
+
+			for (final long offset : entry.getValue()) {
+				addToIndex(entry.getKey(), id, offset);
+			}
+		}
+
+		newest.put(id, time);
+
+		return true;
+	}
+
+	private File getSegmentFile(final int id) {
+		return new File(directory, String.format("%010d", id) + SEGMENT_SUFFIX);
+	}
+
+	private File getIndexFile(final int id) {
+		return new File(directory, String.format("%010d", id) + INDEX_SUFFIX);
+	}
+
+	private void addToIndex(final String key, final int segment, final long offset) {
+		index.computeIfAbsent(key, k -> new Positions()).add(((long)segment << 40) | offset);
+	}
+
+	private static int crc(final byte[] data, final int offset, final int length) {
+
+		final CRC32 crc = new CRC32();
+
+		crc.update(data, offset, length);
+
+		return (int)crc.getValue();
+	}
+
+	// ----- nested classes -----
+	/**
+	 * The encoded records of a single transaction.
+	 */
+	public static class Batch {
+
+		private final JsonParser parser      = new JsonParser();
+		private final Buffer bytes           = new Buffer();
+		private final DataOutputStream data  = new DataOutputStream(bytes);
+		private final List<String> keys      = new ArrayList<>();
+		private final List<Integer> offsets  = new ArrayList<>();
+		private long newest                  = 0L;
+
+		/**
+		 * Encodes the given changelog lines of the object with the given
+		 * kind and UUID.
+		 *
+		 * @param kind 'n' for nodes, 'r' for relationships, 'u' for users
+		 * @param uuid
+		 * @param changelog changelog entries in JSON format, one per line
+		 * @throws IOException
+		 */
+		public void add(final char kind, final String uuid, final String changelog) throws IOException {
+
+			if (changelog == null) {
+				return;
+			}
+
+			final int size  = bytes.size();
+			final int count = keys.size();
+
+			try {
+
+				for (final String line : changelog.split("\n")) {
+
+					if (!line.isEmpty()) {
+
+						add(kind, uuid, parser.parse(line).getAsJsonObject());
+					}
+				}
+
+			} catch (IOException | RuntimeException ex) {
+
+				// remove the records of the failed changelog, so the batch stays consistent
+				bytes.truncate(size);
+				keys.subList(count, keys.size()).clear();
+				offsets.subList(count, offsets.size()).clear();
+
+				throw ex;
+			}
+		}
+
+		public boolean isEmpty() {
+			return keys.isEmpty();
+		}
+
+		// ----- private methods -----
+		private void add(final char kind, final String uuid, final JsonObject entry) throws IOException {
+
+			final int start = bytes.size();
+
+			// placeholder for length and checksum
+			data.writeLong(0L);
+
+			final long time = entry.get("time").getAsLong();
+
+			data.writeByte(kind);
+			writeString(uuid);
+			data.writeLong(time);
+			data.writeByte(Verb.valueOf(entry.get("verb").getAsString()).ordinal());
+
+			for (final String field : FIELDS) {
+
+				final JsonElement value = entry.get(field);
+
+				if (value == null || value.isJsonNull()) {
+
+					writeString(null);
+
+				} else if ("prev".equals(field) || "val".equals(field)) {
+
+					writeString(gson.toJson(value));
+
+				} else {
+
+					writeString(value.getAsString());
+				}
+			}
+
+			final int length = bytes.size() - start - HEADER_SIZE;
+			final byte[] buf = bytes.array();
+			final int crc    = crc(buf, start + HEADER_SIZE, length);
+
+			ByteBuffer.wrap(buf, start, HEADER_SIZE).putInt(length).putInt(crc);
+
+			keys.add(kind + uuid);
+			offsets.add(start);
+
+			newest = Math.max(newest, time);
+		}
+
+		private void writeString(final String value) throws IOException {
+
+			if (value == null) {
+
+				writeVarInt(0);
+
+			} else {
+
+				final byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+
+				writeVarInt(utf8.length + 1);
+				data.write(utf8);
+			}
+		}
+
+		private void writeVarInt(int value) throws IOException {
+
+			while ((value & ~0x7F) != 0) {
+
+				data.writeByte((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+
+			data.writeByte(value);
+		}
+	}
+
+	/**
+	 * A single changelog entry. The string fields are decoded on first
+	 * access, so filters that reject a record by verb or time do not pay
+	 * for decoding the rest.
+	 */
+	public static class Record {
+
+		private final String[] strings = new String[FIELDS.length];
+		private byte[] data            = null;
+		private String uuid            = null;
+		private String verb            = null;
+		private long time              = 0L;
+		private char kind              = 0;
+		private int decoded            = 0;
+		private int position           = 0;
+
+		private Record(final byte[] data) {
+
+			this.data = data;
+			this.kind = (char)data[0];
+			position  = 1;
+			uuid      = readString();
+			time      = ByteBuffer.wrap(data, position, 8).getLong();
+			verb      = Verb.values()[data[position + 8]].name();
+			position += 9;
+		}
+
+		/**
+		 * Creates a record from a changelog entry in JSON format as
+		 * written by the file-based changelog.
+		 *
+		 * @param entry
+		 * @return the record
+		 */
+		public static Record fromJson(final JsonObject entry) {
+
+			final Record record = new Record();
+
+			record.time    = entry.get("time").getAsLong();
+			record.verb    = entry.get("verb").getAsString();
+			record.decoded = FIELDS.length;
+
+			for (int i=0; i<FIELDS.length; i++) {
+
+				final JsonElement value = entry.get(FIELDS[i]);
+				if (value != null) {
+
+					if ("prev".equals(FIELDS[i]) || "val".equals(FIELDS[i])) {
+
+						record.strings[i] = gson.toJson(value);
+
+					} else if (!value.isJsonNull()) {
+
+						record.strings[i] = value.getAsString();
+					}
+				}
+			}
+
+			return record;
+		}
+
+		private Record() {
+		}
+
+		public char getKind() {
+			return kind;
+		}
+
+		public String getUuid() {
+			return uuid;
+		}
+
+		public long getTime() {
+			return time;
+		}
+
+		public String getVerb() {
+			return verb;
+		}
+
+		public String getUserId() {
+			return getString(0);
+		}
+
+		public String getUserName() {
+			return getString(1);
+		}
+
+		public String getRel() {
+			return getString(2);
+		}
+
+		public String getRelId() {
+			return getString(3);
+		}
+
+		public String getRelDir() {
+			return getString(4);
+		}
+
+		public String getTarget() {
+			return getString(5);
+		}
+
+		public String getKey() {
+			return getString(6);
+		}
+
+		/**
+		 * @return the previous value in JSON format
+		 */
+		public String getPrev() {
+			return getString(7);
+		}
+
+		/**
+		 * @return the new value in JSON format
+		 */
+		public String getVal() {
+			return getString(8);
+		}
+
+		// ----- private methods -----
+		private String getString(final int index) {
+
+			while (decoded <= index) {
+				strings[decoded++] = readString();
+			}
+
+			return strings[index];
+		}
+
+		private String readString() {
+
+			int length = 0;
+			int shift  = 0;
+			byte b;
+
+			do {
+
+				b       = data[position++];
+				length |= (b & 0x7F) << shift;
+				shift  += 7;
+
+			} while ((b & 0x80) != 0);
+
+			if (length == 0) {
+				return null;
+			}
+
+			final String value = new String(data, position, length - 1, StandardCharsets.UTF_8);
+
+			position += length - 1;
+
+			return value;
+		}
+	}
+
+	private static class Positions {
+
+		private long[] positions = new long[2];
+		private int size         = 0;
+
+		public synchronized void add(final long position) {
+
+			if (size == positions.length) {
+				positions = Arrays.copyOf(positions, size * 2);
+			}
+
+			positions[size++] = position;
+		}
+
+		public synchronized long[] toArray() {
+			return Arrays.copyOf(positions, size);
+		}
+
+		/**
+		 * @return the offsets of the records in the given segment
+		 */
+		public synchronized long[] getOffsets(final int segment) {
+
+			final long[] offsets = new long[size];
+			int count            = 0;
+
+			for (int i=0; i<size; i++) {
+
+				if ((int)(positions[i] >>> 40) == segment) {
+					offsets[count++] = positions[i] & 0xFFFFFFFFFFL;
+				}
+			}
+
+			return Arrays.copyOf(offsets, count);
+		}
+
+		/**
+		 * Removes all positions before the given position. Positions are
+		 * added in ascending order, so these are the first ones.
+		 *
+		 * @return whether no positions are left
+		 */
+		public synchronized boolean removeBefore(final long limit) {
+
+			int count = 0;
+
+			while (count < size && positions[count] < limit) {
+				count++;
+			}
+
+			if (count > 0) {
+
+				positions = Arrays.copyOfRange(positions, count, count + Math.max(2, size - count));
+				size     -= count;
+			}
+
+			return size == 0;
+		}
+	}
+
+	private static class Buffer extends ByteArrayOutputStream {
+
+		public Buffer() {
+			super(4096);
+		}
+
+		public byte[] array() {
+			return buf;
+		}
+
+		public void truncate(final int size) {
+			count = size;
+		}
+	}
+}
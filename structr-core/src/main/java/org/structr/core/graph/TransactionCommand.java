@@ -31,6 +31,7 @@ import org.structr.api.NotInTransactionException;
 import org.structr.api.Predicate;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
+import org.structr.common.AccessPathCache;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.DatabaseServiceNetworkException;
 import org.structr.common.error.DatabaseServiceNotAvailableException;
@@ -55,9 +56,11 @@ public class TransactionCommand {
 	private static final ThreadLocal<TransactionCommand> commands  = new ThreadLocal<>();
 	private static final MultiSemaphore                  semaphore = new MultiSemaphore();
 
-	private TransactionReference transaction = null;
-	private ModificationQueue queue          = null;
-	private ErrorBuffer errorBuffer          = null;
+	private final Set<String> invalidatedUuids    = new LinkedHashSet<>();
+	private final Set<String> invalidatedRelTypes = new LinkedHashSet<>();
+	private TransactionReference transaction      = null;
+	private ModificationQueue queue               = null;
+	private ErrorBuffer errorBuffer               = null;
 
 
 	private static TransactionCommand getInstance() {
@@ -182,6 +185,8 @@ public class TransactionCommand {
 
 					// release semaphores as the transaction is now finished
 					semaphore.release(synchronizationKeys);	// careful: this can be null
+
+					cmd.invalidatePermissions();
 				}
 
 			} else {
@@ -436,6 +441,30 @@ public class TransactionCommand {
 		}
 	}
 
+	/**
+	 * Remembers an invalidation of the permission cache, so that it can be
+	 * repeated when the transaction is finished. Until then, concurrent
+	 * transactions still see the old state and may cache results that
+	 * were derived from it.
+	 *
+	 * @param uuid the invalidated UUID, or null
+	 * @param relType the invalidated relationship type, or null
+	 */
+	public static void invalidateAfterCommit(final String uuid, final String relType) {
+
+		final TransactionCommand cmd = commands.get();
+		if (cmd != null) {
+
+			if (uuid != null) {
+				cmd.invalidatedUuids.add(uuid);
+			}
+
+			if (relType != null) {
+				cmd.invalidatedRelTypes.add(relType);
+			}
+		}
+	}
+
 	public static boolean inTransaction() {
 		return commands.get() != null;
 	}
@@ -451,6 +480,17 @@ public class TransactionCommand {
 		throw new NotInTransactionException("Not in transaction.");
 	}
 
+	public static long getCurrentQueryCount() {
+
+		final TransactionCommand cmd = commands.get();
+		if (cmd != null) {
+
+			return cmd.transaction.getQueryCount();
+		}
+
+		throw new NotInTransactionException("Not in transaction.");
+	}
+
 	public static boolean isDeleted(final Node node) {
 
 		TransactionCommand cmd = commands.get();
@@ -538,4 +578,17 @@ public class TransactionCommand {
 	private long getTransactionId() {
 		return transaction.getTransactionId();
 	}
+
+	private void invalidatePermissions() {
+
+		// the changes of this transaction are visible now, so results that
+		// were cached from the old state since the first invalidation are removed
+		for (final String uuid : invalidatedUuids) {
+			AccessPathCache.invalidateForId(uuid);
+		}
+
+		for (final String relType : invalidatedRelTypes) {
+			AccessPathCache.invalidateForRelType(relType);
+		}
+	}
 }
@@ -73,6 +73,11 @@ public class TransactionReference implements Transaction {
 		return tx.getTransactionId();
 	}
 
+	@Override
+	public long getQueryCount() {
+		return tx.getQueryCount();
+	}
+
 	@Override
 	public void close() {
 
@@ -87,10 +87,16 @@ public class Tx implements AutoCloseable {
 						modificationQueue.doOuterCallbacks(securityContext);
 
 						// notify listeners if desired, and allow this setting to be overriden locally AND remotely
-						if ( (securityContext == null) ? doNotifications : doNotifications && securityContext.doTransactionNotifications() ) {
+						final boolean notify                             = (securityContext == null) ? doNotifications : doNotifications && securityContext.doTransactionNotifications();
+						Collection<ModificationEvent> modificationEvents = null;
 
-							final Collection<ModificationEvent> modificationEvents = modificationQueue.getModificationEvents();
-							for (final StructrTransactionListener listener : TransactionCommand.getTransactionListeners()) {
+						for (final StructrTransactionListener listener : TransactionCommand.getTransactionListeners()) {
+
+							if (notify || listener.requiresAllCommits()) {
+
+								if (modificationEvents == null) {
+									modificationEvents = modificationQueue.getModificationEvents();
+								}
 
 								listener.afterCommit(securityContext, modificationEvents);
 							}
@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.graph.search;
+
+import java.util.Set;
+import org.structr.api.search.Occurrence;
+import org.structr.api.search.PermissionQuery;
+import org.structr.common.Permission;
+import org.structr.core.GraphObject;
+
+/**
+ * Search attribute that lets the database filter out nodes that none of
+ * the given principals can access with the given permission. The actual
+ * permission check is still done by the node factory, so this attribute
+ * accepts every entity.
+ */
+public class PermissionSearchAttribute<T> extends SearchAttribute<T> implements PermissionQuery {
+
+	private Set<String> principalIds = null;
+	private Permission permission    = null;
+
+	public PermissionSearchAttribute(final Set<String> principalIds, final Permission permission) {
+
+		super(Occurrence.REQUIRED);
+
+		this.principalIds = principalIds;
+		this.permission   = permission;
+	}
+
+	@Override
+	public String toString() {
+		return "PermissionSearchAttribute(" + permission.name() + ", " + principalIds + ")";
+	}
+
+	@Override
+	public boolean includeInResult(final GraphObject entity) {
+		return true;
+	}
+
+	@Override
+	public Class getQueryType() {
+		return PermissionQuery.class;
+	}
+
+	@Override
+	public boolean isExactMatch() {
+		return true;
+	}
+
+	@Override
+	public String getName() {
+		return null;
+	}
+
+	// ----- interface PermissionQuery -----
+	@Override
+	public Set<String> getPrincipalIds() {
+		return principalIds;
+	}
+
+	@Override
+	public String getPermission() {
+		return permission.name();
+	}
+}
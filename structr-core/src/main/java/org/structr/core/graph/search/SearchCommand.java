@@ -30,7 +30,9 @@ import java.util.Map;
 import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.apache.commons.lang3.StringUtils;
 import org.structr.api.Predicate;
+import org.structr.api.config.Settings;
 import org.structr.api.graph.PropertyContainer;
 import org.structr.api.index.Index;
 import org.structr.api.search.Occurrence;
@@ -39,6 +41,7 @@ import org.structr.api.util.Iterables;
 import org.structr.api.util.PagingIterable;
 import org.structr.api.util.ResultStream;
 import org.structr.common.GraphObjectComparator;
+import org.structr.common.Permission;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.geo.GeoCodingResult;
@@ -47,6 +50,8 @@ import org.structr.core.GraphObject;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.AbstractRelationship;
+import org.structr.core.entity.Principal;
+import org.structr.core.entity.SchemaRelationshipNode;
 import org.structr.core.graph.Factory;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.NodeServiceCommand;
@@ -124,6 +129,20 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 
 			rootGroup.add(new RelationshipVisibilitySearchAttribute());
 
+		} else if (Settings.PermissionFiltering.getValue() && !isRelationshipSearch()) {
+
+			if (publicOnly) {
+
+				rootGroup.add(new PropertySearchAttribute(GraphObject.visibleToPublicUsers, true, Occurrence.REQUIRED, true));
+
+			} else {
+
+				final Set<String> principalIds = getPrincipalIdsForPermissionFiltering();
+				if (principalIds != null) {
+
+					rootGroup.add(new PermissionSearchAttribute(principalIds, Permission.read));
+				}
+			}
 		}
 
 		// special handling of deleted and hidden flags
@@ -200,6 +219,13 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 			}
 		}
 
+		// keyset pagination continues after the last element of the database
+		// query, which is not possible if the result is filtered or sorted in
+		// memory, so cursor requests are rejected for those queries
+		if (getQueryContext().isKeyset() && (comparator != null || hasEmptySearchFields || hasGraphSources || hasSpatialSource || hasRelationshipVisibilitySearch)) {
+			throw new FrameworkException(422, "Cursor pagination is not supported for this query, use page and pageSize instead");
+		}
+
 		// only do "normal" query if no other sources are present
 		// use filters to filter sources otherwise
 		if (!hasSpatialSource && !sources.isEmpty()) {
@@ -296,7 +322,7 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		} else {
 
 			// no filtering
-			return new PagingIterable(indexHits, pageSize, page);
+			return new PagingIterable(indexHits, pageSize, page, getQueryContext());
 		}
 	}
 
@@ -859,6 +885,44 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 		}
 	}
 
+	/**
+	 * Returns the IDs of the current user and all of its (transitive)
+	 * parent groups, or null if the read permission of the current user
+	 * cannot be expressed as a database query. This is the case for
+	 * admin users, users with a custom permission query and when there
+	 * are relationship types that propagate permissions.
+	 */
+	private Set<String> getPrincipalIdsForPermissionFiltering() {
+
+		final Principal user = securityContext.getUser(false);
+		if (user == null || securityContext.isSuperUser() || !SchemaRelationshipNode.getPropagatingRelationshipTypes().isEmpty()) {
+
+			return null;
+		}
+
+		final PropertyKey<String> customPermissionQueryKey = StructrApp.key(Principal.class, "customPermissionQueryRead");
+		final LinkedList<Principal> queue                   = new LinkedList<>();
+		final Set<String> principalIds                      = new LinkedHashSet<>();
+
+		queue.add(user);
+
+		while (!queue.isEmpty()) {
+
+			final Principal principal = queue.removeFirst();
+
+			if (principalIds.add(principal.getUuid())) {
+
+				if (principal.isAdmin() || StringUtils.isNotEmpty(principal.getProperty(customPermissionQueryKey))) {
+					return null;
+				}
+
+				queue.addAll(principal.getParentsPrivileged());
+			}
+		}
+
+		return principalIds;
+	}
+
 	// ----- nested classes -----
 	private class AndPredicate implements Predicate<GraphObject> {
 
@@ -906,6 +970,4 @@ public abstract class SearchCommand<S extends PropertyContainer, T extends Graph
 			return result;
 		}
 	}
-
-
 }
@@ -21,17 +21,26 @@ package org.structr.core.graphql;
 import graphql.language.Field;
 import graphql.language.Selection;
 import graphql.language.SelectionSet;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import org.structr.api.DatabaseService;
+import org.structr.api.Predicate;
+import org.structr.api.graph.Direction;
+import org.structr.api.graph.Node;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.app.Query;
 import org.structr.core.app.StructrApp;
+import org.structr.core.graph.NodeInterface;
 import org.structr.core.property.PropertyKey;
+import org.structr.core.property.RelationProperty;
 
 /**
  */
@@ -86,7 +95,90 @@ public class GraphQLQuery {
 		return query.getAsList();
 	}
 
+	/**
+	 * Loads the related nodes of all relationship properties in this query
+	 * level by level, with one batch per selection instead of one database
+	 * access per node. The results are only stored in the relationship
+	 * caches of the database nodes, so security filtering, sorting and
+	 * paging are still applied when the properties are read.
+	 *
+	 * @param entities the root entities of this query
+	 */
+	public void prefetch(final Iterable<GraphObject> entities) {
+		prefetch(entities, getRootPath());
+	}
+
 	// ----- private methods -----
+	private void prefetch(final Iterable<GraphObject> parents, final String path) {
+
+		final QueryConfig config = configurations.get(path);
+		if (config == null) {
+			return;
+		}
+
+		final DatabaseService db = StructrApp.getInstance().getDatabaseService();
+
+		for (final PropertyKey key : config.getPropertyKeys()) {
+
+			final String childPath        = path + "/" + key.jsonName();
+			final QueryConfig childConfig = configurations.get(childPath);
+
+			// only relationship properties with a sub-selection need to be loaded
+			if (childConfig != null && key instanceof RelationProperty) {
+
+				final RelationProperty relationProperty = (RelationProperty)key;
+				final Direction direction               = "out".equals(relationProperty.getDirectionKey()) ? Direction.OUTGOING : Direction.INCOMING;
+				final Set<GraphObject> children         = new LinkedHashSet<>();
+				final List<Node> nodes                  = new ArrayList<>();
+
+				for (final GraphObject parent : parents) {
+
+					if (parent instanceof NodeInterface) {
+
+						nodes.add(((NodeInterface)parent).getNode());
+					}
+				}
+
+				if (nodes.isEmpty()) {
+					continue;
+				}
+
+				db.prefetchRelationships(nodes, direction, relationProperty.getRelation());
+
+				// collect the visible children of the next level
+				final Predicate<GraphObject> predicate = childConfig.getPredicateForPropertyKey(key);
+				final int pageSize                     = childConfig.getPageSize();
+				final int start                        = (childConfig.getPage() - 1) * pageSize;
+
+				for (final GraphObject parent : parents) {
+
+					final Object value = parent.getProperty(key, predicate);
+					if (value instanceof Iterable) {
+
+						int pos = 0;
+
+						for (final Object child : (Iterable)value) {
+
+							if (pos >= start && child instanceof GraphObject) {
+								children.add((GraphObject)child);
+							}
+
+							if (++pos - start >= pageSize) {
+								break;
+							}
+						}
+
+					} else if (value instanceof GraphObject) {
+
+						children.add((GraphObject)value);
+					}
+				}
+
+				prefetch(children, childPath);
+			}
+		}
+	}
+
 	private void init(final SecurityContext securityContext, final Class type, final Field field, final String path) throws FrameworkException {
 
 		final QueryConfig config = getConfig(path);
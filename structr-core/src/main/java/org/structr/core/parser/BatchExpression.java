@@ -38,8 +38,6 @@ public class BatchExpression extends Expression {
 
 	private Expression batchExpression = null;
 	private Expression sizeExpression  = null;
-	private boolean background         = false;
-	private int batchSize              = -1;
 
 	public BatchExpression() {
 		super("batch");
@@ -76,7 +74,7 @@ public class BatchExpression extends Expression {
 		if (value != null && value instanceof Number) {
 
 			// store batch size for children to use
-			this.batchSize = ((Number)value).intValue();
+			ctx.setBatchSize(this, ((Number)value).intValue());
 
 			// initialize holders to store results from worker thread (must be final)
 			final StaticValue<FrameworkException> exception = new StaticValue<>(null);
@@ -121,7 +119,7 @@ public class BatchExpression extends Expression {
 	}
 
 	@Override
-	public int getBatchSize() {
-		return batchSize;
+	public int getBatchSize(final ActionContext ctx) {
+		return ctx.getBatchSize(this);
 	}
 }
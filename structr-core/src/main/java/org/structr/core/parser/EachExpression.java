@@ -117,7 +117,7 @@ public class EachExpression extends Expression {
 							ctx.setConstant("data", iterator.next());
 							eachExpression.evaluate(ctx, entity);
 
-							if ((++count % getBatchSize()) == 0) {
+							if ((++count % getBatchSize(ctx)) == 0) {
 								break;
 							}
 						}
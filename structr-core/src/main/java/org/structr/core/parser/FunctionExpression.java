@@ -75,7 +75,7 @@ public class FunctionExpression extends Expression {
 		if (function instanceof BatchableFunction) {
 
 			// enable batching if batchable function is found
-			((BatchableFunction)function).setBatchSize(getBatchSize());
+			((BatchableFunction)function).setBatchSize(getBatchSize(ctx));
 			((BatchableFunction)function).setBatched(isBatched());
 
 			// batchable functions must create their own transaction when in batched mode
@@ -18,6 +18,10 @@
  */
 package org.structr.core.scheduler;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -25,14 +29,24 @@ import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.atomic.AtomicLong;
+import org.structr.api.config.Setting;
+import org.structr.api.config.Settings;
 import org.structr.common.error.FrameworkException;
 
+/**
+ * Queues scheduled jobs and runs them in the background.
+ *
+ * Each job belongs to a job class (e.g. "import" or "script"), and every
+ * class has its own concurrency limit which can be configured with
+ * application.jobs.&lt;class&gt;.concurrency. Within a class, queued jobs
+ * of different users are started in turns, so that a user who queues
+ * many jobs does not starve the jobs of other users.
+ */
 public class JobQueueManager {
 
-	private static JobQueueManager singletonInstance = null;
-
 	private final Map<Long, ScheduledJob> queuedJobs  = new ConcurrentHashMap<>();
 	private final Map<Long, ScheduledJob> activeJobs  = new ConcurrentHashMap<>();
+	private final Map<String, JobClass> jobClasses    = new LinkedHashMap<>();
 	private final Queue<Long> jobIdQueue              = new ConcurrentLinkedDeque<>();
 	private final AtomicLong importJobIdCount         = new AtomicLong(0);
 
@@ -42,12 +56,7 @@ public class JobQueueManager {
 	 * Public API
 	 */
 	public static JobQueueManager getInstance() {
-
-		if (singletonInstance == null) {
-			singletonInstance = new JobQueueManager();
-		}
-
-		return singletonInstance;
+		return InstanceHolder.INSTANCE;
 	}
 
 	public void addJob(final ScheduledJob job) throws FrameworkException {
@@ -59,20 +68,19 @@ public class JobQueueManager {
 
 			appendToQueueInternal(job);
 
-			if (!hasRunningJobs()) {
-
-				startNextJobInQueue();
+			startQueuedJobs();
 
-			} else {
+			if (queuedJobs.containsKey(jobId)) {
 
 				job.reportQueued();
-
 			}
 		}
 	}
 
 	/**
 	 * Starts an import job if it exists. Returns true if it is started.
+	 * Jobs started with this method do not respect the concurrency limit
+	 * of their job class.
 	 *
 	 * @param jobId Job to start
 	 * @return boolean "job started"
@@ -115,7 +123,12 @@ public class JobQueueManager {
 		});
 
 		jobIdQueue.forEach((Long jobId) -> {
-			addJobToList(jobInfoList, queuedJobs.get(jobId));
+
+			final ScheduledJob job = queuedJobs.get(jobId);
+			if (job != null) {
+
+				addJobToList(jobInfoList, job);
+			}
 		});
 
 		return jobInfoList;
@@ -126,67 +139,168 @@ public class JobQueueManager {
 	}
 
 	protected void jobFinished (final ScheduledJob job) {
+		jobEnded(job);
+	}
 
-		activeJobs.remove(job.jobId());
+	protected void jobAborted (final ScheduledJob job) {
+		jobEnded(job);
+	}
 
-		if (!hasRunningJobs()) {
-			startNextJobInQueue();
-		}
 
-	}
+	//~--- private methods ----------------------------------------------------
 
-	protected void jobAborted (final ScheduledJob job) {
+	private void jobEnded(final ScheduledJob job) {
 
-		activeJobs.remove(job.jobId());
+		// aborted jobs report both, so only the first call frees the slot
+		if (activeJobs.remove(job.jobId()) != null) {
 
-		if (!hasRunningJobs()) {
-			startNextJobInQueue();
+			startQueuedJobs();
 		}
-
 	}
 
+	private void appendToQueueInternal (final ScheduledJob job) {
 
-	//~--- private methods ----------------------------------------------------
+		synchronized (jobClasses) {
 
-	private void appendToQueueInternal (final ScheduledJob job) {
-		jobIdQueue.add(job.jobId());
-		queuedJobs.put(job.jobId(), job);
+			jobIdQueue.add(job.jobId());
+			queuedJobs.put(job.jobId(), job);
+
+			getJobClass(job).add(job);
+		}
 	}
 
 	private ScheduledJob removeFromQueueInternal (final Long jobId) {
-		jobIdQueue.remove(jobId);
-		return queuedJobs.remove(jobId);
+
+		synchronized (jobClasses) {
+
+			final ScheduledJob job = queuedJobs.remove(jobId);
+
+			jobIdQueue.remove(jobId);
+
+			if (job != null) {
+				getJobClass(job).remove(job);
+			}
+
+			return job;
+		}
 	}
 
-	private boolean hasRunningJobs() {
+	/**
+	 * Starts queued jobs of all job classes whose limit of active (i.e.
+	 * running or paused) jobs is not reached.
+	 */
+	private void startQueuedJobs() {
+
+		final List<ScheduledJob> jobsToStart = new LinkedList<>();
+
+		synchronized (jobClasses) {
+
+			final Map<String, Integer> activeCounts = new LinkedHashMap<>();
+
+			for (final ScheduledJob job : activeJobs.values()) {
+				activeCounts.merge(job.getJobClass(), 1, Integer::sum);
+			}
+
+			for (final JobClass jobClass : jobClasses.values()) {
 
-		// if any job is RUNNING or PAUSED, dont auto-start new tasks
-		return (!activeJobs.isEmpty());
+				int active = activeCounts.getOrDefault(jobClass.name, 0);
 
-//		// if any job is RUNNING, dont auto-start new tasks
-//		// this effectively means that if a user PAUSES a job, the queue is stopped BUT
-//		// if another job is queued or the last running job finishes, then the next queued job is started
-//		boolean hasRunningJob = false;
-//
-//		for (ImportJob job : activeJobs.values()) {
-//			if (job.getCurrentStatus().equals(ImportJob.JobStatus.RUNNING)) {
-//				hasRunningJob = true;
-//			}
-//		}
-//
-//		return hasRunningJob;
+				while (active < jobClass.getConcurrency()) {
 
+					final ScheduledJob job = jobClass.next();
+					if (job == null) {
+
+						break;
+					}
+
+					jobIdQueue.remove(job.jobId());
+					queuedJobs.remove(job.jobId());
+					activeJobs.put(job.jobId(), job);
+					jobsToStart.add(job);
+
+					active++;
+				}
+			}
+		}
+
+		for (final ScheduledJob job : jobsToStart) {
+			job.startJob();
+		}
+	}
+
+	private JobClass getJobClass(final ScheduledJob job) {
+		return jobClasses.computeIfAbsent(job.getJobClass(), JobClass::new);
 	}
 
-	private void startNextJobInQueue() {
-		final Long jobId = jobIdQueue.peek();
+	// ----- nested classes -----
+	private static class InstanceHolder {
+
+		private static final JobQueueManager INSTANCE = new JobQueueManager();
+	}
+
+	/**
+	 * The queued jobs of a single job class, grouped by user.
+	 */
+	private static class JobClass {
+
+		private final Map<String, Deque<ScheduledJob>> queuesByUser = new LinkedHashMap<>();
+		private String name                                         = null;
+
+		public JobClass(final String name) {
+			this.name = name;
+		}
+
+		public void add(final ScheduledJob job) {
+			queuesByUser.computeIfAbsent(job.getUsername(), k -> new ArrayDeque<>()).add(job);
+		}
 
-		if (jobId != null) {
-			boolean didStart = startJob(jobId);
-			if (!didStart) {
-				startNextJobInQueue();
+		public void remove(final ScheduledJob job) {
+
+			final Deque<ScheduledJob> queue = queuesByUser.get(job.getUsername());
+			if (queue != null) {
+
+				queue.remove(job);
+
+				if (queue.isEmpty()) {
+					queuesByUser.remove(job.getUsername());
+				}
 			}
 		}
+
+		/**
+		 * Returns the oldest job of the user who is next in turn, and moves
+		 * that user to the end of the rotation.
+		 */
+		public ScheduledJob next() {
+
+			final Iterator<Map.Entry<String, Deque<ScheduledJob>>> iterator = queuesByUser.entrySet().iterator();
+			if (iterator.hasNext()) {
+
+				final Map.Entry<String, Deque<ScheduledJob>> entry = iterator.next();
+				final Deque<ScheduledJob> queue                    = entry.getValue();
+				final ScheduledJob job                             = queue.poll();
+
+				iterator.remove();
+
+				if (!queue.isEmpty()) {
+					queuesByUser.put(entry.getKey(), queue);
+				}
+
+				return job;
+			}
+
+			return null;
+		}
+
+		public int getConcurrency() {
+
+			final Setting<Integer> setting = Settings.getIntegerSetting("application.jobs", name, "concurrency");
+			if (setting != null) {
+
+				return Math.max(1, setting.getValue(1));
+			}
+
+			return 1;
+		}
 	}
 }
-
@@ -77,6 +77,16 @@ public abstract class ScheduledJob {
 	public abstract Map<String, Object> getStatusData (final JobStatusMessageSubtype subtype);
 	public abstract Map<String, Object> getJobInfo ();
 
+	/**
+	 * Returns the name of the job class this job belongs to. Jobs of the
+	 * same class share a concurrency limit in the JobQueueManager.
+	 *
+	 * @return the job class
+	 */
+	public String getJobClass() {
+		return "default";
+	}
+
 	public void startJob() {
 		currentStatus = JobStatus.RUNNING;
 
@@ -0,0 +1,244 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.core.script;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptEngineManager;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+import org.renjin.script.RenjinScriptEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+
+/**
+ * Pool of JSR-223 script engine instances, keyed by engine name. Engine
+ * discovery is done only once per engine name, idle engines are reused
+ * after they were reset, and scripts are precompiled if the engine
+ * supports it.
+ *
+ * Only engines that can be reset completely are reused: engines that keep
+ * all script state in their engine scope bindings (Jython, Nashorn), and
+ * Renjin, whose session is restored to its initial search path and
+ * options. Other engines are discarded after each evaluation, so that no
+ * state of one evaluation is visible in the next.
+ */
+public class ScriptEnginePool {
+
+	private static final Logger logger                                   = LoggerFactory.getLogger(ScriptEnginePool.class.getName());
+	private static final Map<String, BlockingQueue<PooledEngine>> idle   = new ConcurrentHashMap<>();
+	private static final Map<String, ScriptEngineFactory> factories      = new ConcurrentHashMap<>();
+	private static final ScriptEngineManager manager                     = new ScriptEngineManager();
+	private static final Set<String> BINDINGS_SCOPED_ENGINES             = new HashSet<>(Arrays.asList("jython", "Oracle Nashorn"));
+	private static final int MAX_COMPILED_SCRIPTS                        = 100;
+
+	/**
+	 * Returns an idle engine for the given name, or creates a new one.
+	 * The engine must be returned with {@link #release(PooledEngine)}.
+	 *
+	 * @param engineName
+	 * @return a pooled engine
+	 */
+	public static PooledEngine borrow(final String engineName) {
+
+		final PooledEngine engine = getQueue(engineName).poll();
+		if (engine != null) {
+
+			return engine;
+		}
+
+		return new PooledEngine(engineName, createEngine(engineName));
+	}
+
+	/**
+	 * Resets the given engine and returns it to the pool. Engines that
+	 * cannot be reset or that exceed the pool size are discarded.
+	 *
+	 * @param engine
+	 */
+	public static void release(final PooledEngine engine) {
+
+		try {
+
+			if (engine.reset()) {
+
+				getQueue(engine.name).offer(engine);
+			}
+
+		} catch (Throwable t) {
+
+			logger.warn("Unable to reset {} script engine, discarding it: {}", engine.name, t.getMessage());
+		}
+	}
+
+	public static void clear() {
+		idle.clear();
+	}
+
+	// ----- private methods -----
+	private static BlockingQueue<PooledEngine> getQueue(final String engineName) {
+		return idle.computeIfAbsent(engineName, k -> new ArrayBlockingQueue<>(Math.max(1, Settings.ScriptEnginePoolSize.getValue())));
+	}
+
+	private static ScriptEngine createEngine(final String engineName) {
+
+		final ScriptEngineFactory factory = factories.computeIfAbsent(engineName, ScriptEnginePool::findFactory);
+		if (factory == null) {
+
+			throw new RuntimeException(engineName + " script engine could not be initialized. Check class path.");
+		}
+
+		return factory.getScriptEngine();
+	}
+
+	private static ScriptEngineFactory findFactory(final String engineName) {
+
+		for (final ScriptEngineFactory factory : manager.getEngineFactories()) {
+
+			if (factory.getNames().contains(engineName)) {
+
+				return factory;
+			}
+		}
+
+		return null;
+	}
+
+	// ----- nested classes -----
+	public static class PooledEngine {
+
+		private final Map<String, CompiledScript> compiledScripts = new LinkedHashMap<String, CompiledScript>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<String, CompiledScript> eldest) {
+				return size() > MAX_COMPILED_SCRIPTS;
+			}
+		};
+
+		private ScriptEngine engine = null;
+		private Object baseline     = null;
+		private String name         = null;
+
+		private PooledEngine(final String name, final ScriptEngine engine) {
+
+			this.engine = engine;
+			this.name   = name;
+
+			if (engine instanceof RenjinScriptEngine) {
+
+				try {
+
+					// remember the initial state of the session to restore it after each evaluation
+					this.baseline = engine.eval("list(search = search(), options = options())");
+
+				} catch (ScriptException sex) {
+
+					logger.warn("Unable to record initial state of {} script engine, it will not be reused: {}", name, sex.getMessage());
+				}
+			}
+		}
+
+		public ScriptEngine getEngine() {
+			return engine;
+		}
+
+		/**
+		 * Evaluates the given script, using a cached compiled version
+		 * if the engine implements {@link Compilable}.
+		 *
+		 * @param script
+		 * @return the result of the evaluation
+		 * @throws ScriptException
+		 */
+		public Object eval(final String script) throws ScriptException {
+
+			if (engine instanceof Compilable) {
+
+				CompiledScript compiled = compiledScripts.get(script);
+				if (compiled == null) {
+
+					compiled = ((Compilable)engine).compile(script);
+					compiledScripts.put(script, compiled);
+				}
+
+				return compiled.eval();
+			}
+
+			return engine.eval(script);
+		}
+
+		/**
+		 * Restores the initial state of the engine.
+		 *
+		 * @return whether the engine can be reused
+		 */
+		private boolean reset() throws ScriptException {
+
+			final ScriptContext context = engine.getContext();
+
+			if (engine instanceof RenjinScriptEngine) {
+
+				if (baseline == null) {
+					return false;
+				}
+
+				// Renjin keeps variables in the global environment of its session, and
+				// attached packages and options in the session itself
+				engine.put(".structrBaseline", baseline);
+				engine.eval(
+					"local({\n" +
+					"	baseline <- .structrBaseline\n" +
+					"	for (name in setdiff(search(), baseline$search)) detach(name, character.only = TRUE)\n" +
+					"	added <- setdiff(names(options()), names(baseline$options))\n" +
+					"	if (length(added) > 0) options(structure(rep(list(NULL), length(added)), names = added))\n" +
+					"	options(baseline$options)\n" +
+					"})\n" +
+					"rm(list = ls(all.names = TRUE))"
+				);
+
+			} else if (BINDINGS_SCOPED_ENGINES.contains(engine.getFactory().getEngineName())) {
+
+				context.setBindings(engine.createBindings(), ScriptContext.ENGINE_SCOPE);
+				context.setBindings(new SimpleBindings(), ScriptContext.GLOBAL_SCOPE);
+
+			} else {
+
+				// state of other engines is unknown, they cannot be reused
+				return false;
+			}
+
+			context.setWriter(new StringWriter());
+
+			return true;
+		}
+	}
+}
@@ -19,25 +19,31 @@
 package org.structr.core.script;
 
 import java.io.StringWriter;
-import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.script.*;
-import org.apache.commons.collections4.map.LRUMap;
 import org.apache.commons.lang3.StringUtils;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.ContextFactory;
 import org.mozilla.javascript.Script;
 import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
 import org.mozilla.javascript.Undefined;
 import org.mozilla.javascript.WrappedException;
 import org.renjin.script.RenjinScriptEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+import org.structr.api.util.ConcurrentFixedSizeCache;
 import org.structr.api.util.Iterables;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
@@ -57,7 +63,10 @@ public class Scripting {
 
 	private static final Logger logger                       = LoggerFactory.getLogger(Scripting.class.getName());
 	private static final Pattern ScriptEngineExpression      = Pattern.compile("^\\$\\{(\\w+)\\{(.*)\\}\\}$", Pattern.DOTALL);
-	private static final Map<String, Script> compiledScripts = Collections.synchronizedMap(new LRUMap<>(10000));
+	private static final ConcurrentFixedSizeCache<String, FutureTask<Script>> compiledScripts = new ConcurrentFixedSizeCache<>(10000);
+	private static final LongAdder compileCount                                            = new LongAdder();
+	private static final LongAdder compileTime                                             = new LongAdder();
+	private static volatile ScriptableObject sharedScope                                   = null;
 
 	public static String replaceVariables(final ActionContext actionContext, final GraphObject entity, final Object rawValue) throws FrameworkException {
 		return replaceVariables(actionContext, entity, rawValue, false);
@@ -234,7 +243,7 @@ public class Scripting {
 
 		try {
 
-			final Scriptable scope = scriptingContext.initStandardObjects();
+			final Scriptable scope = createScope(scriptingContext);
 			final StructrScriptable scriptable = new StructrScriptable(actionContext, entity, scriptingContext);
 
 			// don't wrap Java primitives
@@ -330,63 +339,48 @@ public class Scripting {
 	// ----- private methods -----
 	private static Object evaluateScript(final ActionContext actionContext, final GraphObject entity, final String engineName, final String script) throws FrameworkException {
 
-		final ScriptEngineManager manager = new ScriptEngineManager();
-		ScriptEngine engine = manager.getEngineByName(engineName);
+		final ScriptEnginePool.PooledEngine pooledEngine = ScriptEnginePool.borrow(engineName);
 
-		if (engine == null) {
-			List<ScriptEngineFactory> factories = manager.getEngineFactories();
+		try {
 
-			for (ScriptEngineFactory factory : factories) {
+			final ScriptEngine engine         = pooledEngine.getEngine();
+			final ScriptContext scriptContext = engine.getContext();
+			final Bindings bindings           = new StructrScriptBindings(actionContext, entity);
 
-				if (factory.getNames().contains(engineName)) {
+			if (!(engine instanceof RenjinScriptEngine)) {
+				scriptContext.setBindings(bindings, ScriptContext.GLOBAL_SCOPE);
+			} else if (engine instanceof  RenjinScriptEngine) {
 
-					engine = factory.getScriptEngine();
-					break;
-
-				}
+				engine.put("Structr", new StructrScriptObject(actionContext, entity));
 
 			}
 
-		}
-
-
-		if (engine == null) {
-			throw new RuntimeException(engineName + " script engine could not be initialized. Check class path.");
-		}
-
-		final ScriptContext scriptContext = engine.getContext();
-		final Bindings bindings           = new StructrScriptBindings(actionContext, entity);
+			StringWriter output = new StringWriter();
+			scriptContext.setWriter(output);
 
-		if (!(engine instanceof RenjinScriptEngine)) {
-			scriptContext.setBindings(bindings, ScriptContext.GLOBAL_SCOPE);
-		} else if (engine instanceof  RenjinScriptEngine) {
+			try {
 
-			engine.put("Structr", new StructrScriptObject(actionContext, entity));
+				Object extractedValue = pooledEngine.eval(script);
 
-		}
+				if (output != null && output.toString() != null && output.toString().length() > 0) {
+					extractedValue = output.toString();
+				}
 
-		StringWriter output = new StringWriter();
-		scriptContext.setWriter(output);
+				return extractedValue;
 
-		try {
+			} catch (final Throwable e) {
 
-			Object extractedValue = engine.eval(script);
+				if (!actionContext.getDisableVerboseExceptionLogging()) {
+					logger.error("Error while processing {} script: {}", engineName, script, e);
+				}
 
-			if (output != null && output.toString() != null && output.toString().length() > 0) {
-				extractedValue = output.toString();
+				throw new FrameworkException(422, e.getMessage());
 			}
 
-			return extractedValue;
-
-		} catch (final Throwable e) {
-
-			if (!actionContext.getDisableVerboseExceptionLogging()) {
-				logger.error("Error while processing {} script: {}", engineName, script, e);
-			}
+		} finally {
 
-			throw new FrameworkException(422, e.getMessage());
+			ScriptEnginePool.release(pooledEngine);
 		}
-
 	}
 
 	public static Context setupJavascriptContext() {
@@ -418,19 +412,118 @@ public class Scripting {
 		return buf.toString();
 	}
 
+	/**
+	 * Returns the compiled script for the given source, compiling it if
+	 * necessary. Concurrent requests for the same source wait for a
+	 * single compilation, requests for other sources are not blocked.
+	 *
+	 * @param context
+	 * @param source
+	 * @param sourceName
+	 * @param lineNo
+	 * @return the compiled script
+	 */
 	public static Script compileOrGetCached(final Context context, final String source, final String sourceName, final int lineNo) {
 
-		synchronized (compiledScripts) {
+		final FutureTask<Script> newTask = new FutureTask<>(() -> {
+
+			final long t0 = System.nanoTime();
+
+			try {
 
-			Script script = compiledScripts.get(source);
-			if (script == null) {
+				return context.compileString(source, sourceName, lineNo, null);
 
-				script = context.compileString(source, sourceName, lineNo, null);
-				compiledScripts.put(source, script);
+			} finally {
+
+				compileTime.add(System.nanoTime() - t0);
+				compileCount.increment();
 			}
+		});
+
+		final FutureTask<Script> task = compiledScripts.get(source, t -> true, k -> newTask);
+		if (task == newTask) {
 
-			return script;
+			// compile in the calling thread, outside of the cache lock
+			task.run();
 		}
+
+		try {
+
+			return task.get();
+
+		} catch (InterruptedException iex) {
+
+			Thread.currentThread().interrupt();
+
+			throw new RuntimeException(iex);
+
+		} catch (ExecutionException eex) {
+
+			// do not keep failed compilations, but leave a newer task in place
+			compiledScripts.remove(source, task);
+
+			final Throwable cause = eex.getCause();
+			if (cause instanceof RuntimeException) {
+
+				throw (RuntimeException)cause;
+			}
+
+			throw new RuntimeException(cause);
+		}
+	}
+
+	public static Map<String, Object> getCacheStatistics() {
+
+		final Map<String, Object> stats = new LinkedHashMap<>(compiledScripts.getStatistics());
+		final long count                = compileCount.sum();
+		final long time                 = compileTime.sum();
+
+		stats.put("compilations",         count);
+		stats.put("compileTimeMillis",    TimeUnit.NANOSECONDS.toMillis(time));
+		stats.put("avgCompileTimeMillis", count > 0 ? TimeUnit.NANOSECONDS.toMillis(time / count) : 0);
+
+		return stats;
+	}
+
+	/**
+	 * Creates a new top-level scope for a single script evaluation that
+	 * inherits the standard objects from a shared, sealed scope instead
+	 * of initializing them for every call. Scripts can not modify the
+	 * built-in objects or their prototypes in a sealed scope, so sharing
+	 * can be disabled with {@link Settings#ScriptSharedScope}.
+	 *
+	 * @param context
+	 * @return a new scope
+	 */
+	private static Scriptable createScope(final Context context) {
+
+		if (!Settings.ScriptSharedScope.getValue()) {
+			return context.initStandardObjects();
+		}
+
+		final ScriptableObject shared = getSharedScope(context);
+		final Scriptable scope        = context.newObject(shared);
+
+		scope.setPrototype(shared);
+		scope.setParentScope(null);
+
+		return scope;
+	}
+
+	private static ScriptableObject getSharedScope(final Context context) {
+
+		if (sharedScope == null) {
+
+			synchronized (Scripting.class) {
+
+				if (sharedScope == null) {
+
+					sharedScope = context.initStandardObjects(null, true);
+				}
+			}
+		}
+
+		return sharedScope;
 	}
 
 	// this is only public to be testable :(
@@ -347,6 +347,9 @@ public class StructrScriptable extends ScriptableObject {
 		}
 
 		if (value instanceof GraphObject) {
+
+			actionContext.registerDataDependency((GraphObject)value);
+
 			return new GraphObjectWrapper(context, scope, (GraphObject)value);
 		}
 
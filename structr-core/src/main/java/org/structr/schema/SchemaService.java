@@ -310,9 +310,6 @@ public class SchemaService implements Service {
 							// clear relationship instance cache
 							AbstractNode.clearRelationshipTemplateInstanceCache();
 
-							// clear permission cache
-							AbstractNode.clearCaches();
-
 							// inject views in configuration provider
 							config.registerDynamicViews(dynamicViews);
 
@@ -25,6 +25,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang3.StringUtils;
@@ -64,6 +65,7 @@ public class ActionContext {
 	private boolean javaScriptContext              = false;
 	private ContextStore temporaryContextStore     = new ContextStore();
 	private boolean disableVerboseExceptionLogging = false;
+	private Map<Object, Integer> batchSizes        = null;
 
 	public ActionContext(final SecurityContext securityContext) {
 		this(securityContext, null);
@@ -109,6 +111,55 @@ public class ActionContext {
 		return this.disableVerboseExceptionLogging;
 	}
 
+	/**
+	 * Stores the batch size of a batch() expression for the duration of
+	 * its evaluation, so that the (shared) expression itself stays
+	 * immutable.
+	 *
+	 * @param batchExpression
+	 * @param batchSize
+	 */
+	public void setBatchSize(final Object batchExpression, final int batchSize) {
+
+		if (batchSizes == null) {
+			batchSizes = new ConcurrentHashMap<>();
+		}
+
+		batchSizes.put(batchExpression, batchSize);
+	}
+
+	public int getBatchSize(final Object batchExpression) {
+
+		if (batchSizes != null) {
+
+			final Integer batchSize = batchSizes.get(batchExpression);
+			if (batchSize != null) {
+
+				return batchSize;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Called for every object that a script reads. Subclasses can
+	 * override this method to track the data their output depends on.
+	 *
+	 * @param obj
+	 */
+	public void registerDataDependency(final GraphObject obj) {
+	}
+
+	/**
+	 * Called for every type that a script queries. Subclasses can
+	 * override this method to track the data their output depends on.
+	 *
+	 * @param type
+	 */
+	public void registerTypeDependency(final Class type) {
+	}
+
 	public Object getConstant(final String name) {
 		return this.temporaryContextStore.getConstant(name);
 	}
@@ -230,6 +281,8 @@ public class ActionContext {
 
 				if (data instanceof GraphObject) {
 
+					registerDataDependency((GraphObject)data);
+
 					value = ((GraphObject)data).evaluate(this, key, defaultValue);
 
 				} else {
@@ -21,18 +21,22 @@ package org.structr.schema.compiler;
 import java.io.IOException;
 import java.security.SecureClassLoader;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import javax.tools.FileObject;
 import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.JavaFileObject.Kind;
 import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
 
 /**
  *
  *
  */
-public class ClassFileManager extends ForwardingJavaFileManager {
+public class ClassFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
 
 	/**
 	 * Instance of JavaClassObject that will store the compiled byte code of
@@ -40,6 +44,12 @@ public class ClassFileManager extends ForwardingJavaFileManager {
 	 */
 	private final Map<String, JavaClassObject> objects = new LinkedHashMap<>();
 
+	/**
+	 * Byte code of previously compiled classes that is used to load the
+	 * classes and that is visible to the compiler on the class path.
+	 */
+	private volatile Map<String, byte[]> classes = new LinkedHashMap<>();
+
 	/**
 	 * Will initialize the manager with the specified standard java file
 	 * manager
@@ -66,6 +76,12 @@ public class ClassFileManager extends ForwardingJavaFileManager {
 			@Override
 			protected Class<?> findClass(String name) throws ClassNotFoundException {
 				
+				final byte[] bytes = classes.get(name);
+				if (bytes != null) {
+
+					return super.defineClass(name, bytes, 0, bytes.length);
+				}
+
 				final JavaClassObject obj = objects.get(name);
 				if (obj != null) {
 					
@@ -97,4 +113,75 @@ public class ClassFileManager extends ForwardingJavaFileManager {
 		
 		return obj;
 	}
-}
\ No newline at end of file
+
+	@Override
+	public Iterable<JavaFileObject> list(final Location location, final String packageName, final Set<Kind> kinds, final boolean recurse) throws IOException {
+
+		final Iterable<JavaFileObject> list = super.list(location, packageName, kinds, recurse);
+
+		if (StandardLocation.CLASS_PATH.equals(location) && kinds.contains(Kind.CLASS)) {
+
+			final String prefix                = packageName + ".";
+			final List<JavaFileObject> results = new LinkedList<>();
+
+			for (final Map.Entry<String, byte[]> entry : classes.entrySet()) {
+
+				final String name = entry.getKey();
+
+				if (name.startsWith(prefix) && (recurse || name.indexOf('.', prefix.length()) < 0)) {
+					results.add(new JavaClassObject(name, entry.getValue()));
+				}
+			}
+
+			if (!results.isEmpty()) {
+
+				for (final JavaFileObject obj : list) {
+					results.add(obj);
+				}
+
+				return results;
+			}
+		}
+
+		return list;
+	}
+
+	@Override
+	public String inferBinaryName(final Location location, final JavaFileObject file) {
+
+		if (file instanceof JavaClassObject) {
+			return ((JavaClassObject)file).getBinaryName();
+		}
+
+		return super.inferBinaryName(location, file);
+	}
+
+	/**
+	 * Sets the byte code of the classes that are loaded by class loaders of
+	 * this manager and that the compiler can see on its class path.
+	 *
+	 * @param classes
+	 */
+	public void setClasses(final Map<String, byte[]> classes) {
+		this.classes = new LinkedHashMap<>(classes);
+	}
+
+	/**
+	 * Returns and clears the byte code produced by the compiler since the
+	 * last call.
+	 *
+	 * @return a map of class names to byte code
+	 */
+	public Map<String, byte[]> removeCompiledClasses() {
+
+		final Map<String, byte[]> result = new LinkedHashMap<>();
+
+		for (final Map.Entry<String, JavaClassObject> entry : objects.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().getBytes());
+		}
+
+		objects.clear();
+
+		return result;
+	}
+}
@@ -18,10 +18,27 @@
  */
 package org.structr.schema.compiler;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
@@ -30,14 +47,20 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.tools.Diagnostic;
 import javax.tools.Diagnostic.Kind;
 import javax.tools.DiagnosticListener;
 import javax.tools.JavaCompiler;
-import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.ToolProvider;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,10 +84,19 @@ public class NodeExtender {
 
 	private static final Logger logger   = LoggerFactory.getLogger(NodeExtender.class.getName());
 
-	private static final JavaCompiler compiler       = ToolProvider.getSystemJavaCompiler();
-	private static final JavaFileManager fileManager = new ClassFileManager(compiler.getStandardFileManager(null, null, null));
-	private static final ClassLoader classLoader     = fileManager.getClassLoader(null);
-	private static final Map<String, Class> classes  = new TreeMap<>();
+	private static final JavaCompiler compiler                          = ToolProvider.getSystemJavaCompiler();
+	private static final ClassFileManager fileManager                   = new ClassFileManager(compiler.getStandardFileManager(null, null, null));
+	private static final ClassLoader classLoader                        = fileManager.getClassLoader(null);
+	private static final Map<String, Class> classes                     = new TreeMap<>();
+	private static final Map<String, Map<String, byte[]>> byteCodeCache = new ConcurrentHashMap<>();
+	private static final Pattern IDENTIFIER                             = Pattern.compile("[A-Za-z_$][A-Za-z0-9_$]*");
+	private static final Pattern CACHE_KEY                              = Pattern.compile("[0-9a-f]{64}");
+	private static final String PROCESS_TOKEN                           = UUID.randomUUID().toString();
+	private static final AtomicLong compilations                        = new AtomicLong();
+	private static final AtomicLong compiledTypes                       = new AtomicLong();
+	private static final AtomicLong cachedTypes                         = new AtomicLong();
+	private static volatile long lastDuration                           = 0L;
+	private static String environmentFingerprint                        = null;
 
 	private List<SourceFile> sources     = null;
 	private Set<String> fqcns            = null;
@@ -120,14 +152,71 @@ public class NodeExtender {
 
 			logger.info("Compiling {} dynamic entities...", sources.size());
 
-			final long t0 = System.currentTimeMillis();
+			final long t0                       = System.currentTimeMillis();
+			final boolean useCache              = Settings.SchemaCompilationCache.getValue();
+			final Map<String, String> keys      = useCache ? getCacheKeys() : Collections.emptyMap();
+			final Map<String, byte[]> byteCode  = new LinkedHashMap<>();
+			final List<SourceFile> misses       = new LinkedList<>();
 
-			Boolean success = compiler.getTask(errorWriter, fileManager, new Listener(errorBuffer), Arrays.asList("-g"), null, sources).call();
+			for (final SourceFile source : sources) {
 
-			logger.info("Compiling done in {} ms", System.currentTimeMillis() - t0);
+				final String key = keys.get(getSimpleName(source));
+				if (key != null) {
+
+					Map<String, byte[]> cached = byteCodeCache.get(key);
+					if (cached == null) {
+
+						cached = readCacheEntry(key);
+					}
+
+					if (cached != null) {
+
+						byteCode.putAll(cached);
+						continue;
+					}
+				}
+
+				misses.add(source);
+			}
+
+			Boolean success = true;
+
+			if (!misses.isEmpty()) {
+
+				// classes from the cache must be visible to the compiler
+				fileManager.setClasses(byteCode);
+
+				success = compiler.getTask(errorWriter, fileManager, new Listener(errorBuffer), Arrays.asList("-g"), null, misses).call();
+
+				final Map<String, byte[]> compiled = fileManager.removeCompiledClasses();
+
+				if (success) {
+
+					byteCode.putAll(compiled);
+
+					if (useCache) {
+						storeCompiledClasses(keys, compiled);
+					}
+				}
+			}
+
+			final long duration = System.currentTimeMillis() - t0;
+
+			logger.info("Compiling done in {} ms, compiled {} of {} dynamic entities, {} from cache", duration, misses.size(), sources.size(), sources.size() - misses.size());
+
+			compilations.incrementAndGet();
+			compiledTypes.addAndGet(misses.size());
+			cachedTypes.addAndGet(sources.size() - misses.size());
+			lastDuration = duration;
 
 			if (success) {
 
+				if (useCache) {
+					removeUnusedCacheEntries(keys.values());
+				}
+
+				fileManager.setClasses(byteCode);
+
 				final ClassLoader loader = fileManager.getClassLoader(null);
 
 				for (final String fqcn : fqcns) {
@@ -170,6 +259,27 @@ public class NodeExtender {
 		return classes;
 	}
 
+	public static Map<String, Object> getCompilerStatistics() {
+
+		final Map<String, Object> stats = new LinkedHashMap<>();
+
+		stats.put("size",          byteCodeCache.size());
+		stats.put("compilations",  compilations.get());
+		stats.put("compiledTypes", compiledTypes.get());
+		stats.put("cachedTypes",   cachedTypes.get());
+		stats.put("lastDuration",  lastDuration);
+
+		return stats;
+	}
+
+	/**
+	 * Clears the byte code cache in memory, so that the next compilation
+	 * reads cached byte code from the cache directory like after a restart.
+	 */
+	public static void clearByteCodeCache() {
+		byteCodeCache.clear();
+	}
+
 	public String getInitiatedBySessionId () {
 		return initiatedBySessionId;
 	}
@@ -178,6 +288,247 @@ public class NodeExtender {
 		this.initiatedBySessionId = initiatedBySessionId;
 	}
 
+	// ----- private methods -----
+	/**
+	 * Returns a cache key for each source file that is derived from its own
+	 * content, the content of all dynamic types it depends on (directly or
+	 * indirectly) and the environment the classes are compiled in.
+	 */
+	private Map<String, String> getCacheKeys() {
+
+		final Map<String, String> hashes           = new LinkedHashMap<>();
+		final Map<String, Set<String>> dependencies = new LinkedHashMap<>();
+		final Map<String, String> keys             = new LinkedHashMap<>();
+
+		for (final SourceFile source : sources) {
+			hashes.put(getSimpleName(source), hash(source.getContent()));
+		}
+
+		// dynamic types live in the same package, so they reference each other by their simple name
+		for (final SourceFile source : sources) {
+
+			final String name       = getSimpleName(source);
+			final Set<String> names = new LinkedHashSet<>();
+			final Matcher matcher   = IDENTIFIER.matcher(source.getContent());
+
+			while (matcher.find()) {
+
+				final String identifier = matcher.group();
+
+				if (!identifier.equals(name) && hashes.containsKey(identifier)) {
+					names.add(identifier);
+				}
+			}
+
+			dependencies.put(name, names);
+		}
+
+		final String environment = getEnvironmentFingerprint();
+
+		for (final String name : hashes.keySet()) {
+
+			final Set<String> closure = new TreeSet<>();
+			final Deque<String> queue = new ArrayDeque<>(dependencies.get(name));
+
+			while (!queue.isEmpty()) {
+
+				final String dependency = queue.pop();
+
+				if (!dependency.equals(name) && closure.add(dependency)) {
+					queue.addAll(dependencies.get(dependency));
+				}
+			}
+
+			final StringBuilder buf = new StringBuilder(environment);
+
+			buf.append(name).append(":").append(hashes.get(name));
+
+			for (final String dependency : closure) {
+				buf.append(";").append(dependency).append(":").append(hashes.get(dependency));
+			}
+
+			keys.put(name, hash(buf));
+		}
+
+		return keys;
+	}
+
+	private void storeCompiledClasses(final Map<String, String> keys, final Map<String, byte[]> compiled) {
+
+		final Map<String, Map<String, byte[]>> byType = new LinkedHashMap<>();
+
+		// nested and anonymous classes belong to the entry of their top-level class
+		for (final Map.Entry<String, byte[]> entry : compiled.entrySet()) {
+
+			final String name = StringUtils.substringBefore(StringUtils.substringAfterLast(entry.getKey(), "."), "$");
+
+			byType.computeIfAbsent(name, k -> new LinkedHashMap<>()).put(entry.getKey(), entry.getValue());
+		}
+
+		for (final Map.Entry<String, Map<String, byte[]>> entry : byType.entrySet()) {
+
+			final String key = keys.get(entry.getKey());
+			if (key != null) {
+
+				byteCodeCache.put(key, entry.getValue());
+				writeCacheEntry(key, entry.getValue());
+			}
+		}
+	}
+
+	private void removeUnusedCacheEntries(final Collection<String> usedKeys) {
+
+		final Set<String> used = new LinkedHashSet<>(usedKeys);
+
+		byteCodeCache.keySet().retainAll(used);
+
+		final File[] files = getCacheDirectory().listFiles();
+		if (files != null) {
+
+			for (final File file : files) {
+
+				final String name = file.getName();
+
+				// the cache directory is configurable, only delete our own entries
+				if (file.isFile() && CACHE_KEY.matcher(name).matches() && !used.contains(name)) {
+					file.delete();
+				}
+			}
+		}
+	}
+
+	private Map<String, byte[]> readCacheEntry(final String key) {
+
+		final File file = new File(getCacheDirectory(), key);
+		if (file.exists()) {
+
+			try (final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+
+				final Map<String, byte[]> entry = new LinkedHashMap<>();
+				final int count                 = in.readInt();
+
+				for (int i=0; i<count; i++) {
+
+					final String name  = in.readUTF();
+					final byte[] bytes = new byte[in.readInt()];
+
+					in.readFully(bytes);
+
+					entry.put(name, bytes);
+				}
+
+				byteCodeCache.put(key, entry);
+
+				return entry;
+
+			} catch (IOException ioex) {
+
+				logger.warn("Unable to read schema cache entry {}: {}", file.getAbsolutePath(), ioex.getMessage());
+				file.delete();
+			}
+		}
+
+		return null;
+	}
+
+	private void writeCacheEntry(final String key, final Map<String, byte[]> entry) {
+
+		final File directory = getCacheDirectory();
+		final File tmp       = new File(directory, key + ".tmp");
+
+		directory.mkdirs();
+
+		try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+
+			out.writeInt(entry.size());
+
+			for (final Map.Entry<String, byte[]> classEntry : entry.entrySet()) {
+
+				out.writeUTF(classEntry.getKey());
+				out.writeInt(classEntry.getValue().length);
+				out.write(classEntry.getValue());
+			}
+
+		} catch (IOException ioex) {
+
+			logger.warn("Unable to write schema cache entry {}: {}", tmp.getAbsolutePath(), ioex.getMessage());
+			tmp.delete();
+
+			return;
+		}
+
+		try {
+
+			Files.move(tmp.toPath(), new File(directory, key).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		} catch (IOException ioex) {
+
+			logger.warn("Unable to write schema cache entry {}: {}", tmp.getAbsolutePath(), ioex.getMessage());
+			tmp.delete();
+		}
+	}
+
+	private static File getCacheDirectory() {
+		return new File(Settings.getFullSettingPath(Settings.SchemaCachePath));
+	}
+
+	private static String getSimpleName(final SourceFile source) {
+		return StringUtils.substringBefore(StringUtils.substringAfterLast(source.getName(), "/"), ".");
+	}
+
+	/**
+	 * Returns a string that changes whenever the Java version or a class
+	 * path entry changes, so that no byte code is reused that was compiled
+	 * against different versions of the built-in types.
+	 *
+	 * Jar files are identified by their size and modification time. Class
+	 * files in a directory can change without any visible change of the
+	 * directory itself, and scanning all of them would slow down startup,
+	 * so byte code compiled against a class path directory is only reused
+	 * within the same process.
+	 */
+	private static synchronized String getEnvironmentFingerprint() {
+
+		if (environmentFingerprint == null) {
+
+			final StringBuilder buf = new StringBuilder();
+
+			buf.append(System.getProperty("java.version")).append(";");
+
+			for (final String path : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+
+				final File file = new File(path);
+
+				if (file.isDirectory()) {
+
+					buf.append(path).append(":").append(PROCESS_TOKEN).append(";");
+
+				} else {
+
+					buf.append(path).append(":").append(file.length()).append(":").append(file.lastModified()).append(";");
+				}
+			}
+
+			environmentFingerprint = hash(buf);
+		}
+
+		return environmentFingerprint;
+	}
+
+	private static String hash(final CharSequence content) {
+
+		try {
+
+			return Hex.encodeHexString(MessageDigest.getInstance("SHA-256").digest(content.toString().getBytes(StandardCharsets.UTF_8)));
+
+		} catch (NoSuchAlgorithmException nsaex) {
+
+			// SHA-256 is required to be present in every Java platform
+			throw new IllegalStateException(nsaex);
+		}
+	}
+
+	// ----- nested classes -----
 	private static class Listener implements DiagnosticListener<JavaFileObject> {
 
 		private ErrorBuffer errorBuffer = null;
@@ -193,12 +544,12 @@ public class NodeExtender {
 
 				final int errorContext    = 5;
 				final int errorLineNumber = Long.valueOf(diagnostic.getLineNumber()).intValue();
-				final SourceFile obj      = (SourceFile)diagnostic.getSource();
-				String name               = obj.getName();
+				final JavaFileObject obj  = diagnostic.getSource();
+				String name               = obj != null ? obj.getName() : null;
 
 				errorBuffer.add(new DiagnosticErrorToken(name, diagnostic));
 
-				if (Settings.LogSchemaErrors.getValue()) {
+				if (Settings.LogSchemaErrors.getValue() && obj instanceof SourceFile) {
 
 					final SourceFile sourceFile = (SourceFile)diagnostic.getSource();
 					final List<SourceLine> code = sourceFile.getLines();
@@ -18,10 +18,14 @@
  */
 package org.structr.test.common;
 
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.testng.annotations.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.api.graph.Direction;
 import org.structr.api.graph.Relationship;
 import org.structr.api.util.Iterables;
@@ -1598,7 +1602,308 @@ public class AccessControlTest extends StructrTest {
 	}
 
 
+	@Test
+	public void testPermissionFilteringInDatabaseQuery() {
+
+		// remove auto-generated resource access objects
+		clearResourceAccess();
+
+		final boolean permissionFiltering = Settings.PermissionFiltering.getValue();
+		Principal user1                   = null;
+		Principal user2                   = null;
+
+		try (final Tx tx = app.tx()) {
+
+			user1 = createTestNode(Principal.class, "user1");
+			user2 = createTestNode(Principal.class, "user2");
+
+			final Group group = createTestNode(Group.class, "group");
+
+			group.addMember(user1);
+
+			createTestNode(TestOne.class, getNameMap("owned"),       user1);
+			createTestNode(TestOne.class, getNameMap("notReadable"), user2);
+
+			final PropertyMap authProperties = getNameMap("authenticated");
+			authProperties.put(AbstractNode.visibleToAuthenticatedUsers, true);
+			createTestNode(TestOne.class, authProperties, user2);
+
+			final PropertyMap publicProperties = getNameMap("public");
+			publicProperties.put(AbstractNode.visibleToPublicUsers, true);
+			createTestNode(TestOne.class, publicProperties, user2);
+
+			final TestOne granted = createTestNode(TestOne.class, getNameMap("granted"), user2);
+			granted.grant(Permission.read, user1);
+
+			final TestOne groupGranted = createTestNode(TestOne.class, getNameMap("groupGranted"), user2);
+			groupGranted.grant(Permission.read, group);
+
+			final TestOne writeOnly = createTestNode(TestOne.class, getNameMap("writeOnly"), user2);
+			writeOnly.grant(Permission.write, user1);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		final App user1App = StructrApp.getInstance(SecurityContext.getInstance(user1, AccessMode.Backend));
+		final App user2App = StructrApp.getInstance(SecurityContext.getInstance(user2, AccessMode.Backend));
+
+		try {
+
+			// results of the node factory check only
+			Settings.PermissionFiltering.setValue(false);
+
+			final List<String> expected1 = getNames(user1App, 1, Integer.MAX_VALUE);
+			final List<String> expected2 = getNames(user2App, 1, Integer.MAX_VALUE);
+
+			assertEquals("Invalid readable nodes for user1", "[authenticated, granted, groupGranted, owned, public]", expected1.toString());
+			assertEquals("Invalid readable nodes for user2", 6, expected2.size());
+
+			// results with the permission predicate in the database query
+			Settings.PermissionFiltering.setValue(true);
+
+			assertEquals("Permission filtering in the database query changes the result", expected1, getNames(user1App, 1, Integer.MAX_VALUE));
+			assertEquals("Permission filtering in the database query changes the result", expected2, getNames(user2App, 1, Integer.MAX_VALUE));
+
+			// pages must only contain readable nodes
+			assertEquals("Invalid page with permission filtering", "[authenticated, granted]", getNames(user1App, 1, 2).toString());
+			assertEquals("Invalid page with permission filtering", "[groupGranted, owned]",    getNames(user1App, 2, 2).toString());
+			assertEquals("Invalid page with permission filtering", "[public]",                 getNames(user1App, 3, 2).toString());
+
+			// the predicate is not used for admin users
+			try (final Tx tx = app.tx()) {
+
+				user1.setProperty(StructrApp.key(Principal.class, "isAdmin"), true);
+				tx.success();
+			}
+
+			assertEquals("Admin users must see all nodes", 7, getNames(user1App, 1, Integer.MAX_VALUE).size());
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+
+		} finally {
+
+			Settings.PermissionFiltering.setValue(permissionFiltering);
+		}
+	}
+
+	@Test
+	public void testGrantAndRevokeWithinOneSession() {
+
+		// remove auto-generated resource access objects
+		clearResourceAccess();
+
+		try {
+
+			final Principal user1     = createTestNode(Principal.class, "user1");
+			final Principal user2     = createTestNode(Principal.class, "user2");
+			final Group group         = createTestNode(Group.class, "group");
+			final TestOne test        = createTestNode(TestOne.class, getNameMap("test"), user2);
+			final SecurityContext ctx = SecurityContext.getInstance(user1, AccessMode.Backend);
+
+			// the same security context is used for all checks
+			assertFalse("User must not be able to read a node without permissions", isReadable(test, ctx));
+			assertFalse("Negative permission result must not change on second check", isReadable(test, ctx));
+
+			// direct grant and revoke
+			try (final Tx tx = app.tx()) {
+
+				test.grant(Permission.read, user1);
+				tx.success();
+			}
+
+			assertTrue("Grant is not visible in the same session", isReadable(test, ctx));
+
+			try (final Tx tx = app.tx()) {
+
+				test.revoke(Permission.read, user1);
+				tx.success();
+			}
+
+			assertFalse("Revoke is not visible in the same session", isReadable(test, ctx));
+
+			// grant via group membership
+			try (final Tx tx = app.tx()) {
+
+				test.grant(Permission.read, group);
+				tx.success();
+			}
+
+			assertFalse("Group grant must not apply to non-members", isReadable(test, ctx));
+
+			try (final Tx tx = app.tx()) {
+
+				group.addMember(user1);
+				tx.success();
+			}
+
+			assertTrue("Group membership is not visible in the same session", isReadable(test, ctx));
+
+			try (final Tx tx = app.tx()) {
+
+				group.removeMember(user1);
+				tx.success();
+			}
+
+			assertFalse("Removal from group is not visible in the same session", isReadable(test, ctx));
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testAnonymousCreationGrant() {
+
+		// remove auto-generated resource access objects
+		clearResourceAccess();
+
+		try {
+
+			final SecurityContext creatorContext = SecurityContext.getInstance(null, AccessMode.Frontend);
+			final SecurityContext otherContext   = SecurityContext.getInstance(null, AccessMode.Frontend);
+			final App creatorApp                 = StructrApp.getInstance(creatorContext);
+			String uuid                          = null;
+
+			try (final Tx tx = creatorApp.tx()) {
+
+				uuid = creatorApp.create(TestOne.class, "test").getUuid();
+				tx.success();
+			}
+
+			assertTrue("Anonymous creator should be able to modify the new node", isGranted(uuid, Permission.write, creatorContext));
+			assertFalse("Creation grant must not apply to other anonymous users", isGranted(uuid, Permission.write, otherContext));
+
+			// the same check again, to make sure that nothing was cached globally
+			assertFalse("Creation grant must not apply to other anonymous users", isGranted(uuid, Permission.write, SecurityContext.getInstance(null, AccessMode.Frontend)));
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testRevokeDuringConcurrentRead() {
+
+		// remove auto-generated resource access objects
+		clearResourceAccess();
+
+		try {
+
+			final Principal user1        = createTestNode(Principal.class, "user1");
+			final Principal user2        = createTestNode(Principal.class, "user2");
+			final TestOne test           = createTestNode(TestOne.class, getNameMap("test"), user2);
+			final SecurityContext ctx    = SecurityContext.getInstance(user1, AccessMode.Backend);
+			final CountDownLatch revoked = new CountDownLatch(1);
+			final CountDownLatch read    = new CountDownLatch(1);
+
+			try (final Tx tx = app.tx()) {
+
+				test.grant(Permission.read, user1);
+				tx.success();
+			}
+
+			assertTrue("Grant is not visible", isReadable(test, ctx));
+
+			// revoke in a transaction that is committed only after a concurrent read
+			final Thread writer = new Thread(() -> {
+
+				try (final Tx tx = app.tx()) {
+
+					test.revoke(Permission.read, user1);
+					tx.success();
+
+					revoked.countDown();
+
+					// the read can block on the write lock of the node
+					read.await(5, TimeUnit.SECONDS);
+
+				} catch (FrameworkException | InterruptedException ex) {
+					logger.warn("", ex);
+				}
+			});
+
+			writer.start();
+			revoked.await();
+
+			// this read still sees the old state and may cache the old grant
+			isReadable(test, ctx);
+
+			read.countDown();
+			writer.join();
+
+			assertFalse("Revoke is not visible after a concurrent read", isReadable(test, ctx));
+
+		} catch (FrameworkException | InterruptedException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+		}
+	}
+
 	// ----- private methods -----
+	private boolean isGranted(final String uuid, final Permission permission, final SecurityContext ctx) throws FrameworkException {
+
+		try (final Tx tx = app.tx()) {
+
+			// load a fresh instance, like a new request would
+			final boolean granted = app.get(TestOne.class, uuid).isGranted(permission, ctx);
+
+			tx.success();
+
+			return granted;
+		}
+	}
+
+	private boolean isReadable(final TestOne test, final SecurityContext ctx) throws FrameworkException {
+
+		try (final Tx tx = app.tx()) {
+
+			// load a fresh instance, like a new request would
+			final boolean readable = app.get(TestOne.class, test.getUuid()).isGranted(Permission.read, ctx);
+
+			tx.success();
+
+			return readable;
+		}
+	}
+
+	private List<String> getNames(final App userApp, final int page, final int pageSize) throws FrameworkException {
+
+		try (final Tx tx = userApp.tx()) {
+
+			final List<String> names = new LinkedList<>();
+
+			for (final TestOne test : userApp.nodeQuery(TestOne.class).sort(AbstractNode.name).page(page).pageSize(pageSize).getAsList()) {
+				names.add(test.getName());
+			}
+
+			tx.success();
+
+			return names;
+		}
+	}
+
+	private PropertyMap getNameMap(final String name) {
+
+		final PropertyMap properties = new PropertyMap();
+
+		properties.put(AbstractNode.name, name);
+
+		return properties;
+	}
+
 	public static void clearResourceAccess() {
 
 		final App app = StructrApp.getInstance();
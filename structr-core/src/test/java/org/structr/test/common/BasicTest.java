@@ -18,6 +18,7 @@
  */
 package org.structr.test.common;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
@@ -1279,6 +1280,103 @@ public class BasicTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testBulkCreation() {
+
+		final SecurityContext ctx          = SecurityContext.getSuperUserInstance();
+		final App bulkApp                  = StructrApp.getInstance(ctx);
+		final List<PropertyMap> properties = new LinkedList<>();
+		final List<TestSix> sources        = new LinkedList<>();
+		final List<TestOne> targets        = new LinkedList<>();
+
+		// bulk creation of relationships is only used without cardinality checks
+		ctx.disableEnsureCardinality();
+
+		for (int i=0; i<5; i++) {
+
+			final PropertyMap map = new PropertyMap();
+
+			map.put(AbstractNode.name, "test" + i);
+
+			properties.add(map);
+		}
+
+		try (final Tx tx = bulkApp.tx()) {
+
+			final List<TestSix> sixes = bulkApp.create(TestSix.class, properties);
+			final List<TestOne> ones  = bulkApp.create(TestOne.class, properties);
+
+			for (int i=0; i<5; i++) {
+
+				assertEquals("Bulk node creation result does not match input", "test" + i, sixes.get(i).getName());
+				assertEquals("Bulk node creation result does not match input", "test" + i, ones.get(i).getName());
+			}
+
+			// mixed order and repeated source nodes
+			sources.addAll(Arrays.asList(sixes.get(0), sixes.get(1), sixes.get(2), sixes.get(0), sixes.get(4)));
+			targets.addAll(Arrays.asList(ones.get(4),  ones.get(3),  ones.get(2),  ones.get(1),  ones.get(0)));
+
+			final List<SixOneManyToMany> rels = bulkApp.create(SixOneManyToMany.class, sources, targets, null);
+
+			assertEquals("Invalid number of created relationships", 5, rels.size());
+
+			for (int i=0; i<5; i++) {
+
+				assertEquals("Bulk relationship creation result does not match input", sources.get(i), rels.get(i).getSourceNode());
+				assertEquals("Bulk relationship creation result does not match input", targets.get(i), rels.get(i).getTargetNode());
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = bulkApp.tx()) {
+
+			assertEquals("Invalid number of relationships after bulk creation", 5, bulkApp.relationshipQuery(SixOneManyToMany.class).getAsList().size());
+			assertEquals("Invalid number of relationships after bulk creation", 2, Iterables.count(sources.get(0).getOutgoingRelationships(SixOneManyToMany.class)));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		// a missing node must fail the whole bulk creation instead of shifting the results
+		try (final Tx tx = bulkApp.tx()) {
+
+			bulkApp.delete(targets.get(2));
+
+			bulkApp.create(SixOneManyToMany.class, sources, targets, null);
+
+			fail("Bulk creation of relationships to a deleted node must fail");
+
+		} catch (NotFoundException expected) {
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = bulkApp.tx()) {
+
+			assertEquals("Failed bulk creation must not create relationships", 5, bulkApp.relationshipQuery(SixOneManyToMany.class).getAsList().size());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
 	@Test
 	public void test01ModifyNode() {
 
@@ -45,7 +45,7 @@ public class CustomPermissionQueriesTest extends StructrTest {
 
 	private static final Logger logger = LoggerFactory.getLogger(CustomPermissionQueriesTest.class.getName());
 
-	@Test
+	@Test(groups = "cypher")
 	public void test01SimplePermissionResolutionRead() {
 
 		this.cleanDatabaseAndSchema();
@@ -151,7 +151,7 @@ public class CustomPermissionQueriesTest extends StructrTest {
 		}
 	}
 
-	@Test
+	@Test(groups = "cypher")
 	public void test02SimplePermissionResolutionWrite() {
 
 		final Class<Principal> principalType = StructrApp.getConfiguration().getNodeEntityClass("Principal");
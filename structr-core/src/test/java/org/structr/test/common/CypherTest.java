@@ -74,7 +74,7 @@ public class CypherTest extends StructrTest {
 
 	private static final Logger logger = LoggerFactory.getLogger(CypherTest.class);
 
-	@Test
+	@Test(groups = "cypher")
 	public void test01DeleteAfterLookupWithCypherInTransaction() {
 
 		try {
@@ -275,7 +275,7 @@ public class CypherTest extends StructrTest {
 
 	}
 
-	@Test
+	@Test(groups = "cypher")
 	public void testCypherResultWrapping() {
 
 		try (final Tx tx = app.tx()) {
@@ -551,7 +551,7 @@ public class CypherTest extends StructrTest {
 
 	}
 
-	@Test
+	@Test(groups = "cypher")
 	public void testCypherPathWrappingWithPermissions() {
 
 		Principal tester = null;
@@ -644,7 +644,7 @@ public class CypherTest extends StructrTest {
 
 	}
 
-	@Test
+	@Test(groups = "cypher")
 	public void testPathWrapper() {
 
 		try {
@@ -679,7 +679,7 @@ public class CypherTest extends StructrTest {
 		}
 	}
 
-	@Test
+	@Test(groups = "cypher")
 	public void testNativeCypherMapping() {
 
 		cleanDatabaseAndSchema();
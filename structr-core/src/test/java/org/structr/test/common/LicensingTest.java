@@ -128,6 +128,7 @@ public class LicensingTest {
 		basePath = "/tmp/structr-test-" + timestamp;
 
 		Settings.Services.setValue("NodeService LogService SchemaService");
+		Settings.DatabaseDriver.setValue(System.getProperty("testing.database.driver", Settings.TestingDatabaseDriver.getValue()));
 		Settings.DatabaseDriverMode.setValue("remote");
 		Settings.ConnectionUser.setValue("neo4j");
 		Settings.ConnectionPassword.setValue("admin");
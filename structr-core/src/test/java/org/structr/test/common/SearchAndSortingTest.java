@@ -1881,7 +1881,7 @@ public class SearchAndSortingTest extends StructrTest {
 		}
 	}
 
-	@Test
+	@Test(groups = "cypher")
 	public void testSortFunctionForGraphObjectMaps() {
 
 		final Class<Group> groupType      = StructrApp.getConfiguration().getNodeEntityClass("Group");
@@ -2042,6 +2042,86 @@ public class SearchAndSortingTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testKeysetPagination() {
+
+		try (final Tx tx = app.tx()) {
+
+			// create nodes in an order that differs from the sort order
+			for (int i=0; i<10; i++) {
+				createTestNode(TestOne.class, "TestOne-" + ((i * 7) % 10));
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final List<String> names = new ArrayList<>();
+			String cursor            = "";
+
+			// page through all nodes with a page size of 3
+			for (int i=0; i<10 && cursor != null; i++) {
+
+				final Query<TestOne> query = app.nodeQuery(TestOne.class).sort(AbstractNode.name).pageSize(3).page(1);
+
+				query.getQueryContext().keyset(cursor).slice(0, 3);
+
+				final ResultStream<TestOne> result = query.getResultStream();
+
+				for (final TestOne test : result) {
+					names.add(test.getName());
+				}
+
+				cursor = result.getNextCursor();
+			}
+
+			assertEquals("Invalid number of results with cursor pagination", 10, names.size());
+			assertEquals("Invalid number of results with cursor pagination", 10, new HashSet<>(names).size());
+
+			final List<String> sorted = new ArrayList<>(names);
+			Collections.sort(sorted);
+
+			assertEquals("Invalid sort order with cursor pagination", sorted, names);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		// cursor pagination is rejected for results that are sorted or filtered in memory
+		try (final Tx tx = app.tx()) {
+
+			final Query<TestOne> query = app.nodeQuery(TestOne.class).comparator((a, b) -> a.getName().compareTo(b.getName()));
+
+			query.getQueryContext().keyset("").slice(0, 3);
+			query.getAsList();
+
+			fail("Cursor pagination with a comparator should not be allowed.");
+
+		} catch (FrameworkException fex) {
+			assertEquals("Invalid error code for cursor pagination", 422, fex.getStatus());
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final Query<TestOne> query = app.nodeQuery(TestOne.class).blank(TestOne.aString);
+
+			query.getQueryContext().keyset("").slice(0, 3);
+			query.getAsList();
+
+			fail("Cursor pagination with empty search fields should not be allowed.");
+
+		} catch (FrameworkException fex) {
+			assertEquals("Invalid error code for cursor pagination", 422, fex.getStatus());
+		}
+	}
+
 	// ----- private methods -----
 	private void testPaging(final Class type, final int pageSize, final int page, final int number, final int offset, final boolean includeHidden, final PropertyKey sortKey, final boolean sortDesc) throws FrameworkException {
 
@@ -123,7 +123,8 @@ public class StructrTest {
 		basePath = "/tmp/structr-test-" + timestamp;
 
 		Settings.Services.setValue("NodeService SchemaService");
-		Settings.DatabaseDriverMode.setValue("remote");
+		Settings.DatabaseDriver.setValue(System.getProperty("testing.database.driver", Settings.TestingDatabaseDriver.getValue()));
+		Settings.DatabaseDriverMode.setValue(System.getProperty("testing.database.mode", "remote"));
 		Settings.ConnectionUser.setValue("neo4j");
 		Settings.ConnectionPassword.setValue("admin");
 		Settings.ConnectionUrl.setValue(Settings.TestingConnectionUrl.getValue());
@@ -0,0 +1,342 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.test.core.agent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.structr.agent.AbstractTask;
+import org.structr.agent.Agent;
+import org.structr.agent.AgentService;
+import org.structr.agent.ReturnValue;
+import org.structr.agent.Task;
+import org.structr.api.config.Setting;
+import org.structr.api.config.Settings;
+import org.structr.test.common.StructrTest;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ */
+public class AgentServiceTest extends StructrTest {
+
+	private static volatile CountDownLatch blockingStarted = new CountDownLatch(0);
+	private static volatile CountDownLatch blockingRelease = new CountDownLatch(0);
+	private static volatile CountDownLatch quickProcessed  = new CountDownLatch(0);
+	private static final AtomicInteger blockingRunning     = new AtomicInteger();
+	private static final AtomicInteger maxBlockingRunning  = new AtomicInteger();
+
+	private AgentService agentService = null;
+
+	@BeforeMethod
+	public void startAgentService() throws Exception {
+
+		blockingStarted = new CountDownLatch(0);
+		blockingRelease = new CountDownLatch(0);
+		quickProcessed  = new CountDownLatch(0);
+
+		blockingRunning.set(0);
+		maxBlockingRunning.set(0);
+
+		agentService = new AgentService();
+		agentService.startService();
+	}
+
+	@AfterMethod
+	public void stopAgentService() {
+
+		blockingRelease.countDown();
+		agentService.stopService();
+
+		for (final List<Agent> agents : agentService.getRunningAgents().values()) {
+
+			synchronized (agents) {
+
+				for (final Agent agent : agents) {
+					agent.killAgent();
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testAgentsAreStartedForQueuedTasks() {
+
+		// process one task so that its agent is idle when the next tasks arrive
+		agentService.processTask(new BlockingTask(null));
+
+		waitFor(BlockingTask.class, "processed", 1L);
+		waitFor(BlockingTask.class, "idleAgents", 1);
+
+		blockingStarted = new CountDownLatch(3);
+		blockingRelease = new CountDownLatch(1);
+
+		agentService.processTask(new BlockingTask(null));
+		agentService.processTask(new BlockingTask(null));
+		agentService.processTask(new BlockingTask(null));
+
+		try {
+
+			// a single idle agent must not process the queued tasks one after another
+			assertTrue("Queued tasks were not processed in parallel", blockingStarted.await(10, TimeUnit.SECONDS));
+			assertEquals("Invalid number of running agents", 3, maxBlockingRunning.get());
+
+		} catch (InterruptedException iex) {}
+
+		blockingRelease.countDown();
+
+		waitFor(BlockingTask.class, "processed", 4L);
+	}
+
+	@Test
+	public void testAgentPoolsPerTaskType() {
+
+		final Setting<Integer> threads = Settings.getOrCreateIntegerSetting("application.agents", "BlockingTask", "threads");
+
+		try {
+
+			threads.setValue(1);
+
+			blockingStarted = new CountDownLatch(1);
+			blockingRelease = new CountDownLatch(1);
+			quickProcessed  = new CountDownLatch(10);
+
+			agentService.processTask(new BlockingTask(null));
+			agentService.processTask(new BlockingTask(null));
+
+			assertTrue("Blocking task was not started", blockingStarted.await(10, TimeUnit.SECONDS));
+
+			for (int i=0; i<10; i++) {
+				agentService.processTask(new QuickTask());
+			}
+
+			// tasks of a different type must not wait for the blocked pool
+			assertTrue("Tasks of another type were blocked", quickProcessed.await(10, TimeUnit.SECONDS));
+
+			final Map<String, Object> blockingStats = getStatistics(BlockingTask.class);
+
+			assertEquals("Invalid number of agents", 1, blockingStats.get("agents"));
+			assertEquals("Invalid maximum number of agents", 1, blockingStats.get("maxAgents"));
+			assertEquals("Invalid number of queued tasks", 1, blockingStats.get("queued"));
+			assertEquals("Invalid number of processed tasks", 0L, blockingStats.get("processed"));
+
+			blockingRelease.countDown();
+
+			waitFor(BlockingTask.class, "processed", 2L);
+			waitFor(QuickTask.class, "processed", 10L);
+
+			assertEquals("Invalid number of running agents", 1, maxBlockingRunning.get());
+
+		} catch (InterruptedException iex) {
+
+		} finally {
+
+			threads.unregister();
+		}
+	}
+
+	@Test
+	public void testCoalescingKeys() {
+
+		final Setting<Integer> threads = Settings.getOrCreateIntegerSetting("application.agents", "BlockingTask", "threads");
+
+		try {
+
+			threads.setValue(1);
+
+			blockingStarted = new CountDownLatch(1);
+			blockingRelease = new CountDownLatch(1);
+
+			// occupy the only agent so that the following tasks stay in the queue
+			agentService.processTask(new BlockingTask(null));
+
+			assertTrue("Blocking task was not started", blockingStarted.await(10, TimeUnit.SECONDS));
+
+			for (int i=0; i<5; i++) {
+				agentService.processTask(new BlockingTask("key1"));
+			}
+
+			agentService.processTask(new BlockingTask("key2"));
+
+			waitFor(BlockingTask.class, "queued", 2);
+
+			final Map<String, Object> stats = getStatistics(BlockingTask.class);
+
+			assertEquals("Invalid number of submitted tasks", 3L, stats.get("submitted"));
+			assertEquals("Invalid number of coalesced tasks", 4L, stats.get("coalesced"));
+			assertEquals("Invalid number of queued tasks", 2, stats.get("queued"));
+
+			blockingRelease.countDown();
+
+			waitFor(BlockingTask.class, "processed", 3L);
+
+			// a task whose equal task has been processed is not coalesced
+			agentService.processTask(new BlockingTask("key1"));
+
+			waitFor(BlockingTask.class, "processed", 4L);
+
+			assertEquals("Invalid number of coalesced tasks", 4L, getStatistics(BlockingTask.class).get("coalesced"));
+
+		} catch (InterruptedException iex) {
+
+		} finally {
+
+			threads.unregister();
+		}
+	}
+
+	@Test
+	public void testStatistics() {
+
+		quickProcessed = new CountDownLatch(5);
+
+		for (int i=0; i<3; i++) {
+			agentService.processTask(new BlockingTask(null));
+		}
+
+		for (int i=0; i<5; i++) {
+			agentService.processTask(new QuickTask());
+		}
+
+		waitFor(BlockingTask.class, "processed", 3L);
+		waitFor(QuickTask.class, "processed", 5L);
+
+		final Map<String, Map<String, Object>> stats = agentService.getStatistics();
+
+		assertEquals("Invalid number of task types", 2, stats.size());
+
+		for (final Map<String, Object> typeStats : stats.values()) {
+
+			assertEquals("Invalid number of queued tasks", 0, typeStats.get("queued"));
+			assertEquals("Invalid number of coalesced tasks", 0L, typeStats.get("coalesced"));
+			assertEquals("Submitted and processed tasks differ", typeStats.get("submitted"), typeStats.get("processed"));
+			assertEquals("Invalid maximum number of agents", Settings.AgentThreads.getValue(), typeStats.get("maxAgents"));
+			assertTrue("Invalid number of agents", (Integer)typeStats.get("agents") >= 1);
+			assertTrue("Invalid wait time", (Long)typeStats.get("maxWaitTime") >= (Long)typeStats.get("averageWaitTime"));
+		}
+
+		assertEquals("Invalid number of submitted tasks", 3L, stats.get(BlockingTask.class.getName()).get("submitted"));
+		assertEquals("Invalid number of submitted tasks", 5L, stats.get(QuickTask.class.getName()).get("submitted"));
+	}
+
+	// ----- private methods -----
+	private Map<String, Object> getStatistics(final Class taskClass) {
+		return agentService.getStatistics().get(taskClass.getName());
+	}
+
+	private void waitFor(final Class taskClass, final String key, final Object value) {
+
+		final long timeout = System.currentTimeMillis() + 10000;
+
+		while (System.currentTimeMillis() < timeout) {
+
+			final Map<String, Object> stats = getStatistics(taskClass);
+			if (stats != null && value.equals(stats.get(key))) {
+
+				return;
+			}
+
+			try { Thread.sleep(10); } catch (InterruptedException iex) {}
+		}
+
+		assertEquals("Timeout waiting for " + key + " of " + taskClass.getSimpleName(), value, getStatistics(taskClass).get(key));
+	}
+
+	// ----- nested classes -----
+	public static class BlockingTask extends AbstractTask<Object> {
+
+		private String key = null;
+
+		public BlockingTask(final String key) {
+
+			super("BlockingTask", null);
+
+			this.key = key;
+		}
+
+		@Override
+		public Object getCoalescingKey() {
+			return key;
+		}
+	}
+
+	public static class QuickTask extends AbstractTask<Object> {
+
+		public QuickTask() {
+			super("QuickTask", null);
+		}
+	}
+
+	public static class BlockingAgent extends Agent<Object> {
+
+		@Override
+		public ReturnValue processTask(final Task<Object> task) throws Throwable {
+
+			maxBlockingRunning.accumulateAndGet(blockingRunning.incrementAndGet(), Math::max);
+			blockingStarted.countDown();
+
+			try {
+
+				blockingRelease.await(10, TimeUnit.SECONDS);
+
+			} finally {
+
+				blockingRunning.decrementAndGet();
+			}
+
+			return ReturnValue.Success;
+		}
+
+		@Override
+		public Class getSupportedTaskType() {
+			return BlockingTask.class;
+		}
+
+		@Override
+		public boolean createEnclosingTransaction() {
+			return false;
+		}
+	}
+
+	public static class QuickAgent extends Agent<Object> {
+
+		@Override
+		public ReturnValue processTask(final Task<Object> task) throws Throwable {
+
+			quickProcessed.countDown();
+
+			return ReturnValue.Success;
+		}
+
+		@Override
+		public Class getSupportedTaskType() {
+			return QuickTask.class;
+		}
+
+		@Override
+		public boolean createEnclosingTransaction() {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,337 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.test.core.common;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.structr.api.config.Settings;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObjectMap;
+import org.structr.core.graph.SegmentedChangelog;
+import org.structr.core.graph.Tx;
+import org.structr.core.property.StringProperty;
+import org.structr.core.script.Scripting;
+import org.structr.schema.action.ActionContext;
+import org.structr.test.common.StructrTest;
+import org.structr.test.core.entity.TestOne;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+import org.testng.annotations.Test;
+
+/**
+ * Test for the changelog() function with both changelog backends.
+ */
+public class ChangelogTest extends StructrTest {
+
+	@Test
+	public void testFileChangelog() {
+
+		try {
+
+			Settings.ChangelogEnabled.setValue(true);
+			Settings.ChangelogPath.setValue(basePath + "/changelog-files");
+
+			testChangelog();
+
+		} finally {
+
+			resetSettings();
+		}
+	}
+
+	@Test
+	public void testSegmentedChangelog() {
+
+		final String changelogPath = basePath + "/changelog-segments";
+
+		try {
+
+			Settings.ChangelogEnabled.setValue(true);
+			Settings.ChangelogBackend.setValue("segments");
+			Settings.ChangelogPath.setValue(changelogPath);
+
+			final TestOne test = testChangelog();
+
+			// reopen the store, which rebuilds the index from the segment files
+			Settings.ChangelogPath.setValue(basePath + "/changelog-other");
+			SegmentedChangelog.getInstance();
+
+			// append an incomplete record to the segment
+			try (final RandomAccessFile file = new RandomAccessFile(new File(changelogPath + "/segments/0000000001.seg"), "rw")) {
+
+				file.seek(file.length());
+				file.writeInt(1000);
+				file.writeInt(0);
+			}
+
+			Settings.ChangelogPath.setValue(changelogPath);
+			SegmentedChangelog.getInstance();
+
+			try (final Tx tx = app.tx()) {
+
+				assertChangelog(test);
+
+				tx.success();
+			}
+
+		} catch (IOException | FrameworkException ex) {
+
+			ex.printStackTrace();
+			fail("Unexpected exception.");
+
+		} finally {
+
+			resetSettings();
+		}
+	}
+
+	@Test
+	public void testSegmentIndexFiles() {
+
+		final String changelogPath = basePath + "/changelog-index";
+
+		try {
+
+			Settings.ChangelogBackend.setValue("segments");
+			Settings.ChangelogPath.setValue(changelogPath);
+			Settings.ChangelogSegmentSize.setValue(1);
+
+			final long now = System.currentTimeMillis();
+
+			// each batch is larger than half of a segment, so every batch rolls the segment
+			append("a", now, 600000);
+			append("b", now, 600000);
+			append("a", now, 100);
+			append("c", now, 600000);
+
+			final File index1 = new File(changelogPath + "/segments/0000000001.idx");
+			final File index2 = new File(changelogPath + "/segments/0000000002.idx");
+
+			assertTrue("Full segment should have an index file", index1.exists());
+			assertTrue("Full segment should have an index file", index2.exists());
+			assertFalse("Active segment should not have an index file", new File(changelogPath + "/segments/0000000003.idx").exists());
+
+			// reopen the store, which loads the index files of the full segments
+			reopen(changelogPath);
+
+			assertRecords("a", 2);
+			assertRecords("b", 1);
+			assertRecords("c", 1);
+
+			// a corrupt index file is ignored and the segment is scanned
+			try (final RandomAccessFile file = new RandomAccessFile(index2, "rw")) {
+
+				file.seek(20);
+				file.writeLong(-1L);
+			}
+
+			// an index file that does not match the size of its segment is ignored
+			try (final RandomAccessFile file = new RandomAccessFile(new File(changelogPath + "/segments/0000000001.seg"), "rw")) {
+
+				file.seek(file.length());
+				file.writeInt(1000);
+			}
+
+			reopen(changelogPath);
+
+			assertRecords("a", 2);
+			assertRecords("b", 1);
+			assertRecords("c", 1);
+
+		} catch (IOException ex) {
+
+			ex.printStackTrace();
+			fail("Unexpected exception.");
+
+		} finally {
+
+			resetSettings();
+		}
+	}
+
+	@Test
+	public void testSegmentRetention() {
+
+		final String changelogPath = basePath + "/changelog-retention";
+
+		try {
+
+			Settings.ChangelogBackend.setValue("segments");
+			Settings.ChangelogPath.setValue(changelogPath);
+			Settings.ChangelogSegmentSize.setValue(1);
+
+			final long now = System.currentTimeMillis();
+			final long old = now - TimeUnit.DAYS.toMillis(10);
+
+			append("a", old, 600000);
+			append("b", old, 600000);
+			append("c", now, 600000);
+			append("a", now, 100);
+
+			final SegmentedChangelog changelog = SegmentedChangelog.getInstance();
+
+			assertEquals("Nothing should expire without a limit", 0, changelog.expire());
+
+			// segments 1 and 2 contain only old records
+			Settings.ChangelogRetention.setValue(5);
+
+			assertEquals("Old segments should expire", 2, changelog.expire());
+			assertFalse("Expired segment should be deleted", new File(changelogPath + "/segments/0000000001.seg").exists());
+			assertFalse("Expired segment should be deleted", new File(changelogPath + "/segments/0000000001.idx").exists());
+			assertFalse("Expired segment should be deleted", new File(changelogPath + "/segments/0000000002.seg").exists());
+
+			assertRecords("a", 1);
+			assertRecords("b", 0);
+			assertRecords("c", 1);
+
+			// the active segment is never deleted
+			Settings.ChangelogRetention.setValue(0);
+			Settings.ChangelogMaxSize.setValue(1);
+
+			assertEquals("Active segment should not expire", 0, changelog.expire());
+
+			append("d", now, 600000);
+
+			assertEquals("Oldest segment should exceed the size limit", 1, changelog.expire());
+
+			assertRecords("a", 0);
+			assertRecords("c", 0);
+			assertRecords("d", 1);
+
+			// expired segments are not loaded again
+			reopen(changelogPath);
+
+			assertRecords("c", 0);
+			assertRecords("d", 1);
+
+		} catch (IOException ex) {
+
+			ex.printStackTrace();
+			fail("Unexpected exception.");
+
+		} finally {
+
+			resetSettings();
+		}
+	}
+
+	// ----- private methods -----
+	private void append(final String uuid, final long time, final int size) throws IOException {
+
+		final SegmentedChangelog.Batch batch = new SegmentedChangelog.Batch();
+		final StringBuilder value            = new StringBuilder();
+
+		for (int i=0; i<size; i++) {
+			value.append('x');
+		}
+
+		batch.add('n', uuid, "{\"time\":" + time + ",\"verb\":\"change\",\"key\":\"name\",\"val\":\"" + value + "\"}");
+
+		SegmentedChangelog.getInstance().append(batch);
+	}
+
+	private void assertRecords(final String uuid, final int count) throws IOException {
+		assertEquals("Invalid number of records for " + uuid, count, SegmentedChangelog.getInstance().read('n', uuid, null).size());
+	}
+
+	private void reopen(final String changelogPath) throws IOException {
+
+		Settings.ChangelogPath.setValue(basePath + "/changelog-other");
+		SegmentedChangelog.getInstance();
+
+		Settings.ChangelogPath.setValue(changelogPath);
+		SegmentedChangelog.getInstance();
+	}
+
+	private TestOne testChangelog() {
+
+		try {
+
+			TestOne test = null;
+
+			try (final Tx tx = app.tx()) {
+
+				test = app.create(TestOne.class, "test");
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				test.setProperty(TestOne.name, "test2");
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				test.setProperty(TestOne.name, "test3");
+				tx.success();
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				assertChangelog(test);
+				tx.success();
+			}
+
+			return test;
+
+		} catch (FrameworkException fex) {
+
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		return null;
+	}
+
+	private void resetSettings() {
+
+		Settings.ChangelogEnabled.setValue(false);
+		Settings.ChangelogBackend.setValue(Settings.ChangelogBackend.getDefaultValue());
+		Settings.ChangelogPath.setValue(Settings.ChangelogPath.getDefaultValue());
+		Settings.ChangelogSegmentSize.setValue(Settings.ChangelogSegmentSize.getDefaultValue());
+		Settings.ChangelogRetention.setValue(Settings.ChangelogRetention.getDefaultValue());
+		Settings.ChangelogMaxSize.setValue(Settings.ChangelogMaxSize.getDefaultValue());
+	}
+
+	private void assertChangelog(final TestOne test) throws FrameworkException {
+
+		final ActionContext ctx = new ActionContext(securityContext);
+		final List all          = (List)Scripting.evaluate(ctx, test, "${changelog(this)}", "test");
+		final List creates      = (List)Scripting.evaluate(ctx, test, "${changelog(this, false, 'verb', 'create')}", "test");
+		final List names        = (List)Scripting.evaluate(ctx, test, "${changelog(this, false, 'verb', 'change', 'key', 'name')}", "test");
+
+		assertEquals("Invalid number of create entries", 1, creates.size());
+		assertEquals("Invalid changelog entry", test.getUuid(), ((GraphObjectMap)creates.get(0)).get(new StringProperty("target")));
+
+		assertEquals("Invalid number of name changes", 3, names.size());
+		assertEquals("Invalid changelog entry", "null",      ((GraphObjectMap)names.get(0)).get(new StringProperty("prev")));
+		assertEquals("Invalid changelog entry", "\"test\"",  ((GraphObjectMap)names.get(0)).get(new StringProperty("val")));
+		assertEquals("Invalid changelog entry", "\"test\"",  ((GraphObjectMap)names.get(1)).get(new StringProperty("prev")));
+		assertEquals("Invalid changelog entry", "\"test2\"", ((GraphObjectMap)names.get(1)).get(new StringProperty("val")));
+		assertEquals("Invalid changelog entry", "\"test3\"", ((GraphObjectMap)names.get(2)).get(new StringProperty("val")));
+
+		assertEquals("Invalid changelog entry", "create", ((GraphObjectMap)all.get(0)).get(new StringProperty("verb")));
+	}
+}
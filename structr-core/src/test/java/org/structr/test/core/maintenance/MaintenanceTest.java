@@ -34,6 +34,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.DatabaseService;
 import org.structr.api.Transaction;
+import org.structr.api.config.Settings;
 import org.structr.api.graph.Label;
 import org.structr.api.graph.Node;
 import org.structr.api.util.Iterables;
@@ -379,6 +380,44 @@ public class MaintenanceTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testParallelBulkSetNodePropertiesCommand() {
+
+		final Integer threads = Settings.MaintenanceThreads.getValue();
+		final Integer one     = 1;
+
+		try {
+
+			createTestNodes(TestOne.class, 2500);
+
+			Settings.MaintenanceThreads.setValue(4);
+
+			app.command(BulkSetNodePropertiesCommand.class).execute(toMap("type", "TestOne", "anInt", 1, "aString", "one"));
+
+			try (final Tx tx = app.tx()) {
+
+				final List<TestOne> nodes = app.nodeQuery(TestOne.class).getAsList();
+
+				assertEquals(2500, nodes.size());
+
+				for (final TestOne test : nodes) {
+
+					assertEquals(one, test.getProperty(TestOne.anInt));
+					assertEquals("one", test.getProperty(TestOne.aString));
+				}
+			}
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+
+		} finally {
+
+			Settings.MaintenanceThreads.setValue(threads);
+		}
+	}
+
 	@Test
 	public void testBulkSetNodePropertiesCommand() {
 
@@ -0,0 +1,353 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.test.core.scheduler;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Setting;
+import org.structr.api.config.Settings;
+import org.structr.common.ContextStore;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.Tx;
+import org.structr.core.scheduler.JobQueueManager;
+import org.structr.core.scheduler.ScheduledJob;
+import org.structr.test.common.StructrTest;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ */
+public class JobQueueManagerTest extends StructrTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(JobQueueManagerTest.class.getName());
+
+	private static final List<String> startedJobs = new CopyOnWriteArrayList<>();
+	private static final AtomicInteger running    = new AtomicInteger();
+	private static final AtomicInteger maxRunning = new AtomicInteger();
+
+	private final List<TestJob> jobs    = new LinkedList<>();
+	private Setting<Integer> concurrency = null;
+	private Principal user1              = null;
+	private Principal user2              = null;
+
+	@BeforeMethod
+	public void setupJobs() {
+
+		startedJobs.clear();
+		running.set(0);
+		maxRunning.set(0);
+
+		concurrency = Settings.getOrCreateIntegerSetting("application.jobs", TestJob.JOB_CLASS, "concurrency");
+
+		try (final Tx tx = app.tx()) {
+
+			user1 = createTestNode(Principal.class, "user1");
+			user2 = createTestNode(Principal.class, "user2");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@AfterMethod
+	public void releaseJobs() {
+
+		for (final TestJob job : jobs) {
+			job.release.countDown();
+		}
+
+		waitFor("jobs to finish", () -> running.get() == 0);
+
+		jobs.clear();
+		concurrency.unregister();
+	}
+
+	@Test
+	public void testConcurrencyLimit() {
+
+		concurrency.setValue(2);
+
+		final TestJob job1 = addJob("job1", user1);
+		final TestJob job2 = addJob("job2", user1);
+		final TestJob job3 = addJob("job3", user2);
+		final TestJob job4 = addJob("job4", user2);
+
+		waitFor("two jobs to start", () -> startedJobs.size() == 2);
+
+		// the other jobs must stay queued while the limit is reached
+		try { Thread.sleep(200); } catch (InterruptedException iex) {}
+
+		assertEquals("Invalid number of started jobs", 2, startedJobs.size());
+		assertEquals("Invalid number of listed jobs", 4, getTestJobs().size());
+
+		job1.release.countDown();
+
+		waitFor("third job to start", () -> startedJobs.size() == 3);
+
+		job2.release.countDown();
+		job3.release.countDown();
+		job4.release.countDown();
+
+		waitFor("all jobs to finish", () -> getTestJobs().isEmpty());
+
+		assertEquals("Invalid number of started jobs", 4, startedJobs.size());
+		assertEquals("Concurrency limit was exceeded", 2, maxRunning.get());
+	}
+
+	@Test
+	public void testJobsOfUsersAreStartedInTurns() {
+
+		concurrency.setValue(1);
+
+		// occupy the only slot so that all following jobs are queued
+		final TestJob blocker = addJob("blocker", user1);
+
+		waitFor("blocking job to start", () -> startedJobs.size() == 1);
+
+		addJob("a1", user1).release.countDown();
+		addJob("a2", user1).release.countDown();
+		addJob("a3", user1).release.countDown();
+		addJob("b1", user2).release.countDown();
+		addJob("b2", user2).release.countDown();
+
+		blocker.release.countDown();
+
+		waitFor("all jobs to finish", () -> getTestJobs().isEmpty());
+
+		// a user with many queued jobs must not delay the jobs of other users
+		assertEquals("Jobs of different users were not started in turns", Arrays.asList("blocker", "a1", "b1", "a2", "b2", "a3"), startedJobs);
+	}
+
+	@Test
+	public void testPauseResumeAndAbort() {
+
+		concurrency.setValue(2);
+
+		final JobQueueManager manager = JobQueueManager.getInstance();
+		final TestJob job1            = addJob("job1", user1);
+		final TestJob job2            = addJob("job2", user2);
+		final TestJob job3            = addJob("job3", user1);
+
+		waitFor("two jobs to start", () -> startedJobs.size() == 2);
+
+		manager.pauseRunningJob(job1.jobId());
+
+		waitFor("job to pause", job1::isPaused);
+
+		// paused jobs count against the concurrency limit
+		try { Thread.sleep(200); } catch (InterruptedException iex) {}
+
+		assertFalse("Queued job was started while the limit was reached", startedJobs.contains("job3"));
+
+		manager.abortActiveJob(job2.jobId());
+
+		waitFor("aborted job to stop", () -> job2.aborted);
+		waitFor("queued job to start", () -> startedJobs.contains("job3"));
+
+		assertFalse("Aborted job was completed", job2.completed);
+
+		manager.resumePausedJob(job1.jobId());
+
+		waitFor("job to resume", () -> !job1.isPaused());
+
+		job1.release.countDown();
+		job3.release.countDown();
+
+		waitFor("all jobs to finish", () -> getTestJobs().isEmpty());
+
+		assertTrue("Resumed job was not completed", job1.completed);
+		assertTrue("Queued job was not completed", job3.completed);
+	}
+
+	// ----- private methods -----
+	private TestJob addJob(final String name, final Principal user) {
+
+		final TestJob job = new TestJob(name, user);
+
+		jobs.add(job);
+
+		try {
+
+			JobQueueManager.getInstance().addJob(job);
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		return job;
+	}
+
+	private List<Map<String, Object>> getTestJobs() {
+
+		final List<Map<String, Object>> result = new LinkedList<>();
+
+		for (final Map<String, Object> info : JobQueueManager.getInstance().listJobs()) {
+
+			if (TestJob.JOB_CLASS.equals(info.get("jobtype"))) {
+				result.add(info);
+			}
+		}
+
+		return result;
+	}
+
+	private void waitFor(final String description, final BooleanSupplier condition) {
+
+		final long timeout = System.currentTimeMillis() + 10000;
+
+		while (System.currentTimeMillis() < timeout) {
+
+			if (condition.getAsBoolean()) {
+				return;
+			}
+
+			try { Thread.sleep(10); } catch (InterruptedException iex) {}
+		}
+
+		fail("Timeout waiting for " + description);
+	}
+
+	// ----- nested classes -----
+	private static class TestJob extends ScheduledJob {
+
+		private static final String JOB_CLASS = "test";
+
+		private final CountDownLatch release = new CountDownLatch(1);
+		private volatile boolean completed   = false;
+		private volatile boolean aborted     = false;
+
+		public TestJob(final String jobName, final Principal user) {
+			super(jobName, user, new LinkedHashMap<>(), new ContextStore());
+		}
+
+		@Override
+		public boolean runInitialChecks() throws FrameworkException {
+			return true;
+		}
+
+		@Override
+		public Runnable getRunnable() {
+
+			return () -> {
+
+				startedJobs.add(jobName);
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+
+				try {
+
+					// process "chunks" until the job is released
+					while (true) {
+
+						shouldPause();
+
+						if (shouldAbort()) {
+
+							aborted = true;
+							return;
+						}
+
+						if (release.await(10, TimeUnit.MILLISECONDS)) {
+							break;
+						}
+					}
+
+					completed = true;
+
+					jobFinished();
+
+				} catch (InterruptedException iex) {
+
+				} finally {
+
+					running.decrementAndGet();
+				}
+			};
+		}
+
+		@Override
+		public String getJobClass() {
+			return JOB_CLASS;
+		}
+
+		@Override
+		public String getJobType() {
+			return JOB_CLASS;
+		}
+
+		@Override
+		public String getJobStatusType() {
+			return "TEST_JOB_STATUS";
+		}
+
+		@Override
+		public String getJobExceptionMessageType() {
+			return "TEST_JOB_EXCEPTION";
+		}
+
+		@Override
+		public Map<String, Object> getStatusData(final JobStatusMessageSubtype subtype) {
+
+			final Map<String, Object> data = new LinkedHashMap<>();
+
+			data.put("type",    getJobStatusType());
+			data.put("jobId",   jobId());
+			data.put("subtype", subtype);
+
+			return data;
+		}
+
+		@Override
+		public Map<String, Object> getJobInfo() {
+
+			final Map<String, Object> jobInfo = new LinkedHashMap<>();
+
+			jobInfo.put("jobId",   jobId());
+			jobInfo.put("jobtype", getJobType());
+			jobInfo.put("name",    jobName);
+
+			return jobInfo;
+		}
+
+		public boolean isPaused() {
+			return JobStatus.PAUSED.equals(currentStatus);
+		}
+	}
+}
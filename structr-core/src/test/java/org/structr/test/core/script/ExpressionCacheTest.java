@@ -0,0 +1,146 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.test.core.script;
+
+import java.util.Arrays;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.function.Functions;
+import org.structr.core.graph.Tx;
+import org.structr.core.script.Scripting;
+import org.structr.schema.action.ActionContext;
+import org.structr.test.common.StructrTest;
+import org.structr.test.core.entity.TestOne;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.fail;
+import org.testng.annotations.Test;
+
+/**
+ *
+ */
+public class ExpressionCacheTest extends StructrTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(ExpressionCacheTest.class.getName());
+
+	private static final List<String> templates = Arrays.asList(
+		"if(empty(this.name), 'unnamed', this.name)",
+		"concat('<a href=\"/', this.id, '\">', escape_html(this.name), '</a>')",
+		"is(equal(this.anInt, 42), 'selected')",
+		"join(merge('a', 'b', this.name), ', ')",
+		"lower(substring(this.name, 0, 3))"
+	);
+
+	@Test
+	public void testCachedExpressionsAreShared() {
+
+		try (final Tx tx = app.tx()) {
+
+			final TestOne testOne   = createTestNode(TestOne.class, "cached");
+			final ActionContext ctx = new ActionContext(securityContext, null);
+
+			for (final String template : templates) {
+
+				assertSame("Parsed expressions must be cached", Functions.parse(template), Functions.parse(template));
+
+				final Object first  = Functions.evaluate(ctx, testOne, template);
+				final Object second = Functions.evaluate(ctx, testOne, template);
+
+				assertEquals("Cached expression yields a different result", first, second);
+			}
+
+			assertEquals("Invalid result of cached expression", "cached", Scripting.replaceVariables(ctx, testOne, "${if(empty(this.name), 'unnamed', this.name)}"));
+
+			testOne.setProperty(TestOne.name, null);
+
+			assertEquals("Cached expression must not keep evaluation state", "unnamed", Scripting.replaceVariables(ctx, testOne, "${if(empty(this.name), 'unnamed', this.name)}"));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	/**
+	 * Compares the evaluation of template expressions that have to be
+	 * parsed (cold) with the evaluation of cached expressions. The results
+	 * are printed only, as they depend on the hardware the test runs on.
+	 *
+	 * This benchmark is excluded from the default build, run it with
+	 * -Dtesting.excludedGroups= -Dit.test=ExpressionCacheTest
+	 */
+	@Test(groups = "benchmark")
+	public void testCachedEvaluationThroughput() {
+
+		final int iterations = 20000;
+
+		try (final Tx tx = app.tx()) {
+
+			final TestOne testOne   = createTestNode(TestOne.class, "benchmark");
+			final ActionContext ctx = new ActionContext(securityContext, null);
+
+			// warm up
+			for (int i=0; i<1000; i++) {
+
+				for (final String template : templates) {
+					Functions.evaluate(ctx, testOne, template);
+				}
+			}
+
+			// cold: every source is different, so every expression is parsed
+			final long t0 = System.nanoTime();
+
+			for (int i=0; i<iterations; i++) {
+
+				for (final String template : templates) {
+					Functions.evaluate(ctx, testOne, template + "; '" + i + "'");
+				}
+			}
+
+			final long t1 = System.nanoTime();
+
+			// cached: the same sources are evaluated again and again
+			for (int i=0; i<iterations; i++) {
+
+				for (final String template : templates) {
+					Functions.evaluate(ctx, testOne, template);
+				}
+			}
+
+			final long t2 = System.nanoTime();
+
+			final int count = iterations * templates.size();
+
+			System.out.println(String.format("%10s %15.0f evaluations/s", "parsed",  count / ((t1 - t0) / 1_000_000_000.0)));
+			System.out.println(String.format("%10s %15.0f evaluations/s", "cached",  count / ((t2 - t1) / 1_000_000_000.0)));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+}
@@ -32,9 +32,18 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Script;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.api.util.Iterables;
 import org.structr.common.AccessControllable;
 import org.structr.common.AccessMode;
@@ -652,6 +661,52 @@ public class ScriptingTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testRStateIsNotShared() {
+
+		try (final Tx tx = app.tx()) {
+
+			final ActionContext ctx = new ActionContext(securityContext);
+
+			// variables, attached environments and options of one evaluation must not be visible in the next
+			Scripting.evaluate(ctx, null, "${R{x <- 42}}", "test");
+			assertEquals("R variable is visible in next evaluation", "[1] FALSE\n", Scripting.evaluate(ctx, null, "${R{print(exists('x'))}}", "test"));
+
+			Scripting.evaluate(ctx, null, "${R{attach(list(y = 42), name = 'structrTest')}}", "test");
+			assertEquals("Attached R environment is visible in next evaluation", "[1] FALSE\n", Scripting.evaluate(ctx, null, "${R{print(exists('y'))}}", "test"));
+
+			Scripting.evaluate(ctx, null, "${R{options(structr.test = 42)}}", "test");
+			assertEquals("R option is visible in next evaluation", "[1] TRUE\n", Scripting.evaluate(ctx, null, "${R{print(is.null(getOption('structr.test')))}}", "test"));
+
+			tx.success();
+
+		} catch (UnlicensedScriptException |FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	@Test
+	public void testPythonStateIsNotShared() {
+
+		try (final Tx tx = app.tx()) {
+
+			final ActionContext ctx = new ActionContext(securityContext);
+
+			// variables of one evaluation must not be visible in the next
+			Scripting.evaluate(ctx, null, "${python{x = 42}}", "test");
+			assertEquals("Python variable is visible in next evaluation", "False\n", Scripting.evaluate(ctx, null, "${python{print('x' in globals() or 'x' in locals())}}", "test"));
+
+			tx.success();
+
+		} catch (UnlicensedScriptException |FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
 	@Test
 	public void testVariableReplacement() {
 
@@ -3087,7 +3142,123 @@ public class ScriptingTest extends StructrTest {
 
 	}
 
+	@Test
+	public void testSharedScopeIsolation() {
+
+		final boolean sharedScope = Settings.ScriptSharedScope.getValue();
+
+		try (final Tx tx = app.tx()) {
+
+			final ActionContext ctx = new ActionContext(securityContext, null);
+
+			ctx.setDisableVerboseExceptionLogging(true);
+
+			// global variables must not leak into the next evaluation
+			Scripting.evaluate(ctx, null, "${{ leaked = 'value'; }}", "test");
+			assertEquals("Global variable leaked between script evaluations", "undefined", Scripting.evaluate(ctx, null, "${{ return typeof leaked; }}", "test"));
+
+			// built-in objects are sealed in the shared scope
+			try {
+
+				Scripting.evaluate(ctx, null, "${{ Array.prototype.structrTest = function() { return 'extended'; }; return [].structrTest(); }}", "test");
+				fail("Built-in objects of the shared scope must not be modifiable");
+
+			} catch (FrameworkException expected) {}
+
+			// built-in objects can be extended without the shared scope
+			Settings.ScriptSharedScope.setValue(false);
+
+			assertEquals("Built-in objects can not be extended", "extended", Scripting.evaluate(ctx, null, "${{ Array.prototype.structrTest = function() { return 'extended'; }; return [].structrTest(); }}", "test"));
+			assertEquals("Modified built-in object leaked between script evaluations", "undefined", Scripting.evaluate(ctx, null, "${{ return typeof [].structrTest; }}", "test"));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+
+		} finally {
+
+			Settings.ScriptSharedScope.setValue(sharedScope);
+		}
+	}
+
+	@Test
+	public void testCompiledScriptCache() {
+
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		final Set<Script> scripts      = ConcurrentHashMap.newKeySet();
+		final String source            = "'cached-" + System.nanoTime() + "';";
+		final String invalidSource     = "'invalid-" + System.nanoTime() + "' +;";
+
+		try {
+
+			final long compilations          = getCompilationCount();
+			final List<Future<Script>> tasks = new LinkedList<>();
+
+			for (int i=0; i<32; i++) {
+
+				tasks.add(executor.submit(() -> {
+
+					final Context context = Scripting.setupJavascriptContext();
+
+					try {
+
+						return Scripting.compileOrGetCached(context, source, "test", 1);
+
+					} finally {
+
+						Context.exit();
+					}
+				}));
+			}
+
+			for (final Future<Script> task : tasks) {
+				scripts.add(task.get());
+			}
+
+			assertEquals("Concurrent requests for the same source must share one compiled script", 1, scripts.size());
+			assertEquals("Concurrent requests for the same source must compile only once", compilations + 1, getCompilationCount());
+
+			// failed compilations must not be cached
+			final Context context = Scripting.setupJavascriptContext();
+
+			try {
+
+				for (int i=0; i<2; i++) {
+
+					try {
+
+						Scripting.compileOrGetCached(context, invalidSource, "test", 1);
+						fail("Invalid script must not compile");
+
+					} catch (RuntimeException expected) {}
+				}
+
+			} finally {
+
+				Context.exit();
+			}
+
+			assertEquals("Failed compilation was cached", compilations + 3, getCompilationCount());
+
+		} catch (InterruptedException | ExecutionException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+
+		} finally {
+
+			executor.shutdownNow();
+		}
+	}
+
 	// ----- private methods ----
+	private long getCompilationCount() {
+		return ((Number)Scripting.getCacheStatistics().get("compilations")).longValue();
+	}
+
 	private void createTestType(final JsonSchema schema, final String name, final String createSource, final String saveSource, final String comment) {
 
 		final JsonType test1    = schema.addType(name);
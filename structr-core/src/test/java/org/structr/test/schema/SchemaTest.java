@@ -20,8 +20,12 @@ package org.structr.test.schema;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import java.io.File;
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -31,6 +35,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.config.Settings;
 import org.structr.common.PropertyView;
+import org.structr.common.error.ErrorBuffer;
 import org.structr.test.common.StructrTest;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
@@ -44,7 +49,10 @@ import org.structr.core.entity.SchemaView;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyKey;
+import org.structr.core.property.StringProperty;
+import org.structr.schema.SchemaService;
 import org.structr.schema.action.Actions;
+import org.structr.schema.compiler.NodeExtender;
 import org.structr.schema.export.StructrSchema;
 import org.structr.schema.json.InvalidSchemaException;
 import org.structr.schema.json.JsonObjectType;
@@ -828,6 +836,75 @@ public class SchemaTest extends StructrTest {
 		}
 	}
 
+	@Test
+	public void testSchemaCompilationCache() {
+
+		cleanDatabaseAndSchema();
+
+		final File cacheDirectory = new File(Settings.getFullSettingPath(Settings.SchemaCachePath));
+		final File foreignFile    = new File(cacheDirectory, "notes.txt");
+		final File unusedEntry    = new File(cacheDirectory, StringUtils.repeat("0", 64));
+
+		try (final Tx tx = app.tx()) {
+
+			app.create(SchemaNode.class, new NodeAttribute<>(SchemaNode.name, "CacheTestBase"));
+			app.create(SchemaNode.class, new NodeAttribute<>(SchemaNode.name, "CacheTestOther"));
+			app.create(SchemaNode.class,
+				new NodeAttribute<>(SchemaNode.name, "CacheTestDerived"),
+				new NodeAttribute<>(SchemaNode.extendsClass, "org.structr.dynamic.CacheTestBase")
+			);
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		try {
+
+			cacheDirectory.mkdirs();
+
+			Files.write(foreignFile.toPath(), "do not delete".getBytes(StandardCharsets.UTF_8));
+			Files.write(unusedEntry.toPath(), new byte[0]);
+
+			// simulate a restart: nothing has changed, so all types are read from the cache directory
+			NodeExtender.clearByteCodeCache();
+
+			final long compiled = getCompiledTypes();
+
+			assertTrue("Schema reload failed", SchemaService.reloadSchema(new ErrorBuffer(), null));
+			assertEquals("Unchanged types must not be compiled on a warm start", compiled, getCompiledTypes());
+
+			// only the cache entries are managed by the compiler
+			assertTrue("Foreign file in schema cache directory was deleted", foreignFile.exists());
+			assertFalse("Unused schema cache entry was not deleted", unusedEntry.exists());
+
+			// no other type depends on CacheTestOther
+			final long beforeOther = getCompiledTypes();
+
+			addStringProperty("CacheTestOther", "otherName");
+
+			assertEquals("Only the modified type must be compiled", beforeOther + 1, getCompiledTypes());
+
+			// CacheTestDerived extends CacheTestBase
+			final long beforeBase = getCompiledTypes();
+
+			addStringProperty("CacheTestBase", "baseName");
+
+			assertEquals("Modified type and dependent type must be compiled", beforeBase + 2, getCompiledTypes());
+
+		} catch (IOException | FrameworkException ex) {
+
+			logger.warn("", ex);
+			fail("Unexpected exception.");
+
+		} finally {
+
+			foreignFile.delete();
+		}
+	}
+
 	// ----- private methods -----
 	private void checkSchemaString(final String source) {
 
@@ -861,6 +938,22 @@ public class SchemaTest extends StructrTest {
 		assertEquals("Invalid schema serialization result", "linkTargets", lnk.get("targetName"));
 	}
 
+	private long getCompiledTypes() {
+		return (Long)NodeExtender.getCompilerStatistics().get("compiledTypes");
+	}
+
+	private void addStringProperty(final String type, final String name) throws FrameworkException {
+
+		try (final Tx tx = app.tx()) {
+
+			final SchemaNode schemaNode = app.nodeQuery(SchemaNode.class).andName(type).getFirst();
+
+			schemaNode.setProperty(new StringProperty("_" + name), "String");
+
+			tx.success();
+		}
+	}
+
 	private void mapPathValue(final Map<String, Object> map, final String mapPath, final Object value) {
 
 		final String[] parts = mapPath.split("[\\.]+");
@@ -18,11 +18,20 @@
  */
 package org.structr.api;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import org.apache.commons.lang.StringUtils;
+import org.structr.api.graph.Direction;
 import org.structr.api.graph.Label;
+import org.structr.api.graph.Node;
+import org.structr.api.graph.Relationship;
 import org.structr.api.graph.RelationshipType;
+import org.structr.api.util.NodeSpec;
+import org.structr.api.util.NodeWithOwnerResult;
+import org.structr.api.util.RelationshipSpec;
 
 /**
  *
@@ -65,6 +74,58 @@ public abstract class AbstractDatabaseService implements DatabaseService {
 		return millis + "." + nanos;
 	}
 
+	/**
+	 * Default implementation that creates the nodes one by one, drivers
+	 * should override this method if they support bulk statements.
+	 */
+	@Override
+	public List<NodeWithOwnerResult> createNodes(final List<NodeSpec> specs) {
+
+		final List<NodeWithOwnerResult> results = new ArrayList<>(specs.size());
+
+		for (final NodeSpec spec : specs) {
+
+			if (spec.hasOwner()) {
+
+				results.add(createNodeWithOwner(spec.getOwner(), spec.getType(), spec.getLabels(), spec.getProperties(), spec.getOwnsProperties(), spec.getSecurityProperties()));
+
+			} else {
+
+				results.add(new NodeWithOwnerResult(createNode(spec.getType(), spec.getLabels(), spec.getProperties()), null, null));
+			}
+		}
+
+		return results;
+	}
+
+	/**
+	 * Default implementation that creates the relationships one by one,
+	 * drivers should override this method if they support bulk statements.
+	 */
+	@Override
+	public List<Relationship> createRelationships(final List<RelationshipSpec> specs) {
+
+		final List<Relationship> results = new ArrayList<>(specs.size());
+
+		for (final RelationshipSpec spec : specs) {
+
+			final Node startNode = getNodeById(spec.getStartNode());
+			final Node endNode   = getNodeById(spec.getEndNode());
+
+			results.add(startNode.createRelationshipTo(endNode, forName(RelationshipType.class, spec.getType()), spec.getProperties()));
+		}
+
+		return results;
+	}
+
+	/**
+	 * Default implementation that does nothing, relationships are loaded
+	 * on demand when the driver does not support batched access.
+	 */
+	@Override
+	public void prefetchRelationships(final Collection<Node> nodes, final Direction direction, final RelationshipType relationshipType) {
+	}
+
 	// ----- private methods -----
 	private Label getOrCreateLabel(final String name) {
 
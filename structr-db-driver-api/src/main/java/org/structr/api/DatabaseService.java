@@ -18,15 +18,21 @@
  */
 package org.structr.api;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import org.structr.api.graph.Direction;
 import org.structr.api.graph.GraphProperties;
 import org.structr.api.graph.Identity;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
+import org.structr.api.graph.RelationshipType;
 import org.structr.api.index.Index;
 import org.structr.api.util.CountResult;
+import org.structr.api.util.NodeSpec;
 import org.structr.api.util.NodeWithOwnerResult;
+import org.structr.api.util.RelationshipSpec;
 
 /**
  *
@@ -53,8 +59,40 @@ public interface DatabaseService {
 	Node createNode(final String type, final Set<String> labels, final Map<String, Object> properties);
 	NodeWithOwnerResult createNodeWithOwner(final Identity ownerId, final String type, final Set<String> labels, final Map<String, Object> nodeProperties, final Map<String, Object> ownsProperties, final Map<String, Object> securityProperties);
 
+	/**
+	 * Creates the given nodes in bulk and returns one result per spec, in
+	 * the same order. The OWNS and SECURITY relationships of a result are
+	 * only set if the corresponding spec has an owner.
+	 *
+	 * @param specs
+	 * @return the creation results
+	 */
+	List<NodeWithOwnerResult> createNodes(final List<NodeSpec> specs);
+
+	/**
+	 * Creates the given relationships in bulk and returns them in the same
+	 * order as the specs.
+	 *
+	 * @param specs
+	 * @return the new relationships
+	 */
+	List<Relationship> createRelationships(final List<RelationshipSpec> specs);
+
+	/**
+	 * Loads the relationships of the given type and direction for all of
+	 * the given nodes at once, so that subsequent calls to getRelationships
+	 * on these nodes can be answered without accessing the database.
+	 *
+	 * @param nodes
+	 * @param direction
+	 * @param relationshipType
+	 */
+	void prefetchRelationships(final Collection<Node> nodes, final Direction direction, final RelationshipType relationshipType);
+
 	Node getNodeById(final Identity id);
 	Relationship getRelationshipById(final Identity id);
+	Node getNodeById(final long id);
+	Relationship getRelationshipById(final long id);
 
 	Iterable<Node> getAllNodes();
 	Iterable<Node> getNodesByLabel(final String label);
@@ -75,6 +113,7 @@ public interface DatabaseService {
 
 	// utils
 	CountResult getNodeAndRelationshipCount();
+	Map<String, Map<String, Object>> getCacheStatistics();
 
 	// native
 	Iterable<Map<String, Object>> execute(final String nativeQuery, final Map<String, Object> parameters);
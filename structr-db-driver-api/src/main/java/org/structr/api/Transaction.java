@@ -27,6 +27,14 @@ public interface Transaction extends AutoCloseable {
 	void success();
 	long getTransactionId();
 
+	/**
+	 * Returns the number of statements that were sent to the database
+	 * in this transaction so far, or 0 for the in-memory database.
+	 *
+	 * @return the number of database round-trips
+	 */
+	long getQueryCount();
+
 	@Override
 	void close();
 }
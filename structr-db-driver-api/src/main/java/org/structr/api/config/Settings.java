@@ -68,6 +68,7 @@ public class Settings {
 	public static final Setting<String> SnapshotsPath         = new StringSetting(generalGroup,             "Paths",       "snapshot.path",              "snapshots" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<String> LayoutsPath           = new StringSetting(generalGroup,             "Paths",       "layouts.path",               "layouts" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<String> WebDataPath           = new StringSetting(generalGroup,             "Paths",       "data.webapp.path",           "webapp-data" + File.separator, "IMPORTANT: Path is relative to base.path");
+	public static final Setting<String> SchemaCachePath       = new StringSetting(generalGroup,             "Paths",       "schema.cache.path",          "schema-cache" + File.separator, "IMPORTANT: Path is relative to base.path");
 	public static final Setting<Boolean> LogSchemaOutput      = new BooleanSetting(generalGroup,            "Logging",     "NodeExtender.log",           false);
 	public static final Setting<Boolean> LogSchemaErrors      = new BooleanSetting(generalGroup,            "Logging",     "NodeExtender.log.errors",    true);
 	public static final Setting<Boolean> RequestLogging       = new BooleanSetting(generalGroup,            "Logging",     "log.requests",               false);
@@ -104,6 +105,9 @@ public class Settings {
 	public static final Setting<Boolean> HtmlIndentation      = new BooleanSetting(serverGroup, "HTTP Settings", "html.indentation",                true);
 	public static final Setting<Boolean> WsIndentation        = new BooleanSetting(serverGroup, "HTTP Settings", "ws.indentation",                  true);
 	public static final Setting<Integer> SessionTimeout       = new IntegerSetting(serverGroup, "HTTP Settings", "application.session.timeout",     1800, "The session inactivity timeout. Unit is seconds");
+	public static final Setting<Integer> SessionFlushInterval = new IntegerSetting(serverGroup, "HTTP Settings", "application.session.flush.interval", 10, "Interval in which changed session data is written to the database. Unit is seconds");
+	public static final Setting<Integer> FragmentCacheSize    = new IntegerSetting(serverGroup, "HTTP Settings", "html.fragmentcache.size",         10000, "Maximum number of rendered page fragments that are kept in memory for elements with cacheRenderedOutput enabled");
+	public static final Setting<Integer> FragmentCacheTimeout = new IntegerSetting(serverGroup, "HTTP Settings", "html.fragmentcache.timeout",      0, "Maximum age of a cached page fragment. Unit is seconds, 0 means that fragments are kept until a change invalidates them");
 
 	public static final Setting<String> AccessControlMaxAge           = new StringSetting(serverGroup, "CORS Settings", "access.control.max.age",           "3600");
 	public static final Setting<String> AccessControlAllowMethods     = new StringSetting(serverGroup, "CORS Settings", "access.control.allow.methods",     "");
@@ -121,20 +125,29 @@ public class Settings {
 	public static final Setting<String> DatabaseDriverMode      = new ChoiceSetting(databaseGroup,  "Database Driver",     "database.driver.mode",             "embedded", Settings.getStringsAsSet("embedded", "remote"));
 	public static final Setting<String> ConnectionUrl           = new StringSetting(databaseGroup,  "Database Connection", "database.connection.url",          "bolt://localhost:7688");
 	public static final Setting<String> TestingConnectionUrl    = new StringSetting(databaseGroup,  "hidden",              "testing.connection.url",           "bolt://localhost:7689");
+	public static final Setting<String> TestingDatabaseDriver   = new StringSetting(databaseGroup,  "hidden",              "testing.database.driver",          "org.structr.bolt.BoltDatabaseService");
 	public static final Setting<String> ConnectionUser          = new StringSetting(databaseGroup,  "Database Connection", "database.connection.username",     "neo4j");
 	public static final Setting<String> ConnectionPassword      = new StringSetting(databaseGroup,  "Database Connection", "database.connection.password",     "neo4j");
 	public static final Setting<String> TenantIdentifier        = new StringSetting(databaseGroup,  "Database Connection", "database.tenant.identifier",       "");
 	public static final Setting<Integer> RelationshipCacheSize  = new IntegerSetting(databaseGroup, "Caching",             "database.cache.relationship.size", 500000);
 	public static final Setting<Integer> NodeCacheSize          = new IntegerSetting(databaseGroup, "Caching",             "database.cache.node.size",         100000);
 	public static final Setting<Integer> UuidCacheSize          = new IntegerSetting(databaseGroup, "Caching",             "database.cache.uuid.size",         1000000);
+	public static final Setting<Integer> PermissionCacheSize    = new IntegerSetting(databaseGroup, "Caching",             "database.cache.permission.size",   100000);
 	public static final Setting<Boolean> ForceResultStreaming   = new BooleanSetting(databaseGroup, "Result Streaming",    "database.result.lazy",             false, "Forces Structr to use lazy evaluation for relationship queries");
 	public static final Setting<Boolean> CypherDebugLogging     = new BooleanSetting(databaseGroup, "Debugging",           "log.cypher.debug",                 false, "Turns on debug logging for the generated Cypher queries");
 	public static final Setting<Boolean> CypherDebugLoggingPing = new BooleanSetting(databaseGroup, "Debugging",           "log.cypher.debug.ping",            false, "Turns on debug logging for the generated Cypher queries of the websocket PING command. Can only be used in conjunction with log.cypher.debug");
 	public static final Setting<Boolean> SyncDebugging          = new BooleanSetting(databaseGroup, "Sync debugging",      "sync.debug",                       false);
+	public static final Setting<Boolean> PermissionFiltering    = new BooleanSetting(databaseGroup, "Query Optimization",  "database.query.permissionfiltering", false, "Adds visibility predicates to the generated Cypher queries so that nodes a non-admin user cannot see are filtered by the database instead of being loaded and discarded");
+	public static final Setting<Integer> BulkCreationBatchSize  = new IntegerSetting(databaseGroup, "Bulk Operations",     "database.bulk.batchsize",          1000, "Maximum number of nodes or relationships that are written with a single statement when entities are created in bulk");
 
 	// application settings
 	public static final Setting<Boolean> ChangelogEnabled         = new BooleanSetting(applicationGroup, "Changelog",    "application.changelog.enabled",               false, "Turns on logging of changes to nodes and relationships");
 	public static final Setting<Boolean> UserChangelogEnabled     = new BooleanSetting(applicationGroup, "Changelog",    "application.changelog.user_centric.enabled",  false, "Turns on user-centric logging of what a user changed/created/deleted");
+	public static final Setting<String> ChangelogBackend          = new ChoiceSetting(applicationGroup,  "Changelog",    "application.changelog.backend",               "files", Settings.getStringsAsSet("files", "segments"), "Storage of the changelog. 'files' writes one file per object, 'segments' appends the changes of all objects to rolling segment files in changelog.path/segments.");
+	public static final Setting<Integer> ChangelogSegmentSize     = new IntegerSetting(applicationGroup, "Changelog",    "application.changelog.segments.size",         64, "Maximum size (MB) of a changelog segment");
+	public static final Setting<Integer> ChangelogSyncInterval    = new IntegerSetting(applicationGroup, "Changelog",    "application.changelog.segments.sync_interval", 1000, "Interval (ms) in which changelog segments are forced to disk. A value of 0 forces the segment to disk on every commit.");
+	public static final Setting<Integer> ChangelogRetention       = new IntegerSetting(applicationGroup, "Changelog",    "application.changelog.segments.retention",    0, "Number of days for which changelog segments are kept. A segment is deleted when its newest entry is older. A value of 0 keeps all segments.");
+	public static final Setting<Integer> ChangelogMaxSize         = new IntegerSetting(applicationGroup, "Changelog",    "application.changelog.segments.max_size",     0, "Maximum total size (MB) of all changelog segments. The oldest segments are deleted when it is exceeded. A value of 0 means no limit.");
 	public static final Setting<Boolean> FilesystemEnabled        = new BooleanSetting(applicationGroup, "Filesystem",   "application.filesystem.enabled",              false);
 	public static final Setting<Boolean> UniquePaths              = new BooleanSetting(applicationGroup, "Filesystem",   "application.filesystem.unique.paths",         true);
 	public static final Setting<String> DefaultChecksums          = new StringSetting(applicationGroup,  "Filesystem",   "application.filesystem.checksums.default",    "", "List of checksums to be calculated on file creation by default.");
@@ -142,6 +155,9 @@ public class Settings {
 	public static final Setting<Integer> IndexingLimit            = new IntegerSetting(applicationGroup, "Filesystem",   "application.filesystem.indexing.limit",       50000, "Maximum number of words to be indexed");
 	public static final Setting<Integer> IndexingMinLength        = new IntegerSetting(applicationGroup, "Filesystem",   "application.filesystem.indexing.minlength",   3);
 	public static final Setting<Integer> IndexingMaxLength        = new IntegerSetting(applicationGroup, "Filesystem",   "application.filesystem.indexing.maxlength",   30);
+	public static final Setting<String> IndexingBackend           = new ChoiceSetting(applicationGroup,  "Filesystem",   "application.filesystem.indexing.backend",     "graph", Settings.getStringsAsSet("graph", "segments"), "Storage of the fulltext index. 'graph' stores the words of each file as IndexedWord nodes, 'segments' stores them in a local inverted index with relevance ranking in files.path/fulltext-index.");
+	public static final Setting<Integer> IndexingFlushInterval    = new IntegerSetting(applicationGroup, "Filesystem",   "application.filesystem.indexing.segments.flush_interval", 1000, "Interval (ms) in which newly indexed files are written to a new segment of the fulltext index");
+	public static final Setting<Integer> IndexingMergeFactor      = new IntegerSetting(applicationGroup, "Filesystem",   "application.filesystem.indexing.segments.merge_factor",   10, "Number of fulltext index segments of similar size that are merged into a single segment");
 	public static final Setting<Boolean> FollowSymlinks           = new BooleanSetting(applicationGroup, "Filesystem",   "application.filesystem.mount.followSymlinks", true);
 	public static final Setting<String> DefaultUploadFolder       = new StringSetting(applicationGroup,  "Filesystem",   "application.uploads.folder",                  "");
 	public static final Setting<String> HttpProxyUrl              = new StringSetting(applicationGroup,  "Proxy",        "application.proxy.http.url",                  "");
@@ -149,7 +165,14 @@ public class Settings {
 	public static final Setting<String> HttpProxyPassword         = new StringSetting(applicationGroup,  "Proxy",        "application.proxy.http.password",             "");
 	public static final Setting<Boolean> SchemAutoMigration       = new BooleanSetting(applicationGroup, "Schema",       "application.schema.automigration",            false);
 	public static final Setting<Boolean> AllowUnknownPropertyKeys = new BooleanSetting(applicationGroup, "Schema",       "application.schema.allowUnknownKeys",         false, "Enables get() and set() built-in functions to use property keys that are not defined in the schema.");
+	public static final Setting<Boolean> SchemaCompilationCache   = new BooleanSetting(applicationGroup, "Schema",       "application.schema.compilation.cache",        true, "Stores the byte code of compiled schema types in schema.cache.path and compiles only types whose source code or dependencies have changed.");
 	public static final Setting<Boolean> logMissingLocalizations  = new BooleanSetting(applicationGroup, "Localization", "application.localization.logMissing",         false, "Turns on logging for requested but non-existing localizations.");
+	public static final Setting<Integer> ScriptEnginePoolSize     = new IntegerSetting(applicationGroup, "Scripting",    "application.scripting.enginepool.size",       4, "Maximum number of idle script engine instances that are kept per non-JavaScript scripting engine (e.g. R or Python)");
+	public static final Setting<Boolean> ScriptSharedScope        = new BooleanSetting(applicationGroup, "Scripting",    "application.scripting.sharedscope",           true, "Shares one sealed set of JavaScript standard objects (Object, Array, String etc.) between all script evaluations. Disable this if scripts add properties to the built-in objects or their prototypes, which is not possible in a sealed scope.");
+	public static final Setting<Integer> ImportJobConcurrency     = new IntegerSetting(applicationGroup, "Jobs",         "application.jobs.import.concurrency",         1, "Maximum number of CSV and XML import jobs that run at the same time.");
+	public static final Setting<Integer> ScriptJobConcurrency     = new IntegerSetting(applicationGroup, "Jobs",         "application.jobs.script.concurrency",         4, "Maximum number of scheduled script jobs that run at the same time.");
+	public static final Setting<Integer> AgentThreads             = new IntegerSetting(applicationGroup, "Agents",       "application.agents.threads",                  4, "Maximum number of agent threads per task type. Can be set for a single task type with application.agents.<TaskType>.threads, e.g. application.agents.FulltextIndexingTask.threads.");
+	public static final Setting<Integer> MaintenanceThreads       = new IntegerSetting(applicationGroup, "Maintenance",  "application.maintenance.threads",             1, "Number of worker threads that bulk maintenance commands which support parallel execution (e.g. rebuildIndex, setUuid, createLabels) use. A value of 1 processes all objects sequentially.");
 
 	// mail settings
 	public static final Setting<String> SmtpHost              = new StringSetting(smtpGroup,  "SMTP Settings", "smtp.host",         "localhost");
@@ -163,7 +186,10 @@ public class Settings {
 	// advanced settings
 	public static final Setting<String> ForeignTypeName               = new StringSetting(advancedGroup,  "hidden", "foreign.type.key",               "");
 	public static final Setting<Boolean> JsonRedundancyReduction      = new BooleanSetting(advancedGroup, "JSON",   "json.redundancyReduction",       true);
-	public static final Setting<Integer> JsonParallelizationThreshold = new IntegerSetting(advancedGroup, "JSON",   "json.parallelization.threshold", 100);
+	public static final Setting<Integer> JsonParallelizationThreshold = new IntegerSetting(advancedGroup, "JSON",   "json.parallelization.threshold", 100, "Minimum number of objects in a JSON result to serialize it in parallel, and number of objects serialized per batch");
+	public static final Setting<Integer> JsonParallelizationThreads   = new IntegerSetting(advancedGroup, "JSON",   "json.parallelization.threads",   Runtime.getRuntime().availableProcessors(), "Number of threads in the shared pool that serializes partitions of large JSON results");
+	public static final Setting<Integer> JsonParallelizationQueueSize = new IntegerSetting(advancedGroup, "JSON",   "json.parallelization.queuesize", 256, "Maximum number of partitions waiting for a serialization thread. Partitions that do not fit are serialized by the request thread.");
+	public static final Setting<Integer> JsonParallelizationDegree    = new IntegerSetting(advancedGroup, "JSON",   "json.parallelization.degree",    4, "Maximum number of partitions each batch of a JSON result is split into");
 	public static final Setting<Boolean> JsonLenient                  = new BooleanSetting(advancedGroup, "JSON",   "json.lenient",                   false);
 	public static final Setting<Boolean> ForceArrays                  = new BooleanSetting(advancedGroup, "JSON",   "json.output.forceArrays",        false);
 
@@ -230,6 +256,8 @@ public class Settings {
 	public static final Setting<Boolean> WebsocketUserAutologin    = new BooleanSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.user.autologin",    false);
 	public static final Setting<Boolean> WebsocketUserAutocreate   = new BooleanSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.user.autocreate",   false);
 	public static final Setting<Boolean> WebsocketFrontendAccess   = new BooleanSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.frontendAccess",    false);
+	public static final Setting<Integer> WebsocketClientQueueSize  = new IntegerSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.client.queuesize",  1000, "Maximum number of messages that can be waiting to be sent to a single websocket client. Clients that fall further behind are disconnected.");
+	public static final Setting<Integer> WebsocketBroadcastQueueSize = new IntegerSetting(servletsGroup, "WebSocketServlet", "WebSocketServlet.broadcast.queuesize", 10000, "Maximum number of messages that can be waiting to be broadcast to all websocket clients. Transactions wait for the broadcast thread when the queue is full.");
 
 	public static final Setting<String> CsvServletPath       = new StringSetting(servletsGroup,  "CsvServlet", "CsvServlet.path",              "/structr/csv/*");
 	public static final Setting<String> CsvServletClass      = new StringSetting(servletsGroup,  "CsvServlet", "CsvServlet.class",             "org.structr.rest.servlet.CsvServlet");
@@ -259,6 +287,7 @@ public class Settings {
 	public static final Setting<String> GraphQLResourceProvider  = new StringSetting(servletsGroup,  "GraphQLServlet", "GraphQLServlet.resourceprovider",      "org.structr.web.common.UiResourceProvider");
 	public static final Setting<String> GraphQLDefaultView       = new StringSetting(servletsGroup,  "GraphQLServlet", "GraphQLServlet.defaultview",           "public");
 	public static final Setting<Integer> GraphQLOutputDepth      = new IntegerSetting(servletsGroup, "GraphQLServlet", "GraphQLServlet.outputdepth",	   3);
+	public static final Setting<Boolean> GraphQLPrefetch         = new BooleanSetting(servletsGroup, "GraphQLServlet", "GraphQLServlet.prefetch",              true, "Loads the related nodes of nested queries level by level in batches instead of node by node");
 
 	public static final Setting<String> DeploymentServletPath                = new StringSetting(servletsGroup,  "DeploymentServlet", "DeploymentServlet.path",                      "/structr/deploy");
 	public static final Setting<String> DeploymentServletClass               = new StringSetting(servletsGroup,  "DeploymentServlet", "DeploymentServlet.class",                     "org.structr.web.servlet.DeploymentServlet");
@@ -18,6 +18,9 @@
  */
 package org.structr.api.search;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
 /**
  * Context object for index queries.
  */
@@ -29,6 +32,13 @@ public class QueryContext {
 
 	private boolean isPing = false;
 
+	private boolean keyset     = false;
+	private long afterId       = -1L;
+	private Object afterValue  = null;
+	private long lastId        = -1L;
+	private Object lastValue   = null;
+	private int fetchCount     = 0;
+
 	public QueryContext() {
 	}
 
@@ -62,4 +72,128 @@ public class QueryContext {
 		return this.isPing;
 	}
 
+	/**
+	 * Enables keyset pagination for this query. The query will be
+	 * ordered by the sort key (if any) and the internal id, and will
+	 * only return results that come after the position that is
+	 * encoded in the given cursor. An empty cursor starts at the
+	 * beginning of the result.
+	 *
+	 * @param cursor the cursor returned by a previous query, or null
+	 * @return this
+	 *
+	 * @throws IllegalArgumentException if the cursor cannot be decoded
+	 */
+	public QueryContext keyset(final String cursor) {
+
+		this.keyset = true;
+
+		if (cursor != null && !cursor.isEmpty()) {
+
+			try {
+
+				final String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+				final int firstColon = decoded.indexOf(':');
+				final String tag     = decoded.substring(firstColon + 1, firstColon + 2);
+				final String value   = decoded.substring(firstColon + 2);
+
+				this.afterId = Long.parseLong(decoded.substring(0, firstColon));
+
+				switch (tag) {
+
+					case "S": afterValue = value; break;
+					case "L": afterValue = Long.valueOf(value); break;
+					case "D": afterValue = Double.valueOf(value); break;
+					case "B": afterValue = Boolean.valueOf(value); break;
+					case "N": afterValue = null; break;
+
+					default:
+						throw new IllegalArgumentException("Invalid cursor " + cursor);
+				}
+
+			} catch (RuntimeException rex) {
+
+				throw new IllegalArgumentException("Invalid cursor " + cursor);
+			}
+		}
+
+		return this;
+	}
+
+	public boolean isKeyset() {
+		return keyset;
+	}
+
+	public boolean hasKeysetPosition() {
+		return afterId >= 0;
+	}
+
+	public long getKeysetId() {
+		return afterId;
+	}
+
+	public Object getKeysetValue() {
+		return afterValue;
+	}
+
+	/**
+	 * Records the keyset position of a result element, called
+	 * by the database driver for every element it fetches.
+	 *
+	 * @param id the internal id of the element
+	 * @param sortValue the value of the sort key, or null
+	 */
+	public void keysetPosition(final long id, final Object sortValue) {
+
+		this.lastId    = id;
+		this.lastValue = sortValue;
+
+		fetchCount++;
+	}
+
+	/**
+	 * Returns an opaque cursor that points to the position after the
+	 * last element that was fetched, or null if there are no more
+	 * results.
+	 *
+	 * @return the cursor or null
+	 */
+	public String getNextCursor() {
+
+		if (!keyset || fetchCount == 0 || (sliced && fetchCount < limit)) {
+			return null;
+		}
+
+		final StringBuilder buf = new StringBuilder();
+
+		buf.append(lastId);
+		buf.append(":");
+
+		if (lastValue == null) {
+
+			buf.append("N");
+
+		} else if (lastValue instanceof Long || lastValue instanceof Integer || lastValue instanceof Short) {
+
+			buf.append("L");
+			buf.append(lastValue);
+
+		} else if (lastValue instanceof Number) {
+
+			buf.append("D");
+			buf.append(lastValue);
+
+		} else if (lastValue instanceof Boolean) {
+
+			buf.append("B");
+			buf.append(lastValue);
+
+		} else {
+
+			buf.append("S");
+			buf.append(lastValue);
+		}
+
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(buf.toString().getBytes(StandardCharsets.UTF_8));
+	}
 }
@@ -0,0 +1,309 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A fixed-size LRU cache that is split into a number of independently
+ * locked segments, so that threads accessing different keys do not
+ * contend for a single monitor like they do in FixedSizeCache.
+ *
+ * Each segment holds at most maxSize / segmentCount entries and
+ * evicts its own least recently used entry, notifying values that
+ * implement {@link Cachable}. Hits, misses and evictions are counted.
+ *
+ * @param <K>
+ * @param <V>
+ */
+public class ConcurrentFixedSizeCache<K, V> {
+
+	private final LongAdder hits      = new LongAdder();
+	private final LongAdder misses    = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private Segment<K, V>[] segments  = null;
+	private int mask                  = 0;
+	private int maxSize               = 0;
+
+	public ConcurrentFixedSizeCache(final int maxSize) {
+		this(maxSize, Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	public ConcurrentFixedSizeCache(final int maxSize, final int concurrencyLevel) {
+
+		// segment count is the next power of two, but never more than maxSize
+		int segmentCount = 1;
+		while (segmentCount < concurrencyLevel && segmentCount * 2 <= maxSize) {
+			segmentCount <<= 1;
+		}
+
+		this.segments = new Segment[segmentCount];
+		this.mask     = segmentCount - 1;
+		this.maxSize  = maxSize;
+
+		final int segmentSize = Math.max(1, maxSize / segmentCount);
+
+		for (int i=0; i<segmentCount; i++) {
+			segments[i] = new Segment<>(segmentSize, evictions);
+		}
+	}
+
+	public void put(final K key, final V value) {
+		segmentFor(key).put(key, value);
+	}
+
+	public V get(final K key) {
+
+		final V value = segmentFor(key).get(key);
+		if (value != null) {
+
+			hits.increment();
+
+		} else {
+
+			misses.increment();
+		}
+
+		return value;
+	}
+
+	/**
+	 * Returns the value for the given key, or creates, stores and returns
+	 * a new value if there is no value or the existing value is not valid
+	 * any more. The check and the creation are atomic with respect to
+	 * other threads accessing the same segment, so the factory should be
+	 * fast and must not access this cache.
+	 *
+	 * @param key
+	 * @param isValid
+	 * @param factory
+	 * @return the cached or newly created value
+	 */
+	public V get(final K key, final Predicate<V> isValid, final Function<K, V> factory) {
+		return get(key, isValid, factory, true);
+	}
+
+	/**
+	 * Returns the value for the given key like {@link #get(Object, Predicate, Function)},
+	 * but does not count a hit or a miss. Use this method for callers that
+	 * have already counted the lookup, e.g. after a miss in {@link #get(Object)}.
+	 *
+	 * @param key
+	 * @param isValid
+	 * @param factory
+	 * @return the cached or newly created value
+	 */
+	public V putIfAbsent(final K key, final Predicate<V> isValid, final Function<K, V> factory) {
+		return get(key, isValid, factory, false);
+	}
+
+	/**
+	 * Returns the value for the given key without counting a hit or a miss.
+	 *
+	 * @param key
+	 * @return the value or null
+	 */
+	public V peek(final K key) {
+		return segmentFor(key).get(key);
+	}
+
+	public void removeAll(final Collection<K> keys) {
+
+		for (final K key : keys) {
+			remove(key);
+		}
+	}
+
+	public void remove(final K key) {
+		segmentFor(key).remove(key);
+	}
+
+	/**
+	 * Removes the entry for the given key only if it is currently mapped
+	 * to the given value.
+	 *
+	 * @param key
+	 * @param value
+	 * @return whether the entry was removed
+	 */
+	public boolean remove(final K key, final V value) {
+		return segmentFor(key).remove(key, value);
+	}
+
+	public void clear() {
+
+		for (final Segment<K, V> segment : segments) {
+			segment.clear();
+		}
+	}
+
+	public int size() {
+
+		int size = 0;
+
+		for (final Segment<K, V> segment : segments) {
+			size += segment.size();
+		}
+
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> stats = new LinkedHashMap<>();
+
+		stats.put("size",      size());
+		stats.put("maxSize",   maxSize);
+		stats.put("segments",  segments.length);
+		stats.put("hits",      getHitCount());
+		stats.put("misses",    getMissCount());
+		stats.put("evictions", getEvictionCount());
+
+		return stats;
+	}
+
+	// ----- private methods -----
+	private V get(final K key, final Predicate<V> isValid, final Function<K, V> factory, final boolean count) {
+
+		final Segment<K, V> segment = segmentFor(key);
+
+		synchronized (segment) {
+
+			V value = segment.map.get(key);
+			if (value == null || !isValid.test(value)) {
+
+				if (count) {
+					misses.increment();
+				}
+
+				value = factory.apply(key);
+				segment.map.put(key, value);
+
+			} else if (count) {
+
+				hits.increment();
+			}
+
+			return value;
+		}
+	}
+
+	private Segment<K, V> segmentFor(final K key) {
+
+		// spread hash bits so that sequential ids are distributed evenly
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+
+		return segments[h & mask];
+	}
+
+	// ----- nested classes -----
+	private static class Segment<K, V> {
+
+		private InvalidatingLRUMap<K, V> map = null;
+
+		public Segment(final int maxSize, final LongAdder evictions) {
+			this.map = new InvalidatingLRUMap<>(maxSize, evictions);
+		}
+
+		public synchronized void put(final K key, final V value) {
+			map.put(key, value);
+		}
+
+		public synchronized V get(final K key) {
+			return map.get(key);
+		}
+
+		public synchronized void remove(final K key) {
+			map.remove(key);
+		}
+
+		public synchronized boolean remove(final K key, final V value) {
+			return map.remove(key, value);
+		}
+
+		public synchronized void clear() {
+			map.clear();
+		}
+
+		public synchronized int size() {
+			return map.size();
+		}
+	}
+
+	private static class InvalidatingLRUMap<K, V> extends LinkedHashMap<K, V> {
+
+		private LongAdder evictions = null;
+		private int maxSize         = 0;
+
+		public InvalidatingLRUMap(final int maxSize, final LongAdder evictions) {
+
+			super(Math.min(maxSize, 1024), 0.75f, true);
+
+			this.evictions = evictions;
+			this.maxSize   = maxSize;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<K, V> eldest) {
+
+			if (size() > maxSize) {
+
+				final V value = eldest.getValue();
+				if (value != null && value instanceof Cachable) {
+
+					((Cachable)value).onRemoveFromCache();
+				}
+
+				evictions.increment();
+
+				return true;
+			}
+
+			return false;
+		}
+	}
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.Map;
+import java.util.Set;
+import org.structr.api.graph.Identity;
+
+/**
+ * Describes a node that is to be created in a bulk operation, optionally
+ * together with the OWNS and SECURITY relationships of its owner.
+ */
+public class NodeSpec {
+
+	private Map<String, Object> securityProperties = null;
+	private Map<String, Object> ownsProperties     = null;
+	private Map<String, Object> properties         = null;
+	private Set<String> labels                     = null;
+	private Identity owner                         = null;
+	private String type                            = null;
+
+	public NodeSpec(final String type, final Set<String> labels, final Map<String, Object> properties) {
+		this(null, type, labels, properties, null, null);
+	}
+
+	public NodeSpec(final Identity owner, final String type, final Set<String> labels, final Map<String, Object> properties, final Map<String, Object> ownsProperties, final Map<String, Object> securityProperties) {
+
+		this.securityProperties = securityProperties;
+		this.ownsProperties     = ownsProperties;
+		this.properties         = properties;
+		this.labels             = labels;
+		this.owner              = owner;
+		this.type               = type;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public Set<String> getLabels() {
+		return labels;
+	}
+
+	public Map<String, Object> getProperties() {
+		return properties;
+	}
+
+	public Identity getOwner() {
+		return owner;
+	}
+
+	public boolean hasOwner() {
+		return owner != null;
+	}
+
+	public Map<String, Object> getOwnsProperties() {
+		return ownsProperties;
+	}
+
+	public Map<String, Object> getSecurityProperties() {
+		return securityProperties;
+	}
+}
@@ -21,6 +21,7 @@ package org.structr.api.util;
 import java.util.Iterator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.search.QueryContext;
 
 /**
  * An iterable that supports pagination and result counting.
@@ -29,6 +30,7 @@ public class PagingIterable<T> implements ResultStream<T> {
 
 	private static final Logger logger = LoggerFactory.getLogger(PagingIterable.class);
 	private PagingIterator<T> source   = null;
+	private QueryContext queryContext  = null;
 	private String queryTimeFormatted  = null;
 
 	public PagingIterable(final Iterable<T> source) {
@@ -36,7 +38,13 @@ public class PagingIterable<T> implements ResultStream<T> {
 	}
 
 	public PagingIterable(final Iterable<T> source, final int pageSize, final int page) {
-		this.source = new PagingIterator<>(source.iterator(), page, pageSize);
+		this(source, pageSize, page, null);
+	}
+
+	public PagingIterable(final Iterable<T> source, final int pageSize, final int page, final QueryContext queryContext) {
+
+		this.source       = new PagingIterator<>(source.iterator(), page, pageSize);
+		this.queryContext = queryContext;
 	}
 
 	@Override
@@ -71,6 +79,16 @@ public class PagingIterable<T> implements ResultStream<T> {
 		return source.getPage();
 	}
 
+	@Override
+	public String getNextCursor() {
+
+		if (queryContext != null) {
+			return queryContext.getNextCursor();
+		}
+
+		return null;
+	}
+
 	@Override
 	public void setQueryTime(String formattedTime) {
 		this.queryTimeFormatted = formattedTime;
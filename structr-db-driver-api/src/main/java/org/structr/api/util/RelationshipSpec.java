@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.Map;
+import org.structr.api.graph.Identity;
+
+/**
+ * Describes a relationship that is to be created in a bulk operation.
+ */
+public class RelationshipSpec {
+
+	private Map<String, Object> properties = null;
+	private Identity startNode             = null;
+	private Identity endNode               = null;
+	private String type                    = null;
+
+	public RelationshipSpec(final Identity startNode, final Identity endNode, final String type, final Map<String, Object> properties) {
+
+		this.properties = properties;
+		this.startNode  = startNode;
+		this.endNode    = endNode;
+		this.type       = type;
+	}
+
+	public Identity getStartNode() {
+		return startNode;
+	}
+
+	public Identity getEndNode() {
+		return endNode;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public Map<String, Object> getProperties() {
+		return properties;
+	}
+}
@@ -45,6 +45,16 @@ public interface ResultStream<T> extends Iterable<T> {
 	int getPageSize();
 	int getPage();
 
+	/**
+	 * Returns the cursor that points to the next page of a keyset
+	 * paginated result, or null if this result is not keyset paginated
+	 * or if there are no more results. Note that the cursor is only
+	 * available after the result has been consumed.
+	 *
+	 * @return the cursor for the next page or null
+	 */
+	String getNextCursor();
+
 	void setQueryTime(final String formattedTime);
 	String getQueryTime();
 }
@@ -0,0 +1,525 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A compact, fixed-size map from UUID strings to database ids.
+ *
+ * UUIDs are parsed into two longs and stored together with the id in
+ * primitive arrays, using open addressing with linear probing, so that
+ * an entry needs about 30 bytes instead of the 150+ bytes of a map
+ * entry with String key, LRU links and a boxed value. The map is split
+ * into segments that are written under a lock and read optimistically
+ * without locking. When a segment is full, entries are evicted with a
+ * CLOCK (second chance) algorithm that approximates LRU.
+ *
+ * Keys that are not 32-character (or 36-character, dashed) hexadecimal
+ * strings are not stored.
+ */
+public class UuidIndex {
+
+	public static final long NOT_FOUND = -1L;
+
+	private static final byte[] HEX    = new byte[128];
+
+	static {
+
+		Arrays.fill(HEX, (byte)-1);
+
+		for (int i=0; i<10; i++) {
+			HEX['0' + i] = (byte)i;
+		}
+
+		for (int i=0; i<6; i++) {
+
+			HEX['a' + i] = (byte)(10 + i);
+			HEX['A' + i] = (byte)(10 + i);
+		}
+	}
+
+	private final LongAdder hits      = new LongAdder();
+	private final LongAdder misses    = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+	private Segment[] segments        = null;
+	private int segmentShift          = 0;
+	private int maxSize               = 0;
+
+	public UuidIndex(final int maxSize) {
+		this(maxSize, Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	public UuidIndex(final int maxSize, final int concurrencyLevel) {
+
+		int segmentBits = 0;
+		while ((1 << segmentBits) < concurrencyLevel && (2 << segmentBits) <= maxSize) {
+			segmentBits++;
+		}
+
+		final int segmentCount = 1 << segmentBits;
+		final int segmentSize  = Math.max(1, maxSize / segmentCount);
+
+		this.segments     = new Segment[segmentCount];
+		this.segmentShift = 32 - segmentBits;
+		this.maxSize      = maxSize;
+
+		for (int i=0; i<segmentCount; i++) {
+			segments[i] = new Segment(segmentSize, evictions);
+		}
+	}
+
+	/**
+	 * Returns the id for the given uuid, or NOT_FOUND.
+	 *
+	 * @param uuid
+	 * @return the id or NOT_FOUND
+	 */
+	public long get(final String uuid) {
+
+		final long[] key = parse(uuid);
+		if (key != null) {
+
+			final int hash = hash(key[0], key[1]);
+			final long id  = segmentFor(hash).get(key[0], key[1], hash);
+
+			if (id != NOT_FOUND) {
+
+				hits.increment();
+				return id;
+			}
+		}
+
+		misses.increment();
+
+		return NOT_FOUND;
+	}
+
+	public void put(final String uuid, final long id) {
+
+		final long[] key = parse(uuid);
+		if (key != null && id >= 0) {
+
+			final int hash = hash(key[0], key[1]);
+			segmentFor(hash).put(key[0], key[1], hash, id);
+		}
+	}
+
+	public void remove(final String uuid) {
+
+		final long[] key = parse(uuid);
+		if (key != null) {
+
+			final int hash = hash(key[0], key[1]);
+			segmentFor(hash).remove(key[0], key[1], hash);
+		}
+	}
+
+	public void clear() {
+
+		for (final Segment segment : segments) {
+			segment.clear();
+		}
+	}
+
+	public int size() {
+
+		int size = 0;
+
+		for (final Segment segment : segments) {
+			size += segment.size();
+		}
+
+		return size;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Returns the number of bytes allocated for the hash tables.
+	 *
+	 * @return the memory usage in bytes
+	 */
+	public long getMemoryUsage() {
+
+		long bytes = 0L;
+
+		for (final Segment segment : segments) {
+			bytes += segment.getMemoryUsage();
+		}
+
+		return bytes;
+	}
+
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> stats = new LinkedHashMap<>();
+
+		stats.put("size",      size());
+		stats.put("maxSize",   maxSize);
+		stats.put("segments",  segments.length);
+		stats.put("bytes",     getMemoryUsage());
+		stats.put("hits",      getHitCount());
+		stats.put("misses",    getMissCount());
+		stats.put("evictions", getEvictionCount());
+
+		return stats;
+	}
+
+	/**
+	 * Parses a UUID string into two longs.
+	 *
+	 * @param uuid
+	 * @return an array with the most and least significant bits, or null if the string is not a valid UUID
+	 */
+	public static long[] parse(final String uuid) {
+
+		if (uuid == null) {
+			return null;
+		}
+
+		switch (uuid.length()) {
+
+			case 32:
+				long high = 0L;
+				long low  = 0L;
+				int check = 0;
+
+				// invalid characters map to -1, which sets the sign bit of check
+				for (int i=0; i<16; i++) {
+
+					final int digit = digit(uuid.charAt(i));
+
+					high   = (high << 4) | (digit & 0xf);
+					check |= digit;
+				}
+
+				for (int i=16; i<32; i++) {
+
+					final int digit = digit(uuid.charAt(i));
+
+					low    = (low << 4) | (digit & 0xf);
+					check |= digit;
+				}
+
+				return check < 0 ? null : new long[] { high, low };
+
+			case 36:
+				if (uuid.charAt(8) != '-' || uuid.charAt(13) != '-' || uuid.charAt(18) != '-' || uuid.charAt(23) != '-') {
+					return null;
+				}
+
+				return parse(uuid.substring(0, 8) + uuid.substring(9, 13) + uuid.substring(14, 18) + uuid.substring(19, 23) + uuid.substring(24));
+		}
+
+		return null;
+	}
+
+	// ----- private methods -----
+	private static int digit(final char c) {
+		return c < 128 ? HEX[c] : -1;
+	}
+
+	private Segment segmentFor(final int hash) {
+		return segments[segmentShift == 32 ? 0 : hash >>> segmentShift];
+	}
+
+	private static int hash(final long high, final long low) {
+
+		// murmur3 finalizer
+		long h = high ^ Long.rotateLeft(low, 32);
+
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+
+		return (int)h;
+	}
+
+	// ----- nested classes -----
+	/**
+	 * One segment of the index. Each slot uses three consecutive longs
+	 * in the table array (high bits, low bits, id + 1), an id value of 0
+	 * marks an empty slot. The reference bits for the CLOCK eviction are
+	 * set by readers without locking, they are only a hint.
+	 */
+	private static class Segment {
+
+		private final StampedLock lock = new StampedLock();
+		private LongAdder evictions    = null;
+		private byte[] referenced      = null;
+		private long[] table           = null;
+		private int maxEntries         = 0;
+		private int mask               = 0;
+		private int size               = 0;
+		private int hand               = 0;
+
+		public Segment(final int maxEntries, final LongAdder evictions) {
+
+			// keep the load factor below 0.75
+			int capacity = 2;
+			while (capacity * 3 < maxEntries * 4) {
+				capacity <<= 1;
+			}
+
+			this.referenced = new byte[capacity];
+			this.table      = new long[capacity * 3];
+			this.maxEntries = maxEntries;
+			this.mask       = capacity - 1;
+			this.evictions  = evictions;
+		}
+
+		public long get(final long high, final long low, final int hash) {
+
+			long stamp = lock.tryOptimisticRead();
+			int slot   = find(high, low, hash);
+			long value = slot >= 0 ? table[slot * 3 + 2] : 0L;
+
+			if (!lock.validate(stamp)) {
+
+				// concurrent modification, read again under lock
+				stamp = lock.readLock();
+				try {
+
+					slot  = find(high, low, hash);
+					value = slot >= 0 ? table[slot * 3 + 2] : 0L;
+
+				} finally {
+
+					lock.unlockRead(stamp);
+				}
+			}
+
+			if (slot >= 0 && value != 0L) {
+
+				if (referenced[slot] == 0) {
+					referenced[slot] = 1;
+				}
+
+				return value - 1;
+			}
+
+			return NOT_FOUND;
+		}
+
+		public void put(final long high, final long low, final int hash, final long id) {
+
+			final long stamp = lock.writeLock();
+			try {
+
+				final int slot = find(high, low, hash);
+				if (slot >= 0) {
+
+					table[slot * 3 + 2] = id + 1;
+					referenced[slot]    = 1;
+					return;
+				}
+
+				if (size >= maxEntries) {
+					evict();
+				}
+
+				int index = hash & mask;
+
+				while (table[index * 3 + 2] != 0L) {
+					index = (index + 1) & mask;
+				}
+
+				table[index * 3]     = high;
+				table[index * 3 + 1] = low;
+				table[index * 3 + 2] = id + 1;
+				referenced[index]    = 0;
+
+				size++;
+
+			} finally {
+
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		public void remove(final long high, final long low, final int hash) {
+
+			final long stamp = lock.writeLock();
+			try {
+
+				final int slot = find(high, low, hash);
+				if (slot >= 0) {
+
+					delete(slot);
+				}
+
+			} finally {
+
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		public void clear() {
+
+			final long stamp = lock.writeLock();
+			try {
+
+				Arrays.fill(table, 0L);
+				Arrays.fill(referenced, (byte)0);
+
+				size = 0;
+				hand = 0;
+
+			} finally {
+
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		public int size() {
+
+			final long stamp = lock.readLock();
+			try {
+
+				return size;
+
+			} finally {
+
+				lock.unlockRead(stamp);
+			}
+		}
+
+		public long getMemoryUsage() {
+			return table.length * 8L + referenced.length;
+		}
+
+		// ----- private methods -----
+		private int find(final long high, final long low, final int hash) {
+
+			final long[] t = table;
+			int index      = hash & mask;
+
+			// the number of probes is limited so that optimistic
+			// reads of a table that is being modified terminate
+			for (int i=0; i<=mask; i++) {
+
+				final int offset = index * 3;
+				final long value = t[offset + 2];
+
+				if (value == 0L) {
+					return -1;
+				}
+
+				if (t[offset] == high && t[offset + 1] == low) {
+					return index;
+				}
+
+				index = (index + 1) & mask;
+			}
+
+			return -1;
+		}
+
+		private void evict() {
+
+			// CLOCK: advance the hand, giving referenced entries a second chance
+			while (true) {
+
+				final int index = hand;
+
+				hand = (hand + 1) & mask;
+
+				if (table[index * 3 + 2] != 0L) {
+
+					if (referenced[index] != 0) {
+
+						referenced[index] = 0;
+
+					} else {
+
+						delete(index);
+						evictions.increment();
+						return;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Removes the entry in the given slot and shifts the entries of
+		 * the following cluster back so that no tombstones are needed.
+		 */
+		private void delete(final int slot) {
+
+			int empty = slot;
+			int index = slot;
+
+			while (true) {
+
+				index = (index + 1) & mask;
+
+				final int offset = index * 3;
+				if (table[offset + 2] == 0L) {
+					break;
+				}
+
+				final int home = hash(table[offset], table[offset + 1]) & mask;
+
+				// move the entry if its home slot is not in the range (empty, index]
+				final boolean inRange = empty <= index ? (home > empty && home <= index) : (home > empty || home <= index);
+				if (!inRange) {
+
+					final int target = empty * 3;
+
+					table[target]     = table[offset];
+					table[target + 1] = table[offset + 1];
+					table[target + 2] = table[offset + 2];
+					referenced[empty] = referenced[index];
+
+					empty = index;
+				}
+			}
+
+			final int target = empty * 3;
+
+			table[target]     = 0L;
+			table[target + 1] = 0L;
+			table[target + 2] = 0L;
+			referenced[empty] = 0;
+
+			size--;
+		}
+	}
+}
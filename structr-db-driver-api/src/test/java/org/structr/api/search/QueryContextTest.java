@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.search;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+import org.testng.annotations.Test;
+
+/**
+ *
+ */
+public class QueryContextTest {
+
+	@Test
+	public void testKeysetCursorRoundtrip() {
+
+		final Object[] values = new Object[] { "a:b:c", 123L, 1.5, true, null, "" };
+
+		for (final Object value : values) {
+
+			final QueryContext first = new QueryContext().keyset(null).slice(0, 2);
+
+			first.keysetPosition(1L, "ignored");
+			first.keysetPosition(42L, value);
+
+			final String cursor       = first.getNextCursor();
+			final QueryContext second = new QueryContext().keyset(cursor);
+
+			assertTrue("Keyset position not decoded from cursor", second.hasKeysetPosition());
+			assertEquals("Invalid keyset id decoded from cursor", 42L, second.getKeysetId());
+			assertEquals("Invalid keyset value decoded from cursor", value, second.getKeysetValue());
+		}
+	}
+
+	@Test
+	public void testKeysetCursorEndOfResult() {
+
+		final QueryContext context = new QueryContext().keyset("").slice(0, 10);
+
+		assertFalse("Empty cursor must start at the beginning", context.hasKeysetPosition());
+
+		context.keysetPosition(1L, null);
+
+		assertNull("Cursor must be null when the last page is incomplete", context.getNextCursor());
+		assertNull("Cursor must be null when keyset paging is disabled", new QueryContext().getNextCursor());
+	}
+
+	@Test
+	public void testInvalidKeysetCursor() {
+
+		try {
+
+			new QueryContext().keyset("invalid");
+			fail("Invalid cursor must be rejected");
+
+		} catch (IllegalArgumentException expected) {}
+	}
+}
@@ -0,0 +1,241 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertSame;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ */
+public class ConcurrentFixedSizeCacheTest {
+
+	@Test
+	public void testSingleSegmentLRU() {
+
+		final ConcurrentFixedSizeCache<Long, Long> test = new ConcurrentFixedSizeCache<>(10, 1);
+
+		for (int i=0; i<100; i++) {
+
+			final Long value = Long.valueOf(i);
+			test.put(value, value);
+		}
+
+		assertEquals("Invalid ConcurrentFixedSizeCache size", 10, test.size());
+
+		// check that only the eldest entries are kept
+		for (int i=0; i<90; i++) {
+
+			final Long value = Long.valueOf(i);
+			assertNull("Invalid ConcurrentFixedSizeCache contents", test.get(value));
+		}
+
+		for (int i=90; i<100; i++) {
+
+			final Long value = Long.valueOf(i);
+			assertEquals("Invalid ConcurrentFixedSizeCache contents", test.get(value), value);
+		}
+
+		assertEquals("Invalid hit count",      10, test.getHitCount());
+		assertEquals("Invalid miss count",     90, test.getMissCount());
+		assertEquals("Invalid eviction count", 90, test.getEvictionCount());
+	}
+
+	@Test
+	public void testEvictionCallback() {
+
+		final ConcurrentFixedSizeCache<Long, TestCachable> test = new ConcurrentFixedSizeCache<>(64, 8);
+		final List<TestCachable> values                         = new LinkedList<>();
+
+		for (long i=0; i<1000; i++) {
+
+			final TestCachable value = new TestCachable();
+
+			test.put(i, value);
+			values.add(value);
+		}
+
+		assertTrue("ConcurrentFixedSizeCache exceeds maximum size", test.size() <= 64);
+
+		final long removed = values.stream().filter(v -> v.removed).count();
+
+		assertEquals("Eviction callback not called for all evicted entries", test.getEvictionCount(), removed);
+		assertEquals("Invalid number of evicted entries", 1000 - test.size(), removed);
+	}
+
+	@Test
+	public void testGetOrCreate() throws InterruptedException {
+
+		final ConcurrentFixedSizeCache<Long, TestCachable> test = new ConcurrentFixedSizeCache<>(1000);
+		final AtomicInteger created                             = new AtomicInteger();
+		final List<Thread> threads                              = new LinkedList<>();
+		final TestCachable[] results                            = new TestCachable[8];
+
+		for (int i=0; i<results.length; i++) {
+
+			final int index = i;
+
+			threads.add(new Thread(() -> {
+
+				results[index] = test.get(1L, v -> !v.removed, k -> {
+					created.incrementAndGet();
+					return new TestCachable();
+				});
+			}));
+		}
+
+		threads.forEach(Thread::start);
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals("Factory must be called exactly once for concurrent access to the same key", 1, created.get());
+
+		for (final TestCachable result : results) {
+			assertSame("Concurrent access must return the same instance", results[0], result);
+		}
+
+		// invalid values must be replaced
+		results[0].removed = true;
+
+		final TestCachable replaced = test.get(1L, v -> !v.removed, k -> new TestCachable());
+
+		assertTrue("Invalid value was not replaced", replaced != results[0]);
+		assertSame("Replaced value was not stored", replaced, test.get(1L));
+	}
+
+	@Test
+	public void testConditionalRemove() {
+
+		final ConcurrentFixedSizeCache<Long, TestCachable> test = new ConcurrentFixedSizeCache<>(100);
+		final TestCachable value                                = new TestCachable();
+
+		test.put(1L, value);
+
+		assertFalse("Entry must not be removed for a different value", test.remove(1L, new TestCachable()));
+		assertSame("Entry was removed for a different value", value, test.peek(1L));
+
+		assertTrue("Entry must be removed for the same value", test.remove(1L, value));
+		assertNull("Entry was not removed", test.peek(1L));
+	}
+
+	@Test
+	public void testLookupIsCountedOnce() {
+
+		final ConcurrentFixedSizeCache<Long, TestCachable> test = new ConcurrentFixedSizeCache<>(100);
+
+		// cold lookup followed by a load, like NodeWrapper.newInstance(db, id)
+		assertNull(test.get(1L));
+		test.putIfAbsent(1L, v -> !v.removed, k -> new TestCachable());
+
+		assertEquals("Cold lookup must be counted as exactly one miss", 1, test.getMissCount());
+		assertEquals("Cold lookup must not be counted as a hit",        0, test.getHitCount());
+
+		// internal lookups are not counted at all
+		assertTrue("Peek must return the cached value", test.peek(1L) != null);
+		assertNull("Peek must return null for unknown keys", test.peek(2L));
+
+		assertEquals("Peek must not be counted", 1, test.getMissCount());
+		assertEquals("Peek must not be counted", 0, test.getHitCount());
+
+		assertTrue(test.get(1L) != null);
+
+		assertEquals("Invalid hit count", 1, test.getHitCount());
+	}
+
+	/**
+	 * Compares the throughput of FixedSizeCache and ConcurrentFixedSizeCache
+	 * for a read-mostly workload with 1 to N threads. The results are
+	 * printed only, as they depend on the hardware the test runs on.
+	 *
+	 * This benchmark is excluded from the default build, run it with
+	 * mvn test -Dtesting.excludedGroups= -Dtest=ConcurrentFixedSizeCacheTest
+	 */
+	@Test(groups = "benchmark")
+	public void testThroughput() throws InterruptedException {
+
+		final int maxThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		final int cacheSize  = 100000;
+		final int operations = 200000;
+
+		final FixedSizeCache<Long, Long> fixed                = new FixedSizeCache<>(cacheSize);
+		final ConcurrentFixedSizeCache<Long, Long> concurrent = new ConcurrentFixedSizeCache<>(cacheSize);
+
+		System.out.println(String.format("%8s %20s %20s", "threads", "FixedSizeCache", "Concurrent"));
+
+		for (int threads=1; threads<=maxThreads; threads *= 2) {
+
+			final double fixedOps      = measure(threads, operations, id -> { final Long v = fixed.get(id);      if (v == null) { fixed.put(id, id);      } return v; });
+			final double concurrentOps = measure(threads, operations, id -> { final Long v = concurrent.get(id); if (v == null) { concurrent.put(id, id); } return v; });
+
+			System.out.println(String.format("%8d %14.0f ops/s %14.0f ops/s", threads, fixedOps, concurrentOps));
+		}
+	}
+
+	// ----- private methods -----
+	private double measure(final int threadCount, final int operations, final LongFunction<Long> operation) throws InterruptedException {
+
+		final List<Thread> threads = new LinkedList<>();
+
+		for (int i=0; i<threadCount; i++) {
+
+			threads.add(new Thread(() -> {
+
+				final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+				for (int j=0; j<operations; j++) {
+					operation.apply(random.nextLong(150000));
+				}
+			}));
+		}
+
+		final long t0 = System.nanoTime();
+
+		threads.forEach(Thread::start);
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		final long t1 = System.nanoTime();
+
+		return ((double)threadCount * operations) / ((t1 - t0) / 1_000_000_000.0);
+	}
+
+	// ----- nested classes -----
+	private static class TestCachable implements Cachable {
+
+		private volatile boolean removed = false;
+
+		@Override
+		public void onRemoveFromCache() {
+			removed = true;
+		}
+	}
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.api.util;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntConsumer;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ *
+ */
+public class UuidIndexTest {
+
+	@Test
+	public void testPutGetRemove() {
+
+		final UuidIndex index = new UuidIndex(1000);
+		final String uuid     = uuid();
+
+		assertEquals("Invalid lookup result for unknown uuid", UuidIndex.NOT_FOUND, index.get(uuid));
+
+		index.put(uuid, 0L);
+		assertEquals("Invalid lookup result", 0L, index.get(uuid));
+
+		index.put(uuid, 123L);
+		assertEquals("Invalid lookup result after update", 123L, index.get(uuid));
+		assertEquals("Invalid size", 1, index.size());
+
+		// dashed and undashed notation must map to the same entry
+		final UUID dashed = UUID.randomUUID();
+		index.put(dashed.toString(), 7L);
+		assertEquals("Invalid lookup result for dashed uuid", 7L, index.get(dashed.toString().replace("-", "")));
+
+		index.remove(uuid);
+		assertEquals("Removed uuid must not be found", UuidIndex.NOT_FOUND, index.get(uuid));
+
+		// invalid keys are ignored
+		index.put("not-a-uuid", 1L);
+		index.put("zzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzz", 1L);
+		assertEquals("Invalid key must not be stored", UuidIndex.NOT_FOUND, index.get("not-a-uuid"));
+		assertNull("Invalid key must not be parsed", UuidIndex.parse("zzzzzzzzzzzzzzzzzzzzzzzzzzzzzzzz"));
+		assertEquals("Invalid size", 1, index.size());
+	}
+
+	@Test
+	public void testRandomOperations() {
+
+		// compare with HashMap in a table that is never full, so no eviction happens
+		final UuidIndex index          = new UuidIndex(100000, 4);
+		final Map<String, Long> shadow = new HashMap<>();
+		final List<String> uuids       = new LinkedList<>();
+		final Random random            = new Random(42L);
+
+		for (int i=0; i<5000; i++) {
+			uuids.add(uuid());
+		}
+
+		final String[] keys = uuids.toArray(new String[0]);
+
+		for (int i=0; i<200000; i++) {
+
+			final String key = keys[random.nextInt(keys.length)];
+
+			switch (random.nextInt(3)) {
+
+				case 0:
+					index.put(key, (long)i);
+					shadow.put(key, (long)i);
+					break;
+
+				case 1:
+					index.remove(key);
+					shadow.remove(key);
+					break;
+
+				default:
+					final Long expected = shadow.get(key);
+					assertEquals("Invalid lookup result", expected != null ? expected.longValue() : UuidIndex.NOT_FOUND, index.get(key));
+					break;
+			}
+		}
+
+		assertEquals("Invalid size", shadow.size(), index.size());
+
+		for (final String key : keys) {
+
+			final Long expected = shadow.get(key);
+			assertEquals("Invalid lookup result", expected != null ? expected.longValue() : UuidIndex.NOT_FOUND, index.get(key));
+		}
+	}
+
+	@Test
+	public void testClockEviction() {
+
+		final UuidIndex index = new UuidIndex(1000, 1);
+		final String hot      = uuid();
+
+		index.put(hot, 1L);
+
+		for (int i=0; i<10000; i++) {
+
+			// keep the hot entry referenced
+			assertEquals("Referenced entry was evicted", 1L, index.get(hot));
+
+			index.put(uuid(), i);
+		}
+
+		assertEquals("UuidIndex exceeds maximum size", 1000, index.size());
+		assertEquals("Invalid eviction count", 10001 - 1000, index.getEvictionCount());
+	}
+
+	@Test
+	public void testConcurrentAccess() throws InterruptedException {
+
+		final UuidIndex index      = new UuidIndex(10000);
+		final String[] keys        = new String[5000];
+		final AtomicBoolean failed = new AtomicBoolean();
+		final List<Thread> threads = new LinkedList<>();
+
+		for (int i=0; i<keys.length; i++) {
+
+			keys[i] = uuid();
+			index.put(keys[i], i);
+		}
+
+		for (int i=0; i<8; i++) {
+
+			final boolean writer = i < 2;
+
+			threads.add(new Thread(() -> {
+
+				final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+				for (int j=0; j<200000; j++) {
+
+					final int n = random.nextInt(keys.length);
+
+					if (writer) {
+
+						// writers remove and re-insert entries with the same value
+						index.remove(keys[n]);
+						index.put(keys[n], n);
+
+					} else {
+
+						final long value = index.get(keys[n]);
+						if (value != UuidIndex.NOT_FOUND && value != n) {
+							failed.set(true);
+						}
+					}
+				}
+			}));
+		}
+
+		threads.forEach(Thread::start);
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		assertFalse("Concurrent reader saw a wrong value", failed.get());
+		assertTrue("UuidIndex exceeds maximum size", index.size() <= 10000);
+	}
+
+	/**
+	 * Compares the memory usage and throughput of FixedSizeCache and
+	 * UuidIndex. The results are printed only, as they depend on the
+	 * hardware the test runs on. The memory usage of FixedSizeCache is
+	 * estimated from the heap usage, so it is only a rough number.
+	 *
+	 * This benchmark is excluded from the default build, run it with
+	 * mvn test -Dtesting.excludedGroups= -Dtest=UuidIndexTest
+	 */
+	@Test(groups = "benchmark")
+	public void testThroughput() throws InterruptedException {
+
+		final int maxThreads = Math.max(2, Runtime.getRuntime().availableProcessors());
+		final int size       = 200000;
+		final String[] keys  = new String[size];
+
+		for (int i=0; i<size; i++) {
+			keys[i] = uuid();
+		}
+
+		final long heapBefore                    = getUsedHeap();
+		final FixedSizeCache<String, Long> fixed = new FixedSizeCache<>(size);
+
+		for (int i=0; i<size; i++) {
+			fixed.put(keys[i], (long)i);
+		}
+
+		final long fixedMemory = getUsedHeap() - heapBefore;
+		final UuidIndex index  = new UuidIndex(size);
+
+		for (int i=0; i<size; i++) {
+			index.put(keys[i], i);
+		}
+
+		System.out.println(String.format("FixedSizeCache uses about %d bytes for %d entries (without keys)", fixedMemory, fixed.size()));
+		System.out.println(String.format("UuidIndex uses %d bytes for %d entries", index.getMemoryUsage(), index.size()));
+		System.out.println(String.format("%8s %20s %20s", "threads", "FixedSizeCache", "UuidIndex"));
+
+		for (int threads=1; threads<=maxThreads; threads *= 2) {
+
+			final double fixedOps = measure(threads, 500000, n -> fixed.get(keys[n]));
+			final double indexOps = measure(threads, 500000, n -> index.get(keys[n]));
+
+			System.out.println(String.format("%8d %14.0f ops/s %14.0f ops/s", threads, fixedOps, indexOps));
+		}
+	}
+
+	// ----- private methods -----
+	private String uuid() {
+		return UUID.randomUUID().toString().replace("-", "");
+	}
+
+	private double measure(final int threadCount, final int operations, final IntConsumer operation) throws InterruptedException {
+
+		final List<Thread> threads = new LinkedList<>();
+
+		for (int i=0; i<threadCount; i++) {
+
+			threads.add(new Thread(() -> {
+
+				final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+				for (int j=0; j<operations; j++) {
+					operation.accept(random.nextInt(200000));
+				}
+			}));
+		}
+
+		final long t0 = System.nanoTime();
+
+		threads.forEach(Thread::start);
+
+		for (final Thread thread : threads) {
+			thread.join();
+		}
+
+		final long t1 = System.nanoTime();
+
+		return ((double)threadCount * operations) / ((t1 - t0) / 1_000_000_000.0);
+	}
+
+	private long getUsedHeap() {
+
+		final Runtime runtime = Runtime.getRuntime();
+
+		for (int i=0; i<3; i++) {
+			System.gc();
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage representation of a node or relationship. Records in the
+ * committed store are never modified, transactions work on copies.
+ */
+public abstract class EntityRecord {
+
+	protected final Map<String, Object> properties;
+	protected final long id;
+
+	protected EntityRecord(final long id, final Map<String, Object> properties) {
+
+		this.properties = properties;
+		this.id         = id;
+	}
+
+	public abstract EntityRecord copy();
+
+	public long getId() {
+		return id;
+	}
+
+	public Map<String, Object> getProperties() {
+		return properties;
+	}
+
+	public Object getProperty(final String key) {
+		return properties.get(key);
+	}
+
+	public void setProperty(final String key, final Object value) {
+
+		if (value != null) {
+
+			properties.put(key, normalize(value));
+
+		} else {
+
+			properties.remove(key);
+		}
+	}
+
+	// ----- public static methods -----
+	/**
+	 * Converts the given value to the representation Neo4j would use, i.e.
+	 * integral numbers are stored as Long, floating point numbers as Double
+	 * and arrays or collections as lists.
+	 *
+	 * @param value
+	 * @return the normalized value
+	 */
+	public static Object normalize(final Object value) {
+
+		if (value == null) {
+			return null;
+		}
+
+		if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			return ((Number)value).longValue();
+		}
+
+		if (value instanceof Float) {
+			return ((Number)value).doubleValue();
+		}
+
+		if (value instanceof Character) {
+			return value.toString();
+		}
+
+		if (value.getClass().isArray()) {
+
+			final int length        = Array.getLength(value);
+			final List<Object> list = new ArrayList<>(length);
+
+			for (int i=0; i<length; i++) {
+				list.add(normalize(Array.get(value, i)));
+			}
+
+			return list;
+		}
+
+		if (value instanceof Collection) {
+
+			final List<Object> list = new ArrayList<>(((Collection)value).size());
+
+			for (final Object element : (Collection)value) {
+				list.add(normalize(element));
+			}
+
+			return list;
+		}
+
+		return value;
+	}
+
+	/**
+	 * Converts stored lists back to arrays of the element type like the
+	 * Bolt driver does, empty lists are returned as null.
+	 *
+	 * @param value
+	 * @return the value as seen by the caller
+	 */
+	public static Object denormalize(final Object value) {
+
+		if (value instanceof List) {
+
+			final List list = (List)value;
+			if (!list.isEmpty()) {
+
+				final Object firstElement = list.get(0);
+				final Object[] arr        = (Object[])Array.newInstance(firstElement.getClass(), 0);
+
+				return list.toArray(arr);
+			}
+
+			return null;
+		}
+
+		return value;
+	}
+
+	// ----- protected methods -----
+	protected static Map<String, Object> copyProperties(final Map<String, Object> source) {
+		return new HashMap<>(source);
+	}
+}
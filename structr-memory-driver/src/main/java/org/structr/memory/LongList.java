@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive long values, used for the adjacency
+ * lists of nodes so that relationship ids are not boxed.
+ */
+public class LongList {
+
+	private long[] data = null;
+	private int size    = 0;
+
+	public LongList() {
+		this(4);
+	}
+
+	public LongList(final int initialCapacity) {
+		this.data = new long[Math.max(1, initialCapacity)];
+	}
+
+	public LongList(final LongList source) {
+
+		this.data = Arrays.copyOf(source.data, Math.max(1, source.size));
+		this.size = source.size;
+	}
+
+	public void add(final long value) {
+
+		if (size == data.length) {
+			data = Arrays.copyOf(data, data.length * 2);
+		}
+
+		data[size++] = value;
+	}
+
+	public boolean remove(final long value) {
+
+		for (int i=0; i<size; i++) {
+
+			if (data[i] == value) {
+
+				System.arraycopy(data, i + 1, data, i, size - i - 1);
+				size--;
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	public boolean contains(final long value) {
+
+		for (int i=0; i<size; i++) {
+
+			if (data[i] == value) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	public long get(final int index) {
+
+		if (index >= size) {
+			throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+		}
+
+		return data[index];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public long[] toArray() {
+		return Arrays.copyOf(data, size);
+	}
+}
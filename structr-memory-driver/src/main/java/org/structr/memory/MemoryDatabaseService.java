@@ -0,0 +1,551 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongPredicate;
+import org.apache.commons.lang.StringUtils;
+import org.structr.api.AbstractDatabaseService;
+import org.structr.api.NotFoundException;
+import org.structr.api.NotInTransactionException;
+import org.structr.api.Transaction;
+import org.structr.api.config.Settings;
+import org.structr.api.graph.GraphProperties;
+import org.structr.api.graph.Identity;
+import org.structr.api.graph.Node;
+import org.structr.api.graph.Relationship;
+import org.structr.api.index.Index;
+import org.structr.api.util.CountResult;
+import org.structr.api.util.Iterables;
+import org.structr.api.util.NodeWithOwnerResult;
+import org.structr.memory.index.MemoryNodeIndex;
+import org.structr.memory.index.MemoryRelationshipIndex;
+
+/**
+ * A DatabaseService implementation that keeps the whole graph in memory.
+ *
+ * This implementation is intended for tests and benchmarks that need a
+ * fast, embedded database without the overhead of a Neo4j server. Data
+ * is lost when the service is shut down, and native (Cypher) queries are
+ * not supported.
+ */
+public class MemoryDatabaseService extends AbstractDatabaseService implements GraphProperties {
+
+	private static final ThreadLocal<MemoryTransaction> transactions = new ThreadLocal<>();
+	private final Map<String, String> globalProperties               = new ConcurrentHashMap<>();
+	private final MemoryStore store                                  = new MemoryStore();
+	private MemoryRelationshipIndex relationshipIndex                = null;
+	private MemoryNodeIndex nodeIndex                                = null;
+
+	@Override
+	public boolean initialize() {
+
+		this.tenantId = Settings.TenantIdentifier.getValue();
+
+		if (StringUtils.isBlank(this.tenantId)) {
+			this.tenantId = null;
+		}
+
+		return true;
+	}
+
+	@Override
+	public void shutdown() {
+
+		store.clear();
+		globalProperties.clear();
+	}
+
+	@Override
+	public Transaction beginTx() {
+
+		MemoryTransaction tx = transactions.get();
+		if (tx == null || tx.isClosed()) {
+
+			tx = new MemoryTransaction(store);
+			transactions.set(tx);
+		}
+
+		return tx;
+	}
+
+	@Override
+	public Node createNode(final String type, final Set<String> labels, final Map<String, Object> properties) {
+
+		final MemoryTransaction tx = getCurrentTransaction();
+		final long id              = tx.createNode(getLabels(labels), properties);
+
+		return new MemoryNode(this, id);
+	}
+
+	@Override
+	public NodeWithOwnerResult createNodeWithOwner(final Identity ownerId, final String type, final Set<String> labels, final Map<String, Object> nodeProperties, final Map<String, Object> ownsProperties, final Map<String, Object> securityProperties) {
+
+		final MemoryTransaction tx = getCurrentTransaction();
+		final long owner           = unwrap(ownerId);
+		final NodeRecord record    = tx.getNode(owner);
+
+		if (record == null || !record.hasLabel("Principal") || !record.hasLabel(tenantId)) {
+			return null;
+		}
+
+		final long id         = tx.createNode(getLabels(labels), nodeProperties);
+		final long ownsId     = tx.createRelationship(owner, id, "OWNS", ownsProperties);
+		final long securityId = tx.createRelationship(owner, id, "SECURITY", securityProperties);
+
+		return new NodeWithOwnerResult(new MemoryNode(this, id), new MemoryRelationship(this, securityId), new MemoryRelationship(this, ownsId));
+	}
+
+	@Override
+	public Node getNodeById(final Identity id) {
+		return getNodeById(unwrap(id));
+	}
+
+	@Override
+	public Relationship getRelationshipById(final Identity id) {
+		return getRelationshipById(unwrap(id));
+	}
+
+	@Override
+	public Iterable<Node> getAllNodes() {
+		return getNodesByLabel(null);
+	}
+
+	@Override
+	public Iterable<Node> getNodesByLabel(final String label) {
+
+		final MemoryTransaction tx = getTransactionOrNull();
+
+		return Iterables.map(id -> {
+
+			final NodeRecord record = getNodeRecord(tx, id);
+			if (record != null && record.hasLabel(label) && record.hasLabel(tenantId)) {
+
+				return new MemoryNode(this, id);
+			}
+
+			return null;
+
+		}, getNodeCandidates(tx, label));
+	}
+
+	@Override
+	public Iterable<Node> getNodesByTypeProperty(final String type) {
+
+		if (type == null) {
+			return getAllNodes();
+		}
+
+		final MemoryTransaction tx = getTransactionOrNull();
+
+		return Iterables.map(id -> {
+
+			final NodeRecord record = getNodeRecord(tx, id);
+			if (record != null && type.equals(record.getProperty("type")) && record.hasLabel(tenantId)) {
+
+				return new MemoryNode(this, id);
+			}
+
+			return null;
+
+		}, getNodeCandidates(tx, null));
+	}
+
+	@Override
+	public void deleteNodesByLabel(final String label) {
+
+		final MemoryTransaction tx = getCurrentTransaction();
+
+		for (final long id : getNodeCandidates(tx, label)) {
+
+			final NodeRecord record = tx.getNode(id);
+			if (record != null && record.hasLabel(label) && record.hasLabel(tenantId)) {
+
+				tx.deleteNode(id, true);
+			}
+		}
+	}
+
+	@Override
+	public Iterable<Relationship> getAllRelationships() {
+		return getRelationshipsByType(null);
+	}
+
+	@Override
+	public Iterable<Relationship> getRelationshipsByType(final String type) {
+
+		final MemoryTransaction tx = getTransactionOrNull();
+
+		return Iterables.map(id -> {
+
+			final RelationshipRecord record = getRelationshipRecord(tx, id);
+			if (record != null && (type == null || type.equals(record.getType())) && isTenantRelationship(tx, record)) {
+
+				return new MemoryRelationship(this, id);
+			}
+
+			return null;
+
+		}, getRelationshipCandidates(tx, type));
+	}
+
+	@Override
+	public GraphProperties getGlobalProperties() {
+		return this;
+	}
+
+	@Override
+	public Index<Node> nodeIndex() {
+
+		if (nodeIndex == null) {
+			nodeIndex = new MemoryNodeIndex(this);
+		}
+
+		return nodeIndex;
+	}
+
+	@Override
+	public Index<Relationship> relationshipIndex() {
+
+		if (relationshipIndex == null) {
+			relationshipIndex = new MemoryRelationshipIndex(this);
+		}
+
+		return relationshipIndex;
+	}
+
+	@Override
+	public void updateIndexConfiguration(final Map<String, Map<String, Boolean>> schemaIndexConfig, final Map<String, Map<String, Boolean>> removedClasses) {
+		// all properties are searched by scanning the label index, nothing to do here
+	}
+
+	@Override
+	public Iterable<Map<String, Object>> execute(final String nativeQuery) {
+		throw new UnsupportedOperationException("Native queries are not supported by the in-memory database.");
+	}
+
+	@Override
+	public Iterable<Map<String, Object>> execute(final String nativeQuery, final Map<String, Object> parameters) {
+		throw new UnsupportedOperationException("Native queries are not supported by the in-memory database.");
+	}
+
+	@Override
+	public void clearCaches() {
+		// no caches
+	}
+
+	@Override
+	public Map<String, Map<String, Object>> getCacheStatistics() {
+
+		final Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+		final Map<String, Object> nodes              = new LinkedHashMap<>();
+		final Map<String, Object> relationships      = new LinkedHashMap<>();
+
+		nodes.put("size", store.getNodeCount());
+		relationships.put("size", store.getRelationshipCount());
+
+		stats.put("nodes",         nodes);
+		stats.put("relationships", relationships);
+
+		return stats;
+	}
+
+	@Override
+	public void cleanDatabase() {
+
+		final MemoryTransaction tx = getCurrentTransaction();
+
+		for (final long id : getNodeCandidates(tx, tenantId)) {
+
+			final NodeRecord record = tx.getNode(id);
+			if (record != null && record.hasLabel(tenantId)) {
+
+				tx.deleteNode(id, true);
+			}
+		}
+	}
+
+	@Override
+	public CountResult getNodeAndRelationshipCount() {
+
+		final MemoryTransaction tx = getTransactionOrNull();
+		long nodeCount             = 0L;
+		long relCount              = 0L;
+
+		for (final long id : getNodeCandidates(tx, "NodeInterface")) {
+
+			final NodeRecord record = getNodeRecord(tx, id);
+			if (record != null && record.hasLabel("NodeInterface") && record.hasLabel(tenantId)) {
+
+				nodeCount++;
+				relCount += record.getOutgoing().size();
+			}
+		}
+
+		return new CountResult(nodeCount, relCount);
+	}
+
+	public MemoryTransaction getCurrentTransaction() {
+
+		final MemoryTransaction tx = transactions.get();
+		if (tx == null || tx.isClosed()) {
+
+			throw new NotInTransactionException("Not in transaction");
+		}
+
+		return tx;
+	}
+
+	public MemoryTransaction getTransactionOrNull() {
+
+		final MemoryTransaction tx = transactions.get();
+		if (tx == null || tx.isClosed()) {
+
+			return null;
+		}
+
+		return tx;
+	}
+
+	public long unwrap(final Identity identity) {
+
+		if (identity instanceof MemoryIdentity) {
+
+			return ((MemoryIdentity)identity).getId();
+		}
+
+		throw new IllegalArgumentException("This implementation cannot handle Identity objects of type " + identity.getClass().getName() + ".");
+	}
+
+	@Override
+	public Node getNodeById(final long id) {
+
+		if (getNodeRecord(getTransactionOrNull(), id) == null) {
+			throw new NotFoundException("Node with ID " + id + " not found.");
+		}
+
+		return new MemoryNode(this, id);
+	}
+
+	@Override
+	public Relationship getRelationshipById(final long id) {
+
+		if (getRelationshipRecord(getTransactionOrNull(), id) == null) {
+			throw new NotFoundException("Relationship with ID " + id + " not found.");
+		}
+
+		return new MemoryRelationship(this, id);
+	}
+
+	public NodeRecord getNodeRecord(final MemoryTransaction tx, final long id) {
+
+		if (tx != null) {
+			return tx.getNode(id);
+		}
+
+		return store.getNode(id);
+	}
+
+	public RelationshipRecord getRelationshipRecord(final MemoryTransaction tx, final long id) {
+
+		if (tx != null) {
+			return tx.getRelationship(id);
+		}
+
+		return store.getRelationship(id);
+	}
+
+	/**
+	 * Returns the sorted ids of all nodes that can have the given label
+	 * in the given transaction. Callers must check the label of the
+	 * records because the candidates include all nodes that were
+	 * modified in the transaction.
+	 *
+	 * @param tx the transaction or null
+	 * @param label the label or null for all nodes
+	 * @return the candidate ids
+	 */
+	public Collection<Long> getNodeCandidates(final MemoryTransaction tx, final String label) {
+		return merge(store.getNodeIds(label), tx != null ? tx.getLocalNodeIds() : null);
+	}
+
+	public Collection<Long> getNodeCandidatesByUuid(final MemoryTransaction tx, final Object uuid) {
+		return merge(store.getNodeIdsByUuid(uuid), tx != null ? tx.getLocalNodeIds() : null);
+	}
+
+	public Collection<Long> getRelationshipCandidates(final MemoryTransaction tx, final String type) {
+		return merge(store.getRelationshipIds(type), tx != null ? tx.getLocalRelationshipIds() : null);
+	}
+
+	public Collection<Long> getRelationshipCandidatesByUuid(final MemoryTransaction tx, final Object uuid) {
+		return merge(store.getRelationshipIdsByUuid(uuid), tx != null ? tx.getLocalRelationshipIds() : null);
+	}
+
+	public boolean isTenantRelationship(final MemoryTransaction tx, final RelationshipRecord record) {
+
+		if (tenantId == null) {
+			return true;
+		}
+
+		final LongPredicate isTenantNode = id -> {
+
+			final NodeRecord node = getNodeRecord(tx, id);
+			return node != null && node.hasLabel(tenantId);
+		};
+
+		return isTenantNode.test(record.getStartNodeId()) && isTenantNode.test(record.getEndNodeId());
+	}
+
+	// ----- interface GraphProperties -----
+	@Override
+	public void setProperty(final String name, final Object value) {
+
+		if (value == null) {
+
+			globalProperties.remove(name);
+
+		} else {
+
+			globalProperties.put(name, value.toString());
+		}
+	}
+
+	@Override
+	public Object getProperty(final String name) {
+		return globalProperties.get(name);
+	}
+
+	// ----- private methods -----
+	private Set<String> getLabels(final Set<String> labels) {
+
+		final Set<String> result = new LinkedHashSet<>();
+
+		if (tenantId != null) {
+			result.add(tenantId);
+		}
+
+		result.addAll(labels);
+
+		return result;
+	}
+
+	private Collection<Long> merge(final NavigableSet<Long> committed, final Set<Long> local) {
+
+		// most queries run in transactions without local changes
+		if (local == null || local.isEmpty()) {
+			return committed;
+		}
+
+		return new MergedIds(committed, new TreeSet<>(local));
+	}
+
+	// ----- nested classes -----
+	/**
+	 * The sorted union of two sorted sets of ids, computed lazily during
+	 * iteration so that the committed ids are not copied.
+	 */
+	private static class MergedIds extends AbstractCollection<Long> {
+
+		private NavigableSet<Long> committed = null;
+		private NavigableSet<Long> local     = null;
+
+		public MergedIds(final NavigableSet<Long> committed, final NavigableSet<Long> local) {
+
+			this.committed = committed;
+			this.local     = local;
+		}
+
+		@Override
+		public Iterator<Long> iterator() {
+
+			final Iterator<Long> first  = committed.iterator();
+			final Iterator<Long> second = local.iterator();
+
+			return new Iterator<Long>() {
+
+				private Long a = next(first);
+				private Long b = next(second);
+
+				@Override
+				public boolean hasNext() {
+					return a != null || b != null;
+				}
+
+				@Override
+				public Long next() {
+
+					if (a == null && b == null) {
+						throw new NoSuchElementException();
+					}
+
+					final Long result;
+
+					if (b == null || (a != null && a < b)) {
+
+						result = a;
+						a      = next(first);
+
+					} else if (a == null || b < a) {
+
+						result = b;
+						b      = next(second);
+
+					} else {
+
+						// contained in both sets
+						result = a;
+						a      = next(first);
+						b      = next(second);
+					}
+
+					return result;
+				}
+
+				private Long next(final Iterator<Long> iterator) {
+					return iterator.hasNext() ? iterator.next() : null;
+				}
+			};
+		}
+
+		@Override
+		public int size() {
+
+			int size = committed.size();
+
+			for (final Long id : local) {
+
+				if (!committed.contains(id)) {
+					size++;
+				}
+			}
+
+			return size;
+		}
+	}
+}
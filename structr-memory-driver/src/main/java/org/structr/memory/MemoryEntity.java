@@ -0,0 +1,173 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import org.structr.api.NotFoundException;
+import org.structr.api.graph.Identity;
+import org.structr.api.graph.PropertyContainer;
+
+/**
+ * Lightweight handle for a node or relationship. Handles do not hold any
+ * data, all reads go through the current transaction (or the committed
+ * store if there is none), so a handle is never stale.
+ */
+public abstract class MemoryEntity implements PropertyContainer {
+
+	protected MemoryDatabaseService db = null;
+	protected long id                  = -1L;
+
+	protected abstract EntityRecord getRecord(final MemoryTransaction tx);
+	protected abstract void setProperty(final MemoryTransaction tx, final String key, final Object value);
+	protected abstract boolean isNode();
+
+	public MemoryEntity(final MemoryDatabaseService db, final long id) {
+
+		this.db = db;
+		this.id = id;
+	}
+
+	@Override
+	public String toString() {
+		return (isNode() ? "N" : "R") + id;
+	}
+
+	@Override
+	public int hashCode() {
+		return Long.hashCode(id);
+	}
+
+	@Override
+	public boolean equals(final Object other) {
+
+		if (other != null && other.getClass().equals(getClass())) {
+
+			return ((MemoryEntity)other).id == id;
+		}
+
+		return false;
+	}
+
+	@Override
+	public Identity getId() {
+		return new MemoryIdentity(id);
+	}
+
+	public long getDatabaseId() {
+		return id;
+	}
+
+	@Override
+	public boolean hasProperty(final String name) {
+		return record().getProperties().containsKey(name);
+	}
+
+	@Override
+	public Object getProperty(final String name) {
+		return EntityRecord.denormalize(record().getProperty(name));
+	}
+
+	@Override
+	public Object getProperty(final String name, final Object defaultValue) {
+
+		final Object value = getProperty(name);
+		if (value == null) {
+
+			return defaultValue;
+		}
+
+		return value;
+	}
+
+	@Override
+	public void setProperty(final String key, final Object value) {
+
+		final MemoryTransaction tx = db.getCurrentTransaction();
+
+		// only update values if actually different from what is stored
+		if (needsUpdate(tx, key, value)) {
+
+			setProperty(tx, key, value);
+		}
+	}
+
+	@Override
+	public void setProperties(final Map<String, Object> values) {
+
+		final MemoryTransaction tx = db.getCurrentTransaction();
+
+		for (final Entry<String, Object> entry : values.entrySet()) {
+
+			final String key   = entry.getKey();
+			final Object value = entry.getValue();
+
+			if (needsUpdate(tx, key, value)) {
+
+				setProperty(tx, key, value);
+			}
+		}
+	}
+
+	@Override
+	public void removeProperty(final String key) {
+		setProperty(db.getCurrentTransaction(), key, null);
+	}
+
+	@Override
+	public Iterable<String> getPropertyKeys() {
+		return new ArrayList<>(record().getProperties().keySet());
+	}
+
+	@Override
+	public boolean isSpatialEntity() {
+		return false;
+	}
+
+	@Override
+	public boolean isDeleted() {
+		return getRecord(db.getTransactionOrNull()) == null;
+	}
+
+	// ----- protected methods -----
+	protected EntityRecord record() {
+
+		final EntityRecord record = getRecord(db.getTransactionOrNull());
+		if (record == null) {
+
+			throw new NotFoundException((isNode() ? "Node" : "Relationship") + " with id " + id + " not found");
+		}
+
+		return record;
+	}
+
+	// ----- private methods -----
+	private boolean needsUpdate(final MemoryTransaction tx, final String key, final Object value) {
+
+		final EntityRecord record = getRecord(tx);
+		if (record == null) {
+
+			throw new NotFoundException((isNode() ? "Node" : "Relationship") + " with id " + id + " not found");
+		}
+
+		return !Objects.equals(record.getProperty(key), EntityRecord.normalize(value));
+	}
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import org.structr.api.NotInTransactionException;
+import org.structr.api.graph.Direction;
+import org.structr.api.graph.Label;
+import org.structr.api.graph.Node;
+import org.structr.api.graph.Relationship;
+import org.structr.api.graph.RelationshipType;
+
+/**
+ *
+ */
+public class MemoryNode extends MemoryEntity implements Node {
+
+	public MemoryNode(final MemoryDatabaseService db, final long id) {
+		super(db, id);
+	}
+
+	@Override
+	public Relationship createRelationshipTo(final Node endNode, final RelationshipType relationshipType) {
+		return createRelationshipTo(endNode, relationshipType, new LinkedHashMap<>());
+	}
+
+	@Override
+	public Relationship createRelationshipTo(final Node endNode, final RelationshipType relationshipType, final Map<String, Object> properties) {
+
+		final MemoryTransaction tx = db.getCurrentTransaction();
+		final long endNodeId       = ((MemoryNode)endNode).getDatabaseId();
+		final String type          = relationshipType.name();
+
+		// MERGE semantics: at most one relationship of a given type between two nodes
+		final RelationshipRecord existing = findRelationship(tx, type, endNodeId);
+		if (existing != null) {
+
+			final MemoryRelationship relationship = new MemoryRelationship(db, existing.getId());
+
+			relationship.setProperties(properties);
+
+			return relationship;
+		}
+
+		return new MemoryRelationship(db, tx.createRelationship(id, endNodeId, type, properties));
+	}
+
+	@Override
+	public void addLabel(final Label label) {
+		db.getCurrentTransaction().addLabel(id, label.name());
+	}
+
+	@Override
+	public void removeLabel(final Label label) {
+		db.getCurrentTransaction().removeLabel(id, label.name());
+	}
+
+	@Override
+	public Iterable<Label> getLabels() {
+
+		final List<Label> result = new LinkedList<>();
+
+		for (final String label : getNodeRecord().getLabels()) {
+			result.add(db.forName(Label.class, label));
+		}
+
+		return result;
+	}
+
+	@Override
+	public boolean hasRelationshipTo(final RelationshipType relationshipType, final Node targetNode) {
+		return findRelationship(db.getTransactionOrNull(), relationshipType.name(), ((MemoryNode)targetNode).getDatabaseId()) != null;
+	}
+
+	@Override
+	public Iterable<Relationship> getRelationships() {
+		return getRelationships(Direction.BOTH, null);
+	}
+
+	@Override
+	public Iterable<Relationship> getRelationships(final Direction direction) {
+		return getRelationships(direction, null);
+	}
+
+	@Override
+	public Iterable<Relationship> getRelationships(final Direction direction, final RelationshipType relationshipType) {
+
+		final MemoryTransaction tx = db.getTransactionOrNull();
+		final NodeRecord record    = getNodeRecord();
+		final String type          = relationshipType != null ? relationshipType.name() : null;
+		final LongList ids         = new LongList();
+
+		switch (direction) {
+
+			case BOTH:
+				collect(tx, record.getOutgoing(), type, false, ids);
+				collect(tx, record.getIncoming(), type, true, ids);
+				break;
+
+			case OUTGOING:
+				collect(tx, record.getOutgoing(), type, false, ids);
+				break;
+
+			case INCOMING:
+				collect(tx, record.getIncoming(), type, false, ids);
+				break;
+		}
+
+		// relationship ids are ascending in creation order
+		final long[] sorted = ids.toArray();
+
+		Arrays.sort(sorted);
+
+		final List<Relationship> result = new ArrayList<>(sorted.length);
+
+		for (final long relationshipId : sorted) {
+			result.add(new MemoryRelationship(db, relationshipId));
+		}
+
+		return result;
+	}
+
+	@Override
+	public void delete(final boolean deleteRelationships) throws NotInTransactionException {
+		db.getCurrentTransaction().deleteNode(id, deleteRelationships);
+	}
+
+	// ----- protected methods -----
+	@Override
+	protected EntityRecord getRecord(final MemoryTransaction tx) {
+		return db.getNodeRecord(tx, id);
+	}
+
+	@Override
+	protected void setProperty(final MemoryTransaction tx, final String key, final Object value) {
+		tx.setNodeProperty(id, key, value);
+	}
+
+	@Override
+	protected boolean isNode() {
+		return true;
+	}
+
+	// ----- private methods -----
+	private NodeRecord getNodeRecord() {
+		return (NodeRecord)record();
+	}
+
+	private RelationshipRecord findRelationship(final MemoryTransaction tx, final String type, final long endNodeId) {
+
+		final LongList outgoing = getNodeRecord().getOutgoing();
+
+		for (int i=0; i<outgoing.size(); i++) {
+
+			final RelationshipRecord relationship = db.getRelationshipRecord(tx, outgoing.get(i));
+			if (relationship != null && relationship.getEndNodeId() == endNodeId && type.equals(relationship.getType())) {
+
+				return relationship;
+			}
+		}
+
+		return null;
+	}
+
+	private void collect(final MemoryTransaction tx, final LongList source, final String type, final boolean skipLoops, final LongList ids) {
+
+		for (int i=0; i<source.size(); i++) {
+
+			final RelationshipRecord relationship = db.getRelationshipRecord(tx, source.get(i));
+			if (relationship != null && (type == null || type.equals(relationship.getType()))) {
+
+				// self-referencing relationships are contained in both lists
+				if (!skipLoops || relationship.getStartNodeId() != relationship.getEndNodeId()) {
+
+					ids.add(relationship.getId());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory;
+
+import org.structr.api.NotInTransactionException;
+import org.structr.api.graph.Node;
+import org.structr.api.graph.Relationship;
+import org.structr.api.graph.RelationshipType;
+
+/**
+ *
+ */
+public class MemoryRelationship extends MemoryEntity implements Relationship {
+
+	public MemoryRelationship(final MemoryDatabaseService db, final long id) {
+		super(db, id);
+	}
+
+	@Override
+	public Node getStartNode() {
+		return new MemoryNode(db, getRelationshipRecord().getStartNodeId());
+	}
+
+	@Override
+	public Node getEndNode() {
+		return new MemoryNode(db, getRelationshipRecord().getEndNodeId());
+	}
+
+	@Override
+	public Node getOtherNode(final Node node) {
+		return new MemoryNode(db, getRelationshipRecord().getOtherNodeId(((MemoryNode)node).getDatabaseId()));
+	}
+
+	@Override
+	public RelationshipType getType() {
+		return db.forName(RelationshipType.class, getRelationshipRecord().getType());
+	}
+
+	@Override
+	public void delete(final boolean deleteRelationships) throws NotInTransactionException {
+		db.getCurrentTransaction().deleteRelationship(id);
+	}
+
+	// ----- protected methods -----
+	@Override
+	protected EntityRecord getRecord(final MemoryTransaction tx) {
+		return db.getRelationshipRecord(tx, id);
+	}
+
+	@Override
+	protected void setProperty(final MemoryTransaction tx, final String key, final Object value) {
+		tx.setRelationshipProperty(id, key, value);
+	}
+
+	@Override
+	protected boolean isNode() {
+		return false;
+	}
+
+	// ----- private methods -----
+	private RelationshipRecord getRelationshipRecord() {
+		return (RelationshipRecord)record();
+	}
+}
@@ -0,0 +1,352 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.structr.api.RetryException;
+
+/**
+ * The committed state of the in-memory database. Records are replaced
+ * atomically on commit, so readers never need to take a lock. Commits
+ * are serialized and merge the changes of a transaction into the latest
+ * committed version of each record.
+ */
+public class MemoryStore {
+
+	public static final String UUID_KEY = "id";
+
+	private final Map<Long, NodeRecord> nodes                         = new ConcurrentHashMap<>();
+	private final Map<Long, RelationshipRecord> relationships         = new ConcurrentHashMap<>();
+	private final Map<String, NavigableSet<Long>> nodesByLabel        = new ConcurrentHashMap<>();
+	private final Map<String, NavigableSet<Long>> relationshipsByType = new ConcurrentHashMap<>();
+	private final Map<Object, NavigableSet<Long>> nodesByUuid         = new ConcurrentHashMap<>();
+	private final Map<Object, NavigableSet<Long>> relationshipsByUuid = new ConcurrentHashMap<>();
+	private final AtomicLong nodeIdSource                             = new AtomicLong();
+	private final AtomicLong relationshipIdSource                     = new AtomicLong();
+	private final ReentrantLock commitLock                            = new ReentrantLock();
+
+	public NodeRecord getNode(final long id) {
+		return nodes.get(id);
+	}
+
+	public RelationshipRecord getRelationship(final long id) {
+		return relationships.get(id);
+	}
+
+	public long nextNodeId() {
+		return nodeIdSource.getAndIncrement();
+	}
+
+	public long nextRelationshipId() {
+		return relationshipIdSource.getAndIncrement();
+	}
+
+	/**
+	 * Returns the ids of all nodes with the given label in ascending
+	 * order, or of all nodes if label is null. The ids of a label are
+	 * returned as a weakly consistent view of the index, so callers must
+	 * check the records of the ids they iterate.
+	 *
+	 * @param label
+	 * @return the node ids
+	 */
+	public NavigableSet<Long> getNodeIds(final String label) {
+
+		if (label == null) {
+			return new TreeSet<>(nodes.keySet());
+		}
+
+		return view(nodesByLabel.get(label));
+	}
+
+	/**
+	 * Returns the ids of all relationships with the given type in
+	 * ascending order, or of all relationships if type is null. The ids
+	 * of a type are returned as a weakly consistent view of the index.
+	 *
+	 * @param type
+	 * @return the relationship ids
+	 */
+	public NavigableSet<Long> getRelationshipIds(final String type) {
+
+		if (type == null) {
+			return new TreeSet<>(relationships.keySet());
+		}
+
+		return view(relationshipsByType.get(type));
+	}
+
+	public NavigableSet<Long> getNodeIdsByUuid(final Object uuid) {
+		return view(nodesByUuid.get(uuid));
+	}
+
+	public NavigableSet<Long> getRelationshipIdsByUuid(final Object uuid) {
+		return view(relationshipsByUuid.get(uuid));
+	}
+
+	public int getNodeCount() {
+		return nodes.size();
+	}
+
+	public int getRelationshipCount() {
+		return relationships.size();
+	}
+
+	public void clear() {
+
+		commitLock.lock();
+		try {
+
+			nodesByLabel.clear();
+			relationshipsByType.clear();
+			nodesByUuid.clear();
+			relationshipsByUuid.clear();
+			relationships.clear();
+			nodes.clear();
+
+		} finally {
+
+			commitLock.unlock();
+		}
+	}
+
+	/**
+	 * Merges the changes of the given transaction into the committed state.
+	 *
+	 * @param tx
+	 *
+	 * @throws RetryException if a concurrent transaction deleted an entity this transaction depends on
+	 */
+	public void commit(final MemoryTransaction tx) {
+
+		commitLock.lock();
+		try {
+
+			validate(tx);
+
+			// created nodes
+			for (final long id : tx.getCreatedNodes()) {
+
+				final NodeRecord record = tx.getLocalNode(id);
+
+				nodes.put(id, record);
+				indexNode(record);
+			}
+
+			// modified nodes
+			for (final Entry<Long, NodeChanges> entry : tx.getNodeChanges().entrySet()) {
+
+				final long id           = entry.getKey();
+				final NodeRecord latest = nodes.get(id);
+
+				if (latest != null && !tx.getDeletedNodes().contains(id)) {
+
+					final NodeRecord merged = latest.copy();
+
+					entry.getValue().apply(merged);
+
+					nodes.put(id, merged);
+					reindexNode(latest, merged);
+				}
+			}
+
+			// created relationships
+			for (final long id : tx.getCreatedRelationships()) {
+
+				final RelationshipRecord record = tx.getLocalRelationship(id);
+
+				relationships.put(id, record);
+				indexRelationship(record);
+			}
+
+			// modified relationships
+			for (final Entry<Long, Map<String, Object>> entry : tx.getRelationshipChanges().entrySet()) {
+
+				final long id                   = entry.getKey();
+				final RelationshipRecord latest = relationships.get(id);
+
+				if (latest != null && !tx.getDeletedRelationships().contains(id)) {
+
+					final RelationshipRecord merged = latest.copy();
+
+					NodeChanges.applyProperties(entry.getValue(), merged);
+
+					relationships.put(id, merged);
+					reindex(relationshipsByUuid, latest.getProperty(UUID_KEY), merged.getProperty(UUID_KEY), id);
+				}
+			}
+
+			// deleted relationships
+			for (final long id : tx.getDeletedRelationships()) {
+
+				final RelationshipRecord record = relationships.get(id);
+				if (record != null) {
+
+					unindex(relationshipsByType, record.getType(), id);
+					unindex(relationshipsByUuid, record.getProperty(UUID_KEY), id);
+
+					relationships.remove(id);
+				}
+			}
+
+			// deleted nodes
+			for (final long id : tx.getDeletedNodes()) {
+
+				final NodeRecord record = nodes.get(id);
+				if (record != null) {
+
+					for (final String label : record.getLabels()) {
+						unindex(nodesByLabel, label, id);
+					}
+
+					unindex(nodesByUuid, record.getProperty(UUID_KEY), id);
+
+					nodes.remove(id);
+				}
+			}
+
+		} finally {
+
+			commitLock.unlock();
+		}
+	}
+
+	// ----- private methods -----
+	private void validate(final MemoryTransaction tx) {
+
+		final Set<Long> deletedNodes = tx.getDeletedNodes();
+		final Set<Long> deletedRels  = tx.getDeletedRelationships();
+
+		// nodes that are modified in this transaction must still exist
+		for (final long id : tx.getNodeChanges().keySet()) {
+
+			if (!deletedNodes.contains(id) && !nodes.containsKey(id)) {
+				throw new RetryException("Node " + id + " was deleted by a concurrent transaction");
+			}
+		}
+
+		// deleted nodes must not have relationships that were created concurrently
+		for (final long id : deletedNodes) {
+
+			final NodeRecord latest = nodes.get(id);
+			if (latest != null) {
+
+				checkDetached(latest.getOutgoing(), deletedRels, id);
+				checkDetached(latest.getIncoming(), deletedRels, id);
+			}
+		}
+	}
+
+	private void checkDetached(final LongList relationshipIds, final Set<Long> deletedRels, final long nodeId) {
+
+		for (int i=0; i<relationshipIds.size(); i++) {
+
+			if (!deletedRels.contains(relationshipIds.get(i))) {
+				throw new RetryException("Node " + nodeId + " was connected by a concurrent transaction");
+			}
+		}
+	}
+
+	private void indexNode(final NodeRecord record) {
+
+		for (final String label : record.getLabels()) {
+			index(nodesByLabel, label, record.getId());
+		}
+
+		index(nodesByUuid, record.getProperty(UUID_KEY), record.getId());
+	}
+
+	private void reindexNode(final NodeRecord previous, final NodeRecord current) {
+
+		final long id = current.getId();
+
+		for (final String label : previous.getLabels()) {
+
+			if (!current.getLabels().contains(label)) {
+				unindex(nodesByLabel, label, id);
+			}
+		}
+
+		for (final String label : current.getLabels()) {
+
+			if (!previous.getLabels().contains(label)) {
+				index(nodesByLabel, label, id);
+			}
+		}
+
+		reindex(nodesByUuid, previous.getProperty(UUID_KEY), current.getProperty(UUID_KEY), id);
+	}
+
+	private void indexRelationship(final RelationshipRecord record) {
+
+		index(relationshipsByType, record.getType(), record.getId());
+		index(relationshipsByUuid, record.getProperty(UUID_KEY), record.getId());
+	}
+
+	private <K> void reindex(final Map<K, NavigableSet<Long>> index, final K previous, final K current, final long id) {
+
+		if (!Objects.equals(previous, current)) {
+
+			unindex(index, previous, id);
+			index(index, current, id);
+		}
+	}
+
+	private <K> void index(final Map<K, NavigableSet<Long>> index, final K key, final long id) {
+
+		if (key != null) {
+			index.computeIfAbsent(key, k -> new ConcurrentSkipListSet<>()).add(id);
+		}
+	}
+
+	private <K> void unindex(final Map<K, NavigableSet<Long>> index, final K key, final long id) {
+
+		if (key != null) {
+
+			final NavigableSet<Long> ids = index.get(key);
+			if (ids != null) {
+
+				ids.remove(id);
+
+				if (ids.isEmpty()) {
+					index.remove(key);
+				}
+			}
+		}
+	}
+
+	private NavigableSet<Long> view(final NavigableSet<Long> ids) {
+
+		if (ids == null) {
+			return Collections.emptyNavigableSet();
+		}
+
+		return Collections.unmodifiableNavigableSet(ids);
+	}
+}
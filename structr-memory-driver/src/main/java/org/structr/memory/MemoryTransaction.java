@@ -0,0 +1,385 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import org.structr.api.ConstraintViolationException;
+import org.structr.api.NotFoundException;
+import org.structr.api.Transaction;
+
+/**
+ * A transaction of the in-memory database. All modifications are made
+ * on transaction-local copies of the affected records and are merged
+ * into the committed store when the transaction is closed successfully.
+ * Reads see the committed state plus the changes of this transaction.
+ */
+public class MemoryTransaction implements Transaction {
+
+	private static final AtomicLong idSource = new AtomicLong();
+
+	private final Map<Long, NodeRecord> nodes                        = new LinkedHashMap<>();
+	private final Map<Long, RelationshipRecord> relationships        = new LinkedHashMap<>();
+	private final Map<Long, NodeChanges> nodeChanges                 = new HashMap<>();
+	private final Map<Long, Map<String, Object>> relationshipChanges = new HashMap<>();
+	private final Set<Long> createdNodes                             = new LinkedHashSet<>();
+	private final Set<Long> createdRelationships                     = new LinkedHashSet<>();
+	private final Set<Long> deletedNodes                             = new HashSet<>();
+	private final Set<Long> deletedRelationships                     = new HashSet<>();
+	private MemoryStore store                                        = null;
+	private long transactionId                                       = 0L;
+	private boolean success                                          = false;
+	private boolean failure                                          = false;
+	private boolean closed                                           = false;
+
+	public MemoryTransaction(final MemoryStore store) {
+
+		this.transactionId = idSource.getAndIncrement();
+		this.store         = store;
+	}
+
+	@Override
+	public void failure() {
+		failure = true;
+	}
+
+	@Override
+	public void success() {
+		success = true;
+	}
+
+	@Override
+	public long getTransactionId() {
+		return transactionId;
+	}
+
+	@Override
+	public long getQueryCount() {
+		return 0L;
+	}
+
+	@Override
+	public void close() {
+
+		if (closed) {
+			return;
+		}
+
+		// mark this transaction as closed BEFORE trying to commit it
+		// so that it is closed in case of a failure
+		closed = true;
+
+		if (success && !failure) {
+			store.commit(this);
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	// ----- read access -----
+	public NodeRecord getNode(final long id) {
+
+		if (deletedNodes.contains(id)) {
+			return null;
+		}
+
+		final NodeRecord local = nodes.get(id);
+		if (local != null) {
+
+			return local;
+		}
+
+		return store.getNode(id);
+	}
+
+	public RelationshipRecord getRelationship(final long id) {
+
+		if (deletedRelationships.contains(id)) {
+			return null;
+		}
+
+		final RelationshipRecord local = relationships.get(id);
+		if (local != null) {
+
+			return local;
+		}
+
+		return store.getRelationship(id);
+	}
+
+	/**
+	 * Returns the ids of all nodes that were created or modified in
+	 * this transaction, so that queries can include them even if the
+	 * committed indexes do not contain them (yet).
+	 *
+	 * @return the ids of the local nodes
+	 */
+	public Set<Long> getLocalNodeIds() {
+		return nodes.keySet();
+	}
+
+	public Set<Long> getLocalRelationshipIds() {
+		return relationships.keySet();
+	}
+
+	// ----- write access -----
+	public long createNode(final Set<String> labels, final Map<String, Object> properties) {
+
+		final long id           = store.nextNodeId();
+		final NodeRecord record = new NodeRecord(id, labels);
+
+		setProperties(record, properties);
+
+		nodes.put(id, record);
+		createdNodes.add(id);
+
+		return id;
+	}
+
+	public long createRelationship(final long startNodeId, final long endNodeId, final String type, final Map<String, Object> properties) {
+
+		final NodeRecord startNode      = writeNode(startNodeId);
+		final NodeRecord endNode        = writeNode(endNodeId);
+		final long id                   = store.nextRelationshipId();
+		final RelationshipRecord record = new RelationshipRecord(id, type, startNodeId, endNodeId);
+
+		setProperties(record, properties);
+
+		relationships.put(id, record);
+		createdRelationships.add(id);
+
+		startNode.getOutgoing().add(id);
+		endNode.getIncoming().add(id);
+
+		final NodeChanges startChanges = nodeChanges.get(startNodeId);
+		if (startChanges != null) {
+			startChanges.addOutgoing(id);
+		}
+
+		final NodeChanges endChanges = nodeChanges.get(endNodeId);
+		if (endChanges != null) {
+			endChanges.addIncoming(id);
+		}
+
+		return id;
+	}
+
+	public void setNodeProperty(final long id, final String key, final Object value) {
+
+		final Object normalized = EntityRecord.normalize(value);
+
+		writeNode(id).setProperty(key, normalized);
+
+		final NodeChanges changes = nodeChanges.get(id);
+		if (changes != null) {
+			changes.setProperty(key, normalized);
+		}
+	}
+
+	public void setRelationshipProperty(final long id, final String key, final Object value) {
+
+		final Object normalized = EntityRecord.normalize(value);
+
+		writeRelationship(id).setProperty(key, normalized);
+
+		final Map<String, Object> changes = relationshipChanges.get(id);
+		if (changes != null) {
+			changes.put(key, normalized != null ? normalized : NodeChanges.REMOVED);
+		}
+	}
+
+	public void addLabel(final long id, final String label) {
+
+		writeNode(id).getLabels().add(label);
+
+		final NodeChanges changes = nodeChanges.get(id);
+		if (changes != null) {
+			changes.addLabel(label);
+		}
+	}
+
+	public void removeLabel(final long id, final String label) {
+
+		writeNode(id).getLabels().remove(label);
+
+		final NodeChanges changes = nodeChanges.get(id);
+		if (changes != null) {
+			changes.removeLabel(label);
+		}
+	}
+
+	public void deleteRelationship(final long id) {
+
+		final RelationshipRecord record = getRelationship(id);
+		if (record != null) {
+
+			final long startNodeId = record.getStartNodeId();
+			final long endNodeId   = record.getEndNodeId();
+
+			if (getNode(startNodeId) != null) {
+
+				writeNode(startNodeId).getOutgoing().remove(id);
+
+				final NodeChanges changes = nodeChanges.get(startNodeId);
+				if (changes != null) {
+					changes.removeOutgoing(id);
+				}
+			}
+
+			if (getNode(endNodeId) != null) {
+
+				writeNode(endNodeId).getIncoming().remove(id);
+
+				final NodeChanges changes = nodeChanges.get(endNodeId);
+				if (changes != null) {
+					changes.removeIncoming(id);
+				}
+			}
+
+			relationships.remove(id);
+			relationshipChanges.remove(id);
+
+			if (!createdRelationships.remove(id)) {
+				deletedRelationships.add(id);
+			}
+		}
+	}
+
+	public void deleteNode(final long id, final boolean deleteRelationships) {
+
+		final NodeRecord record = getNode(id);
+		if (record != null) {
+
+			if (deleteRelationships) {
+
+				for (final long relationshipId : record.getOutgoing().toArray()) {
+					deleteRelationship(relationshipId);
+				}
+
+				for (final long relationshipId : record.getIncoming().toArray()) {
+					deleteRelationship(relationshipId);
+				}
+
+			} else if (record.hasRelationships()) {
+
+				throw new ConstraintViolationException(null, "Neo.ClientError.Schema.ConstraintValidationFailed", "Cannot delete node<" + id + ">, because it still has relationships. To delete this node, you must first delete its relationships.");
+			}
+
+			nodes.remove(id);
+			nodeChanges.remove(id);
+
+			if (!createdNodes.remove(id)) {
+				deletedNodes.add(id);
+			}
+		}
+	}
+
+	// ----- package-private methods for MemoryStore -----
+	Set<Long> getCreatedNodes() {
+		return createdNodes;
+	}
+
+	Set<Long> getCreatedRelationships() {
+		return createdRelationships;
+	}
+
+	Set<Long> getDeletedNodes() {
+		return deletedNodes;
+	}
+
+	Set<Long> getDeletedRelationships() {
+		return deletedRelationships;
+	}
+
+	Map<Long, NodeChanges> getNodeChanges() {
+		return nodeChanges;
+	}
+
+	Map<Long, Map<String, Object>> getRelationshipChanges() {
+		return relationshipChanges;
+	}
+
+	NodeRecord getLocalNode(final long id) {
+		return nodes.get(id);
+	}
+
+	RelationshipRecord getLocalRelationship(final long id) {
+		return relationships.get(id);
+	}
+
+	// ----- private methods -----
+	private NodeRecord writeNode(final long id) {
+
+		NodeRecord local = nodes.get(id);
+		if (local == null) {
+
+			final NodeRecord committed = deletedNodes.contains(id) ? null : store.getNode(id);
+			if (committed == null) {
+
+				throw new NotFoundException("Node with id " + id + " not found");
+			}
+
+			local = committed.copy();
+
+			nodes.put(id, local);
+			nodeChanges.put(id, new NodeChanges());
+		}
+
+		return local;
+	}
+
+	private RelationshipRecord writeRelationship(final long id) {
+
+		RelationshipRecord local = relationships.get(id);
+		if (local == null) {
+
+			final RelationshipRecord committed = deletedRelationships.contains(id) ? null : store.getRelationship(id);
+			if (committed == null) {
+
+				throw new NotFoundException("Relationship with id " + id + " not found");
+			}
+
+			local = committed.copy();
+
+			relationships.put(id, local);
+			relationshipChanges.put(id, new HashMap<>());
+		}
+
+		return local;
+	}
+
+	private void setProperties(final EntityRecord record, final Map<String, Object> properties) {
+
+		if (properties != null) {
+
+			for (final Entry<String, Object> entry : properties.entrySet()) {
+
+				record.setProperty(entry.getKey(), entry.getValue());
+			}
+		}
+	}
+}
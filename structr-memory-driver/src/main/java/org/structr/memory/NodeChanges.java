@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * The changes a transaction made to an existing node. They are applied
+ * to the latest committed version of the node on commit, so concurrent
+ * transactions that modify different properties or relationships of the
+ * same node do not overwrite each other.
+ */
+public class NodeChanges {
+
+	public static final Object REMOVED = new Object();
+
+	private final Map<String, Object> properties = new HashMap<>();
+	private final Set<String> addedLabels        = new HashSet<>();
+	private final Set<String> removedLabels      = new HashSet<>();
+	private final LongList addedOutgoing         = new LongList();
+	private final LongList removedOutgoing       = new LongList();
+	private final LongList addedIncoming         = new LongList();
+	private final LongList removedIncoming       = new LongList();
+
+	public void setProperty(final String key, final Object value) {
+		properties.put(key, value != null ? value : REMOVED);
+	}
+
+	public void addLabel(final String label) {
+
+		if (!removedLabels.remove(label)) {
+			addedLabels.add(label);
+		}
+	}
+
+	public void removeLabel(final String label) {
+
+		if (!addedLabels.remove(label)) {
+			removedLabels.add(label);
+		}
+	}
+
+	public void addOutgoing(final long id) {
+		add(addedOutgoing, removedOutgoing, id);
+	}
+
+	public void removeOutgoing(final long id) {
+		add(removedOutgoing, addedOutgoing, id);
+	}
+
+	public void addIncoming(final long id) {
+		add(addedIncoming, removedIncoming, id);
+	}
+
+	public void removeIncoming(final long id) {
+		add(removedIncoming, addedIncoming, id);
+	}
+
+	public Map<String, Object> getProperties() {
+		return properties;
+	}
+
+	public void apply(final NodeRecord record) {
+
+		applyProperties(properties, record);
+
+		record.getLabels().addAll(addedLabels);
+		record.getLabels().removeAll(removedLabels);
+
+		apply(record.getOutgoing(), addedOutgoing, removedOutgoing);
+		apply(record.getIncoming(), addedIncoming, removedIncoming);
+	}
+
+	// ----- public static methods -----
+	public static void applyProperties(final Map<String, Object> properties, final EntityRecord record) {
+
+		for (final Entry<String, Object> entry : properties.entrySet()) {
+
+			final Object value = entry.getValue();
+
+			record.setProperty(entry.getKey(), value != REMOVED ? value : null);
+		}
+	}
+
+	// ----- private methods -----
+	private void add(final LongList target, final LongList opposite, final long id) {
+
+		// an addition cancels a previous removal and vice versa
+		if (!opposite.remove(id)) {
+			target.add(id);
+		}
+	}
+
+	private void apply(final LongList list, final LongList added, final LongList removed) {
+
+		for (int i=0; i<added.size(); i++) {
+
+			final long id = added.get(i);
+
+			if (!list.contains(id)) {
+				list.add(id);
+			}
+		}
+
+		for (int i=0; i<removed.size(); i++) {
+			list.remove(removed.get(i));
+		}
+	}
+}
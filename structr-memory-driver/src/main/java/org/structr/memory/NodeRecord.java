@@ -0,0 +1,73 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Storage representation of a node, with primitive adjacency lists
+ * that contain the ids of the outgoing and incoming relationships.
+ */
+public class NodeRecord extends EntityRecord {
+
+	private final Set<String> labels;
+	private final LongList outgoing;
+	private final LongList incoming;
+
+	public NodeRecord(final long id, final Set<String> labels) {
+		this(id, new LinkedHashSet<>(labels), new HashMap<>(), new LongList(), new LongList());
+	}
+
+	private NodeRecord(final long id, final Set<String> labels, final Map<String, Object> properties, final LongList outgoing, final LongList incoming) {
+
+		super(id, properties);
+
+		this.labels   = labels;
+		this.outgoing = outgoing;
+		this.incoming = incoming;
+	}
+
+	@Override
+	public NodeRecord copy() {
+		return new NodeRecord(id, new LinkedHashSet<>(labels), copyProperties(properties), new LongList(outgoing), new LongList(incoming));
+	}
+
+	public Set<String> getLabels() {
+		return labels;
+	}
+
+	public boolean hasLabel(final String label) {
+		return label == null || labels.contains(label);
+	}
+
+	public LongList getOutgoing() {
+		return outgoing;
+	}
+
+	public LongList getIncoming() {
+		return incoming;
+	}
+
+	public boolean hasRelationships() {
+		return !outgoing.isEmpty() || !incoming.isEmpty();
+	}
+}
@@ -0,0 +1,66 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Storage representation of a relationship.
+ */
+public class RelationshipRecord extends EntityRecord {
+
+	private final long startNodeId;
+	private final long endNodeId;
+	private final String type;
+
+	public RelationshipRecord(final long id, final String type, final long startNodeId, final long endNodeId) {
+		this(id, type, startNodeId, endNodeId, new HashMap<>());
+	}
+
+	private RelationshipRecord(final long id, final String type, final long startNodeId, final long endNodeId, final Map<String, Object> properties) {
+
+		super(id, properties);
+
+		this.startNodeId = startNodeId;
+		this.endNodeId   = endNodeId;
+		this.type        = type;
+	}
+
+	@Override
+	public RelationshipRecord copy() {
+		return new RelationshipRecord(id, type, startNodeId, endNodeId, copyProperties(properties));
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public long getStartNodeId() {
+		return startNodeId;
+	}
+
+	public long getEndNodeId() {
+		return endNodeId;
+	}
+
+	public long getOtherNodeId(final long nodeId) {
+		return nodeId == startNodeId ? endNodeId : startNodeId;
+	}
+}
@@ -0,0 +1,252 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import org.structr.api.DatabaseService;
+import org.structr.api.graph.PropertyContainer;
+import org.structr.api.index.AbstractIndex;
+import org.structr.api.index.QueryFactory;
+import org.structr.api.search.*;
+import org.structr.api.util.Iterables;
+import org.structr.memory.EntityRecord;
+import org.structr.memory.MemoryDatabaseService;
+import org.structr.memory.MemoryStore;
+import org.structr.memory.MemoryTransaction;
+import org.structr.memory.index.condition.Condition;
+import org.structr.memory.index.condition.Values;
+import org.structr.memory.index.converter.DateTypeConverter;
+import org.structr.memory.index.converter.StringTypeConverter;
+import org.structr.memory.index.factory.*;
+
+/**
+ * Base class for the in-memory indexes. Queries are answered by scanning
+ * the candidates from the label, type or uuid index of the store and
+ * evaluating the query condition for each of them.
+ */
+public abstract class AbstractMemoryIndex<T extends PropertyContainer> extends AbstractIndex<MemoryQuery, T> {
+
+	private final Map<Class, TypeConverter> converters = new HashMap<>();
+	private final Map<Class, QueryFactory> factories   = new HashMap<>();
+	protected MemoryDatabaseService db                 = null;
+
+	public abstract Collection<Long> getCandidates(final MemoryTransaction tx, final String typeLabel);
+	public abstract Collection<Long> getCandidatesByUuid(final MemoryTransaction tx, final Object uuid);
+	public abstract EntityRecord getRecord(final MemoryTransaction tx, final long id);
+	public abstract boolean matchesType(final MemoryTransaction tx, final EntityRecord record, final MemoryQuery query);
+	public abstract T getEntity(final long id);
+
+	public AbstractMemoryIndex(final MemoryDatabaseService db) {
+
+		this.db = db;
+
+		init();
+	}
+
+	@Override
+	public MemoryQuery createQuery(final QueryContext context) {
+		return new MemoryQuery(context);
+	}
+
+	@Override
+	public QueryFactory getFactoryForType(final Class type) {
+		return factories.get(type);
+	}
+
+	@Override
+	public TypeConverter getConverterForType(final Class type) {
+		return converters.get(type);
+	}
+
+	@Override
+	public DatabaseService getDatabaseService() {
+		return db;
+	}
+
+	@Override
+	public Iterable<T> getResult(final MemoryQuery query) {
+
+		final MemoryTransaction tx      = db.getCurrentTransaction();
+		final QueryContext queryContext = query.getQueryContext();
+		final Condition condition       = query.getCondition();
+		final List<Match> matches       = new ArrayList<>();
+
+		for (final long id : getCandidates(tx, query, condition)) {
+
+			final EntityRecord record = getRecord(tx, id);
+			if (record != null && matchesType(tx, record, query) && Boolean.TRUE.equals(condition.evaluate(tx, record))) {
+
+				matches.add(new Match(id, getSortValue(record, query)));
+			}
+		}
+
+		if (query.getSortKey() != null || queryContext.isKeyset()) {
+
+			final Comparator<Match> comparator = getComparator(query);
+
+			matches.sort(comparator);
+
+			if (queryContext.isKeyset() && queryContext.hasKeysetPosition()) {
+
+				// remove everything up to and including the cursor position
+				final Match position = new Match(queryContext.getKeysetId(), queryContext.getKeysetValue());
+				matches.removeIf(match -> comparator.compare(match, position) <= 0);
+			}
+		}
+
+		return getEntities(query, slice(queryContext, matches));
+	}
+
+	// ----- private methods -----
+	private Collection<Long> getCandidates(final MemoryTransaction tx, final MemoryQuery query, final Condition condition) {
+
+		// use the uuid index if the query requires a specific uuid
+		final Object uuid = condition.getRequiredValue(MemoryStore.UUID_KEY);
+		if (uuid != null) {
+
+			return getCandidatesByUuid(tx, uuid);
+		}
+
+		final List<String> typeLabels = query.getTypeLabels();
+		switch (typeLabels.size()) {
+
+			case 0:
+				return getCandidates(tx, (String)null);
+
+			case 1:
+				return getCandidates(tx, typeLabels.get(0));
+
+			default:
+				final TreeSet<Long> union = new TreeSet<>();
+
+				for (final String typeLabel : typeLabels) {
+					union.addAll(getCandidates(tx, typeLabel));
+				}
+
+				return union;
+		}
+	}
+
+	private Object getSortValue(final EntityRecord record, final MemoryQuery query) {
+
+		final String sortKey = query.getSortKey();
+		if (sortKey != null) {
+
+			final Object value = record.getProperty(sortKey);
+
+			// numeric sort keys are compared with a default value of -1 like COALESCE(sortKey, -1)
+			if (value == null && !SortType.Default.equals(query.getSortType())) {
+				return -1L;
+			}
+
+			return value;
+		}
+
+		return null;
+	}
+
+	private Comparator<Match> getComparator(final MemoryQuery query) {
+
+		final Comparator<Match> comparator = (a, b) -> {
+
+			final int result = Values.compareForSort(a.sortValue, b.sortValue);
+			if (result != 0) {
+
+				return result;
+			}
+
+			return Long.compare(a.id, b.id);
+		};
+
+		if (query.getSortKey() != null && query.sortDescending()) {
+			return comparator.reversed();
+		}
+
+		return comparator;
+	}
+
+	private List<Match> slice(final QueryContext queryContext, final List<Match> matches) {
+
+		if (queryContext.isSliced()) {
+
+			final int size = matches.size();
+			final int from = Math.min(size, Math.max(0, queryContext.getSkip()));
+			final int to   = Math.min(size, from + Math.max(0, queryContext.getLimit()));
+
+			return matches.subList(from, to);
+		}
+
+		return matches;
+	}
+
+	private Iterable<T> getEntities(final MemoryQuery query, final List<Match> matches) {
+
+		final QueryContext queryContext = query.getQueryContext();
+
+		return Iterables.map(match -> {
+
+			if (queryContext.isKeyset()) {
+				queryContext.keysetPosition(match.id, match.sortValue);
+			}
+
+			return getEntity(match.id);
+
+		}, matches);
+	}
+
+	private void init() {
+
+		factories.put(NotEmptyQuery.class,     new NotEmptyQueryFactory(this));
+		factories.put(FulltextQuery.class,     new KeywordQueryFactory(this));
+		factories.put(SpatialQuery.class,      new SpatialQueryFactory(this));
+		factories.put(GroupQuery.class,        new GroupQueryFactory(this));
+		factories.put(RangeQuery.class,        new RangeQueryFactory(this));
+		factories.put(ExactQuery.class,        new KeywordQueryFactory(this));
+		factories.put(ArrayQuery.class,        new ArrayQueryFactory(this));
+		factories.put(EmptyQuery.class,        new EmptyQueryFactory(this));
+		factories.put(TypeQuery.class,         new TypeQueryFactory(this));
+		factories.put(UuidQuery.class,         new UuidQueryFactory(this));
+		factories.put(RelationshipQuery.class, new RelationshipQueryFactory(this));
+		factories.put(ComparisonQuery.class,   new ComparisonQueryFactory(this));
+		factories.put(PermissionQuery.class,   new PermissionQueryFactory(this));
+
+		converters.put(String.class, new StringTypeConverter());
+		converters.put(Date.class,   new DateTypeConverter());
+	}
+
+	// ----- nested classes -----
+	private static class Match {
+
+		private Object sortValue = null;
+		private long id          = 0L;
+
+		public Match(final long id, final Object sortValue) {
+
+			this.sortValue = sortValue;
+			this.id        = id;
+		}
+	}
+}
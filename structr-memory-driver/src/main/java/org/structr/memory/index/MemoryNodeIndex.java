@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index;
+
+import java.util.Collection;
+import java.util.List;
+import org.structr.api.graph.Node;
+import org.structr.memory.EntityRecord;
+import org.structr.memory.MemoryDatabaseService;
+import org.structr.memory.MemoryNode;
+import org.structr.memory.MemoryTransaction;
+import org.structr.memory.NodeRecord;
+
+/**
+ *
+ */
+public class MemoryNodeIndex extends AbstractMemoryIndex<Node> {
+
+	public MemoryNodeIndex(final MemoryDatabaseService db) {
+		super(db);
+	}
+
+	@Override
+	public Collection<Long> getCandidates(final MemoryTransaction tx, final String typeLabel) {
+		return db.getNodeCandidates(tx, typeLabel != null ? typeLabel : "NodeInterface");
+	}
+
+	@Override
+	public Collection<Long> getCandidatesByUuid(final MemoryTransaction tx, final Object uuid) {
+		return db.getNodeCandidatesByUuid(tx, uuid);
+	}
+
+	@Override
+	public EntityRecord getRecord(final MemoryTransaction tx, final long id) {
+		return db.getNodeRecord(tx, id);
+	}
+
+	@Override
+	public boolean matchesType(final MemoryTransaction tx, final EntityRecord record, final MemoryQuery query) {
+
+		final NodeRecord node         = (NodeRecord)record;
+		final List<String> typeLabels = query.getTypeLabels();
+
+		if (!node.hasLabel("NodeInterface") || !node.hasLabel(db.getTenantIdentifier())) {
+			return false;
+		}
+
+		if (typeLabels.isEmpty()) {
+			return true;
+		}
+
+		for (final String typeLabel : typeLabels) {
+
+			if (node.hasLabel(typeLabel)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	@Override
+	public Node getEntity(final long id) {
+		return new MemoryNode(db, id);
+	}
+}
@@ -0,0 +1,244 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import org.structr.api.index.DatabaseQuery;
+import org.structr.api.search.QueryContext;
+import org.structr.api.search.SortType;
+import org.structr.memory.index.condition.Condition;
+import org.structr.memory.index.condition.ListCondition;
+import org.structr.memory.index.condition.PropertyCondition;
+import org.structr.memory.index.condition.PropertyCondition.Operator;
+
+/**
+ * Query representation of the in-memory database. The query factories
+ * add conditions and boolean operators in the same order they would be
+ * written into a Cypher WHERE clause, the resulting token stream is then
+ * parsed into a tree of conditions with Cypher operator precedence.
+ */
+public class MemoryQuery implements DatabaseQuery {
+
+	private enum Token {
+		And, Or, Not, Open, Close
+	}
+
+	private final List<String> typeLabels = new LinkedList<>();
+	private final List<Object> tokens     = new ArrayList<>();
+	private QueryContext queryContext     = null;
+	private Condition condition           = null;
+	private String sourceTypeLabel        = null;
+	private String targetTypeLabel        = null;
+	private boolean sortDescending        = false;
+	private SortType sortType             = null;
+	private String sortKey                = null;
+	private int position                  = 0;
+
+	public MemoryQuery(final QueryContext queryContext) {
+		this.queryContext = queryContext;
+	}
+
+	@Override
+	public void and() {
+		tokens.add(Token.And);
+	}
+
+	@Override
+	public void or() {
+		tokens.add(Token.Or);
+	}
+
+	@Override
+	public void not() {
+		tokens.add(Token.Not);
+	}
+
+	@Override
+	public void andNot() {
+
+		tokens.add(Token.And);
+		tokens.add(Token.Not);
+	}
+
+	public void beginGroup() {
+		tokens.add(Token.Open);
+	}
+
+	public void endGroup() {
+		tokens.add(Token.Close);
+	}
+
+	public void addCondition(final Condition condition) {
+		tokens.add(condition);
+	}
+
+	public void addSimpleParameter(final String key, final Operator operator, final Object value) {
+		addSimpleParameter(key, operator, value, false);
+	}
+
+	public void addSimpleParameter(final String key, final Operator operator, final Object value, final boolean caseInsensitive) {
+		tokens.add(new PropertyCondition(key, operator, value, caseInsensitive));
+	}
+
+	public void addListParameter(final String key, final Operator operator, final Object value) {
+		tokens.add(new ListCondition(key, operator, value));
+	}
+
+	public void addParameters(final String key, final Operator operator1, final Object value1, final Operator operator2, final Object value2) {
+
+		beginGroup();
+		addSimpleParameter(key, operator1, value1);
+		and();
+		addSimpleParameter(key, operator2, value2);
+		endGroup();
+	}
+
+	@Override
+	public void sort(final SortType sortType, final String sortKey, final boolean sortDescending) {
+
+		this.sortDescending = sortDescending;
+		this.sortType       = sortType;
+		this.sortKey        = sortKey;
+	}
+
+	public void typeLabel(final String typeLabel) {
+		this.typeLabels.add(typeLabel);
+	}
+
+	public List<String> getTypeLabels() {
+		return typeLabels;
+	}
+
+	public void setSourceType(final String sourceTypeLabel) {
+		this.sourceTypeLabel = sourceTypeLabel;
+	}
+
+	public String getSourceType() {
+		return sourceTypeLabel;
+	}
+
+	public void setTargetType(final String targetTypeLabel) {
+		this.targetTypeLabel = targetTypeLabel;
+	}
+
+	public String getTargetType() {
+		return targetTypeLabel;
+	}
+
+	public String getSortKey() {
+		return sortKey;
+	}
+
+	public SortType getSortType() {
+		return sortType;
+	}
+
+	public boolean sortDescending() {
+		return sortDescending;
+	}
+
+	public QueryContext getQueryContext() {
+		return queryContext;
+	}
+
+	/**
+	 * Returns the condition tree of this query.
+	 *
+	 * @return the condition
+	 */
+	public Condition getCondition() {
+
+		if (condition == null) {
+
+			position  = 0;
+			condition = parseOr();
+		}
+
+		return condition;
+	}
+
+	// ----- private methods -----
+	private Condition parseOr() {
+
+		final List<Condition> conditions = new ArrayList<>();
+
+		conditions.add(parseAnd());
+
+		while (position < tokens.size() && Token.Or.equals(tokens.get(position))) {
+
+			position++;
+			conditions.add(parseAnd());
+		}
+
+		return conditions.size() == 1 ? conditions.get(0) : new Condition.Or(conditions);
+	}
+
+	private Condition parseAnd() {
+
+		final List<Condition> conditions = new ArrayList<>();
+
+		conditions.add(parseNot());
+
+		while (position < tokens.size() && Token.And.equals(tokens.get(position))) {
+
+			position++;
+			conditions.add(parseNot());
+		}
+
+		return conditions.size() == 1 ? conditions.get(0) : new Condition.And(conditions);
+	}
+
+	private Condition parseNot() {
+
+		if (position < tokens.size()) {
+
+			final Object token = tokens.get(position);
+
+			if (Token.Not.equals(token)) {
+
+				position++;
+				return new Condition.Not(parseNot());
+			}
+
+			if (Token.Open.equals(token)) {
+
+				position++;
+
+				final Condition group = parseOr();
+
+				if (position < tokens.size() && Token.Close.equals(tokens.get(position))) {
+					position++;
+				}
+
+				return group;
+			}
+
+			if (token instanceof Condition) {
+
+				position++;
+				return (Condition)token;
+			}
+		}
+
+		// empty query or empty group
+		return Condition.TRUE;
+	}
+}
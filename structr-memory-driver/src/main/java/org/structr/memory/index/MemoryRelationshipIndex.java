@@ -0,0 +1,84 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index;
+
+import java.util.Collection;
+import java.util.List;
+import org.structr.api.graph.Relationship;
+import org.structr.memory.EntityRecord;
+import org.structr.memory.MemoryDatabaseService;
+import org.structr.memory.MemoryRelationship;
+import org.structr.memory.MemoryTransaction;
+import org.structr.memory.NodeRecord;
+import org.structr.memory.RelationshipRecord;
+
+/**
+ *
+ */
+public class MemoryRelationshipIndex extends AbstractMemoryIndex<Relationship> {
+
+	public MemoryRelationshipIndex(final MemoryDatabaseService db) {
+		super(db);
+	}
+
+	@Override
+	public Collection<Long> getCandidates(final MemoryTransaction tx, final String typeLabel) {
+		return db.getRelationshipCandidates(tx, typeLabel);
+	}
+
+	@Override
+	public Collection<Long> getCandidatesByUuid(final MemoryTransaction tx, final Object uuid) {
+		return db.getRelationshipCandidatesByUuid(tx, uuid);
+	}
+
+	@Override
+	public EntityRecord getRecord(final MemoryTransaction tx, final long id) {
+		return db.getRelationshipRecord(tx, id);
+	}
+
+	@Override
+	public boolean matchesType(final MemoryTransaction tx, final EntityRecord record, final MemoryQuery query) {
+
+		final RelationshipRecord relationship = (RelationshipRecord)record;
+		final List<String> typeLabels         = query.getTypeLabels();
+		final String tenantIdentifier         = db.getTenantIdentifier();
+
+		if (!typeLabels.isEmpty() && !typeLabels.contains(relationship.getType())) {
+			return false;
+		}
+
+		final NodeRecord startNode = db.getNodeRecord(tx, relationship.getStartNodeId());
+		final NodeRecord endNode   = db.getNodeRecord(tx, relationship.getEndNodeId());
+
+		if (startNode == null || !startNode.hasLabel(tenantIdentifier) || !startNode.hasLabel(query.getSourceType())) {
+			return false;
+		}
+
+		if (endNode == null || !endNode.hasLabel(tenantIdentifier) || !endNode.hasLabel(query.getTargetType())) {
+			return false;
+		}
+
+		return true;
+	}
+
+	@Override
+	public Relationship getEntity(final long id) {
+		return new MemoryRelationship(db, id);
+	}
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index.condition;
+
+import java.util.List;
+import org.structr.memory.EntityRecord;
+import org.structr.memory.MemoryTransaction;
+
+/**
+ * A predicate of an in-memory query. Conditions are evaluated with the
+ * three-valued logic of Cypher, i.e. they return null if the result is
+ * unknown (for example because a property is not set), so that queries
+ * return the same results as they do on Neo4j.
+ */
+public interface Condition {
+
+	public static final Condition TRUE = (tx, record) -> Boolean.TRUE;
+
+	Boolean evaluate(final MemoryTransaction tx, final EntityRecord record);
+
+	/**
+	 * Returns the value the given key must have for this condition to be
+	 * true, or null if there is no such value. This is used to select the
+	 * candidates of a query from the uuid index.
+	 *
+	 * @param key
+	 * @return the required value or null
+	 */
+	default Object getRequiredValue(final String key) {
+		return null;
+	}
+
+	// ----- nested classes -----
+	public static class And implements Condition {
+
+		private List<Condition> conditions = null;
+
+		public And(final List<Condition> conditions) {
+			this.conditions = conditions;
+		}
+
+		@Override
+		public Boolean evaluate(final MemoryTransaction tx, final EntityRecord record) {
+
+			boolean unknown = false;
+
+			for (final Condition condition : conditions) {
+
+				final Boolean result = condition.evaluate(tx, record);
+				if (result == null) {
+
+					unknown = true;
+
+				} else if (!result) {
+
+					return Boolean.FALSE;
+				}
+			}
+
+			return unknown ? null : Boolean.TRUE;
+		}
+
+		@Override
+		public Object getRequiredValue(final String key) {
+
+			for (final Condition condition : conditions) {
+
+				final Object value = condition.getRequiredValue(key);
+				if (value != null) {
+
+					return value;
+				}
+			}
+
+			return null;
+		}
+	}
+
+	public static class Or implements Condition {
+
+		private List<Condition> conditions = null;
+
+		public Or(final List<Condition> conditions) {
+			this.conditions = conditions;
+		}
+
+		@Override
+		public Boolean evaluate(final MemoryTransaction tx, final EntityRecord record) {
+
+			boolean unknown = false;
+
+			for (final Condition condition : conditions) {
+
+				final Boolean result = condition.evaluate(tx, record);
+				if (result == null) {
+
+					unknown = true;
+
+				} else if (result) {
+
+					return Boolean.TRUE;
+				}
+			}
+
+			return unknown ? null : Boolean.FALSE;
+		}
+	}
+
+	public static class Not implements Condition {
+
+		private Condition condition = null;
+
+		public Not(final Condition condition) {
+			this.condition = condition;
+		}
+
+		@Override
+		public Boolean evaluate(final MemoryTransaction tx, final EntityRecord record) {
+
+			final Boolean result = condition.evaluate(tx, record);
+			if (result == null) {
+
+				return null;
+			}
+
+			return !result;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index.condition;
+
+import java.util.Collections;
+import java.util.List;
+import org.structr.memory.EntityRecord;
+import org.structr.memory.MemoryTransaction;
+
+/**
+ * Applies a property condition to the elements of an array property,
+ * true if any of the elements matches.
+ */
+public class ListCondition implements Condition {
+
+	private PropertyCondition elementCondition = null;
+	private String key                         = null;
+
+	public ListCondition(final String key, final PropertyCondition.Operator operator, final Object value) {
+
+		this.elementCondition = new PropertyCondition(key, operator, value);
+		this.key              = key;
+	}
+
+	@Override
+	public Boolean evaluate(final MemoryTransaction tx, final EntityRecord record) {
+
+		final Object value = record.getProperty(key);
+		if (value == null) {
+
+			return null;
+		}
+
+		final List list = value instanceof List ? (List)value : Collections.singletonList(value);
+		boolean unknown = false;
+
+		for (final Object element : list) {
+
+			final Boolean result = elementCondition.test(element);
+			if (result == null) {
+
+				unknown = true;
+
+			} else if (result) {
+
+				return Boolean.TRUE;
+			}
+		}
+
+		return unknown ? null : Boolean.FALSE;
+	}
+}
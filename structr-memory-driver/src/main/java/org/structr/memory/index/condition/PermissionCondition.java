@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index.condition;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.structr.memory.EntityRecord;
+import org.structr.memory.LongList;
+import org.structr.memory.MemoryDatabaseService;
+import org.structr.memory.MemoryTransaction;
+import org.structr.memory.NodeRecord;
+import org.structr.memory.RelationshipRecord;
+
+/**
+ * Restricts the result to nodes that are visible to authenticated users,
+ * that are one of the given principals, that are owned by one of the
+ * given principals or that have a SECURITY relationship from one of the
+ * principals which grants the given permission.
+ */
+public class PermissionCondition implements Condition {
+
+	private MemoryDatabaseService db = null;
+	private Set<String> principalIds = null;
+	private String permission        = null;
+
+	public PermissionCondition(final MemoryDatabaseService db, final Collection<String> principalIds, final String permission) {
+
+		this.principalIds = new HashSet<>(principalIds);
+		this.permission   = permission;
+		this.db           = db;
+	}
+
+	@Override
+	public Boolean evaluate(final MemoryTransaction tx, final EntityRecord record) {
+
+		if (Boolean.TRUE.equals(record.getProperty("visibleToPublicUsers")) || Boolean.TRUE.equals(record.getProperty("visibleToAuthenticatedUsers"))) {
+			return Boolean.TRUE;
+		}
+
+		if (principalIds.contains(record.getProperty("id"))) {
+			return Boolean.TRUE;
+		}
+
+		if (record instanceof NodeRecord) {
+
+			final LongList incoming = ((NodeRecord)record).getIncoming();
+
+			for (int i=0; i<incoming.size(); i++) {
+
+				final RelationshipRecord relationship = db.getRelationshipRecord(tx, incoming.get(i));
+				if (relationship != null && isGranted(tx, relationship)) {
+
+					return Boolean.TRUE;
+				}
+			}
+		}
+
+		return Boolean.FALSE;
+	}
+
+	// ----- private methods -----
+	private boolean isGranted(final MemoryTransaction tx, final RelationshipRecord relationship) {
+
+		final String type = relationship.getType();
+
+		if ("OWNS".equals(type) || "SECURITY".equals(type)) {
+
+			final NodeRecord principal = db.getNodeRecord(tx, relationship.getStartNodeId());
+			if (principal != null && principalIds.contains(principal.getProperty("id"))) {
+
+				if ("OWNS".equals(type)) {
+					return true;
+				}
+
+				final Object allowed = relationship.getProperty("allowed");
+				if (allowed instanceof List) {
+
+					return ((List)allowed).contains(permission);
+				}
+			}
+		}
+
+		return false;
+	}
+}
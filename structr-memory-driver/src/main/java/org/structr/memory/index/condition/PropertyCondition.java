@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index.condition;
+
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+import org.structr.memory.EntityRecord;
+import org.structr.memory.MemoryTransaction;
+
+/**
+ * Compares a property value with a given value.
+ */
+public class PropertyCondition implements Condition {
+
+	public enum Operator {
+		Equal, NotEqual, Greater, GreaterOrEqual, Less, LessOrEqual, IsNull, IsNotNull, StartsWith, EndsWith, Contains, Matches
+	}
+
+	private boolean caseInsensitive = false;
+	private Operator operator       = null;
+	private Pattern pattern         = null;
+	private Object value            = null;
+	private String key              = null;
+
+	public PropertyCondition(final String key, final Operator operator, final Object value) {
+		this(key, operator, value, false);
+	}
+
+	public PropertyCondition(final String key, final Operator operator, final Object value, final boolean caseInsensitive) {
+
+		this.caseInsensitive = caseInsensitive;
+		this.operator        = operator;
+		this.value           = EntityRecord.normalize(caseInsensitive && value instanceof String ? ((String)value).toLowerCase() : value);
+		this.key             = key;
+
+		if (Operator.Matches.equals(operator) && value instanceof String) {
+			this.pattern = Pattern.compile((String)value);
+		}
+	}
+
+	@Override
+	public Boolean evaluate(final MemoryTransaction tx, final EntityRecord record) {
+		return test(record.getProperty(key));
+	}
+
+	@Override
+	public Object getRequiredValue(final String key) {
+
+		if (Operator.Equal.equals(operator) && !caseInsensitive && key.equals(this.key)) {
+			return value;
+		}
+
+		return null;
+	}
+
+	/**
+	 * Applies the operator of this condition to the given value.
+	 *
+	 * @param actual
+	 * @return the result of the comparison or null if unknown
+	 */
+	public Boolean test(final Object actual) {
+
+		switch (operator) {
+
+			case IsNull:
+				return actual == null;
+
+			case IsNotNull:
+				return actual != null;
+		}
+
+		if (actual == null || value == null) {
+			return null;
+		}
+
+		Object source = actual;
+
+		if (caseInsensitive) {
+
+			if (!(actual instanceof String)) {
+				return null;
+			}
+
+			source = ((String)actual).toLowerCase();
+		}
+
+		switch (operator) {
+
+			case Equal:
+				return Values.equal(source, value);
+
+			case NotEqual:
+				final Boolean equal = Values.equal(source, value);
+				return equal != null ? !equal : null;
+
+			case Greater:
+				return check(Values.compare(source, value), c -> c > 0);
+
+			case GreaterOrEqual:
+				return check(Values.compare(source, value), c -> c >= 0);
+
+			case Less:
+				return check(Values.compare(source, value), c -> c < 0);
+
+			case LessOrEqual:
+				return check(Values.compare(source, value), c -> c <= 0);
+		}
+
+		if (!(source instanceof String) || !(value instanceof String)) {
+			return null;
+		}
+
+		final String string = (String)source;
+		final String search = (String)value;
+
+		switch (operator) {
+
+			case StartsWith:
+				return string.startsWith(search);
+
+			case EndsWith:
+				return string.endsWith(search);
+
+			case Contains:
+				return string.contains(search);
+
+			case Matches:
+				return pattern.matcher(string).matches();
+		}
+
+		return null;
+	}
+
+	// ----- private methods -----
+	private Boolean check(final Integer comparison, final IntPredicate predicate) {
+
+		if (comparison == null) {
+			return null;
+		}
+
+		return predicate.test(comparison);
+	}
+}
@@ -0,0 +1,69 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index.condition;
+
+import org.structr.memory.EntityRecord;
+import org.structr.memory.MemoryTransaction;
+
+/**
+ * Selects entities within the given distance (in meters) of a point,
+ * using the same spherical model as the distance() function of Neo4j.
+ */
+public class SpatialCondition implements Condition {
+
+	private static final double EARTH_RADIUS_METERS = 6378140.0;
+
+	private double latitude  = 0.0;
+	private double longitude = 0.0;
+	private double distance  = 0.0;
+
+	public SpatialCondition(final double latitude, final double longitude, final double distance) {
+
+		this.latitude  = latitude;
+		this.longitude = longitude;
+		this.distance  = distance;
+	}
+
+	@Override
+	public Boolean evaluate(final MemoryTransaction tx, final EntityRecord record) {
+
+		final Object lat = record.getProperty("latitude");
+		final Object lon = record.getProperty("longitude");
+
+		if (lat instanceof Number && lon instanceof Number) {
+
+			return getDistance(((Number)lat).doubleValue(), ((Number)lon).doubleValue()) < distance;
+		}
+
+		// nodes without coordinates are not included
+		return Boolean.FALSE;
+	}
+
+	// ----- private methods -----
+	private double getDistance(final double lat, final double lon) {
+
+		final double lat1 = Math.toRadians(latitude);
+		final double lat2 = Math.toRadians(lat);
+		final double dLat = lat2 - lat1;
+		final double dLon = Math.toRadians(lon - longitude);
+		final double a    = Math.pow(Math.sin(dLat / 2), 2) + Math.cos(lat1) * Math.cos(lat2) * Math.pow(Math.sin(dLon / 2), 2);
+
+		return 2.0 * EARTH_RADIUS_METERS * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index.condition;
+
+import java.util.List;
+
+/**
+ * Value comparison with the semantics of Cypher. Methods return null
+ * where Cypher would return null, e.g. when comparing values of
+ * incompatible types.
+ */
+public class Values {
+
+	public static Boolean equal(final Object a, final Object b) {
+
+		if (a == null || b == null) {
+			return null;
+		}
+
+		if (a instanceof Number && b instanceof Number) {
+			return compareNumbers((Number)a, (Number)b) == 0;
+		}
+
+		if (a instanceof List && b instanceof List) {
+
+			final List listA = (List)a;
+			final List listB = (List)b;
+
+			if (listA.size() != listB.size()) {
+				return Boolean.FALSE;
+			}
+
+			boolean unknown = false;
+
+			for (int i=0; i<listA.size(); i++) {
+
+				final Boolean result = equal(listA.get(i), listB.get(i));
+				if (result == null) {
+
+					unknown = true;
+
+				} else if (!result) {
+
+					return Boolean.FALSE;
+				}
+			}
+
+			return unknown ? null : Boolean.TRUE;
+		}
+
+		return a.equals(b);
+	}
+
+	public static Integer compare(final Object a, final Object b) {
+
+		if (a == null || b == null) {
+			return null;
+		}
+
+		if (a instanceof Number && b instanceof Number) {
+			return compareNumbers((Number)a, (Number)b);
+		}
+
+		if (a instanceof String && b instanceof String) {
+			return ((String)a).compareTo((String)b);
+		}
+
+		if (a instanceof Boolean && b instanceof Boolean) {
+			return ((Boolean)a).compareTo((Boolean)b);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Total order used for sorting, values of different types are ordered
+	 * like in Cypher (strings before booleans before numbers), nulls last.
+	 *
+	 * @param a
+	 * @param b
+	 * @return the comparison result
+	 */
+	public static int compareForSort(final Object a, final Object b) {
+
+		if (a == null && b == null) {
+			return 0;
+		}
+
+		if (a == null) {
+			return 1;
+		}
+
+		if (b == null) {
+			return -1;
+		}
+
+		final Integer result = compare(a, b);
+		if (result != null) {
+
+			return result;
+		}
+
+		return Integer.compare(rank(a), rank(b));
+	}
+
+	// ----- private static methods -----
+	private static int compareNumbers(final Number a, final Number b) {
+
+		if (isIntegral(a) && isIntegral(b)) {
+			return Long.compare(a.longValue(), b.longValue());
+		}
+
+		return Double.compare(a.doubleValue(), b.doubleValue());
+	}
+
+	private static boolean isIntegral(final Number number) {
+		return number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte;
+	}
+
+	private static int rank(final Object value) {
+
+		if (value instanceof List) {
+			return 0;
+		}
+
+		if (value instanceof String) {
+			return 1;
+		}
+
+		if (value instanceof Boolean) {
+			return 2;
+		}
+
+		if (value instanceof Number) {
+			return 3;
+		}
+
+		return 4;
+	}
+}
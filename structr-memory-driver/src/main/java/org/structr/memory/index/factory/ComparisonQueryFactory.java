@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory.index.factory;
+
+import org.structr.api.index.AbstractIndex;
+import org.structr.api.index.AbstractQueryFactory;
+import org.structr.api.search.ComparisonQuery;
+import org.structr.api.search.QueryPredicate;
+import org.structr.memory.index.MemoryQuery;
+import org.structr.memory.index.condition.PropertyCondition.Operator;
+
+public class ComparisonQueryFactory extends AbstractQueryFactory<MemoryQuery> {
+
+	public ComparisonQueryFactory(final AbstractIndex index) {
+		super(index);
+	}
+
+	@Override
+	public boolean createQuery(final QueryPredicate predicate, final MemoryQuery query, final boolean isFirst) {
+
+		if (predicate instanceof ComparisonQuery) {
+
+			checkOccur(query, predicate.getOccurrence(), isFirst);
+
+			final ComparisonQuery comparisonQuery     = (ComparisonQuery)predicate;
+			final Object value                        = getReadValue(comparisonQuery.getSearchValue());
+			final ComparisonQuery.Operation operation = comparisonQuery.getOperation();
+			final String name                         = predicate.getName();
+
+			if (value == null && operation == null) {
+				return false;
+			}
+
+			switch (operation) {
+
+				case equal:
+					query.addSimpleParameter(name, Operator.Equal, value);
+					break;
+
+				case notEqual:
+					query.addSimpleParameter(name, Operator.NotEqual, value);
+					break;
+
+				case greater:
+					query.addSimpleParameter(name, Operator.Greater, value);
+					break;
+
+				case greaterOrEqual:
+					query.addSimpleParameter(name, Operator.GreaterOrEqual, value);
+					break;
+
+				case less:
+					query.addSimpleParameter(name, Operator.Less, value);
+					break;
+
+				case lessOrEqual:
+					query.addSimpleParameter(name, Operator.LessOrEqual, value);
+					break;
+
+				case isNull:
+					query.addSimpleParameter(name, Operator.IsNull, null);
+					break;
+
+				case isNotNull:
+					query.addSimpleParameter(name, Operator.IsNotNull, null);
+					break;
+
+				case startsWith:
+					query.addSimpleParameter(name, Operator.StartsWith, value);
+					break;
+
+				case endsWith:
+					query.addSimpleParameter(name, Operator.EndsWith, value);
+					break;
+
+				case contains:
+					query.addSimpleParameter(name, Operator.Contains, value);
+					break;
+
+				case caseInsensitiveStartsWith:
+					query.addSimpleParameter(name, Operator.StartsWith, value.toString(), true);
+					break;
+
+				case caseInsensitiveEndsWith:
+					query.addSimpleParameter(name, Operator.EndsWith, value.toString(), true);
+					break;
+
+				case caseInsensitiveContains:
+					query.addSimpleParameter(name, Operator.Contains, value.toString(), true);
+					break;
+			}
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,548 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.memory;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import org.structr.api.ConstraintViolationException;
+import org.structr.api.NotFoundException;
+import org.structr.api.RetryException;
+import org.structr.api.Transaction;
+import org.structr.api.graph.Direction;
+import org.structr.api.graph.Label;
+import org.structr.api.graph.Node;
+import org.structr.api.graph.Relationship;
+import org.structr.api.graph.RelationshipType;
+import org.structr.api.search.ExactQuery;
+import org.structr.api.search.Occurrence;
+import org.structr.api.search.QueryContext;
+import org.structr.api.search.SortType;
+import org.structr.api.util.Iterables;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ *
+ */
+public class MemoryDatabaseServiceTest {
+
+	private MemoryDatabaseService db = null;
+
+	@BeforeMethod
+	public void setUp() {
+
+		db = new MemoryDatabaseService();
+		db.initialize();
+	}
+
+	@Test
+	public void testCommitAndRollback() throws InterruptedException {
+
+		final AtomicReference<Object> otherThread = new AtomicReference<>();
+		Node node                                 = null;
+
+		try (final Transaction tx = db.beginTx()) {
+
+			node = db.createNode("Test", labels("Test"), properties("name", "test", "count", 1));
+
+			// uncommitted data must not be visible to other threads
+			final Thread thread = new Thread(() -> otherThread.set(Iterables.count(db.getAllNodes())));
+			thread.start();
+			thread.join();
+
+			tx.success();
+		}
+
+		assertEquals("Uncommitted node is visible to other transactions", 0, otherThread.get());
+
+		try (final Transaction tx = db.beginTx()) {
+
+			assertEquals("Invalid property value", "test", node.getProperty("name"));
+			assertEquals("Integer values must be returned as Long", 1L, node.getProperty("count"));
+
+			node.setProperty("name", "changed");
+
+			// no success() => rollback
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			assertEquals("Property change was not rolled back", "test", node.getProperty("name"));
+
+			node.delete(false);
+			tx.success();
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			db.getNodeById(node.getId());
+			fail("Deleted node must not be found");
+
+		} catch (NotFoundException expected) {}
+	}
+
+	@Test
+	public void testRelationships() {
+
+		final RelationshipType type = db.forName(RelationshipType.class, "KNOWS");
+		Node start                  = null;
+		Node end                    = null;
+
+		try (final Transaction tx = db.beginTx()) {
+
+			start = db.createNode("Test", labels("Test"), properties());
+			end   = db.createNode("Test", labels("Test"), properties());
+
+			final Relationship rel1 = start.createRelationshipTo(end, type, properties("weight", 1));
+			final Relationship rel2 = start.createRelationshipTo(end, type, properties("weight", 2));
+
+			assertEquals("Relationships must be merged", rel1, rel2);
+			assertEquals("Merged relationship must be updated", 2L, rel1.getProperty("weight"));
+
+			tx.success();
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			assertEquals("Invalid number of outgoing relationships", 1, Iterables.count(start.getRelationships(Direction.OUTGOING, type)));
+			assertEquals("Invalid number of incoming relationships", 1, Iterables.count(end.getRelationships(Direction.INCOMING)));
+			assertEquals("Invalid relationship end node", end, Iterables.first(start.getRelationships()).getEndNode());
+
+			start.delete(false);
+			fail("Deleting a node with relationships must fail");
+
+		} catch (ConstraintViolationException expected) {}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			start.delete(true);
+			tx.success();
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			assertEquals("Relationships of deleted node must be removed", 0, Iterables.count(end.getRelationships()));
+			assertEquals("Relationships of deleted node must be removed", 0, Iterables.count(db.getAllRelationships()));
+		}
+	}
+
+	@Test
+	public void testQueries() {
+
+		try (final Transaction tx = db.beginTx()) {
+
+			for (int i=0; i<10; i++) {
+				db.createNode("Test", labels("NodeInterface", "Test"), properties("name", "test" + i, "index", i, "tags", Arrays.asList("all", i % 2 == 0 ? "even" : "odd")));
+			}
+
+			db.createNode("Other", labels("NodeInterface", "Other"), properties("name", "test1"));
+
+			// uncommitted nodes must be found in the same transaction
+			assertEquals("Invalid query result", 2, Iterables.count(db.nodeIndex().query(new QueryContext(), new TestPredicate("name", "test1", String.class, true))));
+
+			tx.success();
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			assertEquals("Invalid exact query result",     2,  Iterables.count(db.nodeIndex().query(new QueryContext(), new TestPredicate("name", "test1", String.class, true))));
+			assertEquals("Invalid inexact query result",   11, Iterables.count(db.nodeIndex().query(new QueryContext(), new TestPredicate("name", "TEST", String.class, false))));
+			assertEquals("Invalid numeric query result",   1,  Iterables.count(db.nodeIndex().query(new QueryContext(), new TestPredicate("index", 5, Integer.class, true))));
+			assertEquals("Invalid null query result",      1,  Iterables.count(db.nodeIndex().query(new QueryContext(), new TestPredicate("index", null, Integer.class, true))));
+
+			// sorting and paging
+			final TestPredicate sorted = new TestPredicate("name", "test", String.class, false).sort("index", true);
+			final List<Node> page      = Iterables.toList(db.nodeIndex().query(new QueryContext().slice(2, 5), sorted));
+
+			assertEquals("Invalid page size", 3, page.size());
+			assertEquals("Invalid sort order", 7L, page.get(0).getProperty("index"));
+			assertEquals("Invalid sort order", 5L, page.get(2).getProperty("index"));
+
+			// keyset paging must return all elements exactly once
+			final Set<Object> seen = new LinkedHashSet<>();
+			String cursor          = null;
+
+			do {
+
+				final QueryContext context = new QueryContext().keyset(cursor).slice(0, 4);
+
+				for (final Node node : db.nodeIndex().query(context, sorted)) {
+					assertTrue("Keyset paging returned duplicate element", seen.add(node.getId()));
+				}
+
+				cursor = context.getNextCursor();
+
+			} while (cursor != null);
+
+			assertEquals("Keyset paging did not return all elements", 11, seen.size());
+		}
+	}
+
+	@Test
+	public void testTenantIsolation() {
+
+		try (final Transaction tx = db.beginTx()) {
+
+			db.createNode("Test", labels("NodeInterface", "Test"), properties("name", "test"));
+			tx.success();
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			db.cleanDatabase();
+			tx.success();
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			assertEquals("Database was not cleaned", 0, db.getNodeAndRelationshipCount().getNodeCount());
+			assertNull("Invalid global property", db.getGlobalProperties().getProperty("test"));
+		}
+	}
+
+	@Test
+	public void testTransactionIsolation() throws InterruptedException {
+
+		final Node node = createCommittedNode(properties("name", "test", "count", 1));
+
+		// own changes are visible, concurrent changes of other properties are merged
+		try (final Transaction tx = db.beginTx()) {
+
+			node.setProperty("name", "changed");
+
+			runInOtherTransaction(() -> node.setProperty("count", 2));
+
+			assertEquals("Own change is not visible in the same transaction", "changed", node.getProperty("name"));
+
+			tx.success();
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			assertEquals("Change was not committed",                    "changed", node.getProperty("name"));
+			assertEquals("Concurrent change of other property was lost", 2L,       node.getProperty("count"));
+		}
+
+		// committed changes of other transactions are visible to readers (read committed)
+		try (final Transaction tx = db.beginTx()) {
+
+			assertEquals("Invalid property value", 2L, node.getProperty("count"));
+
+			runInOtherTransaction(() -> node.setProperty("count", 3));
+
+			assertEquals("Committed change is not visible to other transactions", 3L, node.getProperty("count"));
+		}
+
+		// a modification of a node that was deleted concurrently must fail
+		try {
+
+			try (final Transaction tx = db.beginTx()) {
+
+				node.setProperty("name", "modified");
+
+				runInOtherTransaction(() -> node.delete(true));
+
+				tx.success();
+			}
+
+			fail("Modification of a concurrently deleted node must fail");
+
+		} catch (RetryException expected) {}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			db.getNodeById(node.getId());
+			fail("Deleted node must not be found");
+
+		} catch (NotFoundException expected) {}
+	}
+
+	@Test
+	public void testIndexQueries() throws InterruptedException {
+
+		final Node a = createCommittedNode(properties("name", "a", "id", "uuid-a"));
+		final Node b = createCommittedNode(properties("name", "b", "id", "uuid-b"));
+		final Node c = createCommittedNode(properties("name", "c", "id", "uuid-c"));
+
+		// local changes are visible to queries in the same transaction only
+		try (final Transaction tx = db.beginTx()) {
+
+			a.setProperty("name", "renamed");
+			b.delete(false);
+
+			final Node d = db.createNode("Test", labels("NodeInterface", "Test"), properties("name", "d"));
+
+			assertEquals("Query must not find the old value of a modified node", 0, count("name", "a"));
+			assertEquals("Query must find the new value of a modified node",     1, count("name", "renamed"));
+			assertEquals("Query must not find a deleted node",                   0, count("name", "b"));
+			assertEquals("Query must find a created node",                       1, count("name", "d"));
+
+			// candidates from the index and the transaction must be returned in id order
+			final List<Object> ids = Iterables.toList(Iterables.map(Node::getId, db.getNodesByLabel("Test")));
+
+			assertEquals("Invalid label query result", Arrays.asList(a.getId(), c.getId(), d.getId()), ids);
+
+			assertEquals("Uncommitted changes are visible to other transactions", 1L, countInOtherThread("name", "a"));
+			assertEquals("Uncommitted changes are visible to other transactions", 0L, countInOtherThread("name", "d"));
+
+			// no success() => rollback
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			assertEquals("Rolled back change is visible", 1, count("name", "a"));
+			assertEquals("Rolled back deletion is visible", 1, count("name", "b"));
+			assertEquals("Rolled back creation is visible", 0, count("name", "d"));
+		}
+
+		// label and uuid changes must update the committed indexes
+		try (final Transaction tx = db.beginTx()) {
+
+			c.removeLabel(db.forName(Label.class, "Test"));
+			c.addLabel(db.forName(Label.class, "Other"));
+
+			a.setProperty("id", "uuid-x");
+
+			tx.success();
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			assertEquals("Invalid label query result", 2, Iterables.count(db.getNodesByLabel("Test")));
+			assertEquals("Invalid label query result", 1, Iterables.count(db.getNodesByLabel("Other")));
+
+			assertEquals("Old uuid must not be found", 0, count("id", "uuid-a"));
+			assertEquals("New uuid must be found",     1, count("id", "uuid-x"));
+			assertEquals("Invalid uuid query result",  1, count("id", "uuid-b"));
+		}
+	}
+
+	@Test
+	public void testDeleteConstraints() throws InterruptedException {
+
+		final RelationshipType type = db.forName(RelationshipType.class, "KNOWS");
+		final Node start            = createCommittedNode(properties("name", "start"));
+		final Node end              = createCommittedNode(properties("name", "end"));
+
+		// relationships created in the same transaction prevent deletion
+		try (final Transaction tx = db.beginTx()) {
+
+			start.createRelationshipTo(end, type);
+			end.delete(false);
+
+			fail("Deleting a node with relationships must fail");
+
+		} catch (ConstraintViolationException expected) {}
+
+		// a node can be deleted after its relationships were deleted
+		try (final Transaction tx = db.beginTx()) {
+
+			final Relationship rel = start.createRelationshipTo(end, type);
+
+			rel.delete(false);
+			end.delete(false);
+
+			tx.success();
+		}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			assertEquals("Invalid number of relationships", 0, Iterables.count(start.getRelationships()));
+			assertEquals("Invalid number of nodes",         1, Iterables.count(db.getAllNodes()));
+		}
+
+		// a node must not be deleted if a concurrent transaction connected it
+		final Node other = createCommittedNode(properties("name", "other"));
+
+		try {
+
+			try (final Transaction tx = db.beginTx()) {
+
+				other.delete(false);
+
+				runInOtherTransaction(() -> start.createRelationshipTo(other, type));
+
+				tx.success();
+			}
+
+			fail("Deleting a concurrently connected node must fail");
+
+		} catch (RetryException expected) {}
+
+		try (final Transaction tx = db.beginTx()) {
+
+			assertEquals("Node was deleted although it was connected", 1, Iterables.count(other.getRelationships()));
+		}
+	}
+
+	// ----- private methods -----
+	private Node createCommittedNode(final Map<String, Object> properties) {
+
+		try (final Transaction tx = db.beginTx()) {
+
+			final Node node = db.createNode("Test", labels("NodeInterface", "Test"), properties);
+
+			tx.success();
+
+			return node;
+		}
+	}
+
+	private int count(final String key, final String value) {
+		return Iterables.count(db.nodeIndex().query(new QueryContext(), new TestPredicate(key, value, String.class, true)));
+	}
+
+	private long countInOtherThread(final String key, final String value) throws InterruptedException {
+
+		final AtomicReference<Object> result = new AtomicReference<>();
+		final Thread thread                  = new Thread(() -> {
+
+			try (final Transaction tx = db.beginTx()) {
+
+				result.set((long)count(key, value));
+			}
+		});
+
+		thread.start();
+		thread.join();
+
+		return (Long)result.get();
+	}
+
+	private void runInOtherTransaction(final Runnable runnable) throws InterruptedException {
+
+		final AtomicReference<Throwable> error = new AtomicReference<>();
+		final Thread thread                    = new Thread(() -> {
+
+			try (final Transaction tx = db.beginTx()) {
+
+				runnable.run();
+				tx.success();
+
+			} catch (Throwable t) {
+
+				error.set(t);
+			}
+		});
+
+		thread.start();
+		thread.join();
+
+		if (error.get() != null) {
+			throw new AssertionError("Concurrent transaction failed", error.get());
+		}
+	}
+
+	private Set<String> labels(final String... labels) {
+		return new LinkedHashSet<>(Arrays.asList(labels));
+	}
+
+	private Map<String, Object> properties(final Object... keysAndValues) {
+
+		final Map<String, Object> map = new HashMap<>();
+
+		for (int i=0; i<keysAndValues.length; i+=2) {
+			map.put((String)keysAndValues[i], keysAndValues[i+1]);
+		}
+
+		return map;
+	}
+
+	// ----- nested classes -----
+	private static class TestPredicate implements ExactQuery {
+
+		private boolean sortDescending = false;
+		private boolean exact          = false;
+		private String sortKey         = null;
+		private Object value           = null;
+		private Class type             = null;
+		private String name            = null;
+
+		public TestPredicate(final String name, final Object value, final Class type, final boolean exact) {
+
+			this.exact = exact;
+			this.value = value;
+			this.type  = type;
+			this.name  = name;
+		}
+
+		public TestPredicate sort(final String sortKey, final boolean sortDescending) {
+
+			this.sortDescending = sortDescending;
+			this.sortKey        = sortKey;
+
+			return this;
+		}
+
+		@Override
+		public Class getQueryType() {
+			return ExactQuery.class;
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public Class getType() {
+			return type;
+		}
+
+		@Override
+		public Object getValue() {
+			return value;
+		}
+
+		@Override
+		public Occurrence getOccurrence() {
+			return Occurrence.REQUIRED;
+		}
+
+		@Override
+		public boolean isExactMatch() {
+			return exact;
+		}
+
+		@Override
+		public String getSortKey() {
+			return sortKey;
+		}
+
+		@Override
+		public SortType getSortType() {
+			return SortType.Integer;
+		}
+
+		@Override
+		public boolean sortDescending() {
+			return sortDescending;
+		}
+	}
+}
@@ -23,17 +23,21 @@ import com.google.gson.GsonBuilder;
 import com.jayway.restassured.RestAssured;
 import com.jayway.restassured.filter.log.RequestLoggingFilter;
 import com.jayway.restassured.filter.log.ResponseLoggingFilter;
+import java.net.URI;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import org.testng.annotations.Test;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.StructrApp;
+import org.structr.core.entity.Relation;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
+import org.structr.core.property.PropertyKey;
 import org.structr.schema.ConfigurationProvider;
 import org.structr.schema.export.StructrSchema;
+import org.structr.schema.json.JsonObjectType;
 import org.structr.schema.json.JsonSchema;
 import org.structr.schema.json.JsonType;
 import org.structr.test.web.StructrUiTest;
@@ -41,6 +45,7 @@ import org.structr.web.common.FileHelper;
 import org.structr.web.entity.File;
 import org.structr.web.entity.User;
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
 import static org.testng.AssertJUnit.fail;
 
 /**
@@ -547,4 +552,123 @@ public class CsvImportTest extends StructrUiTest {
 		}
 
 	}
+
+	@Test
+	public void testCsvFileImportTransformCreatesNodes() {
+
+		String newFileId = null;
+
+		// test setup
+		try (final Tx tx = app.tx()) {
+
+			final String csvData =
+
+				"id;name;category\n" +
+				"0;name: one;A\n" +
+				"1;name: two;B\n" +
+				"2;name: three;A";
+
+			final byte[] fileData = csvData.getBytes("utf-8");
+			final File file   = FileHelper.createFile(securityContext, fileData, "text/csv", File.class, "test.csv", true);
+
+			// extract UUID for later use
+			newFileId = file.getUuid();
+
+			// create new types
+			final JsonSchema schema         = StructrSchema.newInstance(URI.create("http://localhost/test/#"));
+			final JsonObjectType newType    = schema.addType("Item");
+			final JsonObjectType categories = schema.addType("Category");
+
+			newType.addStringProperty("name");
+			newType.addIntegerProperty("originId").isIndexed();
+			categories.addStringProperty("name");
+
+			newType.relate(categories, "CATEGORY").setCardinality(Relation.Cardinality.ManyToOne).setSourcePropertyName("items").setTargetPropertyName("category");
+
+			StructrSchema.extendDatabaseSchema(app, schema);
+
+			// create test user
+			app.create(User.class,
+				new NodeAttribute<>(StructrApp.key(User.class, "name"),     "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "password"), "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "isAdmin"),  true)
+			);
+
+			tx.success();
+
+		} catch (Throwable t) {
+			t.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		final Gson gson                      = new GsonBuilder().setPrettyPrinting().create();
+		final Map<String, Object> params     = new LinkedHashMap<>();
+		final Map<String, Object> mappings   = new LinkedHashMap<>();
+		final Map<String, Object> transforms = new LinkedHashMap<>();
+
+		// import parameters
+		params.put("targetType", "Item");
+		params.put("quoteChar",  "");
+		params.put("delimiter",  ";");
+		params.put("mappings",   mappings);
+		params.put("transforms", transforms);
+
+		// property mapping
+		mappings.put("originId", "id");
+		mappings.put("name",     "name");
+		mappings.put("category", "category");
+
+		// the transformation creates the categories while the items are imported
+		transforms.put("category", "get_or_create('Category', 'name', input)");
+
+		RestAssured.given()
+			.contentType("application/json; charset=UTF-8")
+			.header("X-User",     "admin")
+			.header("X-Password", "admin")
+			.filter(RequestLoggingFilter.logRequestTo(System.out))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(200))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(201))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(401))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(400))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(403))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(404))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(422))
+			.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+			.body(gson.toJson(params))
+			.expect().statusCode(200).when().post("/File/" + newFileId + "/doCSVImport");
+
+		// wait for result (import is async.)
+		try { Thread.sleep(2000); } catch (Throwable t) {}
+
+		// check that the nodes created by the transformation were committed and linked
+		try (final Tx tx = app.tx()) {
+
+			final ConfigurationProvider conf = StructrApp.getConfiguration();
+			final Class type                 = conf.getNodeEntityClass("Item");
+			final Class categoryType         = conf.getNodeEntityClass("Category");
+			final List<NodeInterface> items  = app.nodeQuery(type).sort(conf.getPropertyKeyForJSONName(type, "originId")).getAsList();
+
+			assertEquals("Invalid CSV import result, expected 3 items to be created from CSV import. ", 3, items.size());
+			assertEquals("Invalid CSV import result, expected 2 categories to be created by the transformation. ", 2, app.nodeQuery(categoryType).getAsList().size());
+
+			final NodeInterface one   = items.get(0);
+			final NodeInterface two   = items.get(1);
+			final NodeInterface three = items.get(2);
+			final PropertyKey category = conf.getPropertyKeyForJSONName(type, "category");
+
+			assertNotNull("Invalid CSV import result, category was not set", one.getProperty(category));
+			assertNotNull("Invalid CSV import result, category was not set", two.getProperty(category));
+			assertNotNull("Invalid CSV import result, category was not set", three.getProperty(category));
+
+			assertEquals("Invalid CSV transformation result", "A", ((NodeInterface)one.getProperty(category)).getName());
+			assertEquals("Invalid CSV transformation result", "B", ((NodeInterface)two.getProperty(category)).getName());
+			assertEquals("Invalid CSV transformation result", "A", ((NodeInterface)three.getProperty(category)).getName());
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+	}
 }
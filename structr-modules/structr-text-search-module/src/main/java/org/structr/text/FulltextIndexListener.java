@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.Predicate;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.common.fulltext.Indexable;
+import org.structr.core.StructrTransactionListener;
+import org.structr.core.graph.ModificationEvent;
+
+/**
+ * Removes deleted indexables from the segmented fulltext index, so that
+ * searches never see documents whose node no longer exists.
+ */
+public class FulltextIndexListener implements StructrTransactionListener {
+
+	private static final Logger logger = LoggerFactory.getLogger(FulltextIndexListener.class.getName());
+
+	@Override
+	public void beforeCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents) throws FrameworkException {
+	}
+
+	@Override
+	public void afterCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents) {
+
+		if (!InvertedIndex.isEnabled()) {
+			return;
+		}
+
+		try {
+
+			InvertedIndex index = null;
+
+			for (final ModificationEvent event : modificationEvents) {
+
+				if (event.isNode() && event.isDeleted() && event.getGraphObject() instanceof Indexable) {
+
+					if (index == null) {
+						index = InvertedIndex.getInstance();
+					}
+
+					index.remove(event.getUuid());
+				}
+			}
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to remove deleted documents from fulltext index: {}", ioex.getMessage());
+		}
+	}
+
+	@Override
+	public boolean requiresAllCommits() {
+		return true;
+	}
+
+	@Override
+	public void simpleBroadcast(final String messageName, final Map<String, Object> data, final Predicate<String> sessionIdPredicate) {
+	}
+}
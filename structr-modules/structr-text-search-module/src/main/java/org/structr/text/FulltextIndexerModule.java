@@ -18,18 +18,32 @@
  */
 package org.structr.text;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.structr.api.service.LicenseManager;
+import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.common.fulltext.FulltextIndexer;
 import org.structr.common.fulltext.Indexable;
 import org.structr.core.GraphObjectMap;
+import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractSchemaNode;
+import org.structr.core.function.Functions;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.property.GenericProperty;
+import org.structr.core.property.PropertyKey;
 import org.structr.module.StructrModule;
+import org.structr.rest.resource.EnvResource;
 import org.structr.schema.SourceFile;
 import org.structr.schema.action.Actions;
 
@@ -38,14 +52,23 @@ import org.structr.schema.action.Actions;
  */
 public class FulltextIndexerModule implements FulltextIndexer, StructrModule {
 
-	private static final GenericProperty contextKey = new GenericProperty("context");
+	private static final Logger logger                  = LoggerFactory.getLogger(FulltextIndexerModule.class.getName());
+	private static final FulltextIndexListener listener = new FulltextIndexListener();
+	private static final GenericProperty contextKey     = new GenericProperty("context");
+	private static final GenericProperty nodeKey        = new GenericProperty("node");
+	private static final GenericProperty scoreKey       = new GenericProperty("score");
 
 	@Override
 	public void onLoad(final LicenseManager licenseManager) {
+
+		TransactionCommand.registerTransactionListener(listener);
+		EnvResource.registerCacheStatistics("fulltext", this::getStatistics);
 	}
 
 	@Override
 	public void registerModuleFunctions(final LicenseManager licenseManager) {
+
+		Functions.put(licenseManager, new FulltextSearchFunction());
 	}
 
 	@Override
@@ -191,6 +214,90 @@ public class FulltextIndexerModule implements FulltextIndexer, StructrModule {
 
 	}
 
+	@Override
+	public List<GraphObjectMap> search(final SecurityContext securityContext, final String query, final int limit) throws FrameworkException {
+
+		final List<GraphObjectMap> result = new ArrayList<>();
+		final Set<String> words           = getQueryWords(query);
+
+		if (words.isEmpty() || limit <= 0) {
+			return result;
+		}
+
+		final App app = StructrApp.getInstance(securityContext);
+
+		if (InvertedIndex.isEnabled()) {
+
+			try {
+
+				final InvertedIndex index = InvertedIndex.getInstance();
+				int count                 = limit;
+
+				// fetch more hits if some of them are not visible in the given security context,
+				// deleted documents are removed from the index by FulltextIndexListener
+				while (true) {
+
+					final List<InvertedIndex.Hit> hits = index.search(words, count);
+
+					result.clear();
+
+					for (final InvertedIndex.Hit hit : hits) {
+
+						final NodeInterface node = app.getNodeById(Indexable.class, hit.getUuid());
+						if (node != null) {
+
+							result.add(createResult(node, hit.getScore()));
+
+							if (result.size() == limit) {
+								break;
+							}
+						}
+					}
+
+					if (result.size() == limit || hits.size() < count) {
+						break;
+					}
+
+					count *= 2;
+				}
+
+			} catch (IOException ioex) {
+
+				throw new FrameworkException(500, "Unable to search fulltext index: " + ioex.getMessage());
+			}
+
+		} else {
+
+			// the graph index has no term frequencies, so the results are not ranked
+			final PropertyKey key            = StructrApp.key(Indexable.class, "indexedWords");
+			final List<Indexable> indexables = app.nodeQuery(Indexable.class).and(key, new ArrayList<>(words), false).pageSize(limit).getAsList();
+
+			for (final Indexable indexable : indexables) {
+
+				result.add(createResult(indexable, 1.0));
+			}
+		}
+
+		return result;
+	}
+
+	@Override
+	public Map<String, Object> getStatistics() {
+
+		if (InvertedIndex.isEnabled()) {
+
+			try {
+
+				return InvertedIndex.getInstance().getStatistics();
+
+			} catch (IOException ioex) {
+				logger.warn("Unable to open fulltext index: {}", ioex.getMessage());
+			}
+		}
+
+		return Collections.emptyMap();
+	}
+
 	// ----- interface StructrModule -----
 	@Override
 	public String getName() {
@@ -225,6 +332,42 @@ public class FulltextIndexerModule implements FulltextIndexer, StructrModule {
 	}
 
 	//~--- private methods --------------------------------------------------------
+	private static Set<String> getQueryWords(final String query) {
+
+		final FulltextTokenizer tokenizer = new FulltextTokenizer();
+		final Set<String> words           = new LinkedHashSet<>();
+
+		try {
+
+			tokenizer.write(query);
+			tokenizer.flush();
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to tokenize fulltext query: {}", ioex.getMessage());
+		}
+
+		for (final String word : tokenizer.getWords()) {
+
+			final String stripped = StringUtils.strip(word, "\"\'");
+			if (StringUtils.isNotBlank(stripped)) {
+
+				words.add(stripped);
+			}
+		}
+
+		return words;
+	}
+
+	private static GraphObjectMap createResult(final NodeInterface node, final double score) {
+
+		final GraphObjectMap result = new GraphObjectMap();
+
+		result.put(nodeKey,  node);
+		result.put(scoreKey, score);
+
+		return result;
+	}
+
 	private static int flushWordBuffer(final StringBuilder lineBuffer, final StringBuilder wordBuffer, final boolean prepend) {
 
 		int wordCount = 0;
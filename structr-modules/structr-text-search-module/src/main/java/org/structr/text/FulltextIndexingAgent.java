@@ -219,26 +219,34 @@ public class FulltextIndexingAgent extends Agent<String> {
 								}
 							}
 
-							final List<String> topWords       = getFrequencySortedTopWords(indexedWords);
-							final List<IndexedWord> wordNodes = new LinkedList<>();
-
 							try {
 
-								// create words first
-								for (final String word : topWords) {
+								if (InvertedIndex.isEnabled()) {
+
+									// store word frequencies in the local fulltext index
+									InvertedIndex.getInstance().add(indexable.getUuid(), indexedWords);
+
+								} else {
+
+									final List<String> topWords       = getFrequencySortedTopWords(indexedWords);
+									final List<IndexedWord> wordNodes = new LinkedList<>();
 
-									IndexedWord wordNode = app.nodeQuery(IndexedWord.class).andName(word).getFirst();
-									if (wordNode == null) {
+									// create words first
+									for (final String word : topWords) {
 
-										wordNode = app.create(IndexedWord.class, word);
+										IndexedWord wordNode = app.nodeQuery(IndexedWord.class).andName(word).getFirst();
+										if (wordNode == null) {
+
+											wordNode = app.create(IndexedWord.class, word);
+										}
+
+										wordNodes.add(wordNode);
 									}
 
-									wordNodes.add(wordNode);
+									// store indexed words
+									indexable.setProperty(StructrApp.key(File.class, "words"), wordNodes);
 								}
 
-								// store indexed words
-								indexable.setProperty(StructrApp.key(File.class, "words"), wordNodes);
-
 							} catch (Throwable t) {
 
 								logger.info("Unable to store fulltext indexing result for {}, retrying after 1000ms..", fileName);
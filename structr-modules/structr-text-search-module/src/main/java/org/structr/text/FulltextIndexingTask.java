@@ -28,4 +28,9 @@ public class FulltextIndexingTask extends AbstractTask<String> {
 	public FulltextIndexingTask(final String indexableId) {
 		super(FulltextIndexingAgent.TASK_NAME, null, indexableId);
 	}
+
+	@Override
+	public Object getCoalescingKey() {
+		return getType() + getWorkObjects();
+	}
 }
@@ -0,0 +1,76 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text;
+
+import org.structr.api.service.LicenseManager;
+import org.structr.common.error.ArgumentCountException;
+import org.structr.common.error.ArgumentNullException;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.schema.action.ActionContext;
+import org.structr.schema.action.Function;
+
+public class FulltextSearchFunction extends Function<Object, Object> {
+
+	public static final String ERROR_MESSAGE_FULLTEXT_SEARCH    = "Usage: ${fulltext_search(query[, limit])}. Example: ${fulltext_search(\"lorem ipsum\", 10)}";
+	public static final String ERROR_MESSAGE_FULLTEXT_SEARCH_JS = "Usage: ${{Structr.fulltext_search(query[, limit])}}. Example: ${{Structr.fulltext_search(\"lorem ipsum\", 10)}}";
+
+	@Override
+	public String getName() {
+		return "fulltext_search";
+	}
+
+	@Override
+	public int getRequiredLicense() {
+		return LicenseManager.Community;
+	}
+
+	@Override
+	public Object apply(final ActionContext ctx, final Object caller, final Object[] sources) throws FrameworkException {
+
+		try {
+
+			assertArrayHasMinLengthAndMaxLengthAndAllElementsNotNull(sources, 1, 2);
+
+			final Integer limit = sources.length > 1 ? parseInt(sources[1]) : null;
+
+			return StructrApp.getInstance(ctx.getSecurityContext()).getFulltextIndexer().search(ctx.getSecurityContext(), sources[0].toString(), limit != null ? limit : 10);
+
+		} catch (ArgumentNullException pe) {
+
+			// silently ignore null arguments
+			return null;
+
+		} catch (ArgumentCountException pe) {
+
+			logParameterError(caller, sources, pe.getMessage(), ctx.isJavaScriptContext());
+			return usage(ctx.isJavaScriptContext());
+		}
+	}
+
+	@Override
+	public String usage(boolean inJavaScriptContext) {
+		return (inJavaScriptContext ? ERROR_MESSAGE_FULLTEXT_SEARCH_JS : ERROR_MESSAGE_FULLTEXT_SEARCH);
+	}
+
+	@Override
+	public String shortDescription() {
+		return "Returns the indexed files that match the given query, ordered by relevance";
+	}
+}
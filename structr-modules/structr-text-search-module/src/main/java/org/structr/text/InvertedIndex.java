@@ -0,0 +1,1394 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.text;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
+
+/**
+ * Segment-based inverted index that stores the fulltext index in local
+ * files instead of IndexedWord nodes.
+ *
+ * Indexed documents are collected in an in-memory buffer that can be
+ * searched immediately and is written to a new immutable segment by a
+ * background thread. Segments of similar size are merged incrementally,
+ * which also drops the documents that were re-indexed or removed in the
+ * meantime. Deleted documents are recorded in a bit set file next to the
+ * segment, so a segment is never modified once it has been written.
+ *
+ * Segment layout: header (magic, version), the posting lists of all terms
+ * as varint-encoded (document delta, term frequency) pairs, the documents
+ * sorted by UUID with their lengths, the sorted term dictionary with the
+ * document frequency and position of each posting list, and a footer with
+ * the positions of the document table and the dictionary.
+ *
+ * Search results are ranked with BM25.
+ */
+public class InvertedIndex {
+
+	private static final Logger logger                   = LoggerFactory.getLogger(InvertedIndex.class.getName());
+	private static final Comparator<Hit> ORDER           = Comparator.comparingDouble(Hit::getScore).thenComparing(Hit::getUuid, Comparator.reverseOrder());
+	private static final String SEGMENT_SUFFIX           = ".seg";
+	private static final String DELETES_SUFFIX           = ".del";
+	private static final String TEMP_SUFFIX              = ".tmp";
+	private static final int MAGIC                       = 0x53544649;
+	private static final int VERSION                     = 1;
+	private static final int HEADER_SIZE                 = 8;
+	private static final int FOOTER_SIZE                 = 20;
+	private static final int MAX_BUFFERED_DOCUMENTS      = 1000;
+	private static final int MAX_BUFFERED_POSTINGS       = 1 << 20;
+	private static final long MAX_MERGED_SIZE            = 1L << 30;
+	private static final double K1                       = 1.2;
+	private static final double B                        = 0.75;
+	private static InvertedIndex instance                = null;
+
+	private final Object writeLock         = new Object();
+	private final LongAdder indexedDocs    = new LongAdder();
+	private final LongAdder indexedTokens  = new LongAdder();
+	private final LongAdder indexingTime   = new LongAdder();
+	private final LongAdder flushes        = new LongAdder();
+	private final LongAdder merges         = new LongAdder();
+	private final LongAdder queries        = new LongAdder();
+	private final LongAdder queryTime      = new LongAdder();
+	private final AtomicLong maxQueryTime  = new AtomicLong();
+	private File directory                 = null;
+	private Thread flushThread             = null;
+	private long nextGeneration            = 0L;
+	private volatile State state           = null;
+	private volatile boolean closed        = false;
+
+	private InvertedIndex(final File directory) throws IOException {
+
+		this.directory = directory;
+
+		open();
+	}
+
+	public static boolean isEnabled() {
+		return "segments".equals(Settings.IndexingBackend.getValue());
+	}
+
+	/**
+	 * Returns the index in the configured files path, opening it if
+	 * necessary.
+	 *
+	 * @return the index
+	 * @throws IOException
+	 */
+	public static synchronized InvertedIndex getInstance() throws IOException {
+
+		final File directory = new File(Settings.FilesPath.getValue(), "fulltext-index");
+
+		if (instance == null || !instance.directory.equals(directory)) {
+
+			if (instance != null) {
+				instance.close();
+			}
+
+			instance = new InvertedIndex(directory);
+		}
+
+		return instance;
+	}
+
+	/**
+	 * Adds the document with the given UUID and term frequencies to the
+	 * index, replacing any previously indexed version of the document.
+	 * The document can be found immediately, but is written to disk
+	 * asynchronously.
+	 *
+	 * @param uuid
+	 * @param terms the term frequencies
+	 * @throws IOException
+	 */
+	public void add(final String uuid, final Map<String, Integer> terms) throws IOException {
+
+		final long t0 = System.nanoTime();
+		final boolean full;
+
+		synchronized (this) {
+
+			if (closed) {
+				throw new IOException("Fulltext index is closed");
+			}
+
+			full = state.current.add(uuid, terms);
+		}
+
+		indexedDocs.increment();
+
+		for (final Integer count : terms.values()) {
+			indexedTokens.add(count);
+		}
+
+		indexingTime.add(System.nanoTime() - t0);
+
+		if (full) {
+			flush();
+		}
+	}
+
+	public void remove(final String uuid) throws IOException {
+
+		synchronized (this) {
+
+			if (closed) {
+				throw new IOException("Fulltext index is closed");
+			}
+
+			state.current.remove(uuid);
+		}
+	}
+
+	/**
+	 * Returns the documents that contain at least one of the given terms,
+	 * ranked by their BM25 score.
+	 *
+	 * @param terms
+	 * @param limit the maximum number of results
+	 * @return the hits, best match first
+	 */
+	public List<Hit> search(final Collection<String> terms, final int limit) {
+
+		final long t0                = System.nanoTime();
+		final State snapshot         = state;
+		final String[] queryTerms    = new LinkedHashSet<>(terms).toArray(new String[0]);
+		final PriorityQueue<Hit> top = new PriorityQueue<>(Math.max(1, Math.min(limit, 1024)), ORDER);
+		final List<BufferView> views = new ArrayList<>();
+		final Set<String> newer      = new HashSet<>();
+		final long[] frequencies     = new long[queryTerms.length];
+		long documentCount           = 0L;
+		long totalLength             = 0L;
+
+		if (limit <= 0 || queryTerms.length == 0) {
+			return Collections.emptyList();
+		}
+
+		// newer sources first, documents that were added or removed in a newer source
+		// hide the older versions of the same document, so they are not counted either
+		for (final Buffer buffer : snapshot.getBuffers()) {
+
+			final BufferView view = buffer.view(queryTerms, newer);
+
+			for (int i=0; i<queryTerms.length; i++) {
+				frequencies[i] += view.postings[i].length / 2;
+			}
+
+			documentCount += view.liveCount;
+			totalLength   += view.liveLength;
+
+			views.add(view);
+			newer.addAll(view.touched);
+		}
+
+		final int[][][] segmentPostings = new int[snapshot.segments.size()][][];
+
+		for (int s=0; s<segmentPostings.length; s++) {
+
+			final Segment segment = snapshot.segments.get(s);
+			final Deletes visible = segment.getVisible(newer);
+
+			segmentPostings[s] = new int[queryTerms.length][];
+
+			for (int i=0; i<queryTerms.length; i++) {
+
+				final int[] postings = segment.readPostings(segment.findTerm(queryTerms[i]), visible.bits);
+
+				frequencies[i]        += postings.length / 2;
+				segmentPostings[s][i]  = postings;
+			}
+
+			documentCount += visible.liveCount;
+			totalLength   += visible.liveLength;
+		}
+
+		if (documentCount > 0) {
+
+			final double averageLength = (double)totalLength / documentCount;
+			final double[] idf         = new double[queryTerms.length];
+
+			for (int i=0; i<queryTerms.length; i++) {
+				idf[i] = Math.log(1.0 + (documentCount - frequencies[i] + 0.5) / (frequencies[i] + 0.5));
+			}
+
+			for (final BufferView view : views) {
+
+				final Map<Integer, Double> scores = new HashMap<>();
+
+				for (int i=0; i<queryTerms.length; i++) {
+
+					final int[] postings = view.postings[i];
+
+					for (int j=0; j<postings.length; j+=2) {
+
+						final int document = postings[j];
+						scores.merge(document, score(idf[i], postings[j+1], view.lengths[document], averageLength), Double::sum);
+					}
+				}
+
+				for (final Map.Entry<Integer, Double> entry : scores.entrySet()) {
+					collect(top, limit, view.uuids[entry.getKey()], entry.getValue());
+				}
+			}
+
+			for (int s=0; s<segmentPostings.length; s++) {
+
+				final Segment segment = snapshot.segments.get(s);
+				final BitSet matched  = new BitSet();
+				double[] scores       = null;
+
+				for (int i=0; i<queryTerms.length; i++) {
+
+					final int[] postings = segmentPostings[s][i];
+
+					if (postings.length > 0 && scores == null) {
+						scores = new double[segment.uuids.length];
+					}
+
+					for (int j=0; j<postings.length; j+=2) {
+
+						final int document = postings[j];
+
+						scores[document] += score(idf[i], postings[j+1], segment.lengths[document], averageLength);
+						matched.set(document);
+					}
+				}
+
+				for (int document = matched.nextSetBit(0); document >= 0; document = matched.nextSetBit(document + 1)) {
+					collect(top, limit, segment.uuids[document], scores[document]);
+				}
+			}
+		}
+
+		final List<Hit> result = new ArrayList<>(top);
+
+		result.sort(ORDER.reversed());
+
+		final long time = System.nanoTime() - t0;
+
+		queries.increment();
+		queryTime.add(time);
+		maxQueryTime.accumulateAndGet(time, Math::max);
+
+		return result;
+	}
+
+	/**
+	 * Writes the buffered documents to a new segment and merges segments
+	 * of similar size.
+	 *
+	 * @throws IOException
+	 */
+	public void flush() throws IOException {
+
+		synchronized (writeLock) {
+
+			final long t0 = System.nanoTime();
+			final Buffer buffer;
+
+			synchronized (this) {
+
+				buffer = state.current;
+
+				if (buffer.isEmpty()) {
+					return;
+				}
+
+				state = new State(new Buffer(), buffer, state.segments);
+			}
+
+			final List<Segment> segments = new ArrayList<>(state.segments);
+			final Segment segment        = writeSegment(buffer);
+
+			// the new segment must exist before older versions of its documents are deleted
+			for (final Segment existing : segments) {
+				existing.delete(buffer.touched);
+			}
+
+			if (segment != null) {
+				segments.add(segment);
+			}
+
+			publish(segments);
+			flushes.increment();
+
+			merge();
+
+			indexingTime.add(System.nanoTime() - t0);
+		}
+	}
+
+	public void close() {
+
+		closed = true;
+
+		if (flushThread != null) {
+			flushThread.interrupt();
+		}
+
+		try {
+
+			flush();
+
+		} catch (IOException ioex) {
+			logger.warn("Unable to flush fulltext index: {}", ioex.getMessage());
+		}
+	}
+
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> stats = new LinkedHashMap<>();
+		final State snapshot            = state;
+		final long documents            = indexedDocs.sum();
+		final long queryCount           = queries.sum();
+		final double indexingSeconds    = indexingTime.sum() / 1_000_000_000.0;
+		long liveCount                  = 0L;
+		long deletedCount               = 0L;
+		long termCount                  = 0L;
+		long size                       = 0L;
+		int bufferedCount               = 0;
+
+		for (final Segment segment : snapshot.segments) {
+
+			liveCount    += segment.deletes.liveCount;
+			deletedCount += segment.uuids.length - segment.deletes.liveCount;
+			termCount    += segment.terms.length;
+			size         += segment.size;
+		}
+
+		for (final Buffer buffer : snapshot.getBuffers()) {
+			bufferedCount += buffer.size();
+		}
+
+		stats.put("segments",           snapshot.segments.size());
+		stats.put("documents",          liveCount);
+		stats.put("deletedDocuments",   deletedCount);
+		stats.put("bufferedDocuments",  bufferedCount);
+		stats.put("terms",              termCount);
+		stats.put("size",               size);
+		stats.put("indexedDocuments",   documents);
+		stats.put("indexedTokens",      indexedTokens.sum());
+		stats.put("documentsPerSecond", indexingSeconds > 0 ? Math.round(documents / indexingSeconds) : 0L);
+		stats.put("flushes",            flushes.sum());
+		stats.put("merges",             merges.sum());
+		stats.put("queries",            queryCount);
+		stats.put("avgQueryTime",       queryCount > 0 ? queryTime.sum() / queryCount / 1_000_000.0 : 0.0);
+		stats.put("maxQueryTime",       maxQueryTime.get() / 1_000_000.0);
+
+		return stats;
+	}
+
+	// ----- private methods -----
+	private void open() throws IOException {
+
+		directory.mkdirs();
+
+		final File[] temporaryFiles = directory.listFiles((dir, name) -> name.endsWith(TEMP_SUFFIX));
+		if (temporaryFiles != null) {
+
+			for (final File file : temporaryFiles) {
+				Files.deleteIfExists(file.toPath());
+			}
+		}
+
+		final List<Segment> segments = new ArrayList<>();
+		final File[] files           = directory.listFiles((dir, name) -> name.endsWith(SEGMENT_SUFFIX));
+		final File[] deletesFiles    = directory.listFiles((dir, name) -> name.endsWith(DELETES_SUFFIX));
+
+		// deletes of a segment that could not be removed must not be applied to a new segment
+		if (deletesFiles != null) {
+
+			for (final File file : deletesFiles) {
+
+				final String name = file.getName().substring(0, file.getName().length() - DELETES_SUFFIX.length());
+
+				if (!new File(directory, name.concat(SEGMENT_SUFFIX)).exists()) {
+					Files.deleteIfExists(file.toPath());
+				}
+			}
+		}
+
+		if (files != null) {
+
+			Arrays.sort(files);
+
+			for (final File file : files) {
+
+				final long generation = Long.parseLong(file.getName().substring(0, file.getName().length() - SEGMENT_SUFFIX.length()));
+
+				try {
+
+					segments.add(new Segment(directory, generation));
+
+				} catch (IOException ioex) {
+
+					logger.warn("Ignoring corrupt fulltext index segment {}: {}", file.getName(), ioex.getMessage());
+				}
+
+				nextGeneration = generation + 1;
+			}
+		}
+
+		// a document can be live in more than one segment if the index was not
+		// closed properly after a flush or a merge, the newest version wins
+		final Set<String> seen = new HashSet<>();
+
+		for (int i=segments.size()-1; i>=0; i--) {
+
+			final Segment segment   = segments.get(i);
+			final List<String> dups = new ArrayList<>();
+
+			for (int document=0; document<segment.uuids.length; document++) {
+
+				if (!segment.deletes.bits.get(document) && !seen.add(segment.uuids[document])) {
+
+					dups.add(segment.uuids[document]);
+				}
+			}
+
+			segment.delete(dups);
+		}
+
+		state = new State(new Buffer(), null, Collections.unmodifiableList(segments));
+
+		flushThread = new Thread(() -> {
+
+			while (!closed) {
+
+				try {
+
+					Thread.sleep(Math.max(10, Settings.IndexingFlushInterval.getValue()));
+					flush();
+
+				} catch (InterruptedException iex) {
+
+					break;
+
+				} catch (Throwable t) {
+					logger.warn("Unable to flush fulltext index: {}", t.getMessage());
+				}
+			}
+
+		}, "FulltextIndexFlush");
+
+		flushThread.setDaemon(true);
+		flushThread.start();
+	}
+
+	private void publish(final List<Segment> segments) {
+
+		final List<Segment> live = new ArrayList<>();
+
+		for (final Segment segment : segments) {
+
+			if (segment.deletes.liveCount > 0) {
+
+				live.add(segment);
+
+			} else {
+
+				segment.remove();
+			}
+		}
+
+		synchronized (this) {
+			state = new State(state.current, null, Collections.unmodifiableList(live));
+		}
+	}
+
+	private void merge() throws IOException {
+
+		final int factor = Math.max(2, Settings.IndexingMergeFactor.getValue());
+
+		while (!closed) {
+
+			final List<Segment> sources = selectMerge(state.segments, factor);
+			if (sources == null) {
+
+				return;
+			}
+
+			final List<Segment> segments = new ArrayList<>(state.segments);
+			final Segment merged         = mergeSegments(sources);
+
+			segments.removeAll(sources);
+
+			if (merged != null) {
+				segments.add(merged);
+			}
+
+			publish(segments);
+			merges.increment();
+
+			for (final Segment source : sources) {
+				source.remove();
+			}
+		}
+	}
+
+	private List<Segment> selectMerge(final List<Segment> segments, final int factor) {
+
+		final Map<Integer, List<Segment>> tiers = new TreeMap<>();
+
+		for (final Segment segment : segments) {
+
+			final int liveCount = segment.deletes.liveCount;
+
+			// segments that consist mostly of deleted documents are rewritten on their own
+			if (liveCount < segment.uuids.length / 2) {
+				return Collections.singletonList(segment);
+			}
+
+			if (segment.size < MAX_MERGED_SIZE) {
+
+				final int tier = (int)Math.floor(Math.log(Math.max(1, liveCount)) / Math.log(factor));
+
+				tiers.computeIfAbsent(tier, k -> new ArrayList<>()).add(segment);
+			}
+		}
+
+		for (final List<Segment> tier : tiers.values()) {
+
+			if (tier.size() >= factor) {
+
+				final List<Segment> sources = new ArrayList<>();
+				long size                   = 0L;
+
+				tier.sort(Comparator.comparingLong(s -> s.size));
+
+				for (final Segment segment : tier) {
+
+					if (sources.size() == factor || size + segment.size > MAX_MERGED_SIZE) {
+						break;
+					}
+
+					sources.add(segment);
+					size += segment.size;
+				}
+
+				if (sources.size() > 1) {
+					return sources;
+				}
+			}
+		}
+
+		return null;
+	}
+
+	private Segment writeSegment(final Buffer buffer) throws IOException {
+
+		final List<Integer> documents = new ArrayList<>();
+
+		for (int document=0; document<buffer.uuids.size(); document++) {
+
+			if (!buffer.deleted.get(document)) {
+				documents.add(document);
+			}
+		}
+
+		if (documents.isEmpty()) {
+			return null;
+		}
+
+		final SegmentWriter writer = new SegmentWriter(directory, nextGeneration++);
+		final int[] mapping        = new int[buffer.uuids.size()];
+		final String[] terms       = buffer.postings.keySet().toArray(new String[0]);
+
+		Arrays.fill(mapping, -1);
+		Arrays.sort(terms);
+
+		documents.sort(Comparator.comparing(buffer.uuids::get));
+
+		for (int i=0; i<documents.size(); i++) {
+
+			final int document = documents.get(i);
+
+			mapping[document] = i;
+			writer.addDocument(buffer.uuids.get(document), buffer.lengths[document]);
+		}
+
+		for (final String term : terms) {
+
+			final Postings postings = buffer.postings.get(term);
+			final long[] entries    = new long[postings.size / 2];
+			int count               = 0;
+
+			for (int i=0; i<postings.size; i+=2) {
+
+				final int document = mapping[postings.data[i]];
+				if (document >= 0) {
+
+					entries[count++] = ((long)document << 32) | postings.data[i+1];
+				}
+			}
+
+			writer.addTerm(term, entries, count);
+		}
+
+		return writer.finish();
+	}
+
+	private Segment mergeSegments(final List<Segment> sources) throws IOException {
+
+		final int sourceCount = sources.size();
+		final int[][] mapping = new int[sourceCount][];
+		final BitSet[] bits   = new BitSet[sourceCount];
+		final int[] positions = new int[sourceCount];
+		int documentCount     = 0;
+
+		for (int i=0; i<sourceCount; i++) {
+
+			mapping[i] = new int[sources.get(i).uuids.length];
+			bits[i]    = sources.get(i).deletes.bits;
+
+			Arrays.fill(mapping[i], -1);
+		}
+
+		final SegmentWriter writer = new SegmentWriter(directory, nextGeneration++);
+
+		// merge the live documents of all sources in UUID order
+		while (true) {
+
+			int next = -1;
+
+			for (int i=0; i<sourceCount; i++) {
+
+				final String[] uuids = sources.get(i).uuids;
+
+				while (positions[i] < uuids.length && bits[i].get(positions[i])) {
+					positions[i]++;
+				}
+
+				if (positions[i] < uuids.length && (next < 0 || uuids[positions[i]].compareTo(sources.get(next).uuids[positions[next]]) < 0)) {
+					next = i;
+				}
+			}
+
+			if (next < 0) {
+				break;
+			}
+
+			final Segment source = sources.get(next);
+			final int document   = positions[next]++;
+
+			mapping[next][document] = documentCount++;
+			writer.addDocument(source.uuids[document], source.lengths[document]);
+		}
+
+		if (documentCount == 0) {
+
+			writer.abort();
+			return null;
+		}
+
+		Arrays.fill(positions, 0);
+
+		long[] entries = new long[64];
+
+		// merge the posting lists of all sources in term order
+		while (true) {
+
+			String term   = null;
+			int frequency = 0;
+
+			for (int i=0; i<sourceCount; i++) {
+
+				final String[] terms = sources.get(i).terms;
+
+				if (positions[i] < terms.length && (term == null || terms[positions[i]].compareTo(term) < 0)) {
+					term = terms[positions[i]];
+				}
+			}
+
+			if (term == null) {
+				break;
+			}
+
+			for (int i=0; i<sourceCount; i++) {
+
+				final Segment source = sources.get(i);
+
+				if (positions[i] < source.terms.length && term.equals(source.terms[positions[i]])) {
+					frequency += source.frequencies[positions[i]];
+				}
+			}
+
+			if (entries.length < frequency) {
+				entries = new long[Math.max(frequency, entries.length * 2)];
+			}
+
+			int count = 0;
+
+			for (int i=0; i<sourceCount; i++) {
+
+				final Segment source = sources.get(i);
+
+				if (positions[i] < source.terms.length && term.equals(source.terms[positions[i]])) {
+
+					final ByteBuffer postings = source.getPostings(positions[i]);
+					final int sourceFrequency = source.frequencies[positions[i]];
+					int document              = 0;
+
+					for (int j=0; j<sourceFrequency; j++) {
+
+						document += readVarInt(postings);
+
+						final int termCount = readVarInt(postings);
+						final int mapped    = mapping[i][document];
+
+						if (mapped >= 0) {
+							entries[count++] = ((long)mapped << 32) | termCount;
+						}
+					}
+
+					positions[i]++;
+				}
+			}
+
+			writer.addTerm(term, entries, count);
+		}
+
+		return writer.finish();
+	}
+
+	private static void collect(final PriorityQueue<Hit> top, final int limit, final String uuid, final double score) {
+
+		if (top.size() < limit) {
+
+			top.add(new Hit(uuid, score));
+
+		} else if (score >= top.peek().score) {
+
+			final Hit hit = new Hit(uuid, score);
+
+			if (ORDER.compare(hit, top.peek()) > 0) {
+
+				top.poll();
+				top.add(hit);
+			}
+		}
+	}
+
+	private static double score(final double idf, final int count, final int length, final double averageLength) {
+		return idf * (count * (K1 + 1.0)) / (count + K1 * (1.0 - B + B * length / averageLength));
+	}
+
+	private static int readVarInt(final ByteBuffer buffer) {
+
+		int value = 0;
+		int shift = 0;
+		byte b;
+
+		do {
+
+			b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+
+		} while ((b & 0x80) != 0);
+
+		return value;
+	}
+
+	private static void writeVarInt(final DataOutputStream out, int value) throws IOException {
+
+		while ((value & ~0x7F) != 0) {
+
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+
+		out.write(value);
+	}
+
+	private static void writeAtomically(final File file, final byte[] data) throws IOException {
+
+		final File tmp = new File(file.getParentFile(), file.getName() + TEMP_SUFFIX);
+
+		try (final FileOutputStream out = new FileOutputStream(tmp)) {
+
+			out.write(data);
+			out.getChannel().force(true);
+		}
+
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static String getFileName(final long generation, final String suffix) {
+		return String.format("%010d", generation).concat(suffix);
+	}
+
+	// ----- nested classes -----
+	public static class Hit {
+
+		private String uuid  = null;
+		private double score = 0.0;
+
+		public Hit(final String uuid, final double score) {
+
+			this.uuid  = uuid;
+			this.score = score;
+		}
+
+		public String getUuid() {
+			return uuid;
+		}
+
+		public double getScore() {
+			return score;
+		}
+	}
+
+	private static class State {
+
+		private final List<Segment> segments;
+		private final Buffer current;
+		private final Buffer flushing;
+
+		public State(final Buffer current, final Buffer flushing, final List<Segment> segments) {
+
+			this.current  = current;
+			this.flushing = flushing;
+			this.segments = segments;
+		}
+
+		public List<Buffer> getBuffers() {
+
+			if (flushing != null) {
+				return Arrays.asList(current, flushing);
+			}
+
+			return Collections.singletonList(current);
+		}
+	}
+
+	private static class Buffer {
+
+		private final Map<String, Postings> postings = new HashMap<>();
+		private final Map<String, Integer> documents = new HashMap<>();
+		private final List<String> uuids             = new ArrayList<>();
+		private final Set<String> touched            = new HashSet<>();
+		private final BitSet deleted                 = new BitSet();
+		private int[] lengths                        = new int[16];
+		private long postingCount                    = 0L;
+		private long liveLength                      = 0L;
+		private int liveCount                        = 0;
+
+		/**
+		 * Adds a document and returns whether the buffer should be flushed.
+		 */
+		public synchronized boolean add(final String uuid, final Map<String, Integer> terms) {
+
+			remove(uuid);
+
+			final int document = uuids.size();
+			int length         = 0;
+
+			for (final Map.Entry<String, Integer> entry : terms.entrySet()) {
+
+				final int count = entry.getValue();
+				if (count > 0) {
+
+					postings.computeIfAbsent(entry.getKey(), k -> new Postings()).add(document, count);
+
+					length += count;
+					postingCount++;
+				}
+			}
+
+			if (document == lengths.length) {
+				lengths = Arrays.copyOf(lengths, document * 2);
+			}
+
+			lengths[document] = length;
+
+			uuids.add(uuid);
+			documents.put(uuid, document);
+
+			liveLength += length;
+			liveCount++;
+
+			return uuids.size() >= MAX_BUFFERED_DOCUMENTS || postingCount >= MAX_BUFFERED_POSTINGS;
+		}
+
+		public synchronized void remove(final String uuid) {
+
+			touched.add(uuid);
+
+			final Integer document = documents.remove(uuid);
+			if (document != null) {
+
+				deleted.set(document);
+
+				liveLength -= lengths[document];
+				liveCount--;
+			}
+		}
+
+		public synchronized boolean isEmpty() {
+			return touched.isEmpty();
+		}
+
+		public synchronized int size() {
+			return liveCount;
+		}
+
+		/**
+		 * Returns a copy of the live postings of the given terms, so that
+		 * the buffer can be searched without holding its lock. Documents
+		 * with the given UUIDs are hidden by a newer buffer and treated as
+		 * deleted.
+		 */
+		public synchronized BufferView view(final String[] terms, final Set<String> hidden) {
+
+			final BufferView view = new BufferView();
+			BitSet excluded       = deleted;
+
+			view.uuids      = uuids.toArray(new String[0]);
+			view.lengths    = Arrays.copyOf(lengths, uuids.size());
+			view.touched    = new ArrayList<>(touched);
+			view.postings   = new int[terms.length][];
+			view.liveLength = liveLength;
+			view.liveCount  = liveCount;
+
+			for (final String uuid : hidden) {
+
+				final Integer document = documents.get(uuid);
+				if (document != null) {
+
+					if (excluded == deleted) {
+						excluded = (BitSet)deleted.clone();
+					}
+
+					excluded.set(document);
+
+					view.liveLength -= lengths[document];
+					view.liveCount--;
+				}
+			}
+
+			for (int i=0; i<terms.length; i++) {
+
+				final Postings termPostings = postings.get(terms[i]);
+				final int[] live            = new int[termPostings != null ? termPostings.size : 0];
+				int size                    = 0;
+
+				for (int j=0; j<live.length; j+=2) {
+
+					if (!excluded.get(termPostings.data[j])) {
+
+						live[size++] = termPostings.data[j];
+						live[size++] = termPostings.data[j+1];
+					}
+				}
+
+				view.postings[i] = Arrays.copyOf(live, size);
+			}
+
+			return view;
+		}
+	}
+
+	private static class BufferView {
+
+		private List<String> touched = null;
+		private String[] uuids       = null;
+		private int[] lengths        = null;
+		private int[][] postings     = null;
+		private long liveLength      = 0L;
+		private int liveCount        = 0;
+	}
+
+	private static class Postings {
+
+		private int[] data = new int[4];
+		private int size   = 0;
+
+		public void add(final int document, final int count) {
+
+			if (size + 2 > data.length) {
+				data = Arrays.copyOf(data, data.length * 2);
+			}
+
+			data[size++] = document;
+			data[size++] = count;
+		}
+	}
+
+	private static class Deletes {
+
+		private final BitSet bits;
+		private final long liveLength;
+		private final int liveCount;
+
+		public Deletes(final BitSet bits, final int[] lengths) {
+
+			long length = 0L;
+			int count   = 0;
+
+			for (int i=0; i<lengths.length; i++) {
+
+				if (!bits.get(i)) {
+
+					length += lengths[i];
+					count++;
+				}
+			}
+
+			this.bits       = bits;
+			this.liveLength = length;
+			this.liveCount  = count;
+		}
+
+		public Deletes(final BitSet bits, final long liveLength, final int liveCount) {
+
+			this.bits       = bits;
+			this.liveLength = liveLength;
+			this.liveCount  = liveCount;
+		}
+	}
+
+	private static class Segment {
+
+		private MappedByteBuffer data     = null;
+		private File file                 = null;
+		private File deletesFile          = null;
+		private String[] uuids            = null;
+		private int[] lengths             = null;
+		private String[] terms            = null;
+		private int[] frequencies         = null;
+		private long[] offsets            = null;
+		private long size                 = 0L;
+		private volatile Deletes deletes  = null;
+
+		public Segment(final File directory, final long generation) throws IOException {
+
+			this.file        = new File(directory, getFileName(generation, SEGMENT_SUFFIX));
+			this.deletesFile = new File(directory, getFileName(generation, DELETES_SUFFIX));
+
+			try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+
+				this.size = channel.size();
+
+				if (size < HEADER_SIZE + FOOTER_SIZE) {
+					throw new IOException("Segment is truncated");
+				}
+
+				this.data = channel.map(FileChannel.MapMode.READ_ONLY, 0L, size);
+			}
+
+			final long documentsOffset = data.getLong((int)size - FOOTER_SIZE);
+			final long termsOffset     = data.getLong((int)size - FOOTER_SIZE + 8);
+
+			if (data.getInt(0) != MAGIC || data.getInt(4) != VERSION || data.getInt((int)size - 4) != MAGIC || documentsOffset < HEADER_SIZE || termsOffset < documentsOffset) {
+				throw new IOException("Invalid segment header or footer");
+			}
+
+			final ByteBuffer tables = data.duplicate();
+			final byte[] bytes      = new byte[(int)(size - FOOTER_SIZE - documentsOffset)];
+
+			tables.position((int)documentsOffset);
+			tables.get(bytes);
+
+			try (final DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+
+				final int documentCount = in.readInt();
+
+				this.uuids   = new String[documentCount];
+				this.lengths = new int[documentCount];
+
+				for (int i=0; i<documentCount; i++) {
+
+					uuids[i]   = in.readUTF();
+					lengths[i] = in.readInt();
+				}
+
+				final int termCount = in.readInt();
+
+				this.terms       = new String[termCount];
+				this.frequencies = new int[termCount];
+				this.offsets     = new long[termCount];
+
+				for (int i=0; i<termCount; i++) {
+
+					terms[i]       = in.readUTF();
+					frequencies[i] = in.readInt();
+					offsets[i]     = in.readLong();
+				}
+			}
+
+			final BitSet bits = deletesFile.exists() ? BitSet.valueOf(Files.readAllBytes(deletesFile.toPath())) : new BitSet();
+
+			this.deletes = new Deletes(bits, lengths);
+		}
+
+		public int findTerm(final String term) {
+			return Arrays.binarySearch(terms, term);
+		}
+
+		public ByteBuffer getPostings(final int index) {
+
+			final ByteBuffer buffer = data.duplicate();
+
+			buffer.position((int)offsets[index]);
+
+			return buffer;
+		}
+
+		/**
+		 * Returns the documents that are deleted or hidden by a newer
+		 * version of the same document, and the number and total length
+		 * of the remaining documents.
+		 */
+		public Deletes getVisible(final Collection<String> hidden) {
+
+			final Deletes current = deletes;
+			BitSet excluded       = null;
+			long liveLength       = current.liveLength;
+			int liveCount         = current.liveCount;
+
+			for (final String uuid : hidden) {
+
+				final int document = Arrays.binarySearch(uuids, uuid);
+				if (document >= 0 && !current.bits.get(document)) {
+
+					if (excluded == null) {
+						excluded = (BitSet)current.bits.clone();
+					}
+
+					excluded.set(document);
+
+					liveLength -= lengths[document];
+					liveCount--;
+				}
+			}
+
+			if (excluded == null) {
+				return current;
+			}
+
+			return new Deletes(excluded, liveLength, liveCount);
+		}
+
+		/**
+		 * Returns the (document, term count) pairs of the given term for
+		 * all documents that are not excluded.
+		 */
+		public int[] readPostings(final int index, final BitSet excluded) {
+
+			if (index < 0) {
+				return new int[0];
+			}
+
+			final ByteBuffer buffer = getPostings(index);
+			final int frequency     = frequencies[index];
+			final int[] postings    = new int[frequency * 2];
+			int document            = 0;
+			int size                = 0;
+
+			for (int j=0; j<frequency; j++) {
+
+				document += readVarInt(buffer);
+
+				final int count = readVarInt(buffer);
+
+				if (!excluded.get(document)) {
+
+					postings[size++] = document;
+					postings[size++] = count;
+				}
+			}
+
+			return size < postings.length ? Arrays.copyOf(postings, size) : postings;
+		}
+
+		public void delete(final Collection<String> documents) throws IOException {
+
+			final BitSet bits = (BitSet)deletes.bits.clone();
+			boolean changed   = false;
+
+			for (final String uuid : documents) {
+
+				final int document = Arrays.binarySearch(uuids, uuid);
+				if (document >= 0 && !bits.get(document)) {
+
+					bits.set(document);
+					changed = true;
+				}
+			}
+
+			if (changed) {
+
+				writeAtomically(deletesFile, bits.toByteArray());
+
+				this.deletes = new Deletes(bits, lengths);
+			}
+		}
+
+		public void remove() {
+
+			try {
+
+				Files.deleteIfExists(file.toPath());
+				Files.deleteIfExists(deletesFile.toPath());
+
+			} catch (IOException ioex) {
+				logger.warn("Unable to remove fulltext index segment {}: {}", file.getName(), ioex.getMessage());
+			}
+		}
+	}
+
+	private static class SegmentWriter {
+
+		private final List<String> uuids       = new ArrayList<>();
+		private final List<Integer> lengths    = new ArrayList<>();
+		private final List<String> terms       = new ArrayList<>();
+		private final List<Integer> counts     = new ArrayList<>();
+		private final List<Long> offsets       = new ArrayList<>();
+		private FileOutputStream fileStream    = null;
+		private DataOutputStream out           = null;
+		private File directory                 = null;
+		private File tmp                       = null;
+		private long generation                = 0L;
+
+		public SegmentWriter(final File directory, final long generation) throws IOException {
+
+			this.directory  = directory;
+			this.generation = generation;
+			this.tmp        = new File(directory, getFileName(generation, SEGMENT_SUFFIX + TEMP_SUFFIX));
+			this.fileStream = new FileOutputStream(tmp);
+			this.out        = new DataOutputStream(new BufferedOutputStream(fileStream, 65536));
+
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+		}
+
+		/**
+		 * Adds a document, documents must be added in UUID order.
+		 */
+		public void addDocument(final String uuid, final int length) {
+
+			uuids.add(uuid);
+			lengths.add(length);
+		}
+
+		/**
+		 * Adds the postings of a term, terms must be added in sorted order.
+		 * Each entry contains the document in the upper and the term count
+		 * in the lower 32 bits.
+		 */
+		public void addTerm(final String term, final long[] entries, final int count) throws IOException {
+
+			if (count == 0) {
+				return;
+			}
+
+			Arrays.sort(entries, 0, count);
+
+			terms.add(term);
+			counts.add(count);
+			offsets.add((long)out.size());
+
+			int previous = 0;
+
+			for (int i=0; i<count; i++) {
+
+				final int document = (int)(entries[i] >>> 32);
+
+				writeVarInt(out, document - previous);
+				writeVarInt(out, (int)entries[i]);
+
+				previous = document;
+			}
+		}
+
+		public Segment finish() throws IOException {
+
+			final long documentsOffset = out.size();
+
+			out.writeInt(uuids.size());
+
+			for (int i=0; i<uuids.size(); i++) {
+
+				out.writeUTF(uuids.get(i));
+				out.writeInt(lengths.get(i));
+			}
+
+			final long termsOffset = out.size();
+
+			out.writeInt(terms.size());
+
+			for (int i=0; i<terms.size(); i++) {
+
+				out.writeUTF(terms.get(i));
+				out.writeInt(counts.get(i));
+				out.writeLong(offsets.get(i));
+			}
+
+			out.writeLong(documentsOffset);
+			out.writeLong(termsOffset);
+			out.writeInt(MAGIC);
+			out.flush();
+
+			fileStream.getChannel().force(true);
+			out.close();
+
+			Files.move(tmp.toPath(), new File(directory, getFileName(generation, SEGMENT_SUFFIX)).toPath(), StandardCopyOption.ATOMIC_MOVE);
+
+			return new Segment(directory, generation);
+		}
+
+		public void abort() throws IOException {
+
+			out.close();
+			Files.deleteIfExists(tmp.toPath());
+		}
+	}
+}
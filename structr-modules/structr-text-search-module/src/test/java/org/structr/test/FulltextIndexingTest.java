@@ -25,18 +25,25 @@ import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
 import org.testng.annotations.Test;
+import org.structr.api.config.Settings;
 import org.structr.api.util.Iterables;
 import org.structr.common.error.FrameworkException;
+import org.structr.common.fulltext.FulltextIndexer;
 import org.structr.common.fulltext.Indexable;
+import org.structr.common.fulltext.IndexedWord;
 import org.structr.core.GraphObject;
+import org.structr.core.GraphObjectMap;
 import org.structr.core.app.StructrApp;
 import org.structr.core.graph.Tx;
+import org.structr.core.property.GenericProperty;
 import org.structr.core.property.PropertyKey;
 import org.structr.test.web.StructrUiTest;
+import org.structr.text.InvertedIndex;
 import org.structr.web.common.FileHelper;
 import org.structr.web.entity.File;
 import static org.testng.AssertJUnit.assertEquals;
 import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertTrue;
 import static org.testng.AssertJUnit.fail;
 
 /**
@@ -190,6 +197,88 @@ public class FulltextIndexingTest extends StructrUiTest {
 
 	}
 
+	@Test
+	public void testSegmentedIndexSearch() {
+
+		Settings.IndexingBackend.setValue("segments");
+
+		try {
+
+			String uuid1 = null;
+			String uuid2 = null;
+
+			try (final Tx tx = app.tx()) {
+
+				try (final InputStream is = FulltextIndexingTest.class.getResourceAsStream("/test/test.txt")) {
+					uuid1 = FileHelper.createFile(securityContext, is, "", File.class, "test.txt").getUuid();
+				}
+
+				try (final InputStream is = FulltextIndexingTest.class.getResourceAsStream("/test/test2.txt")) {
+					uuid2 = FileHelper.createFile(securityContext, is, "", File.class, "test2.txt").getUuid();
+				}
+
+				tx.success();
+
+			} catch (FrameworkException|IOException fex) {
+				fail("Unexpected exception.");
+			}
+
+			delay();
+
+			try (final Tx tx = app.tx()) {
+
+				final FulltextIndexer indexer = app.getFulltextIndexer();
+
+				final List<GraphObjectMap> result1 = indexer.search(securityContext, "repetition", 10);
+
+				assertEquals("Invalid fulltext search result size", 1, result1.size());
+				assertEquals("Invalid fulltext search result", uuid2, ((GraphObject)result1.get(0).get(new GenericProperty("node"))).getUuid());
+
+				final List<GraphObjectMap> result2 = indexer.search(securityContext, "lorem repetition", 10);
+				final Set<String> resultIds        = result2.stream().map(m -> ((GraphObject)m.get(new GenericProperty("node"))).getUuid()).collect(Collectors.toSet());
+
+				assertEquals("Invalid fulltext search result size", 2, result2.size());
+				assertTrue("Invalid fulltext search result", resultIds.contains(uuid1) && resultIds.contains(uuid2));
+
+				final double score1 = (Double)result2.get(0).get(new GenericProperty("score"));
+				final double score2 = (Double)result2.get(1).get(new GenericProperty("score"));
+
+				assertTrue("Fulltext search results are not ordered by score", score1 >= score2 && score2 > 0.0);
+
+				// graph index must not be used
+				assertEquals("Segmented fulltext index should not create IndexedWord nodes", 0, app.nodeQuery(IndexedWord.class).getAsList().size());
+
+				tx.success();
+
+			} catch (FrameworkException fex) {
+				fail("Unexpected exception.");
+			}
+
+			// deleted files are removed from the index immediately
+			try (final Tx tx = app.tx()) {
+
+				app.delete(app.get(File.class, uuid2));
+				tx.success();
+
+			} catch (FrameworkException fex) {
+				fail("Unexpected exception.");
+			}
+
+			try {
+
+				assertTrue("Deleted file should be removed from the fulltext index", InvertedIndex.getInstance().search(Arrays.asList("repetition"), 10).isEmpty());
+				assertEquals("Remaining file should still be found", 1, InvertedIndex.getInstance().search(Arrays.asList("lorem"), 10).size());
+
+			} catch (IOException ioex) {
+				fail("Unexpected exception.");
+			}
+
+		} finally {
+
+			Settings.IndexingBackend.setValue("graph");
+		}
+	}
+
 	// ----- private methods -----
 	private void testFile() {
 
@@ -0,0 +1,487 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import org.structr.api.config.Settings;
+import org.structr.text.InvertedIndex;
+import org.structr.text.InvertedIndex.Hit;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the segment-based inverted index without a database, comparing
+ * its results with a brute-force BM25 implementation.
+ */
+public class InvertedIndexTest {
+
+	private static final double K1 = 1.2;
+	private static final double B  = 0.75;
+
+	private final Map<String, Map<String, Integer>> documents = new TreeMap<>();
+	private String filesPath                                  = null;
+	private String basePath                                   = null;
+
+	@BeforeMethod
+	public void setUp() throws IOException {
+
+		basePath  = Files.createTempDirectory("structr-fulltext").toString();
+		filesPath = Settings.FilesPath.getValue();
+
+		documents.clear();
+
+		// flushes and merges are triggered explicitly by the tests
+		Settings.IndexingFlushInterval.setValue(3600000);
+		Settings.FilesPath.setValue(basePath + "/index");
+	}
+
+	@AfterMethod
+	public void tearDown() throws IOException {
+
+		Settings.FilesPath.setValue(basePath + "/closed");
+		InvertedIndex.getInstance().close();
+
+		Settings.FilesPath.setValue(filesPath);
+		Settings.IndexingFlushInterval.setValue(Settings.IndexingFlushInterval.getDefaultValue());
+		Settings.IndexingMergeFactor.setValue(Settings.IndexingMergeFactor.getDefaultValue());
+	}
+
+	@Test
+	public void testReindexAndRemove() throws IOException {
+
+		final InvertedIndex index = InvertedIndex.getInstance();
+
+		add(index, "a", "apple", 2, "cherry", 1);
+		add(index, "b", "banana", 1, "cherry", 3);
+
+		assertHits(index, "apple", "a");
+
+		index.flush();
+
+		// re-index a flushed document
+		add(index, "a", "banana", 2);
+
+		assertHits(index, "apple");
+		assertHits(index, "cherry", "b");
+		assertResults(index);
+
+		index.flush();
+
+		assertHits(index, "apple");
+		assertResults(index);
+
+		// remove a buffered and a flushed document
+		add(index, "c", "apple", 1);
+		remove(index, "c");
+		remove(index, "b");
+
+		assertHits(index, "apple");
+		assertHits(index, "cherry");
+		assertHits(index, "banana", "a");
+		assertResults(index);
+
+		index.flush();
+
+		assertHits(index, "banana", "a");
+		assertResults(index);
+
+		// removal of a document that was never indexed
+		remove(index, "x");
+		index.flush();
+
+		assertResults(index);
+	}
+
+	@Test
+	public void testMerge() throws IOException {
+
+		Settings.IndexingMergeFactor.setValue(2);
+
+		final InvertedIndex index = InvertedIndex.getInstance();
+
+		for (int i=0; i<16; i++) {
+
+			add(index, "doc" + i, "common", 1, "word" + i, i + 1);
+
+			// re-index and remove some documents of older segments
+			if (i % 4 == 3) {
+
+				add(index, "doc" + (i - 2), "common", 5);
+				remove(index, "doc" + (i - 3));
+			}
+
+			index.flush();
+		}
+
+		final Map<String, Object> stats = InvertedIndex.getInstance().getStatistics();
+
+		assertTrue("Segments should have been merged", ((Number)stats.get("merges")).longValue() > 0);
+		assertTrue("Merged index should have few segments", ((Number)stats.get("segments")).intValue() <= 4);
+		assertEquals("Merged index should contain the live documents", documents.size(), ((Number)stats.get("documents")).intValue());
+
+		assertHits(index, "word0");
+		assertHits(index, "word1");
+		assertHits(index, "word2", "doc2");
+		assertResults(index);
+
+		reopen();
+
+		assertResults(InvertedIndex.getInstance());
+	}
+
+	@Test
+	public void testReopen() throws IOException {
+
+		InvertedIndex index = InvertedIndex.getInstance();
+
+		add(index, "a", "apple", 1);
+		add(index, "c", "cherry", 1);
+		add(index, "d", "apple", 1, "cherry", 1);
+		index.flush();
+
+		add(index, "b", "apple", 2);
+		remove(index, "a");
+
+		// closing the index flushes the buffered documents
+		reopen();
+
+		index = InvertedIndex.getInstance();
+
+		assertHits(index, "apple", "b", "d");
+		assertResults(index);
+
+		// simulate a crash after a new segment was written, but before the
+		// older version of its document was deleted in the first segment
+		final File deletes = new File(basePath + "/index/fulltext-index/0000000000.del");
+		final byte[] data  = Files.readAllBytes(deletes.toPath());
+
+		add(index, "c", "cherry", 3);
+		index.flush();
+
+		Settings.FilesPath.setValue(basePath + "/other");
+		InvertedIndex.getInstance();
+
+		Files.write(deletes.toPath(), data);
+
+		Settings.FilesPath.setValue(basePath + "/index");
+		index = InvertedIndex.getInstance();
+
+		// the newest version of a document wins
+		assertHits(index, "cherry", "c", "d");
+		assertResults(index);
+	}
+
+	@Test
+	public void testTornSegment() throws IOException {
+
+		InvertedIndex index = InvertedIndex.getInstance();
+
+		add(index, "a", "apple", 1);
+		index.flush();
+
+		add(index, "b", "apple", 1, "banana", 1);
+		index.flush();
+
+		final File directory = new File(basePath + "/index/fulltext-index");
+
+		// close the index and simulate a crash while the last segment was written
+		Settings.FilesPath.setValue(basePath + "/other");
+		InvertedIndex.getInstance();
+
+		final File[] segments = directory.listFiles((dir, name) -> name.endsWith(".seg"));
+
+		assertEquals("Index should consist of two segments", 2, segments.length);
+
+		Arrays.sort(segments);
+
+		try (final RandomAccessFile file = new RandomAccessFile(segments[1], "rw")) {
+			file.setLength(file.length() - 10);
+		}
+
+		final File temporary = new File(directory, "0000000099.seg.tmp");
+
+		Files.write(temporary.toPath(), new byte[] { 1, 2, 3 });
+
+		Settings.FilesPath.setValue(basePath + "/index");
+		index = InvertedIndex.getInstance();
+
+		assertFalse("Temporary files should be removed", temporary.exists());
+
+		// the documents of the torn segment are lost, the others are still found
+		documents.remove("b");
+
+		assertHits(index, "apple", "a");
+		assertHits(index, "banana");
+		assertResults(index);
+
+		// the index can be written after the torn segment was ignored
+		add(index, "c", "banana", 1);
+		index.flush();
+
+		assertHits(index, "banana", "c");
+
+		reopen();
+
+		assertHits(InvertedIndex.getInstance(), "banana", "c");
+		assertResults(InvertedIndex.getInstance());
+	}
+
+	@Test
+	public void testRankingMatchesBruteForce() throws IOException {
+
+		Settings.IndexingMergeFactor.setValue(3);
+
+		final Random random = new Random(4711L);
+		final String[] words = new String[200];
+
+		for (int i=0; i<words.length; i++) {
+			words[i] = "w" + i;
+		}
+
+		for (int round=0; round<8; round++) {
+
+			final InvertedIndex index = InvertedIndex.getInstance();
+
+			for (int i=0; i<150; i++) {
+
+				final String uuid = String.format("%032x", random.nextInt(400));
+
+				if (random.nextInt(10) == 0) {
+
+					remove(index, uuid);
+
+				} else {
+
+					final Map<String, Integer> terms = new HashMap<>();
+					final int length                 = 1 + random.nextInt(60);
+
+					for (int j=0; j<length; j++) {
+
+						// skewed distribution, so that the terms have very different frequencies
+						final int word = (int)(words.length * Math.pow(random.nextDouble(), 3.0));
+
+						terms.merge(words[word], 1, Integer::sum);
+					}
+
+					documents.put(uuid, terms);
+					index.add(uuid, terms);
+				}
+
+				if (random.nextInt(40) == 0) {
+					index.flush();
+				}
+			}
+
+			// compare with and without buffered documents
+			assertRandomQueries(index, random, words);
+
+			index.flush();
+
+			assertRandomQueries(index, random, words);
+
+			if (round % 3 == 2) {
+				reopen();
+			}
+		}
+
+		assertTrue("Segments should have been merged", ((Number)InvertedIndex.getInstance().getStatistics().get("merges")).longValue() > 0);
+	}
+
+	// ----- private methods -----
+	private void add(final InvertedIndex index, final String uuid, final Object... terms) throws IOException {
+
+		final Map<String, Integer> map = new HashMap<>();
+
+		for (int i=0; i<terms.length; i+=2) {
+			map.put((String)terms[i], (Integer)terms[i+1]);
+		}
+
+		documents.put(uuid, map);
+		index.add(uuid, map);
+	}
+
+	private void remove(final InvertedIndex index, final String uuid) throws IOException {
+
+		documents.remove(uuid);
+		index.remove(uuid);
+	}
+
+	private void reopen() throws IOException {
+
+		Settings.FilesPath.setValue(basePath + "/other");
+		InvertedIndex.getInstance();
+
+		Settings.FilesPath.setValue(basePath + "/index");
+		InvertedIndex.getInstance();
+	}
+
+	private void assertHits(final InvertedIndex index, final String term, final String... expected) {
+
+		final List<String> uuids = new ArrayList<>();
+
+		for (final Hit hit : index.search(Collections.singletonList(term), 100)) {
+			uuids.add(hit.getUuid());
+		}
+
+		Collections.sort(uuids);
+
+		assertEquals("Invalid search result for " + term, Arrays.asList(expected), uuids);
+	}
+
+	private void assertResults(final InvertedIndex index) {
+
+		final Set<String> terms = new LinkedHashSet<>();
+
+		for (final Map<String, Integer> document : documents.values()) {
+			terms.addAll(document.keySet());
+		}
+
+		for (final String term : terms) {
+			assertSearch(index, Collections.singletonList(term), 1000);
+		}
+
+		assertSearch(index, new ArrayList<>(terms), 1000);
+		assertSearch(index, new ArrayList<>(terms), 1);
+	}
+
+	private void assertRandomQueries(final InvertedIndex index, final Random random, final String[] words) {
+
+		for (int i=0; i<50; i++) {
+
+			final List<String> terms = new ArrayList<>();
+			final int count          = 1 + random.nextInt(4);
+
+			for (int j=0; j<count; j++) {
+				terms.add(words[random.nextInt(words.length)]);
+			}
+
+			assertSearch(index, terms, 1 + random.nextInt(20));
+			assertSearch(index, terms, 1000);
+		}
+	}
+
+	private void assertSearch(final InvertedIndex index, final List<String> terms, final int limit) {
+
+		final Map<String, Double> scores = bruteForce(terms);
+		final List<Double> expected      = new ArrayList<>(scores.values());
+		final List<Hit> actual           = index.search(terms, limit);
+
+		expected.sort(Collections.reverseOrder());
+
+		assertEquals("Invalid number of hits for " + terms, Math.min(limit, expected.size()), actual.size());
+
+		for (int i=0; i<actual.size(); i++) {
+
+			final Hit hit      = actual.get(i);
+			final Double score = scores.get(hit.getUuid());
+
+			assertTrue("Document " + hit.getUuid() + " should not match " + terms, score != null);
+
+			// scores are summed in a different order, so documents with equal scores can be ranked differently
+			assertEquals("Invalid score of hit " + i + " for " + terms, expected.get(i), hit.getScore(), 1e-9);
+			assertEquals("Invalid score of document " + hit.getUuid() + " for " + terms, score, hit.getScore(), 1e-9);
+		}
+	}
+
+	/**
+	 * Computes the BM25 scores of all documents that contain at least one
+	 * of the given terms.
+	 */
+	private Map<String, Double> bruteForce(final List<String> terms) {
+
+		final Map<String, Double> scores = new HashMap<>();
+		final Set<String> queryTerms     = new LinkedHashSet<>(terms);
+		final Map<String, Integer> df    = new HashMap<>();
+		long totalLength                 = 0L;
+
+		for (final Map<String, Integer> document : documents.values()) {
+
+			for (final Map.Entry<String, Integer> entry : document.entrySet()) {
+
+				totalLength += entry.getValue();
+
+				if (queryTerms.contains(entry.getKey())) {
+					df.merge(entry.getKey(), 1, Integer::sum);
+				}
+			}
+		}
+
+		final double averageLength = (double)totalLength / documents.size();
+
+		for (final Map.Entry<String, Map<String, Integer>> entry : documents.entrySet()) {
+
+			final Map<String, Integer> document = entry.getValue();
+
+			if (containsAny(document, terms)) {
+
+				int length   = 0;
+				double score = 0.0;
+
+				for (final Integer count : document.values()) {
+					length += count;
+				}
+
+				for (final String term : queryTerms) {
+
+					final Integer count = document.get(term);
+					if (count != null) {
+
+						final int frequency = df.get(term);
+						final double idf    = Math.log(1.0 + (documents.size() - frequency + 0.5) / (frequency + 0.5));
+
+						score += idf * (count * (K1 + 1.0)) / (count + K1 * (1.0 - B + B * length / averageLength));
+					}
+				}
+
+				scores.put(entry.getKey(), score);
+			}
+		}
+
+		return scores;
+	}
+
+	private boolean containsAny(final Map<String, Integer> document, final List<String> terms) {
+
+		for (final String term : terms) {
+
+			if (document.containsKey(term)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
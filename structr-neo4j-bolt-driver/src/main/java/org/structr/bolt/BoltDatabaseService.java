@@ -24,9 +24,12 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -51,9 +54,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.AbstractDatabaseService;
 import org.structr.api.NetworkException;
+import org.structr.api.NotFoundException;
 import org.structr.api.NotInTransactionException;
 import org.structr.api.Transaction;
 import org.structr.api.config.Settings;
+import org.structr.api.graph.Direction;
 import org.structr.api.graph.GraphProperties;
 import org.structr.api.graph.Identity;
 import org.structr.api.graph.Label;
@@ -63,12 +68,14 @@ import org.structr.api.graph.RelationshipType;
 import org.structr.api.index.Index;
 import org.structr.api.util.CountResult;
 import org.structr.api.util.Iterables;
+import org.structr.api.util.NodeSpec;
 import org.structr.api.util.NodeWithOwnerResult;
+import org.structr.api.util.RelationshipSpec;
 import org.structr.bolt.index.CypherNodeIndex;
 import org.structr.bolt.index.CypherRelationshipIndex;
+import org.structr.bolt.index.KeysetCypherQuery;
 import org.structr.bolt.index.NodeResultStream;
 import org.structr.bolt.index.RelationshipResultStream;
-import org.structr.bolt.index.SimpleCypherQuery;
 import org.structr.bolt.mapper.NodeNodeMapper;
 import org.structr.bolt.mapper.RelationshipRelationshipMapper;
 import org.structr.bolt.wrapper.BoltIdentity;
@@ -305,6 +312,92 @@ public class BoltDatabaseService extends AbstractDatabaseService implements Grap
 		return null;
 	}
 
+	@Override
+	public List<NodeWithOwnerResult> createNodes(final List<NodeSpec> specs) {
+
+		final List<NodeWithOwnerResult> results = new ArrayList<>(specs.size());
+		final int batchSize                     = Math.max(1, Settings.BulkCreationBatchSize.getValue());
+		final List<NodeSpec> chunk              = new ArrayList<>();
+
+		// consecutive specs with the same labels and owner share a statement
+		for (final NodeSpec spec : specs) {
+
+			if (!chunk.isEmpty() && (chunk.size() >= batchSize || !canShareStatement(chunk.get(0), spec))) {
+
+				createNodeChunk(chunk, results);
+				chunk.clear();
+			}
+
+			chunk.add(spec);
+		}
+
+		if (!chunk.isEmpty()) {
+			createNodeChunk(chunk, results);
+		}
+
+		return results;
+	}
+
+	@Override
+	public List<Relationship> createRelationships(final List<RelationshipSpec> specs) {
+
+		final List<Relationship> results   = new ArrayList<>(specs.size());
+		final int batchSize                = Math.max(1, Settings.BulkCreationBatchSize.getValue());
+		final List<RelationshipSpec> chunk = new ArrayList<>();
+
+		// consecutive specs with the same type share a statement
+		for (final RelationshipSpec spec : specs) {
+
+			if (!chunk.isEmpty() && (chunk.size() >= batchSize || !chunk.get(0).getType().equals(spec.getType()))) {
+
+				createRelationshipChunk(chunk, results);
+				chunk.clear();
+			}
+
+			chunk.add(spec);
+		}
+
+		if (!chunk.isEmpty()) {
+			createRelationshipChunk(chunk, results);
+		}
+
+		return results;
+	}
+
+	@Override
+	public void prefetchRelationships(final Collection<Node> nodes, final Direction direction, final RelationshipType relationshipType) {
+
+		// relationship caches are bypassed anyway
+		if (Settings.ForceResultStreaming.getValue()) {
+			return;
+		}
+
+		final int batchSize           = Math.max(1, Settings.BulkCreationBatchSize.getValue());
+		final List<NodeWrapper> chunk = new ArrayList<>();
+
+		for (final Node node : nodes) {
+
+			if (node instanceof NodeWrapper) {
+
+				final NodeWrapper wrapper = (NodeWrapper)node;
+				if (wrapper.needsPrefetch(direction, relationshipType)) {
+
+					chunk.add(wrapper);
+
+					if (chunk.size() >= batchSize) {
+
+						prefetchRelationshipChunk(chunk, direction, relationshipType);
+						chunk.clear();
+					}
+				}
+			}
+		}
+
+		if (!chunk.isEmpty()) {
+			prefetchRelationshipChunk(chunk, direction, relationshipType);
+		}
+	}
+
 	@Override
 	public Node getNodeById(final Identity id) {
 		return getNodeById(unwrap(id));
@@ -327,9 +420,9 @@ public class BoltDatabaseService extends AbstractDatabaseService implements Grap
 			buf.append(tenantId);
 		}
 
-		buf.append(") RETURN n");
+		buf.append(")");
 
-		return Iterables.map(new NodeNodeMapper(this), new NodeResultStream(this, new SimpleCypherQuery(buf.toString())));
+		return Iterables.map(new NodeNodeMapper(this), new NodeResultStream(this, new KeysetCypherQuery(buf.toString(), null, "n")));
 	}
 
 	@Override
@@ -350,9 +443,9 @@ public class BoltDatabaseService extends AbstractDatabaseService implements Grap
 
 		buf.append(":");
 		buf.append(type);
-		buf.append(") RETURN n");
+		buf.append(")");
 
-		return Iterables.map(new NodeNodeMapper(this), new NodeResultStream(this, new SimpleCypherQuery(buf.toString())));
+		return Iterables.map(new NodeNodeMapper(this), new NodeResultStream(this, new KeysetCypherQuery(buf.toString(), null, "n")));
 	}
 
 	@Override
@@ -371,9 +464,9 @@ public class BoltDatabaseService extends AbstractDatabaseService implements Grap
 			buf.append(tenantId);
 		}
 
-		buf.append(") WHERE n.type = $type RETURN n");
+		buf.append(")");
 
-		final SimpleCypherQuery query = new SimpleCypherQuery(buf.toString());
+		final KeysetCypherQuery query = new KeysetCypherQuery(buf.toString(), "n.type = $type", "n");
 
 		query.getParameters().put("type", type);
 
@@ -418,9 +511,9 @@ public class BoltDatabaseService extends AbstractDatabaseService implements Grap
 			buf.append(tenantId);
 		}
 
-		buf.append(") RETURN r");
+		buf.append(")");
 
-		return Iterables.map(new RelationshipRelationshipMapper(this), new RelationshipResultStream(this, new SimpleCypherQuery(buf.toString())));
+		return Iterables.map(new RelationshipRelationshipMapper(this), new RelationshipResultStream(this, new KeysetCypherQuery(buf.toString(), null, "r")));
 	}
 
 	@Override
@@ -448,9 +541,9 @@ public class BoltDatabaseService extends AbstractDatabaseService implements Grap
 			buf.append(tenantId);
 		}
 
-		buf.append(") RETURN r");
+		buf.append(")");
 
-		return Iterables.map(new RelationshipRelationshipMapper(this), new RelationshipResultStream(this, new SimpleCypherQuery(buf.toString())));
+		return Iterables.map(new RelationshipRelationshipMapper(this), new RelationshipResultStream(this, new KeysetCypherQuery(buf.toString(), null, "r")));
 	}
 
 	@Override
@@ -651,6 +744,17 @@ public class BoltDatabaseService extends AbstractDatabaseService implements Grap
 		RelationshipCacheAccess.clearAllCaches();
 	}
 
+	@Override
+	public Map<String, Map<String, Object>> getCacheStatistics() {
+
+		final Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+
+		stats.put("nodes",         NodeWrapper.getCacheStatistics());
+		stats.put("relationships", RelationshipWrapper.getCacheStatistics());
+
+		return stats;
+	}
+
 	@Override
 	public void cleanDatabase() {
 		execute("MATCH (n:" + tenantId + ") DETACH DELETE n", Collections.emptyMap());
@@ -685,10 +789,12 @@ public class BoltDatabaseService extends AbstractDatabaseService implements Grap
 		throw new IllegalArgumentException("This implementation cannot handle Identity objects of type " + identity.getClass().getName() + ".");
 	}
 
+	@Override
 	public Node getNodeById(final long id) {
 		return NodeWrapper.newInstance(this, id);
 	}
 
+	@Override
 	public Relationship getRelationshipById(final long id) {
 		return RelationshipWrapper.newInstance(this, id);
 	}
@@ -745,6 +851,258 @@ public class BoltDatabaseService extends AbstractDatabaseService implements Grap
 	}
 
 	// ----- private methods -----
+	private boolean canShareStatement(final NodeSpec first, final NodeSpec spec) {
+
+		if (!first.getLabels().equals(spec.getLabels())) {
+			return false;
+		}
+
+		if (first.hasOwner() && spec.hasOwner()) {
+			return unwrap(first.getOwner()) == unwrap(spec.getOwner());
+		}
+
+		return first.hasOwner() == spec.hasOwner();
+	}
+
+	private void createNodeChunk(final List<NodeSpec> chunk, final List<NodeWithOwnerResult> results) {
+
+		final NodeSpec first                 = chunk.get(0);
+		final List<Object> rows              = new ArrayList<>(chunk.size());
+		final Map<String, Object> parameters = new HashMap<>();
+		final StringBuilder buf              = new StringBuilder();
+		final int expected                   = results.size() + chunk.size();
+
+		if (first.hasOwner()) {
+
+			buf.append("MATCH (u:NodeInterface:Principal");
+			appendTenantIdentifier(buf);
+			buf.append(") WHERE ID(u) = $userId");
+			buf.append(" UNWIND $rows AS row");
+			buf.append(" CREATE (u)-[o:OWNS]->(n");
+			appendTenantIdentifier(buf);
+			appendLabels(buf, first.getLabels());
+			buf.append(")<-[s:SECURITY]-(u)");
+			buf.append(" SET n = row.nodeProperties, o = row.ownsProperties, s = row.securityProperties");
+			buf.append(" RETURN n, s, o");
+
+			for (final NodeSpec spec : chunk) {
+
+				final Map<String, Object> row = new HashMap<>();
+
+				row.put("nodeProperties",     spec.getProperties());
+				row.put("ownsProperties",     spec.getOwnsProperties());
+				row.put("securityProperties", spec.getSecurityProperties());
+
+				rows.add(row);
+			}
+
+			parameters.put("userId", unwrap(first.getOwner()));
+
+		} else {
+
+			buf.append("UNWIND $rows AS row CREATE (n");
+			appendTenantIdentifier(buf);
+			appendLabels(buf, first.getLabels());
+			buf.append(") SET n = row RETURN n");
+
+			for (final NodeSpec spec : chunk) {
+				rows.add(spec.getProperties());
+			}
+		}
+
+		parameters.put("rows", rows);
+
+		try {
+
+			for (final Map<String, Object> data : execute(buf.toString(), parameters)) {
+
+				final NodeWrapper newNode             = (NodeWrapper)         data.get("n");
+				final RelationshipWrapper securityRel = (RelationshipWrapper) data.get("s");
+				final RelationshipWrapper ownsRel     = (RelationshipWrapper) data.get("o");
+
+				newNode.setModified();
+
+				if (ownsRel != null && securityRel != null) {
+
+					securityRel.setModified();
+					securityRel.stale();
+
+					ownsRel.setModified();
+					ownsRel.stale();
+				}
+
+				results.add(new NodeWithOwnerResult(newNode, securityRel, ownsRel));
+			}
+
+		} catch (ClientException dex) {
+			throw SessionTransaction.translateClientException(dex);
+		} catch (DatabaseException dex) {
+			throw SessionTransaction.translateDatabaseException(dex);
+		}
+
+		if (first.hasOwner()) {
+
+			// owner does not exist, same result as createNodeWithOwner
+			if (results.size() < expected) {
+				results.addAll(Collections.nCopies(expected - results.size(), null));
+			}
+
+			NodeWrapper.newInstance(this, unwrap(first.getOwner())).setModified();
+		}
+	}
+
+	private void createRelationshipChunk(final List<RelationshipSpec> chunk, final List<Relationship> results) {
+
+		final Relationship[] created         = new Relationship[chunk.size()];
+		final List<Object> rows              = new ArrayList<>(chunk.size());
+		final Map<String, Object> parameters = new HashMap<>();
+		final StringBuilder buf              = new StringBuilder();
+
+		// each row returns its index so that results can not be shifted by rows without a match
+		buf.append("UNWIND $rows AS row MATCH (n");
+		appendTenantIdentifier(buf);
+		buf.append("), (m");
+		appendTenantIdentifier(buf);
+		buf.append(") WHERE ID(n) = row.id1 AND ID(m) = row.id2");
+		buf.append(" CREATE (n)-[r:");
+		buf.append(chunk.get(0).getType());
+		buf.append("]->(m) SET r += row.properties RETURN row.index AS index, r");
+
+		for (int i=0; i<chunk.size(); i++) {
+
+			final RelationshipSpec spec   = chunk.get(i);
+			final Map<String, Object> row = new HashMap<>();
+
+			row.put("index",      i);
+			row.put("id1",        unwrap(spec.getStartNode()));
+			row.put("id2",        unwrap(spec.getEndNode()));
+			row.put("properties", spec.getProperties());
+
+			rows.add(row);
+		}
+
+		parameters.put("rows", rows);
+
+		try {
+
+			for (final Map<String, Object> data : execute(buf.toString(), parameters)) {
+
+				final RelationshipWrapper rel = (RelationshipWrapper)data.get("r");
+				final int index               = ((Number)data.get("index")).intValue();
+
+				if (created[index] != null) {
+					throw new IllegalStateException("Duplicate result for relationship " + index + " of bulk creation");
+				}
+
+				rel.setModified();
+
+				created[index] = rel;
+			}
+
+		} catch (ClientException dex) {
+			throw SessionTransaction.translateClientException(dex);
+		} catch (DatabaseException dex) {
+			throw SessionTransaction.translateDatabaseException(dex);
+		}
+
+		for (int i=0; i<created.length; i++) {
+
+			if (created[i] == null) {
+
+				final RelationshipSpec spec = chunk.get(i);
+
+				throw new NotFoundException("Unable to create relationship " + spec.getType() + " from node " + unwrap(spec.getStartNode()) + " to node " + unwrap(spec.getEndNode()) + ", node not found");
+			}
+
+			results.add(created[i]);
+		}
+
+		// relationship caches of the affected nodes are invalid now
+		for (final RelationshipSpec spec : chunk) {
+
+			NodeWrapper.newInstance(this, unwrap(spec.getStartNode())).onRelationshipCreated();
+			NodeWrapper.newInstance(this, unwrap(spec.getEndNode())).onRelationshipCreated();
+		}
+	}
+
+	private void prefetchRelationshipChunk(final List<NodeWrapper> chunk, final Direction direction, final RelationshipType relationshipType) {
+
+		final Map<Long, List<Relationship>> relationships = new LinkedHashMap<>();
+		final Map<String, Object> parameters              = new HashMap<>();
+		final StringBuilder buf                           = new StringBuilder();
+		final String type                                 = relationshipType.name();
+
+		buf.append("MATCH (n");
+		appendTenantIdentifier(buf);
+
+		switch (direction) {
+
+			case OUTGOING:
+				buf.append(")-[r:").append(type).append("]->(o)");
+				break;
+
+			case INCOMING:
+				buf.append(")<-[r:").append(type).append("]-(o)");
+				break;
+
+			default:
+				buf.append(")-[r:").append(type).append("]-(o)");
+				break;
+		}
+
+		buf.append(" WHERE ID(n) IN $ids RETURN ID(n) AS id, r, o ORDER BY r.internalTimestamp");
+
+		// nodes without relationships are cached with an empty result
+		for (final NodeWrapper node : chunk) {
+			relationships.put(node.getDatabaseId(), new ArrayList<>());
+		}
+
+		parameters.put("ids", new ArrayList<>(relationships.keySet()));
+
+		try {
+
+			for (final Map<String, Object> data : execute(buf.toString(), parameters)) {
+
+				final List<Relationship> list = relationships.get(((Number)data.get("id")).longValue());
+				if (list != null) {
+
+					// wrapping the other node puts it into the node cache, so
+					// that resolving the relationship later needs no lookup
+					data.get("o");
+
+					list.add((Relationship)data.get("r"));
+				}
+			}
+
+		} catch (ClientException dex) {
+			throw SessionTransaction.translateClientException(dex);
+		} catch (DatabaseException dex) {
+			throw SessionTransaction.translateDatabaseException(dex);
+		}
+
+		for (final NodeWrapper node : chunk) {
+			node.prefetched(direction, relationshipType, relationships.get(node.getDatabaseId()));
+		}
+	}
+
+	private void appendTenantIdentifier(final StringBuilder buf) {
+
+		if (tenantId != null) {
+
+			buf.append(":");
+			buf.append(tenantId);
+		}
+	}
+
+	private void appendLabels(final StringBuilder buf, final Set<String> labels) {
+
+		for (final String label : labels) {
+
+			buf.append(":");
+			buf.append(label);
+		}
+	}
+
 	private void createUUIDConstraint() {
 
 		// add UUID uniqueness constraint
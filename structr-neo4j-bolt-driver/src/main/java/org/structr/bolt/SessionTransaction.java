@@ -64,10 +64,12 @@ public class SessionTransaction implements org.structr.api.Transaction {
 	private final Set<EntityWrapper> modifiedEntities = new HashSet<>();
 	private final Set<Long> deletedNodes              = new HashSet<>();
 	private final Set<Long> deletedRels               = new HashSet<>();
+	private final Set<Long> changedNodes              = new HashSet<>();
 	private BoltDatabaseService db                    = null;
 	private Session session                           = null;
 	private Transaction tx                            = null;
 	private long transactionId                        = 0L;
+	private long queryCount                           = 0L;
 	private boolean closed                            = false;
 	private boolean success                           = false;
 	private boolean isPing                            = false;
@@ -145,6 +147,12 @@ public class SessionTransaction implements org.structr.api.Transaction {
 				entity.onClose();
 			}
 
+			// concurrent transactions can have filled the relationship caches
+			// of these nodes with the state before the commit
+			if (success) {
+				NodeWrapper.clearCaches(changedNodes);
+			}
+
 			// make sure that the resources are freed
 			if (session.isOpen()) {
 				session.close();
@@ -164,7 +172,6 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
-			logQuery(statement);
 			return getBoolean(statement, Collections.EMPTY_MAP);
 
 		} catch (TransientException tex) {
@@ -210,7 +217,6 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 		try {
 
-			logQuery(statement);
 			return getLong(statement, Collections.EMPTY_MAP);
 
 		} catch (TransientException tex) {
@@ -496,6 +502,9 @@ public class SessionTransaction implements org.structr.api.Transaction {
 
 	public void logQuery(final String statement, final Map<String, Object> map) {
 
+		// every statement is logged exactly once before it is run
+		queryCount++;
+
 		if (db.logQueries()) {
 
 			if (!isPing || db.logPingQueries()) {
@@ -524,6 +533,10 @@ public class SessionTransaction implements org.structr.api.Transaction {
 		deletedRels.add(wrapper.getDatabaseId());
 	}
 
+	public void relationshipsChanged(final long nodeId) {
+		changedNodes.add(nodeId);
+	}
+
 	public void modified(final EntityWrapper wrapper) {
 		modifiedEntities.add(wrapper);
 	}
@@ -537,6 +550,11 @@ public class SessionTransaction implements org.structr.api.Transaction {
 		return this.transactionId;
 	}
 
+	@Override
+	public long getQueryCount() {
+		return this.queryCount;
+	}
+
 	// ----- public static methods -----
 	public static RuntimeException translateClientException(final ClientException cex) {
 
@@ -20,11 +20,12 @@ package org.structr.bolt.index;
 
 import java.util.Iterator;
 import java.util.Map;
+import org.neo4j.driver.v1.types.Entity;
 import org.structr.bolt.BoltDatabaseService;
 
 /**
  */
-public abstract class AbstractResultStream<T> implements Iterable<T> {
+public abstract class AbstractResultStream<T extends Entity> implements Iterable<T> {
 
 	private Iterable<T> result     = null;
 	private CypherQuery query      = null;
@@ -45,6 +46,7 @@ public abstract class AbstractResultStream<T> implements Iterable<T> {
 		return new Iterator<T>() {
 
 			private int remaining = 0;
+			private T last        = null;
 
 			@Override
 			public boolean hasNext() {
@@ -57,6 +59,11 @@ public abstract class AbstractResultStream<T> implements Iterable<T> {
 						// reset count
 						remaining = query.pageSize();
 
+						// keyset queries continue after the last element
+						if (last != null) {
+							query.continueAfter(last.id());
+						}
+
 						final String statement            = query.getStatement();
 						final Map<String, Object> params  = query.getParameters();
 
@@ -83,8 +90,11 @@ public abstract class AbstractResultStream<T> implements Iterable<T> {
 
 			@Override
 			public T next() {
+
 				remaining--;
-				return current.next();
+				last = current.next();
+
+				return last;
 			}
 		};
 	}
@@ -18,11 +18,14 @@
  */
 package org.structr.bolt.index;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import org.neo4j.driver.v1.types.Entity;
 import org.structr.api.search.QueryContext;
 import org.structr.api.search.SortType;
 
@@ -62,6 +65,11 @@ public class AdvancedCypherQuery implements CypherQuery {
 		page++;
 	}
 
+	@Override
+	public void continueAfter(final long id) {
+		// offset-based paging, nothing to do
+	}
+
 	@Override
 	public int pageSize() {
 		return this.pageSize;
@@ -71,10 +79,39 @@ public class AdvancedCypherQuery implements CypherQuery {
 		return sortKey;
 	}
 
+	public boolean isKeyset() {
+		return queryContext.isKeyset();
+	}
+
+	/**
+	 * Records the keyset position of the given result element in
+	 * the query context, so that a cursor for the next page can be
+	 * created.
+	 *
+	 * @param entity
+	 */
+	public void keysetPosition(final Entity entity) {
+
+		Object value = null;
+
+		if (sortKey != null) {
+
+			value = entity.get(sortKey).asObject();
+
+			// numeric sort keys are compared with COALESCE(sortKey, -1)
+			if (value == null && !SortType.Default.equals(sortType)) {
+				value = -1L;
+			}
+		}
+
+		queryContext.keysetPosition(entity.id(), value);
+	}
+
 	@Override
 	public String getStatement() {
 
 		final StringBuilder buf = new StringBuilder();
+		final String where      = getWhereClause();
 		final int typeCount     = typeLabels.size();
 
 		switch (typeCount) {
@@ -83,9 +120,9 @@ public class AdvancedCypherQuery implements CypherQuery {
 
 				buf.append(index.getQueryPrefix(null, sourceTypeLabel, targetTypeLabel));
 
-				if (buffer.length() > 0) {
+				if (where.length() > 0) {
 					buf.append(" WHERE ");
-					buf.append(buffer);
+					buf.append(where);
 				}
 
 				buf.append(index.getQuerySuffix(this));
@@ -95,9 +132,9 @@ public class AdvancedCypherQuery implements CypherQuery {
 
 				buf.append(index.getQueryPrefix(typeLabels.get(0), sourceTypeLabel, targetTypeLabel));
 
-				if (buffer.length() > 0) {
+				if (where.length() > 0) {
 					buf.append(" WHERE ");
-					buf.append(buffer);
+					buf.append(where);
 				}
 
 				buf.append(index.getQuerySuffix(this));
@@ -110,9 +147,9 @@ public class AdvancedCypherQuery implements CypherQuery {
 
 					buf.append(index.getQueryPrefix(it.next(), sourceTypeLabel, targetTypeLabel));
 
-					if (buffer.length() > 0) {
+					if (where.length() > 0) {
 						buf.append(" WHERE ");
-						buf.append(buffer);
+						buf.append(where);
 					}
 
 					buf.append(index.getQuerySuffix(this));
@@ -150,6 +187,20 @@ public class AdvancedCypherQuery implements CypherQuery {
 			if (sortDescending) {
 				buf.append(" DESC");
 			}
+
+			if (queryContext.isKeyset()) {
+
+				// internal id makes the sort order unique
+				buf.append(", internalId");
+
+				if (sortDescending) {
+					buf.append(" DESC");
+				}
+			}
+
+		} else if (queryContext.isKeyset()) {
+
+			buf.append(" ORDER BY internalId");
 		}
 
 		if (queryContext.isSliced()) {
@@ -168,6 +219,70 @@ public class AdvancedCypherQuery implements CypherQuery {
 		return parameters;
 	}
 
+	// ----- private methods -----
+	private String getWhereClause() {
+
+		if (!queryContext.isKeyset() || !queryContext.hasKeysetPosition()) {
+			return buffer.toString();
+		}
+
+		final StringBuilder buf = new StringBuilder();
+		final Object value      = queryContext.getKeysetValue();
+		final String comparator = sortDescending ? " < " : " > ";
+
+		if (buffer.length() > 0) {
+
+			buf.append("(");
+			buf.append(buffer);
+			buf.append(") AND ");
+		}
+
+		parameters.put("keysetId", queryContext.getKeysetId());
+
+		if (sortKey == null) {
+
+			buf.append("ID(n) > $keysetId");
+
+		} else if (value == null) {
+
+			// null values are sorted last in ascending and first in descending order
+			buf.append("(n.`");
+			buf.append(sortKey);
+
+			if (sortDescending) {
+				buf.append("` IS NOT NULL OR ID(n) < $keysetId)");
+			} else {
+				buf.append("` IS NULL AND ID(n) > $keysetId)");
+			}
+
+		} else {
+
+			final String expression = SortType.Default.equals(sortType) ? "n.`" + sortKey + "`" : "COALESCE(n.`" + sortKey + "`, -1)";
+
+			parameters.put("keysetValue", value);
+
+			buf.append("(");
+			buf.append(expression);
+			buf.append(comparator);
+			buf.append("$keysetValue OR (");
+			buf.append(expression);
+			buf.append(" = $keysetValue AND ID(n)");
+			buf.append(comparator);
+			buf.append("$keysetId)");
+
+			if (!sortDescending && SortType.Default.equals(sortType)) {
+
+				buf.append(" OR n.`");
+				buf.append(sortKey);
+				buf.append("` IS NULL");
+			}
+
+			buf.append(")");
+		}
+
+		return buf.toString();
+	}
+
 	public void beginGroup() {
 		buffer.append("(");
 	}
@@ -313,6 +428,35 @@ public class AdvancedCypherQuery implements CypherQuery {
 		parameters.put(paramKey2, value2);
 	}
 
+	/**
+	 * Adds a predicate that restricts the result to nodes that are
+	 * visible to authenticated users, that are one of the given
+	 * principals, that are owned by one of the given principals or
+	 * that have a SECURITY relationship from one of the principals
+	 * which grants the given permission.
+	 *
+	 * @param principalIds
+	 * @param permission
+	 */
+	public void addPermissionParameter(final Collection<String> principalIds, final String permission) {
+
+		final String principalKey  = "param" + count++;
+		final String permissionKey = "param" + count++;
+
+		buffer.append("(n.visibleToPublicUsers = true OR n.visibleToAuthenticatedUsers = true OR n.id IN {");
+		buffer.append(principalKey);
+		buffer.append("} OR size([(n)<-[:OWNS]-(o) WHERE o.id IN {");
+		buffer.append(principalKey);
+		buffer.append("} | 1]) > 0 OR size([(n)<-[s:SECURITY]-(o) WHERE o.id IN {");
+		buffer.append(principalKey);
+		buffer.append("} AND {");
+		buffer.append(permissionKey);
+		buffer.append("} IN s.allowed | 1]) > 0)");
+
+		parameters.put(principalKey,  new ArrayList<>(principalIds));
+		parameters.put(permissionKey, permission);
+	}
+
 	@Override
 	public void sort(final SortType sortType, final String sortKey, final boolean sortDescending) {
 
@@ -79,6 +79,10 @@ public class CypherNodeIndex extends AbstractCypherIndex<Node> {
 			buf.append("` AS sortKey");
 		}
 
+		if (query.isKeyset()) {
+			buf.append(", ID(n) AS internalId");
+		}
+
 		return buf.toString();
 	}
 
@@ -90,7 +94,14 @@ public class CypherNodeIndex extends AbstractCypherIndex<Node> {
 
 			tx.setIsPing(query.getQueryContext().isPing());
 
-			return Iterables.map(new NodeNodeMapper(db), tx.getNodes(query.getStatement(), query.getParameters()));
+			final Iterable<org.neo4j.driver.v1.types.Node> nodes = tx.getNodes(query.getStatement(), query.getParameters());
+
+			if (query.isKeyset()) {
+
+				return Iterables.map(new NodeNodeMapper(db), Iterables.map(n -> { query.keysetPosition(n); return n; }, nodes));
+			}
+
+			return Iterables.map(new NodeNodeMapper(db), nodes);
 
 		} finally {
 
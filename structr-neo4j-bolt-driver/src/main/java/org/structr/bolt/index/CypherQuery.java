@@ -28,6 +28,7 @@ public interface CypherQuery extends DatabaseQuery {
 
 	int pageSize();
 	void nextPage();
+	void continueAfter(final long id);
 
 	String getStatement();
 	Map<String, Object> getParameters();
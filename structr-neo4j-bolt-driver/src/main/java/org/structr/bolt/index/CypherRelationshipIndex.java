@@ -90,6 +90,10 @@ public class CypherRelationshipIndex extends AbstractCypherIndex<Relationship> {
 			buf.append("` AS sortKey");
 		}
 
+		if (query.isKeyset()) {
+			buf.append(", ID(n) AS internalId");
+		}
+
 		return buf.toString();
 	}
 
@@ -100,6 +104,13 @@ public class CypherRelationshipIndex extends AbstractCypherIndex<Relationship> {
 
 		tx.setIsPing(query.getQueryContext().isPing());
 
-		return Iterables.map(new RelationshipRelationshipMapper(db), tx.getRelationships(query.getStatement(), query.getParameters()));
+		final Iterable<org.neo4j.driver.v1.types.Relationship> relationships = tx.getRelationships(query.getStatement(), query.getParameters());
+
+		if (query.isKeyset()) {
+
+			return Iterables.map(new RelationshipRelationshipMapper(db), Iterables.map(r -> { query.keysetPosition(r); return r; }, relationships));
+		}
+
+		return Iterables.map(new RelationshipRelationshipMapper(db), relationships);
 	}
 }
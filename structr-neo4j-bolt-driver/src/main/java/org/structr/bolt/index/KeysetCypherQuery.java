@@ -0,0 +1,126 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.bolt.index;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.structr.api.search.QueryContext;
+import org.structr.api.search.SortType;
+
+/**
+ * A query that pages through its result by internal id instead of
+ * SKIP/LIMIT, so that fetching the next page does not require the
+ * database to skip over all previous pages again.
+ */
+public class KeysetCypherQuery implements CypherQuery {
+
+	private final Map<String, Object> params = new LinkedHashMap<>();
+	private QueryContext queryContext        = new QueryContext();
+	private String identifier                = null;
+	private String condition                 = null;
+	private String match                     = null;
+	private int pageSize                     = 0;
+
+	/**
+	 * Creates a new keyset query from the given MATCH clause, an optional
+	 * WHERE condition and the identifier of the entity to return.
+	 *
+	 * @param match the MATCH clause, without WHERE
+	 * @param condition the WHERE condition, or null
+	 * @param identifier the identifier of the entity to return
+	 */
+	public KeysetCypherQuery(final String match, final String condition, final String identifier) {
+
+		this.pageSize   = 100000;
+		this.match      = match;
+		this.condition  = condition;
+		this.identifier = identifier;
+
+		params.put("lastId", -1L);
+	}
+
+	@Override
+	public void nextPage() {
+	}
+
+	@Override
+	public void continueAfter(final long id) {
+		params.put("lastId", id);
+	}
+
+	@Override
+	public int pageSize() {
+		return this.pageSize;
+	}
+
+	@Override
+	public String getStatement() {
+
+		final StringBuilder buf = new StringBuilder(match);
+
+		buf.append(" WHERE ");
+
+		if (condition != null) {
+
+			buf.append(condition);
+			buf.append(" AND ");
+		}
+
+		buf.append("ID(");
+		buf.append(identifier);
+		buf.append(") > $lastId RETURN ");
+		buf.append(identifier);
+		buf.append(" ORDER BY ID(");
+		buf.append(identifier);
+		buf.append(") LIMIT ");
+		buf.append(pageSize);
+
+		return buf.toString();
+	}
+
+	@Override
+	public Map<String, Object> getParameters() {
+		return params;
+	}
+
+	@Override
+	public void and() {
+	}
+
+	@Override
+	public void or() {
+	}
+
+	@Override
+	public void not() {
+	}
+
+	@Override
+	public void andNot() {
+	}
+
+	@Override
+	public void sort(final SortType sortType, final String sortKey, final boolean sortDescending) {
+	}
+
+	@Override
+	public QueryContext getQueryContext() {
+		return queryContext;
+	}
+}
@@ -45,6 +45,11 @@ public class SimpleCypherQuery implements CypherQuery {
 		page++;
 	}
 
+	@Override
+	public void continueAfter(final long id) {
+		// offset-based paging, nothing to do
+	}
+
 	@Override
 	public int pageSize() {
 		return this.pageSize;
@@ -36,7 +36,7 @@ import org.structr.api.graph.Label;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
 import org.structr.api.graph.RelationshipType;
-import org.structr.api.util.FixedSizeCache;
+import org.structr.api.util.ConcurrentFixedSizeCache;
 import org.structr.api.util.Iterables;
 import org.structr.bolt.BoltDatabaseService;
 import org.structr.bolt.SessionTransaction;
@@ -49,7 +49,7 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 
 	private static final Logger logger                                           = LoggerFactory.getLogger(NodeWrapper.class);
 	private final Map<String, Map<String, RelationshipResult>> relationshipCache = new HashMap<>();
-	private static FixedSizeCache<Long, NodeWrapper> nodeCache                   = null;
+	private static ConcurrentFixedSizeCache<Long, NodeWrapper> nodeCache         = null;
 	private boolean dontUseCache                                                 = false;
 
 	protected NodeWrapper() {
@@ -62,7 +62,7 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 	}
 
 	public static void initialize(final int cacheSize) {
-		nodeCache = new FixedSizeCache<>(cacheSize);
+		nodeCache = new ConcurrentFixedSizeCache<>(cacheSize);
 	}
 
 	@Override
@@ -136,6 +136,18 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		return createdRelationship;
 	}
 
+	/**
+	 * Invalidates the relationship cache of this node after relationships
+	 * were created without calling createRelationshipTo, e.g. in bulk.
+	 */
+	public void onRelationshipCreated() {
+
+		dontUseCache = true;
+		relationshipCache.clear();
+
+		setModified();
+	}
+
 	@Override
 	public void addLabel(final Label label) {
 
@@ -311,6 +323,35 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 		list.add(rel);
 	}
 
+	/**
+	 * Indicates whether the relationships of the given direction and type
+	 * are neither cached nor excluded from caching, i.e. whether it makes
+	 * sense to prefetch them.
+	 *
+	 * @param direction
+	 * @param relationshipType
+	 * @return whether the relationships should be prefetched
+	 */
+	public boolean needsPrefetch(final Direction direction, final RelationshipType relationshipType) {
+		return !stale && !dontUseCache && getRelationshipCache(direction, relationshipType).set == null;
+	}
+
+	/**
+	 * Fills the relationship cache for the given direction and type with
+	 * relationships that were loaded for a batch of nodes at once.
+	 *
+	 * @param direction
+	 * @param relationshipType
+	 * @param relationships
+	 */
+	public void prefetched(final Direction direction, final RelationshipType relationshipType, final List<Relationship> relationships) {
+
+		if (!dontUseCache) {
+
+			getRelationshipCache(direction, relationshipType).fill(relationships);
+		}
+	}
+
 	// ----- protected methods -----
 	@Override
 	protected boolean isNode() {
@@ -350,72 +391,67 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 
 	// ----- public static methods -----
 	public static NodeWrapper newInstance(final BoltDatabaseService db, final org.neo4j.driver.v1.types.Node node) {
-
-		synchronized (nodeCache) {
-
-			NodeWrapper wrapper = nodeCache.get(node.id());
-			if (wrapper == null || wrapper.stale) {
-
-				wrapper = new NodeWrapper(db, node);
-				nodeCache.put(node.id(), wrapper);
-			}
-
-			return wrapper;
-		}
+		return nodeCache.get(node.id(), w -> !w.stale, k -> new NodeWrapper(db, node));
 	}
 
 	public static NodeWrapper newInstance(final BoltDatabaseService db, final long id) {
 
-		synchronized (nodeCache) {
+		final NodeWrapper wrapper = nodeCache.get(id);
+		if (wrapper != null && !wrapper.stale) {
 
-			NodeWrapper wrapper = nodeCache.get(id);
-			if (wrapper == null || wrapper.stale) {
-
-				final SessionTransaction tx   = db.getCurrentTransaction();
-				final Map<String, Object> map = new HashMap<>();
-				final String tenantIdentifier = getTenantIdentifer(db);
+			return wrapper;
+		}
 
-				map.put("id", id);
+		final SessionTransaction tx   = db.getCurrentTransaction();
+		final Map<String, Object> map = new HashMap<>();
+		final String tenantIdentifier = getTenantIdentifer(db);
 
-				final Iterable<org.neo4j.driver.v1.types.Node> result   = tx.getNodes(concat("MATCH (n", tenantIdentifier, ") WHERE ID(n) = $id RETURN DISTINCT n"), map);
-				final Iterator<org.neo4j.driver.v1.types.Node> iterator = result.iterator();
+		map.put("id", id);
 
-				if (iterator.hasNext()) {
+		// database access happens outside of the cache lock, a concurrent
+		// load of the same node is resolved by putIfAbsent below
+		final Iterable<org.neo4j.driver.v1.types.Node> result   = tx.getNodes(concat("MATCH (n", tenantIdentifier, ") WHERE ID(n) = $id RETURN DISTINCT n"), map);
+		final Iterator<org.neo4j.driver.v1.types.Node> iterator = result.iterator();
 
-					wrapper = NodeWrapper.newInstance(db, iterator.next());
+		if (iterator.hasNext()) {
 
-					nodeCache.put(id, wrapper);
+			final org.neo4j.driver.v1.types.Node node = iterator.next();
 
-				} else {
+			// the miss was already counted above
+			return nodeCache.putIfAbsent(node.id(), w -> !w.stale, k -> new NodeWrapper(db, node));
+		}
 
-					throw new NotFoundException("Node with ID " + id + " not found.");
-				}
-			}
+		throw new NotFoundException("Node with ID " + id + " not found.");
+	}
 
-			return wrapper;
-		}
+	public static Map<String, Object> getCacheStatistics() {
+		return nodeCache.getStatistics();
 	}
 
 	// ----- package-private static methods
-	static FixedSizeCache<Long, NodeWrapper> getCache() {
+	static ConcurrentFixedSizeCache<Long, NodeWrapper> getCache() {
 		return nodeCache;
 	}
 
 	public static void expunge(final Set<Long> toRemove) {
+		nodeCache.removeAll(toRemove);
+	}
+
+	public static void clearCaches(final Set<Long> ids) {
+
+		for (final Long id : ids) {
 
-		synchronized (nodeCache) {
+			final NodeWrapper node = nodeCache.peek(id);
+			if (node != null) {
 
-			nodeCache.removeAll(toRemove);
+				node.clearCaches();
+			}
 		}
 	}
 
 	// ----- protected static methods -----
 	protected static void clearCache() {
-
-		synchronized (nodeCache) {
-
-			nodeCache.clear();
-		}
+		nodeCache.clear();
 	}
 
 	// ----- private static methods -----
@@ -460,6 +496,15 @@ public class NodeWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Node> i
 			}
 		}
 
+		public synchronized void fill(final List<Relationship> relationships) {
+
+			if (set == null) {
+
+				set = new TreeSet<>((o1, o2) -> { return compare("internalTimestamp", o1, o2); });
+				set.addAll(relationships);
+			}
+		}
+
 		public synchronized Iterable<Relationship> getResult(final BoltDatabaseService db, final long id, final String match, final String pattern, final String returnStatement) {
 
 			final RelationshipRelationshipMapper mapper = new RelationshipRelationshipMapper(db);
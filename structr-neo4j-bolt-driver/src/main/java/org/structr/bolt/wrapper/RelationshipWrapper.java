@@ -25,7 +25,7 @@ import org.structr.api.graph.Direction;
 import org.structr.api.graph.Node;
 import org.structr.api.graph.Relationship;
 import org.structr.api.graph.RelationshipType;
-import org.structr.api.util.FixedSizeCache;
+import org.structr.api.util.ConcurrentFixedSizeCache;
 import org.structr.bolt.BoltDatabaseService;
 import org.structr.bolt.SessionTransaction;
 
@@ -34,7 +34,7 @@ import org.structr.bolt.SessionTransaction;
  */
 public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types.Relationship> implements Relationship {
 
-	private static FixedSizeCache<Long, RelationshipWrapper> relationshipCache = null;
+	private static ConcurrentFixedSizeCache<Long, RelationshipWrapper> relationshipCache = null;
 
 	private long sourceNodeId = -1L;
 	private long targetNodeId = -1L;
@@ -55,7 +55,7 @@ public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types
 	}
 
 	public static void initialize(final int cacheSize) {
-		relationshipCache = new FixedSizeCache<>(cacheSize);
+		relationshipCache = new ConcurrentFixedSizeCache<>(cacheSize);
 	}
 
 	@Override
@@ -76,11 +76,7 @@ public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types
 	}
 
 	public static void expunge(final Set<Long> toRemove) {
-
-		synchronized (relationshipCache) {
-
-			relationshipCache.removeAll(toRemove);
-		}
+		relationshipCache.removeAll(toRemove);
 	}
 
 	@Override
@@ -131,13 +127,13 @@ public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types
 
 		super.delete(deleteRelationships);
 
-		final NodeWrapper startNode = NodeWrapper.getCache().get(sourceNodeId);
+		final NodeWrapper startNode = NodeWrapper.getCache().peek(sourceNodeId);
 		if (startNode != null) {
 
 			startNode.clearCaches();
 		}
 
-		final NodeWrapper endNode = NodeWrapper.getCache().get(targetNodeId);
+		final NodeWrapper endNode = NodeWrapper.getCache().peek(targetNodeId);
 		if (endNode != null) {
 
 			endNode.clearCaches();
@@ -145,6 +141,10 @@ public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types
 
 		final SessionTransaction tx = db.getCurrentTransaction();
 		tx.deleted(this);
+
+		// the end nodes may not be cached now, but their caches must be cleared after commit
+		tx.relationshipsChanged(sourceNodeId);
+		tx.relationshipsChanged(targetNodeId);
 	}
 
 	public Direction getDirectionForNode(final NodeWrapper node) {
@@ -168,55 +168,47 @@ public class RelationshipWrapper extends EntityWrapper<org.neo4j.driver.v1.types
 	}
 
 	public static RelationshipWrapper newInstance(final BoltDatabaseService db, final org.neo4j.driver.v1.types.Relationship relationship) {
+		return relationshipCache.get(relationship.id(), w -> !w.stale, k -> new RelationshipWrapper(db, relationship));
+	}
 
-		synchronized (relationshipCache) {
-
-			RelationshipWrapper wrapper = relationshipCache.get(relationship.id());
-			if (wrapper == null || wrapper.stale) {
+	public static RelationshipWrapper newInstance(final BoltDatabaseService db, final long id) {
 
-				wrapper = new RelationshipWrapper(db, relationship);
-				relationshipCache.put(relationship.id(), wrapper);
-			}
+		final RelationshipWrapper wrapper = relationshipCache.get(id);
+		if (wrapper != null && !wrapper.stale) {
 
 			return wrapper;
 		}
-	}
-
-	public static RelationshipWrapper newInstance(final BoltDatabaseService db, final long id) {
 
-		synchronized (relationshipCache) {
-
-			RelationshipWrapper wrapper = relationshipCache.get(id);
-			if (wrapper == null || wrapper.stale) {
+		final SessionTransaction tx   = db.getCurrentTransaction();
+		final Map<String, Object> map = new HashMap<>();
+		final StringBuilder buf       = new StringBuilder();
+		final String tenantIdentifier = db.getTenantIdentifier();
 
-				final SessionTransaction tx   = db.getCurrentTransaction();
-				final Map<String, Object> map = new HashMap<>();
-				final StringBuilder buf       = new StringBuilder();
-				final String tenantIdentifier = db.getTenantIdentifier();
+		map.put("id", id);
 
-				map.put("id", id);
+		buf.append("MATCH (");
 
-				buf.append("MATCH (");
+		if (tenantIdentifier != null) {
+			buf.append(":");
+			buf.append(tenantIdentifier);
+		}
 
-				if (tenantIdentifier != null) {
-					buf.append(":");
-					buf.append(tenantIdentifier);
-				}
+		buf.append(")-[n]-(");
 
-				buf.append(")-[n]-(");
+		if (tenantIdentifier != null) {
+			buf.append(":");
+			buf.append(tenantIdentifier);
+		}
 
-				if (tenantIdentifier != null) {
-					buf.append(":");
-					buf.append(tenantIdentifier);
-				}
+		buf.append(") WHERE ID(n) = $id RETURN n");
 
-				buf.append(") WHERE ID(n) = $id RETURN n");
+		final org.neo4j.driver.v1.types.Relationship relationship = tx.getRelationship(buf.toString(), map);
 
-				wrapper = new RelationshipWrapper(db, tx.getRelationship(buf.toString(), map));
-					relationshipCache.put(id, wrapper);
-				}
+		// the miss was already counted above
+		return relationshipCache.putIfAbsent(relationship.id(), w -> !w.stale, k -> new RelationshipWrapper(db, relationship));
+	}
 
-			return wrapper;
-		}
+	public static Map<String, Object> getCacheStatistics() {
+		return relationshipCache.getStatistics();
 	}
 }
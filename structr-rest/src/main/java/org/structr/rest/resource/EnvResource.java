@@ -18,25 +18,35 @@
  */
 package org.structr.rest.resource;
 
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import javax.servlet.http.HttpServletRequest;
 import org.structr.api.service.LicenseManager;
 import org.structr.api.util.PagingIterable;
 import org.structr.api.util.ResultStream;
+import org.structr.common.AccessPathCache;
 import org.structr.common.SecurityContext;
 import org.structr.common.VersionHelper;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObjectMap;
 import org.structr.core.Services;
+import org.structr.core.app.StructrApp;
+import org.structr.core.function.Functions;
+import org.structr.core.graph.NodeService;
 import org.structr.core.property.ArrayProperty;
 import org.structr.core.property.GenericProperty;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.StringProperty;
+import org.structr.core.script.Scripting;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.exception.IllegalMethodException;
 import org.structr.rest.exception.IllegalPathException;
+import org.structr.rest.serialization.GraphQLWriter;
+import org.structr.schema.compiler.NodeExtender;
 
 /**
  *
@@ -44,10 +54,23 @@ import org.structr.rest.exception.IllegalPathException;
  */
 public class EnvResource extends Resource {
 
+	private static final Map<String, Supplier<Map<String, Object>>> cacheStatistics = new ConcurrentHashMap<>();
+
 	public enum UriPart {
 		_env
 	}
 
+	/**
+	 * Registers the statistics of a cache that is not part of the core,
+	 * so they are included in the output of this resource.
+	 *
+	 * @param name
+	 * @param statistics
+	 */
+	public static void registerCacheStatistics(final String name, final Supplier<Map<String, Object>> statistics) {
+		cacheStatistics.put(name, statistics);
+	}
+
 	@Override
 	public boolean checkAndConfigure(String part, SecurityContext securityContext, HttpServletRequest request) throws FrameworkException {
 
@@ -84,6 +107,28 @@ public class EnvResource extends Resource {
 			info.setProperty(new StringProperty("licensee"), "Unlicensed");
 		}
 
+		if (securityContext.isSuperUser()) {
+
+			final NodeService nodeService = Services.getInstance().getService(NodeService.class);
+			if (nodeService != null) {
+
+				final Map<String, Map<String, Object>> caches = new LinkedHashMap<>(nodeService.getDatabaseService().getCacheStatistics());
+
+				caches.put("permissions", AccessPathCache.getStatistics());
+				caches.put("scripts",     Scripting.getCacheStatistics());
+				caches.put("expressions", Functions.getCacheStatistics());
+				caches.put("uuids",       StructrApp.getUuidCacheStatistics());
+				caches.put("schema",      NodeExtender.getCompilerStatistics());
+				caches.put("graphql",     GraphQLWriter.getStatistics());
+
+				for (final Map.Entry<String, Supplier<Map<String, Object>>> entry : cacheStatistics.entrySet()) {
+					caches.put(entry.getKey(), entry.getValue().get());
+				}
+
+				info.setProperty(new GenericProperty("caches"), caches);
+			}
+		}
+
 		resultList.add(info);
 
 		return new PagingIterable(resultList);
@@ -52,6 +52,7 @@ import org.structr.core.property.PropertyMap;
 import org.structr.rest.RestMethodResult;
 import org.structr.rest.exception.IllegalPathException;
 import org.structr.rest.exception.NotFoundException;
+import org.structr.rest.servlet.JsonRestServlet;
 import org.structr.schema.SchemaHelper;
 
 /**
@@ -139,6 +140,32 @@ public class TypeResource extends WrappingResource {
 
 			} else {
 
+				final String cursor = request != null ? request.getParameter(JsonRestServlet.REQUEST_PARAMETER_CURSOR) : null;
+				if (cursor != null) {
+
+					try {
+
+						// keyset pagination: the cursor replaces the page parameter
+						query.getQueryContext().keyset(cursor).slice(0, pageSize);
+
+					} catch (IllegalArgumentException iex) {
+
+						throw new FrameworkException(422, iex.getMessage());
+					}
+
+					// total result count is not available for keyset pagination
+					securityContext.ignoreResultCount(true);
+
+					return query
+						.includeHidden(includeHidden)
+						.publicOnly(publicOnly)
+						.sort(sortKey)
+						.order(sortDescending)
+						.pageSize(pageSize)
+						.page(1)
+						.getResultStream();
+				}
+
 				return query
 					.includeHidden(includeHidden)
 					.publicOnly(publicOnly)
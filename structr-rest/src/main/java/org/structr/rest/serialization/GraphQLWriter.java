@@ -30,15 +30,19 @@ import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.Predicate;
+import org.structr.api.config.Settings;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.converter.PropertyConverter;
 import org.structr.core.function.Functions;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.core.graphql.GraphQLQueryConfiguration;
 import org.structr.core.graphql.GraphQLRequest;
 import org.structr.core.property.PropertyKey;
@@ -51,6 +55,9 @@ import org.structr.schema.SchemaService;
 public class GraphQLWriter {
 
 	private static final Logger logger                   = LoggerFactory.getLogger(GraphQLWriter.class.getName());
+	private static final LongAdder queryCount            = new LongAdder();
+	private static final LongAdder roundTripCount        = new LongAdder();
+	private static final AtomicLong maxRoundTrips        = new AtomicLong();
 
 	private final Map<String, Serializer> serializerCache = new LinkedHashMap<>();
 	private final Map<String, Serializer> serializers     = new LinkedHashMap<>();
@@ -119,15 +126,32 @@ public class GraphQLWriter {
 
 			for (final GraphQLQuery query : request.getQueries()) {
 
+				final long roundTrips0 = getQueryCount();
+
 				writer.name(query.getFieldName());
 				writer.beginArray();
 
-				for (final GraphObject object : query.getEntities(securityContext)) {
+				final Iterable<GraphObject> entities = query.getEntities(securityContext);
+
+				// load related nodes level by level before serialization
+				if (Settings.GraphQLPrefetch.getValue()) {
+					query.prefetch(entities);
+				}
+
+				for (final GraphObject object : entities) {
 
 					root.serialize(writer, null, object, query, query.getRootPath());
 				}
 
 				writer.endArray();
+
+				final long roundTrips = getQueryCount() - roundTrips0;
+
+				queryCount.increment();
+				roundTripCount.add(roundTrips);
+				maxRoundTrips.accumulateAndGet(roundTrips, Math::max);
+
+				logger.debug("GraphQL query {} needed {} database round-trips", query.getFieldName(), roundTrips);
 			}
 
 			// finished
@@ -136,6 +160,37 @@ public class GraphQLWriter {
 		}
 	}
 
+	/**
+	 * Returns the number of executed GraphQL queries and the database
+	 * round-trips they needed.
+	 *
+	 * @return the statistics
+	 */
+	public static Map<String, Object> getStatistics() {
+
+		final Map<String, Object> stats = new LinkedHashMap<>();
+		final long queries              = queryCount.sum();
+		final long roundTrips           = roundTripCount.sum();
+
+		stats.put("queries",           queries);
+		stats.put("roundTrips",        roundTrips);
+		stats.put("averageRoundTrips", queries > 0 ? (double)roundTrips / queries : 0.0);
+		stats.put("maxRoundTrips",     maxRoundTrips.get());
+
+		return stats;
+	}
+
+	// ----- private methods -----
+	private long getQueryCount() {
+
+		if (TransactionCommand.inTransaction()) {
+
+			return TransactionCommand.getCurrentQueryCount();
+		}
+
+		return 0L;
+	}
+
 	private Serializer getSerializerForType(final Class type) {
 
 		Class localType       = type;
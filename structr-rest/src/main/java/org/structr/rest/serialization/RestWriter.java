@@ -48,6 +48,11 @@ public interface RestWriter {
 	public RestWriter value(final Number value) throws IOException;
 
 	public void raw(final String data) throws IOException;
+
+	default public void raw(final char[] data, final int offset, final int length) throws IOException {
+		raw(new String(data, offset, length));
+	}
+
 	public void flush() throws IOException;
 
 	default public void increaseSerializationDepth() {
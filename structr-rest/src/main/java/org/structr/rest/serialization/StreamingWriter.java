@@ -18,11 +18,12 @@
  */
 package org.structr.rest.serialization;
 
+import java.io.CharArrayWriter;
 import java.io.IOException;
-import java.io.StringWriter;
 import java.io.Writer;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -32,9 +33,16 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.commons.collections4.ListUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,6 +70,11 @@ public abstract class StreamingWriter {
 	private static final Logger logger                   = LoggerFactory.getLogger(StreamingWriter.class.getName());
 	private static final Set<PropertyKey> idTypeNameOnly = new LinkedHashSet<>();
 	private static final Set<String> restrictedViews     = new HashSet<>();
+	private static final int MAX_POOLED_BUFFER_SIZE      = 1024 * 1024;
+	private static final int INITIAL_BUFFER_SIZE         = 8192;
+
+	private static final BlockingQueue<SerializationBuffer> bufferPool = new ArrayBlockingQueue<>(64);
+	private static ThreadPoolExecutor threadPool                       = null;
 
 	static {
 
@@ -74,7 +87,6 @@ public abstract class StreamingWriter {
 		restrictedViews.add(PropertyView.Custom);
 	}
 
-	private final ExecutorService threadPool              = Executors.newWorkStealingPool();
 	private final Map<String, Serializer> serializerCache = new LinkedHashMap<>();
 	private final Map<String, Serializer> serializers     = new LinkedHashMap<>();
 	private final Serializer<GraphObject> root            = new RootSerializer();
@@ -176,6 +188,12 @@ public abstract class StreamingWriter {
 				rootWriter.name("page_size").value(pageSize);
 			}
 
+			final String nextCursor = result.getNextCursor();
+			if (nextCursor != null) {
+
+				rootWriter.name("next_cursor").value(nextCursor);
+			}
+
 			if (queryTime != null) {
 				rootWriter.name("query_time").value(queryTime);
 			}
@@ -195,8 +213,6 @@ public abstract class StreamingWriter {
 		// finished
 		rootWriter.endObject();
 		rootWriter.endDocument();
-
-		threadPool.shutdown();
 	}
 
 	public void setResultKeyName(final String resultKeyName) {
@@ -442,20 +458,58 @@ public abstract class StreamingWriter {
 				// prevent endless recursion by pruning at depth n
 				if (depth <= outputNestingDepth) {
 
-					// first value?
-					if (firstValue != null) {
-						serializeRoot(parentWriter, firstValue, localPropertyView, depth, visitedObjects);
-					}
+					if (secondValue != null && depth == 0 && parentWriter.getSecurityContext().doMultiThreadedJsonOutput()) {
+
+						final int threshold = Math.max(2, Settings.JsonParallelizationThreshold.getValue());
+						final List batch    = new ArrayList<>();
+
+						batch.add(firstValue);
+						batch.add(secondValue);
+
+						// only large collections are worth the overhead of parallel serialization,
+						// so collect no more than the threshold to find out
+						collect(iterator, batch, threshold);
+
+						if (batch.size() < threshold) {
+
+							for (final Object o : batch) {
+								serializeRoot(parentWriter, o, localPropertyView, depth, visitedObjects);
+							}
+
+						} else {
 
-					// second value?
-					if (secondValue != null) {
+							// serialize the collection in batches so that it is never held in memory completely
+							while (!batch.isEmpty()) {
 
-						serializeRoot(parentWriter, secondValue, localPropertyView, depth, visitedObjects);
+								doParallel(batch, parentWriter, visitedObjects, (w, o, v) -> serializeRoot(w, o, localPropertyView, depth, v));
 
-						// more values?
-						while (iterator.hasNext()) {
+								batch.clear();
 
-							serializeRoot(parentWriter, iterator.next(), localPropertyView, depth, visitedObjects);
+								collect(iterator, batch, threshold);
+
+								if (!batch.isEmpty()) {
+									parentWriter.raw(",");
+								}
+							}
+						}
+
+					} else {
+
+						// first value?
+						if (firstValue != null) {
+							serializeRoot(parentWriter, firstValue, localPropertyView, depth, visitedObjects);
+						}
+
+						// second value?
+						if (secondValue != null) {
+
+							serializeRoot(parentWriter, secondValue, localPropertyView, depth, visitedObjects);
+
+							// more values?
+							while (iterator.hasNext()) {
+
+								serializeRoot(parentWriter, iterator.next(), localPropertyView, depth, visitedObjects);
+							}
 						}
 					}
 				}
@@ -516,65 +570,124 @@ public abstract class StreamingWriter {
 	}
 
 	// ----- private methods -----
-	private void doParallel(final List list, final RestWriter parentWriter, final Set<Integer> visitedObjects, final Operation op) {
+	private void doParallel(final List list, final RestWriter parentWriter, final Set<Integer> visitedObjects, final Operation op) throws IOException {
 
-		final SecurityContext securityContext = parentWriter.getSecurityContext();
-		final int numberOfPartitions          = (int)Math.rint(Math.log(list.size())) + 1;
-		final List<List> partitions           = ListUtils.partition(list, numberOfPartitions);
-		final List<Future<String>> futures    = new LinkedList<>();
+		final SecurityContext securityContext           = parentWriter.getSecurityContext();
+		final int parallelism                           = Math.max(1, Settings.JsonParallelizationDegree.getValue());
+		final int partitionSize                         = Math.max(1, (list.size() + parallelism - 1) / parallelism);
+		final List<List> partitions                     = ListUtils.partition(list, partitionSize);
+		final List<Future<SerializationBuffer>> futures = new LinkedList<>();
+		final ThreadPoolExecutor executor               = getThreadPool();
 
 		for (final List partition : partitions) {
 
-			futures.add(threadPool.submit(() -> {
+			try {
+
+				futures.add(executor.submit(() -> {
+
+					// avoid deadlocks by preventing writes in this transaction
+					securityContext.setReadOnlyTransaction();
+
+					try (final Tx tx = StructrApp.getInstance(securityContext).tx(false, false, false)) {
 
-				final StringWriter buffer = new StringWriter();
+						final SerializationBuffer buffer = serializePartition(partition, securityContext, visitedObjects, op);
+
+						tx.success();
+
+						return buffer;
+					}
+				}));
 
-				// avoid deadlocks by preventing writes in this transaction
-				securityContext.setReadOnlyTransaction();
+			} catch (RejectedExecutionException rex) {
 
-				try (final Tx tx = StructrApp.getInstance(securityContext).tx(false, false, false)) {
+				// shared queue is full, serialize this partition in the request thread
+				final FutureTask<SerializationBuffer> task = new FutureTask<>(() -> serializePartition(partition, securityContext, visitedObjects, op));
 
-					final RestWriter bufferingRestWriter = getRestWriter(securityContext, buffer);
-					final Set<Integer> nestedObjects     = new LinkedHashSet<>(visitedObjects);
-					configureWriter(bufferingRestWriter);
+				task.run();
+				futures.add(task);
+			}
+		}
+
+		IOException error = null;
+
+		for (final Iterator<Future<SerializationBuffer>> it = futures.iterator(); it.hasNext();) {
+
+			try {
 
-					bufferingRestWriter.beginArray();
+				final SerializationBuffer buffer = it.next().get();
 
-					for (final Object o : partition) {
+				try {
 
-						op.run(bufferingRestWriter, o, nestedObjects);
+					if (error == null) {
+
+						buffer.writeContentTo(parentWriter);
+
+						if (it.hasNext()) {
+							parentWriter.raw(",");
+						}
 					}
 
-					bufferingRestWriter.endArray();
-					bufferingRestWriter.flush();
+				} finally {
+
+					releaseBuffer(buffer);
+				}
+
+			} catch (InterruptedException | ExecutionException ex) {
 
-					tx.success();
+				if (error == null) {
+					error = new IOException("Unable to serialize partition of JSON output", ex.getCause() != null ? ex.getCause() : ex);
 				}
 
-				final String data = buffer.toString();
-				final String sub  = data.substring(1, data.length() - 1);
+			} catch (IOException ioex) {
 
-				return sub;
+				if (error == null) {
+					error = ioex;
+				}
+			}
+		}
 
-			}));
+		if (error != null) {
+			throw error;
 		}
+	}
 
-		for (final Iterator<Future<String>> it = futures.iterator(); it.hasNext();) {
+	private void collect(final Iterator iterator, final List list, final int limit) {
 
-			try {
+		while (list.size() < limit && iterator.hasNext()) {
+			list.add(iterator.next());
+		}
+	}
 
-				final Future<String> future = it.next();
-				final String raw            = future.get();
+	private SerializationBuffer serializePartition(final List partition, final SecurityContext securityContext, final Set<Integer> visitedObjects, final Operation op) throws IOException {
 
-				parentWriter.raw(raw);
+		final SerializationBuffer buffer = acquireBuffer();
+		boolean success                  = false;
 
-				if (it.hasNext()) {
-					parentWriter.raw(",");
-				}
+		try {
+
+			final RestWriter bufferingRestWriter = getRestWriter(securityContext, buffer);
+			final Set<Integer> nestedObjects     = new LinkedHashSet<>(visitedObjects);
+
+			configureWriter(bufferingRestWriter);
 
-			} catch (Throwable t) {
+			bufferingRestWriter.beginArray();
 
-				t.printStackTrace();
+			for (final Object o : partition) {
+
+				op.run(bufferingRestWriter, o, nestedObjects);
+			}
+
+			bufferingRestWriter.endArray();
+			bufferingRestWriter.flush();
+
+			success = true;
+
+			return buffer;
+
+		} finally {
+
+			if (!success) {
+				releaseBuffer(buffer);
 			}
 		}
 	}
@@ -588,8 +701,86 @@ public abstract class StreamingWriter {
 		throw new NullPointerException();
 	}
 
+	// ----- private static methods -----
+	private static synchronized ThreadPoolExecutor getThreadPool() {
+
+		if (threadPool == null) {
+
+			final int threads   = Math.max(1, Settings.JsonParallelizationThreads.getValue());
+			final int queueSize = Math.max(1, Settings.JsonParallelizationQueueSize.getValue());
+
+			threadPool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), new SerializationThreadFactory());
+			threadPool.allowCoreThreadTimeOut(true);
+		}
+
+		return threadPool;
+	}
+
+	private static SerializationBuffer acquireBuffer() {
+
+		final SerializationBuffer buffer = bufferPool.poll();
+		if (buffer != null) {
+
+			return buffer;
+		}
+
+		return new SerializationBuffer();
+	}
+
+	private static void releaseBuffer(final SerializationBuffer buffer) {
+
+		// do not keep very large buffers around
+		if (buffer.capacity() <= MAX_POOLED_BUFFER_SIZE) {
+
+			buffer.reset();
+			bufferPool.offer(buffer);
+		}
+	}
+
+	// ----- nested classes -----
 	private interface Operation {
 
 		public void run(final RestWriter writer, final Object o, final Set<Integer> visitedObjects) throws IOException;
 	}
+
+	/**
+	 * Reusable character buffer for a serialized partition. The contents
+	 * are passed to the parent writer without copying them into a String.
+	 */
+	private static class SerializationBuffer extends CharArrayWriter {
+
+		public SerializationBuffer() {
+			super(INITIAL_BUFFER_SIZE);
+		}
+
+		public int capacity() {
+			return buf.length;
+		}
+
+		/**
+		 * Writes the contents of this buffer without the enclosing array brackets.
+		 */
+		public void writeContentTo(final RestWriter writer) throws IOException {
+
+			if (count > 2) {
+
+				writer.raw(buf, 1, count - 2);
+			}
+		}
+	}
+
+	private static class SerializationThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+
+			final Thread thread = new Thread(runnable, "StreamingWriter-" + count.incrementAndGet());
+
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
 }
@@ -149,6 +149,13 @@ public class StructrJsonWriter implements RestWriter {
 		rawWriter.flush();
 	}
 
+	@Override
+	public void raw(final char[] data, final int offset, final int length) throws IOException {
+		writer.flush();
+		rawWriter.write(data, offset, length);
+		rawWriter.flush();
+	}
+
 	@Override
 	public void flush() throws IOException {
 		writer.flush();
@@ -18,6 +18,15 @@
  */
 package org.structr.rest.service;
 
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import org.eclipse.jetty.server.session.AbstractSessionDataStore;
 import org.eclipse.jetty.server.session.SessionData;
 import org.slf4j.Logger;
@@ -28,16 +37,28 @@ import org.structr.common.error.FrameworkException;
 import org.structr.core.Services;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
+import org.structr.core.entity.Principal;
 import org.structr.core.entity.SessionDataNode;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.Tx;
-import org.structr.core.property.PropertyMap;
-
-import java.util.*;
-import org.structr.core.entity.Principal;
 import org.structr.core.property.PropertyKey;
+import org.structr.core.property.PropertyMap;
 
 /**
+ * Session data store that keeps all sessions in memory and writes the
+ * sessions of authenticated users to the database in the background.
+ *
+ * The persisted sessions are loaded once on first access, so that sessions
+ * survive a restart. After that, Jetty's calls to load, exists, store and
+ * getExpired are answered from memory. Changes are written every
+ * application.session.flush.interval seconds and when the store is
+ * stopped. Expiry candidates are found with a time wheel instead of a
+ * database query.
+ *
+ * When several instances share a database, a session that is not known
+ * in memory is looked up in the database, so that sessions stored by
+ * other instances can be used here as well. Changes become visible to
+ * other instances after the next flush.
  */
 public class StructrSessionDataStore extends AbstractSessionDataStore {
 
@@ -46,175 +67,329 @@ public class StructrSessionDataStore extends AbstractSessionDataStore {
 	private static final App app             = StructrApp.getInstance(ctx);
 	private static final Services services   = Services.getInstance();
 
-	private static final Map<String, SessionData> anonymousSessionCache = new HashMap<>();
+	private final Map<String, SessionData> sessions = new ConcurrentHashMap<>();
+	private final Map<String, SessionData> dirty    = new ConcurrentHashMap<>();
+	private final Set<String> deleted               = ConcurrentHashMap.newKeySet();
+	private final TimeWheel expiry                  = new TimeWheel(60000L);
+	private ScheduledExecutorService writer         = null;
+	private volatile boolean loaded                 = false;
 
 	@Override
 	public void doStore(final String id, final SessionData data, final long lastSaveTime) throws Exception {
 
-		assertInitialized();
+		assertLoaded();
 
-		try (final Tx tx = app.tx(true, false, false)) {
+		sessions.put(id, data);
+		deleted.remove(id);
+		dirty.put(id, data);
 
-			final PropertyKey<String[]> key = StructrApp.key(Principal.class, "sessionIds");
-			final String[] value            = new String[] { id };
-			final Principal user            = StructrApp.getInstance().nodeQuery(Principal.class).and(key, value).disableSorting().getFirst();
+		expiry.schedule(id, data.getLastAccessed() + getSessionTimeout());
+	}
 
-			if (user != null) {
+	@Override
+	public Set<String> doGetExpired(final Set<String> candidates) {
 
-				final SessionDataNode node = getOrCreateSessionDataNode(app, id);
-				if (node != null) {
+		assertLoaded();
 
-					final PropertyMap properties = new PropertyMap();
+		final long now     = System.currentTimeMillis();
+		final long timeout = getSessionTimeout();
 
-					properties.put(SessionDataNode.lastAccessed, new Date(data.getLastAccessed()));
-					properties.put(SessionDataNode.contextPath, data.getContextPath());
-					properties.put(SessionDataNode.vhost, data.getVhost());
+		for (final String id : expiry.advance(now)) {
 
-					node.setProperties(ctx, properties);
-				}
+			final SessionData data = sessions.get(id);
+			if (data != null) {
 
-				tx.success();
+				final long expires = data.getLastAccessed() + timeout;
+				if (expires < now) {
 
-			} else {
-				anonymousSessionCache.put(id, data);
-			}
+					candidates.add(id);
 
-		} catch (FrameworkException ex) {
+				} else {
 
-			logger.info("Unable to store session data for session id " + id + ".", ex);
+					// accessed again after it was scheduled
+					expiry.schedule(id, expires);
+				}
+			}
 		}
+
+		return candidates;
 	}
 
 	@Override
-	public Set<String> doGetExpired(final Set<String> candidates) {
-		final long sessionTimeout = Settings.SessionTimeout.getValue(1800) * 1000;
-		final Date timeoutDate    = new Date(System.currentTimeMillis() - sessionTimeout);
+	public boolean isPassivating() {
+		return true;
+	}
 
-		assertInitialized();
+	@Override
+	public boolean exists(final String id) throws Exception {
 
-		for (Map.Entry<String,SessionData> entry : anonymousSessionCache.entrySet()) {
-			SessionData data = entry.getValue();
-			if ( (new Date().getTime() - data.getLastAccessed()) > sessionTimeout) {
-				candidates.add(entry.getKey());
-			}
-		}
+		assertLoaded();
 
-		try (final Tx tx = app.tx(true, false, false)) {
+		return get(id) != null;
+	}
 
-			for (final SessionDataNode node : app.nodeQuery(SessionDataNode.class).andRange(SessionDataNode.lastAccessed, new Date(0), timeoutDate).getAsList()) {
+	@Override
+	public SessionData load(final String id) throws Exception {
 
-				candidates.add(node.getProperty(SessionDataNode.sessionId));
-			}
+		assertLoaded();
 
-			tx.success();
+		return get(id);
+	}
 
-		} catch (FrameworkException ex) {
+	@Override
+	public boolean delete(final String id) throws Exception {
 
-			logger.info("Unable to determine list of expired session candidates.");
-		}
+		assertLoaded();
 
-		return candidates;
-	}
+		sessions.remove(id);
+		dirty.remove(id);
+		deleted.add(id);
+
+		expiry.cancel(id);
 
-	@Override
-	public boolean isPassivating() {
 		return true;
 	}
 
 	@Override
-	public boolean exists(final String id) throws Exception {
+	public SessionData doLoad(String id) throws Exception {
+		return load(id);
+	}
 
-		if (anonymousSessionCache.containsKey(id)) {
-			return true;
+	/**
+	 * Writes all pending changes to the database.
+	 */
+	public void flush() {
+
+		if (dirty.isEmpty() && deleted.isEmpty()) {
+			return;
 		}
 
 		assertInitialized();
 
-		try (final Tx tx = app.tx(true, false, false)) {
+		final List<String> deletedIds = drain(deleted);
+		final List<String> storedIds  = drain(dirty.keySet());
 
-			final SessionDataNode node = app.nodeQuery(SessionDataNode.class).and(SessionDataNode.sessionId, id).getFirst();
+		try {
 
-			tx.success();
+			write(deletedIds, storedIds);
 
-			return node != null;
+		} catch (Throwable t) {
 
-		} catch (FrameworkException ex) {
+			logger.warn("Unable to store session data, will retry: {}", t.getMessage());
+
+			// changes that were made in the meantime take precedence
+			for (final String id : deletedIds) {
 
-			logger.info("Unable to determine if session data for " + id + " exists.", ex);
+				if (!sessions.containsKey(id)) {
+					deleted.add(id);
+				}
+			}
+
+			for (final String id : storedIds) {
+
+				final SessionData data = sessions.get(id);
+				if (data != null) {
+
+					dirty.putIfAbsent(id, data);
+				}
+			}
 		}
+	}
+
+	// ----- protected methods -----
+	@Override
+	protected void doStart() throws Exception {
+
+		super.doStart();
+
+		final int interval = Math.max(1, Settings.SessionFlushInterval.getValue());
 
-		return false;
+		writer = Executors.newSingleThreadScheduledExecutor(r -> {
+
+			final Thread thread = new Thread(r, "SessionDataWriter");
+			thread.setDaemon(true);
+
+			return thread;
+		});
+
+		writer.scheduleWithFixedDelay(this::flushSafely, interval, interval, TimeUnit.SECONDS);
 	}
 
 	@Override
-	public SessionData load(final String id) throws Exception {
+	protected void doStop() throws Exception {
+
+		if (writer != null) {
 
-		if (anonymousSessionCache.containsKey(id)) {
-			return anonymousSessionCache.get(id);
+			writer.shutdown();
+			writer.awaitTermination(10, TimeUnit.SECONDS);
+			writer = null;
 		}
 
-		assertInitialized();
+		if (!services.isShutdownDone()) {
+			flushSafely();
+		}
+
+		super.doStop();
+	}
+
+	// ----- private methods -----
+	private void flushSafely() {
+
+		try {
+
+			flush();
+
+		} catch (Throwable t) {
+
+			logger.warn("Unable to write session data: {}", t.getMessage());
+		}
+	}
+
+	private void write(final List<String> deletedIds, final List<String> storedIds) throws FrameworkException {
 
-		SessionData result        = null;
+		final PropertyKey<String[]> key = StructrApp.key(Principal.class, "sessionIds");
 
 		try (final Tx tx = app.tx(true, false, false)) {
 
-			final SessionDataNode node = app.nodeQuery(SessionDataNode.class).and(SessionDataNode.sessionId, id).getFirst();
-			if (node != null) {
-
-				result = new SessionData(
-					id,
-					node.getProperty(SessionDataNode.contextPath),
-					node.getProperty(SessionDataNode.vhost),
-					node.getCreatedDate().getTime(),
-					node.getLastModifiedDate().getTime(),
-					node.getLastModifiedDate().getTime(),
-					-1
-				);
+			for (final String id : deletedIds) {
+
+				// delete nodes
+				for (final SessionDataNode node : app.nodeQuery(SessionDataNode.class).and(SessionDataNode.sessionId, id).getAsList()) {
+
+					app.delete(node);
+				}
+			}
+
+			for (final String id : storedIds) {
+
+				final SessionData data = sessions.get(id);
+				if (data != null) {
+
+					// only the sessions of authenticated users are persisted
+					final Principal user = app.nodeQuery(Principal.class).and(key, new String[] { id }).disableSorting().getFirst();
+					if (user != null) {
+
+						final SessionDataNode node = getOrCreateSessionDataNode(app, id);
+						if (node != null) {
+
+							final PropertyMap properties = new PropertyMap();
+
+							properties.put(SessionDataNode.lastAccessed, new Date(data.getLastAccessed()));
+							properties.put(SessionDataNode.contextPath, data.getContextPath());
+							properties.put(SessionDataNode.vhost, data.getVhost());
+
+							node.setProperties(ctx, properties);
+						}
+					}
+				}
 			}
 
 			tx.success();
+		}
+	}
 
-		} catch (FrameworkException ex) {
+	private SessionData get(final String id) {
+
+		SessionData data = sessions.get(id);
+		if (data == null && id != null && !deleted.contains(id)) {
+
+			// the session may have been stored by another instance
+			data = loadPersistedSession(id);
+			if (data != null) {
 
-			logger.info("Unable to load session data for session id " + id + ".", ex);
+				final SessionData existing = sessions.putIfAbsent(id, data);
+				if (existing != null) {
+
+					return existing;
+				}
+
+				expiry.schedule(id, data.getLastAccessed() + getSessionTimeout());
+			}
 		}
 
-		return result;
+		return data;
 	}
 
-	@Override
-	public boolean delete(final String id) throws Exception {
+	private void assertLoaded() {
 
-		if (anonymousSessionCache.containsKey(id)) {
-			anonymousSessionCache.remove(id);
-			return true;
+		if (!loaded) {
+
+			synchronized (this) {
+
+				if (!loaded) {
+
+					assertInitialized();
+					loadPersistedSessions();
+
+					loaded = true;
+				}
+			}
 		}
+	}
 
-		assertInitialized();
+	private void loadPersistedSessions() {
+
+		final long timeout = getSessionTimeout();
 
 		try (final Tx tx = app.tx(true, false, false)) {
 
-			// delete nodes
-			for (final SessionDataNode node : app.nodeQuery(SessionDataNode.class).and(SessionDataNode.sessionId, id).getAsList()) {
+			for (final SessionDataNode node : app.nodeQuery(SessionDataNode.class).getAsList()) {
 
-				app.delete(node);
+				final String id = node.getProperty(SessionDataNode.sessionId);
+				if (id != null) {
+
+					final SessionData data = createSessionData(id, node);
+
+					sessions.put(id, data);
+					expiry.schedule(id, data.getLastAccessed() + timeout);
+				}
 			}
 
 			tx.success();
 
-			return true;
+		} catch (FrameworkException ex) {
+
+			logger.warn("Unable to load persisted session data.", ex);
+		}
+
+		logger.debug("{} persisted sessions loaded", sessions.size());
+	}
+
+	private SessionData loadPersistedSession(final String id) {
+
+		try (final Tx tx = app.tx(true, false, false)) {
+
+			final SessionDataNode node = app.nodeQuery(SessionDataNode.class).and(SessionDataNode.sessionId, id).getFirst();
+			final SessionData data     = node != null ? createSessionData(id, node) : null;
+
+			tx.success();
+
+			return data;
 
 		} catch (FrameworkException ex) {
 
-			logger.info("Unable to load session data for session id " + id + ".", ex);
+			logger.warn("Unable to load persisted session data.", ex);
 		}
 
-		return false;
+		return null;
 	}
 
+	private SessionData createSessionData(final String id, final SessionDataNode node) {
+
+		final Date lastAccessed = node.getProperty(SessionDataNode.lastAccessed);
+		final long accessed     = lastAccessed != null ? lastAccessed.getTime() : node.getLastModifiedDate().getTime();
+
+		return new SessionData(
+			id,
+			node.getProperty(SessionDataNode.contextPath),
+			node.getProperty(SessionDataNode.vhost),
+			node.getCreatedDate().getTime(),
+			accessed,
+			accessed,
+			-1
+		);
+	}
 
-	// ----- private methods -----
 	private void assertInitialized() {
 
 		if (!services.isShuttingDown() && !services.isShutdownDone()) {
@@ -238,8 +413,125 @@ public class StructrSessionDataStore extends AbstractSessionDataStore {
 		return node;
 	}
 
-	@Override
-	public SessionData doLoad(String id) throws Exception {
-		return load(id);
+	private long getSessionTimeout() {
+		return Settings.SessionTimeout.getValue(1800) * 1000L;
+	}
+
+	private List<String> drain(final Set<String> source) {
+
+		final List<String> ids = new LinkedList<>();
+
+		for (final String id : source) {
+
+			if (source.remove(id)) {
+				ids.add(id);
+			}
+		}
+
+		return ids;
+	}
+
+	// ----- nested classes -----
+	/**
+	 * Buckets session ids by the time slot in which they expire, so that
+	 * finding expired sessions only needs to look at the slots that have
+	 * passed since the last call, not at all sessions.
+	 */
+	public static class TimeWheel {
+
+		private final Map<Long, Set<String>> slots = new ConcurrentHashMap<>();
+		private final Map<String, Long> scheduled  = new ConcurrentHashMap<>();
+		private long resolution                    = 0L;
+		private long lastSlot                      = -1L;
+
+		public TimeWheel(final long resolution) {
+			this.resolution = resolution;
+		}
+
+		public synchronized void schedule(final String id, final long expires) {
+
+			// slots that have already been passed are never visited again
+			final long slot     = Math.max(expires / resolution, lastSlot + 1);
+			final Long previous = scheduled.put(id, slot);
+
+			if (previous != null && previous != slot) {
+				remove(previous, id);
+			}
+
+			slots.computeIfAbsent(slot, k -> ConcurrentHashMap.newKeySet()).add(id);
+		}
+
+		public synchronized void cancel(final String id) {
+
+			final Long previous = scheduled.remove(id);
+			if (previous != null) {
+
+				remove(previous, id);
+			}
+		}
+
+		/**
+		 * Returns the ids of all entries in slots that ended before the
+		 * given time and removes them from the wheel.
+		 *
+		 * @param now
+		 * @return the ids of all entries that may have expired
+		 */
+		public synchronized List<String> advance(final long now) {
+
+			final List<String> ids = new LinkedList<>();
+			final long current     = now / resolution;
+
+			if (lastSlot < 0) {
+
+				// first call: all slots before the current one are due
+				for (final Long slot : slots.keySet()) {
+
+					if (slot < current) {
+						collect(slot, ids);
+					}
+				}
+
+			} else {
+
+				for (long slot = lastSlot + 1; slot < current; slot++) {
+					collect(slot, ids);
+				}
+			}
+
+			lastSlot = current - 1;
+
+			return ids;
+		}
+
+		public synchronized int size() {
+			return scheduled.size();
+		}
+
+		private void collect(final long slot, final List<String> ids) {
+
+			final Set<String> entries = slots.remove(slot);
+			if (entries != null) {
+
+				for (final String id : entries) {
+
+					scheduled.remove(id);
+					ids.add(id);
+				}
+			}
+		}
+
+		private void remove(final long slot, final String id) {
+
+			final Set<String> entries = slots.get(slot);
+			if (entries != null) {
+
+				entries.remove(id);
+
+				if (entries.isEmpty()) {
+					slots.remove(slot);
+				}
+			}
+		}
 	}
 }
@@ -31,6 +31,7 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.api.config.Settings;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
@@ -48,6 +49,7 @@ import org.structr.core.graph.Tx;
 import org.structr.core.property.EnumProperty;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
+import org.structr.rest.serialization.GraphQLWriter;
 import org.structr.schema.export.StructrSchema;
 import org.structr.schema.json.JsonBooleanProperty;
 import org.structr.schema.json.JsonEnumProperty;
@@ -56,7 +58,9 @@ import org.structr.schema.json.JsonObjectType;
 import org.structr.schema.json.JsonSchema;
 import org.structr.test.rest.common.StructrGraphQLTest;
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
 import static org.testng.AssertJUnit.fail;
+import org.testng.SkipException;
 import org.testng.annotations.Test;
 
 /**
@@ -2540,8 +2544,116 @@ public class GraphQLTest extends StructrGraphQLTest {
 
 	}
 
+	@Test
+	public void testPrefetchRoundTrips() {
+
+		try (final Tx tx = app.tx()) {
+
+			JsonSchema schema = StructrSchema.createFromDatabase(app);
+
+			final JsonObjectType customer = schema.addType("Customer");
+			final JsonObjectType order    = schema.addType("Order");
+			final JsonObjectType item     = schema.addType("Item");
+
+			customer.relate(order, "HAS", Relation.Cardinality.OneToMany, "customer", "orders");
+			order.relate(item, "CONTAINS", Relation.Cardinality.OneToMany, "order", "items");
+
+			StructrSchema.extendDatabaseSchema(app, schema);
+
+			tx.success();
+
+		} catch (URISyntaxException|FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		final Class customer        = StructrApp.getConfiguration().getNodeEntityClass("Customer");
+		final Class order           = StructrApp.getConfiguration().getNodeEntityClass("Order");
+		final Class item            = StructrApp.getConfiguration().getNodeEntityClass("Item");
+		final PropertyKey ordersKey = StructrApp.getConfiguration().getPropertyKeyForJSONName(customer, "orders");
+		final PropertyKey itemsKey  = StructrApp.getConfiguration().getPropertyKeyForJSONName(order, "items");
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<10; i++) {
+
+				final List<NodeInterface> orders = new LinkedList<>();
+
+				for (int j=0; j<3; j++) {
+
+					final NodeInterface o           = app.create(order, "order" + i + "." + j);
+					final List<NodeInterface> items = new LinkedList<>();
+
+					for (int k=0; k<2; k++) {
+						items.add(app.create(item, "item" + i + "." + j + "." + k));
+					}
+
+					o.setProperty(itemsKey, items);
+					orders.add(o);
+				}
+
+				app.create(customer, "customer" + i).setProperty(ordersKey, orders);
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+			fex.printStackTrace();
+			fail("Unexpected exception.");
+		}
+
+		RestAssured.basePath = "/structr/graphql";
+
+		final String query = "{ Customer(_sort: \"name\") { name, orders(_sort: \"name\") { name, items(_sort: \"name\") { name }}}}";
+
+		try {
+
+			Settings.GraphQLPrefetch.setValue(false);
+
+			// both queries start with empty relationship caches
+			app.getDatabaseService().clearCaches();
+
+			final long roundTrips0             = getRoundTrips();
+			final Map<String, Object> expected = fetchGraphQL(query);
+			final long withoutPrefetch         = getRoundTrips() - roundTrips0;
+
+			Settings.GraphQLPrefetch.setValue(true);
+
+			app.getDatabaseService().clearCaches();
+
+			final long roundTrips1           = getRoundTrips();
+			final Map<String, Object> result = fetchGraphQL(query);
+			final long withPrefetch          = getRoundTrips() - roundTrips1;
+
+			// prefetching must not change the result
+			assertEquals("Prefetching should not change the result", expected, result);
+			assertMapPathValueIs(result, "Customer.#",                       10);
+			assertMapPathValueIs(result, "Customer.0.orders.#",              3);
+			assertMapPathValueIs(result, "Customer.9.orders.2.items.1.name", "item9.2.1");
+
+			logger.info("Nested GraphQL query needed {} database round-trips without and {} with prefetching", withoutPrefetch, withPrefetch);
+
+			// the in-memory database has no round-trips to count
+			if (withoutPrefetch == 0L) {
+				throw new SkipException("Database driver does not count round-trips");
+			}
+
+			// one lookup per customer and order without, one batch per level with prefetching
+			assertTrue("Prefetching should save a round-trip per customer and order", withoutPrefetch - withPrefetch >= 38);
+			assertTrue("Prefetching should not need a round-trip per node", withPrefetch < 10);
+
+		} finally {
+
+			Settings.GraphQLPrefetch.setValue(true);
+		}
+	}
+
 
 	// ----- private methods -----
+	private long getRoundTrips() {
+		return ((Number)GraphQLWriter.getStatistics().get("roundTrips")).longValue();
+	}
+
 	private String eq(final String value) {
 		return "{ name: { _equals: \"" + value + "\" }}";
 	}
@@ -205,7 +205,8 @@ public abstract class StructrRestTestBase {
 
 	protected void setupNeo4jConnection() {
 
-		Settings.DatabaseDriverMode.setValue("remote");
+		Settings.DatabaseDriver.setValue(System.getProperty("testing.database.driver", Settings.TestingDatabaseDriver.getValue()));
+		Settings.DatabaseDriverMode.setValue(System.getProperty("testing.database.mode", "remote"));
 		Settings.ConnectionUser.setValue("neo4j");
 		Settings.ConnectionPassword.setValue("admin");
 		Settings.ConnectionUrl.setValue(Settings.TestingConnectionUrl.getValue());
@@ -0,0 +1,112 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.test.rest.service;
+
+import java.util.List;
+import org.structr.rest.service.StructrSessionDataStore.TimeWheel;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the time wheel that finds expired sessions.
+ */
+public class TimeWheelTest {
+
+	@Test
+	public void testAdvance() {
+
+		final TimeWheel wheel = new TimeWheel(1000L);
+
+		wheel.schedule("a", 1500L);
+		wheel.schedule("b", 2500L);
+		wheel.schedule("c", 9500L);
+
+		// nothing is due before the slot of an entry has ended
+		assertTrue("No entry should be due", wheel.advance(1999L).isEmpty());
+
+		assertEquals("Entry a should be due", "a", single(wheel.advance(2000L)));
+
+		// slots are only visited once
+		assertTrue("No entry should be due", wheel.advance(2999L).isEmpty());
+
+		final List<String> due = wheel.advance(10000L);
+
+		assertEquals("Entries b and c should be due", 2, due.size());
+		assertTrue("Entry b should be due", due.contains("b"));
+		assertTrue("Entry c should be due", due.contains("c"));
+		assertEquals("Wheel should be empty", 0, wheel.size());
+	}
+
+	@Test
+	public void testReschedule() {
+
+		final TimeWheel wheel = new TimeWheel(1000L);
+
+		wheel.schedule("a", 1500L);
+		wheel.schedule("a", 5500L);
+
+		assertEquals("Entry should be scheduled once", 1, wheel.size());
+		assertTrue("Rescheduled entry should not be due", wheel.advance(2000L).isEmpty());
+		assertEquals("Rescheduled entry should be due", "a", single(wheel.advance(6000L)));
+
+		wheel.schedule("b", 7500L);
+		wheel.cancel("b");
+
+		assertTrue("Cancelled entry should not be due", wheel.advance(9000L).isEmpty());
+		assertEquals("Wheel should be empty", 0, wheel.size());
+	}
+
+	@Test
+	public void testScheduleInPassedSlot() {
+
+		final TimeWheel wheel = new TimeWheel(1000L);
+
+		assertTrue("No entry should be due", wheel.advance(5000L).isEmpty());
+
+		// an entry whose slot has already been visited is due in the next slot
+		wheel.schedule("a", 1500L);
+
+		assertEquals("Entry should be due in the next slot", "a", single(wheel.advance(6000L)));
+	}
+
+	@Test
+	public void testFirstAdvance() {
+
+		final TimeWheel wheel = new TimeWheel(1000L);
+
+		// entries that expired before the first call are all due
+		wheel.schedule("a", 1500L);
+		wheel.schedule("b", 100500L);
+		wheel.schedule("c", 200500L);
+
+		final List<String> due = wheel.advance(150000L);
+
+		assertEquals("Entries a and b should be due", 2, due.size());
+		assertEquals("Entry c should still be scheduled", 1, wheel.size());
+	}
+
+	// ----- private methods -----
+	private String single(final List<String> ids) {
+
+		assertEquals("Exactly one entry should be due", 1, ids.size());
+
+		return ids.get(0);
+	}
+}
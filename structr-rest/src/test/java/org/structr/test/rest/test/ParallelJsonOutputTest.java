@@ -0,0 +1,148 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.test.rest.test;
+
+import com.jayway.restassured.RestAssured;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.structr.api.config.Settings;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.graph.Tx;
+import org.structr.test.rest.common.StructrRestTestBase;
+import org.structr.test.rest.entity.TestOne;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the parallel serialization of JSON output.
+ */
+public class ParallelJsonOutputTest extends StructrRestTestBase {
+
+	@AfterMethod
+	public void resetThreshold() {
+		Settings.JsonParallelizationThreshold.setValue(Settings.JsonParallelizationThreshold.getDefaultValue());
+	}
+
+	@Test
+	public void testCollectionBelowThreshold() {
+
+		createTestObjects(20);
+
+		Settings.JsonParallelizationThreshold.setValue(50);
+
+		final List<String> expected = getNames(false);
+
+		assertEquals("Invalid number of objects", 20, expected.size());
+		assertEquals("Parallel output differs from sequential output", expected, getNames(true));
+	}
+
+	@Test
+	public void testCollectionAboveThreshold() {
+
+		createTestObjects(35);
+
+		final List<String> expected = getNames(false);
+
+		assertEquals("Invalid number of objects", 35, expected.size());
+
+		// large collections are serialized in batches of threshold size, the last batch may be smaller
+		for (final int threshold : new int[] { 2, 7, 10, 35 }) {
+
+			Settings.JsonParallelizationThreshold.setValue(threshold);
+
+			assertEquals("Parallel output differs from sequential output for threshold " + threshold, expected, getNames(true));
+		}
+	}
+
+	@Test
+	public void testSharedThreadPool() {
+
+		createTestObjects(100);
+
+		Settings.JsonParallelizationThreshold.setValue(10);
+
+		final ExecutorService service = Executors.newFixedThreadPool(8);
+		final List<Future<List<String>>> futures = new LinkedList<>();
+
+		try {
+
+			final List<String> expected = getNames(false);
+
+			for (int i=0; i<32; i++) {
+				futures.add(service.submit(() -> getNames(true)));
+			}
+
+			for (final Future<List<String>> future : futures) {
+				assertEquals("Parallel output differs from sequential output", expected, future.get());
+			}
+
+		} catch (Throwable t) {
+
+			logger.warn("", t);
+			fail("Unexpected exception.");
+
+		} finally {
+
+			service.shutdownNow();
+		}
+
+		// all responses share the same bounded pool of serialization threads
+		final long threads = Thread.getAllStackTraces().keySet().stream().filter(t -> t.getName().startsWith("StreamingWriter-")).count();
+
+		assertTrue("Serialization thread pool was not used", threads > 0);
+		assertTrue("Too many serialization threads: " + threads, threads <= Settings.JsonParallelizationThreads.getValue());
+	}
+
+	// ----- private methods -----
+	private void createTestObjects(final int count) {
+
+		try (final Tx tx = app.tx()) {
+
+			for (int i=0; i<count; i++) {
+				app.create(TestOne.class, "test" + String.format("%03d", i));
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	private List<String> getNames(final boolean parallel) {
+
+		return RestAssured
+
+			.given()
+				.contentType("application/json; charset=UTF-8")
+			.expect()
+				.statusCode(200)
+			.when()
+				.get("/test_ones?sort=name" + (parallel ? "&parallelizeJsonOutput=1" : ""))
+				.jsonPath().getList("result.name");
+	}
+}
@@ -19,6 +19,8 @@
 package org.structr.web.common;
 
 import java.util.ArrayDeque;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 
 /**
@@ -28,20 +30,47 @@ import java.util.Queue;
  */
 public class AsyncBuffer {
 
-	private final Queue<String> queue = new ArrayDeque<>(1000);
+	private final Queue<String> queue          = new ArrayDeque<>(1000);
+	private final List<StringBuilder> captures = new LinkedList<>();
 
 	public AsyncBuffer append(final String s) {
 
 		synchronized(queue) {
 			
 			if (s != null) {
+
 				queue.add(s);
+
+				for (final StringBuilder capture : captures) {
+					capture.append(s);
+				}
 			}
 		}
 
 		return this;
 	}
 
+	/**
+	 * Starts copying everything that is appended to this buffer into the
+	 * given builder, in addition to queueing it for output. Captures can
+	 * be nested, each active capture receives all appended content.
+	 *
+	 * @param capture
+	 */
+	public void startCapture(final StringBuilder capture) {
+
+		synchronized(queue) {
+			captures.add(capture);
+		}
+	}
+
+	public void stopCapture(final StringBuilder capture) {
+
+		synchronized(queue) {
+			captures.remove(capture);
+		}
+	}
+
 	public Queue<String> getQueue() {
 		return queue;
 	}
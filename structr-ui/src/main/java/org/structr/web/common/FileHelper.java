@@ -23,14 +23,12 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.ByteOrder;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.UUID;
 import javax.activation.MimetypesFileTypeMap;
-import net.openhft.hashing.Access;
-import net.openhft.hashing.LongHashFunction;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -274,10 +272,17 @@ public class FileHelper {
 
 	public static void setFileData(final File file, final byte[] fileData, final String contentType, final boolean updateMetadata) throws FrameworkException, IOException {
 
-		FileHelper.writeToFile(file, fileData);
-
 		if (updateMetadata) {
-			setFileProperties(file, contentType);
+
+			// digest the data while it is written, so the file does not have to be read again
+			final MultiDigest digest = new MultiDigest(getEnabledChecksums(file));
+
+			FileHelper.writeToFile(file, fileData, digest);
+			setFileProperties(file, contentType, digest);
+
+		} else {
+
+			FileHelper.writeToFile(file, fileData);
 		}
 	}
 
@@ -292,8 +297,10 @@ public class FileHelper {
 	 */
 	public static void setFileData(final File file, final InputStream fileStream, final String contentType) throws FrameworkException, IOException {
 
-		FileHelper.writeToFile(file, fileStream);
-		setFileProperties(file, contentType);
+		final MultiDigest digest = new MultiDigest(getEnabledChecksums(file));
+
+		FileHelper.writeToFile(file, fileStream, digest);
+		setFileProperties(file, contentType, digest);
 	}
 
 	/**
@@ -305,17 +312,7 @@ public class FileHelper {
 	 * @throws IOException
 	 */
 	public static void setFileProperties (final File file, final String contentType) throws IOException, FrameworkException {
-
-		final java.io.File fileOnDisk = file.getFileOnDisk(false);
-		final PropertyMap map         = new PropertyMap();
-
-		map.put(StructrApp.key(File.class, "contentType"), contentType != null ? contentType : FileHelper.getContentMimeType(fileOnDisk, file.getProperty(File.name)));
-		map.put(StructrApp.key(File.class, "size"),        FileHelper.getSize(fileOnDisk));
-		map.put(StructrApp.key(File.class, "version"),     1);
-
-		map.putAll(getChecksums(file, fileOnDisk));
-
-		file.setProperties(file.getSecurityContext(), map);
+		setFileProperties(file, contentType, null);
 	}
 
 	/**
@@ -346,15 +343,53 @@ public class FileHelper {
 	/**
 	 * Calculate checksums that are configured in settings of parent folder.
 	 *
+	 * All enabled checksums are computed in a single pass over the file.
+	 *
 	 * @param file
 	 * @param fileOnDisk
 	 * @return
 	 * @throws IOException
 	 */
 	private static PropertyMap getChecksums(final File file, final java.io.File fileOnDisk) throws IOException {
+		return getChecksums(MultiDigest.digest(fileOnDisk, getEnabledChecksums(file)));
+	}
+
+	private static PropertyMap getChecksums(final MultiDigest digest) {
 
 		final PropertyMap propertiesWithChecksums = new PropertyMap();
 
+		// New, very fast xxHash default checksum, will always be calculated
+		propertiesWithChecksums.put(StructrApp.key(File.class, "checksum"), digest.getChecksum());
+
+		// older versions stored the xxHash checksum in crc32, it is replaced with the actual CRC32 value here
+		if (digest.getCRC32() != null) {
+			propertiesWithChecksums.put(StructrApp.key(File.class, "crc32"), digest.getCRC32());
+		}
+
+		if (digest.getMD5() != null) {
+			propertiesWithChecksums.put(StructrApp.key(File.class, "md5"), digest.getMD5());
+		}
+
+		if (digest.getSHA1() != null) {
+			propertiesWithChecksums.put(StructrApp.key(File.class, "sha1"), digest.getSHA1());
+		}
+
+		if (digest.getSHA512() != null) {
+			propertiesWithChecksums.put(StructrApp.key(File.class, "sha512"), digest.getSHA512());
+		}
+
+		return propertiesWithChecksums;
+	}
+
+	/**
+	 * Return the checksums enabled in the nearest parent folder that has
+	 * a setting, or the default checksums.
+	 *
+	 * @param file
+	 * @return the enabled checksums
+	 */
+	private static String getEnabledChecksums(final File file) {
+
 		Folder parentFolder = file.getParent();
 		String checksums = null;
 
@@ -368,26 +403,26 @@ public class FileHelper {
 			checksums = Settings.DefaultChecksums.getValue();
 		}
 
-		// New, very fast xxHash default checksum, will always be calculated
-		propertiesWithChecksums.put(StructrApp.key(File.class, "checksum"), FileHelper.getChecksum(fileOnDisk));
+		return checksums;
+	}
 
-		if (StringUtils.contains(checksums, "crc32"))	{
-			propertiesWithChecksums.put(StructrApp.key(File.class, "crc32"), FileHelper.getChecksum(fileOnDisk));
-		}
+	/**
+	 * Set the contentType, size and version properties of the given file,
+	 * and its checksums from the given digest if present, or from the
+	 * file on disk otherwise.
+	 */
+	private static void setFileProperties (final File file, final String contentType, final MultiDigest digest) throws IOException, FrameworkException {
 
-		if (StringUtils.contains(checksums, "md5"))	{
-			propertiesWithChecksums.put(StructrApp.key(File.class, "md5"), FileHelper.getMD5Checksum(file));
-		}
+		final java.io.File fileOnDisk = file.getFileOnDisk(false);
+		final PropertyMap map         = new PropertyMap();
 
-		if (StringUtils.contains(checksums, "sha1"))	{
-			propertiesWithChecksums.put(StructrApp.key(File.class, "sha1"), FileHelper.getSHA1Checksum(file));
-		}
+		map.put(StructrApp.key(File.class, "contentType"), contentType != null ? contentType : FileHelper.getContentMimeType(fileOnDisk, file.getProperty(File.name)));
+		map.put(StructrApp.key(File.class, "size"),        FileHelper.getSize(fileOnDisk));
+		map.put(StructrApp.key(File.class, "version"),     1);
 
-		if (StringUtils.contains(checksums, "sha512"))	{
-			propertiesWithChecksums.put(StructrApp.key(File.class, "sha512"), FileHelper.getSHA512Checksum(file));
-		}
+		map.putAll(digest != null ? getChecksums(digest) : getChecksums(file, fileOnDisk));
 
-		return propertiesWithChecksums;
+		file.setProperties(file.getSecurityContext(), map);
 	}
 	/**
 	 * Update checksums, content type, size and additional properties of the given file
@@ -572,6 +607,25 @@ public class FileHelper {
 		}
 	}
 
+	private static void writeToFile(final File fileNode, final byte[] data, final MultiDigest digest) throws FrameworkException, IOException {
+
+		setFileProperties(fileNode);
+
+		FileUtils.writeByteArrayToFile(fileNode.getFileOnDisk(), data);
+
+		digest.update(data, 0, data.length);
+	}
+
+	private static void writeToFile(final File fileNode, final InputStream data, final MultiDigest digest) throws FrameworkException, IOException {
+
+		setFileProperties(fileNode);
+
+		try (final OutputStream out = digest.wrap(new FileOutputStream(fileNode.getFileOnDisk()))) {
+
+			IOUtils.copy(data, out, 131072);
+		}
+	}
+
 	/**
 	 * Return mime type of given file
 	 *
@@ -770,26 +824,9 @@ public class FileHelper {
 
 	public static Long getChecksum(final java.io.File fileOnDisk) throws IOException {
 
-		try (final BufferedInputStream is = new BufferedInputStream(new FileInputStream(fileOnDisk), 131072)) {
-
-			final long hash = LongHashFunction.xx().hash(is, new Access<BufferedInputStream>() {
-
-				@Override
-				public int getByte(BufferedInputStream input, long offset) {
-
-					try { return input.read(); } catch (IOException ex) {}
-
-					return -1;
-				}
-
-				@Override
-				public ByteOrder byteOrder(BufferedInputStream input) {
-					return ByteOrder.nativeOrder();
-				}
-
-			}, 0, fileOnDisk.length());
+		try {
 
-			return hash;
+			return MultiDigest.digest(fileOnDisk, null).getChecksum();
 
 		} catch (final IOException ex) {
 			logger.warn("Unable to calculate checksum for {}: {}", fileOnDisk.getAbsolutePath(), ex.getMessage());
@@ -799,7 +836,7 @@ public class FileHelper {
 	}
 
 	public static Long getCRC32Checksum(final java.io.File fileOnDisk) throws IOException {
-		return FileUtils.checksumCRC32(fileOnDisk);
+		return MultiDigest.digest(fileOnDisk, "crc32").getCRC32();
 	}
 
 	public static String getMD5Checksum(final File file) {
@@ -0,0 +1,550 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.Predicate;
+import org.structr.api.config.Settings;
+import org.structr.api.util.Cachable;
+import org.structr.api.util.ConcurrentFixedSizeCache;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.StructrTransactionListener;
+import org.structr.core.entity.Principal;
+import org.structr.core.graph.ModificationEvent;
+import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.search.SearchCommand;
+import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.entity.dom.DOMNode;
+import org.structr.web.entity.dom.Page;
+
+/**
+ * Cache for the rendered output of DOM subtrees whose root element has
+ * cacheRenderedOutput enabled.
+ *
+ * While a fragment is rendered, the UUIDs of all DOM nodes and data objects
+ * it uses are recorded, together with the types of the data objects and the
+ * types that scripts query. The fragment is evicted after a transaction
+ * modifies one of these objects, creates or removes a relationship to one of
+ * them, creates or deletes an object of one of the recorded types, or
+ * modifies an object of one of the queried types.
+ *
+ * Fragments are indexed by the UUIDs and types they depend on, so a commit
+ * only visits the fragments it invalidates. Every commit increments a
+ * generation counter, and the output of a fragment is not stored if a commit
+ * happened while it was rendered, because the output may be stale.
+ */
+public class FragmentCache implements StructrTransactionListener {
+
+	private static final Logger logger                              = LoggerFactory.getLogger(FragmentCache.class.getName());
+	private static final FragmentCache instance                     = new FragmentCache();
+
+	private final Map<String, Set<Fragment>> fragmentsByUuid        = new ConcurrentHashMap<>();
+	private final Map<String, Set<Fragment>> fragmentsByType        = new ConcurrentHashMap<>();
+	private final Map<String, Set<Fragment>> fragmentsByQueriedType = new ConcurrentHashMap<>();
+	private final Map<String, PageStatistics> pageStatistics        = new ConcurrentHashMap<>();
+	private final AtomicLong generation                             = new AtomicLong();
+	private final LongAdder invalidations                           = new LongAdder();
+	private final LongAdder discarded                               = new LongAdder();
+	private ConcurrentFixedSizeCache<String, Fragment> fragments    = null;
+
+	private FragmentCache() {
+		this.fragments = new ConcurrentFixedSizeCache<>(Math.max(1, Settings.FragmentCacheSize.getValue()));
+	}
+
+	public static FragmentCache getInstance() {
+		return instance;
+	}
+
+	public static Map<String, Object> getStatistics() {
+		return instance.getStatisticsInternal();
+	}
+
+	/**
+	 * Returns the cache key for the given node in the given render context,
+	 * or null if the output of the node can not be cached in this context.
+	 *
+	 * Only anonymous requests without edit mode are cached, so the output
+	 * does not depend on the permissions of a user.
+	 *
+	 * @param node
+	 * @param renderContext
+	 * @param depth
+	 * @return the cache key or null
+	 */
+	public static String getCacheKey(final DOMNode node, final RenderContext renderContext, final int depth) {
+
+		final Principal user = renderContext.getSecurityContext().getUser(false);
+
+		if (user != null || !EditMode.NONE.equals(renderContext.getEditMode(user))) {
+			return null;
+		}
+
+		final StringBuilder buf = new StringBuilder(node.getUuid());
+		final Page page         = renderContext.getPage();
+
+		buf.append("|").append(page != null ? page.getUuid() : "");
+		buf.append("|").append(renderContext.getLocale());
+		buf.append("|").append(depth);
+		buf.append("|").append(getUuid(renderContext.getDetailsDataObject()));
+		buf.append("|").append(getUuid(renderContext.getDataObject()));
+
+		final String parameters = node.getCacheKeyParameters();
+		if (StringUtils.isNotBlank(parameters) && renderContext.getRequest() != null) {
+
+			for (final String name : parameters.split("[, ]+")) {
+
+				if (StringUtils.isNotBlank(name)) {
+
+					final String[] values = renderContext.getRequest().getParameterValues(name);
+
+					buf.append("|").append(name).append("=");
+
+					if (values != null) {
+						buf.append(StringUtils.join(values, ","));
+					}
+				}
+			}
+		}
+
+		return buf.toString();
+	}
+
+	/**
+	 * Returns the cached fragment for the given key, counting the access
+	 * as a hit or miss for the given page.
+	 *
+	 * @param key
+	 * @param page
+	 * @return the cached fragment or null
+	 */
+	public Fragment get(final String key, final Page page) {
+
+		final PageStatistics statistics = pageStatistics.computeIfAbsent(page != null ? page.getUuid() : "", k -> new PageStatistics(page));
+		Fragment fragment               = fragments.get(key);
+
+		if (fragment != null && fragment.isExpired()) {
+
+			remove(fragment);
+			fragment = null;
+		}
+
+		if (fragment != null) {
+
+			statistics.hits.increment();
+
+		} else {
+
+			statistics.misses.increment();
+		}
+
+		return fragment;
+	}
+
+	/**
+	 * Creates a capture for a fragment that is about to be rendered.
+	 *
+	 * @return the capture
+	 */
+	public Capture newCapture() {
+		return new Capture(generation.get());
+	}
+
+	/**
+	 * Stores the output of the given capture, unless a transaction was
+	 * committed after the capture was created.
+	 *
+	 * @param key
+	 * @param capture
+	 */
+	public void put(final String key, final Capture capture) {
+
+		if (capture.generation != generation.get()) {
+
+			discarded.increment();
+			return;
+		}
+
+		final Fragment fragment = new Fragment(key, capture);
+		final Fragment previous = fragments.peek(key);
+
+		index(fragment);
+		fragments.put(key, fragment);
+
+		if (previous != null) {
+			unindex(previous);
+		}
+
+		// a commit between the check above and indexing the fragment would not have found it
+		if (capture.generation != generation.get()) {
+
+			discarded.increment();
+			remove(fragment);
+		}
+	}
+
+	public void clear() {
+
+		generation.incrementAndGet();
+
+		fragments.clear();
+		fragmentsByUuid.clear();
+		fragmentsByType.clear();
+		fragmentsByQueriedType.clear();
+		pageStatistics.clear();
+	}
+
+	// ----- interface StructrTransactionListener -----
+	@Override
+	public void beforeCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents) throws FrameworkException {
+	}
+
+	@Override
+	public void afterCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents) {
+
+		if (modificationEvents.isEmpty()) {
+			return;
+		}
+
+		// fragments that are being rendered now must not be stored
+		generation.incrementAndGet();
+
+		if (fragments.isEmpty()) {
+			return;
+		}
+
+		final Map<Class, Set<String>> typeNames = new HashMap<>();
+		final Set<Fragment> affected            = new HashSet<>();
+		final Set<String> uuids                 = new HashSet<>();
+		final Set<String> types                 = new HashSet<>();
+		final Set<String> modifiedTypes         = new HashSet<>();
+
+		for (final ModificationEvent event : modificationEvents) {
+
+			uuids.add(event.getUuid());
+
+			try {
+
+				final GraphObject obj = event.getGraphObject();
+
+				if (event.isNode()) {
+
+					final Set<String> names = typeNames.computeIfAbsent(obj.getClass(), FragmentCache::getTypeNames);
+
+					if (event.isCreated() || event.isDeleted()) {
+						types.addAll(names);
+					}
+
+					modifiedTypes.addAll(names);
+
+				} else if (obj instanceof RelationshipInterface) {
+
+					final RelationshipInterface rel = (RelationshipInterface)obj;
+
+					uuids.add(rel.getSourceNodeId());
+					uuids.add(rel.getTargetNodeId());
+				}
+
+			} catch (Throwable t) {
+
+				// deleted objects can not always be accessed any more
+				logger.debug("Unable to determine fragment cache dependencies of {}: {}", event.getUuid(), t.getMessage());
+			}
+		}
+
+		collect(fragmentsByUuid, uuids, affected);
+		collect(fragmentsByType, types, affected);
+		collect(fragmentsByQueriedType, modifiedTypes, affected);
+
+		for (final Fragment fragment : affected) {
+			remove(fragment);
+		}
+	}
+
+	@Override
+	public boolean requiresAllCommits() {
+		return true;
+	}
+
+	@Override
+	public void flushCaches() {
+		clear();
+	}
+
+	@Override
+	public void simpleBroadcast(final String messageName, final Map<String, Object> data, final Predicate<String> sessionIdPredicate) {
+	}
+
+	// ----- private methods -----
+	private Map<String, Object> getStatisticsInternal() {
+
+		final Map<String, Object> stats = new LinkedHashMap<>(fragments.getStatistics());
+		final Map<String, Object> pages = new TreeMap<>();
+
+		for (final Map.Entry<String, PageStatistics> entry : pageStatistics.entrySet()) {
+			pages.put(entry.getKey(), entry.getValue().toMap());
+		}
+
+		stats.put("invalidations", invalidations.sum());
+		stats.put("discarded",     discarded.sum());
+		stats.put("pages",         pages);
+
+		return stats;
+	}
+
+	private void remove(final Fragment fragment) {
+
+		if (fragments.remove(fragment.key, fragment)) {
+			invalidations.increment();
+		}
+
+		unindex(fragment);
+	}
+
+	private void index(final Fragment fragment) {
+
+		index(fragmentsByUuid, fragment.uuids, fragment);
+		index(fragmentsByType, fragment.types, fragment);
+		index(fragmentsByQueriedType, fragment.queriedTypes, fragment);
+	}
+
+	private void unindex(final Fragment fragment) {
+
+		unindex(fragmentsByUuid, fragment.uuids, fragment);
+		unindex(fragmentsByType, fragment.types, fragment);
+		unindex(fragmentsByQueriedType, fragment.queriedTypes, fragment);
+	}
+
+	private static void index(final Map<String, Set<Fragment>> index, final Set<String> keys, final Fragment fragment) {
+
+		for (final String key : keys) {
+
+			// modify the set inside compute() so it can not be removed concurrently
+			index.compute(key, (k, set) -> {
+
+				final Set<Fragment> result = set != null ? set : ConcurrentHashMap.newKeySet();
+
+				result.add(fragment);
+
+				return result;
+			});
+		}
+	}
+
+	private static void unindex(final Map<String, Set<Fragment>> index, final Set<String> keys, final Fragment fragment) {
+
+		for (final String key : keys) {
+
+			index.computeIfPresent(key, (k, set) -> {
+
+				set.remove(fragment);
+
+				return set.isEmpty() ? null : set;
+			});
+		}
+	}
+
+	private static void collect(final Map<String, Set<Fragment>> index, final Set<String> keys, final Set<Fragment> result) {
+
+		for (final String key : keys) {
+
+			final Set<Fragment> set = key != null ? index.get(key) : null;
+			if (set != null) {
+
+				result.addAll(set);
+			}
+		}
+	}
+
+	private static Set<String> getTypeNames(final Class type) {
+
+		final Set<String> names = new HashSet<>();
+
+		for (final Class supertype : SearchCommand.typeAndAllSupertypes(type)) {
+			names.add(supertype.getSimpleName());
+		}
+
+		return names;
+	}
+
+	private static String getUuid(final GraphObject obj) {
+
+		if (obj != null) {
+			return obj.getUuid();
+		}
+
+		return "";
+	}
+
+	// ----- nested classes -----
+	/**
+	 * The rendered output of a DOM subtree and the objects it depends on.
+	 */
+	public static class Fragment implements Cachable {
+
+		private final Set<String> queriedTypes = new HashSet<>();
+		private final Set<String> uuids        = new HashSet<>();
+		private final Set<String> types        = new HashSet<>();
+		private String output                  = null;
+		private String key                     = null;
+		private long expires                   = Long.MAX_VALUE;
+
+		private Fragment(final String key, final Capture capture) {
+
+			final int timeout = Settings.FragmentCacheTimeout.getValue();
+
+			this.queriedTypes.addAll(capture.queriedTypes);
+			this.uuids.addAll(capture.uuids);
+			this.types.addAll(capture.types);
+			this.output = capture.output.toString();
+			this.key    = key;
+
+			if (timeout > 0) {
+				this.expires = System.currentTimeMillis() + timeout * 1000L;
+			}
+		}
+
+		public String getOutput() {
+			return output;
+		}
+
+		private boolean isExpired() {
+			return System.currentTimeMillis() > expires;
+		}
+
+		// ----- interface Cachable -----
+		@Override
+		public void onRemoveFromCache() {
+
+			// evicted because the cache is full
+			instance.unindex(this);
+		}
+	}
+
+	/**
+	 * Collects the output and the dependencies of a fragment while it is
+	 * rendered.
+	 */
+	public static class Capture {
+
+		private final StringBuilder output     = new StringBuilder();
+		private final Set<String> queriedTypes = new HashSet<>();
+		private final Set<String> uuids        = new HashSet<>();
+		private final Set<String> types        = new HashSet<>();
+		private AsyncBuffer buffer             = null;
+		private long generation                = 0L;
+
+		private Capture(final long generation) {
+			this.generation = generation;
+		}
+
+		public void addDependency(final GraphObject obj) {
+
+			final String uuid = obj.getUuid();
+
+			// objects without a UUID (e.g. the results of functions) can not be tracked
+			if (uuid == null) {
+				return;
+			}
+
+			uuids.add(uuid);
+
+			// DOM nodes only depend on their identity, otherwise any
+			// new element would invalidate all cached fragments
+			if (!(obj instanceof DOMNode)) {
+				types.add(obj.getType());
+			}
+		}
+
+		/**
+		 * Adds a dependency on all objects of the given type, e.g. for
+		 * the results of a query.
+		 *
+		 * @param type
+		 */
+		public void addTypeDependency(final Class type) {
+			queriedTypes.add(type.getSimpleName());
+		}
+
+		public void addDependencies(final Fragment fragment) {
+
+			queriedTypes.addAll(fragment.queriedTypes);
+			uuids.addAll(fragment.uuids);
+			types.addAll(fragment.types);
+		}
+
+		void start(final AsyncBuffer buffer) {
+
+			this.buffer = buffer;
+
+			buffer.startCapture(output);
+		}
+
+		void stop() {
+
+			if (buffer != null) {
+
+				buffer.stopCapture(output);
+				buffer = null;
+			}
+		}
+	}
+
+	private static class PageStatistics {
+
+		private final LongAdder hits   = new LongAdder();
+		private final LongAdder misses = new LongAdder();
+		private String name            = null;
+
+		public PageStatistics(final Page page) {
+
+			if (page != null) {
+				this.name = page.getName();
+			}
+		}
+
+		public Map<String, Object> toMap() {
+
+			final Map<String, Object> map = new LinkedHashMap<>();
+			final long hitCount           = hits.sum();
+			final long missCount          = misses.sum();
+			final long total              = hitCount + missCount;
+
+			map.put("name",     name);
+			map.put("hits",     hitCount);
+			map.put("misses",   missCount);
+			map.put("hitRatio", total > 0 ? (double)hitCount / (double)total : 0.0);
+
+			return map;
+		}
+	}
+}
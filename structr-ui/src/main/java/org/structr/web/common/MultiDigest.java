@@ -0,0 +1,361 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Computes the xxHash checksum and any of the optional CRC32, MD5, SHA-1
+ * and SHA-512 checksums of a file in a single pass over its content.
+ *
+ * The xxHash value is identical to LongHashFunction.xx() with seed 0, but
+ * is computed incrementally, so the content can be fed in arbitrarily
+ * sized chunks, e.g. while an upload is being written to disk.
+ */
+public class MultiDigest {
+
+	private static final int BUFFER_SIZE  = 1024 * 1024;
+	private static final long PRIME64_1   = 0x9E3779B185EBCA87L;
+	private static final long PRIME64_2   = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME64_3   = 0x165667B19E3779F9L;
+	private static final long PRIME64_4   = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME64_5   = 0x27D4EB2F165667C5L;
+
+	private final ByteBuffer carry        = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+	private long v1                       = PRIME64_1 + PRIME64_2;
+	private long v2                       = PRIME64_2;
+	private long v3                       = 0L;
+	private long v4                       = -PRIME64_1;
+	private long length                   = 0L;
+	private CRC32 crc32                   = null;
+	private MessageDigest md5             = null;
+	private MessageDigest sha1            = null;
+	private MessageDigest sha512          = null;
+	private boolean finished              = false;
+	private Long checksum                 = null;
+	private Long crc32Value               = null;
+	private String md5Value               = null;
+	private String sha1Value              = null;
+	private String sha512Value            = null;
+
+	/**
+	 * Creates a new digest that computes the xxHash checksum and the
+	 * optional checksums named in the given string, e.g. "crc32,md5".
+	 *
+	 * @param checksums the enabled optional checksums, may be null
+	 */
+	public MultiDigest(final String checksums) {
+
+		if (StringUtils.contains(checksums, "crc32")) {
+			crc32 = new CRC32();
+		}
+
+		if (StringUtils.contains(checksums, "md5")) {
+			md5 = getMessageDigest("MD5");
+		}
+
+		if (StringUtils.contains(checksums, "sha1")) {
+			sha1 = getMessageDigest("SHA-1");
+		}
+
+		if (StringUtils.contains(checksums, "sha512")) {
+			sha512 = getMessageDigest("SHA-512");
+		}
+	}
+
+	/**
+	 * Reads the given file once, using a direct buffer of up to 1 MB, and
+	 * returns the digest of its content.
+	 *
+	 * @param fileOnDisk
+	 * @param checksums the enabled optional checksums, may be null
+	 * @return the digest
+	 * @throws IOException
+	 */
+	public static MultiDigest digest(final java.io.File fileOnDisk, final String checksums) throws IOException {
+
+		final MultiDigest digest = new MultiDigest(checksums);
+
+		try (final FileChannel channel = FileChannel.open(fileOnDisk.toPath(), StandardOpenOption.READ)) {
+
+			final ByteBuffer buffer = ByteBuffer.allocateDirect((int)Math.max(4096L, Math.min(BUFFER_SIZE, channel.size())));
+
+			while (channel.read(buffer) >= 0) {
+
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+			}
+		}
+
+		return digest;
+	}
+
+	public void update(final byte[] data, final int offset, final int len) {
+		update(ByteBuffer.wrap(data, offset, len));
+	}
+
+	/**
+	 * Feeds the remaining bytes of the given buffer into all enabled
+	 * digests and advances the position of the buffer to its limit.
+	 *
+	 * @param buffer
+	 */
+	public void update(final ByteBuffer buffer) {
+
+		if (finished) {
+			throw new IllegalStateException("Digest already finished");
+		}
+
+		if (crc32 != null) {
+			crc32.update(buffer.duplicate());
+		}
+
+		if (md5 != null) {
+			md5.update(buffer.duplicate());
+		}
+
+		if (sha1 != null) {
+			sha1.update(buffer.duplicate());
+		}
+
+		if (sha512 != null) {
+			sha512.update(buffer.duplicate());
+		}
+
+		updateXXHash(buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN));
+
+		buffer.position(buffer.limit());
+	}
+
+	/**
+	 * Returns an output stream that writes to the given stream and feeds
+	 * all written bytes into this digest.
+	 *
+	 * @param out
+	 * @return the digesting output stream
+	 */
+	public OutputStream wrap(final OutputStream out) {
+
+		return new FilterOutputStream(out) {
+
+			@Override
+			public void write(final int b) throws IOException {
+
+				out.write(b);
+				update(new byte[] { (byte)b }, 0, 1);
+			}
+
+			@Override
+			public void write(final byte[] data, final int offset, final int len) throws IOException {
+
+				out.write(data, offset, len);
+				update(data, offset, len);
+			}
+		};
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public Long getChecksum() {
+
+		finish();
+
+		return checksum;
+	}
+
+	public Long getCRC32() {
+
+		finish();
+
+		return crc32Value;
+	}
+
+	public String getMD5() {
+
+		finish();
+
+		return md5Value;
+	}
+
+	public String getSHA1() {
+
+		finish();
+
+		return sha1Value;
+	}
+
+	public String getSHA512() {
+
+		finish();
+
+		return sha512Value;
+	}
+
+	// ----- private methods -----
+	private void finish() {
+
+		if (finished) {
+			return;
+		}
+
+		finished = true;
+		checksum = finishXXHash();
+
+		if (crc32 != null) {
+			crc32Value = crc32.getValue();
+		}
+
+		if (md5 != null) {
+			md5Value = Hex.encodeHexString(md5.digest());
+		}
+
+		if (sha1 != null) {
+			sha1Value = Hex.encodeHexString(sha1.digest());
+		}
+
+		if (sha512 != null) {
+			sha512Value = Hex.encodeHexString(sha512.digest());
+		}
+	}
+
+	private void updateXXHash(final ByteBuffer input) {
+
+		length += input.remaining();
+
+		// complete a stripe that was started by a previous update
+		if (carry.position() > 0) {
+
+			while (carry.hasRemaining() && input.hasRemaining()) {
+				carry.put(input.get());
+			}
+
+			if (carry.hasRemaining()) {
+				return;
+			}
+
+			carry.flip();
+			processStripe(carry);
+			carry.clear();
+		}
+
+		while (input.remaining() >= 32) {
+			processStripe(input);
+		}
+
+		carry.put(input);
+	}
+
+	private void processStripe(final ByteBuffer input) {
+
+		v1 = round(v1, input.getLong());
+		v2 = round(v2, input.getLong());
+		v3 = round(v3, input.getLong());
+		v4 = round(v4, input.getLong());
+	}
+
+	private long finishXXHash() {
+
+		long hash;
+
+		if (length >= 32) {
+
+			hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+			hash = merge(hash, v1);
+			hash = merge(hash, v2);
+			hash = merge(hash, v3);
+			hash = merge(hash, v4);
+
+		} else {
+
+			hash = PRIME64_5;
+		}
+
+		hash += length;
+
+		carry.flip();
+
+		while (carry.remaining() >= 8) {
+
+			hash ^= round(0, carry.getLong());
+			hash  = Long.rotateLeft(hash, 27) * PRIME64_1 + PRIME64_4;
+		}
+
+		if (carry.remaining() >= 4) {
+
+			hash ^= (carry.getInt() & 0xFFFFFFFFL) * PRIME64_1;
+			hash  = Long.rotateLeft(hash, 23) * PRIME64_2 + PRIME64_3;
+		}
+
+		while (carry.hasRemaining()) {
+
+			hash ^= (carry.get() & 0xFFL) * PRIME64_5;
+			hash  = Long.rotateLeft(hash, 11) * PRIME64_1;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= PRIME64_2;
+		hash ^= hash >>> 29;
+		hash *= PRIME64_3;
+		hash ^= hash >>> 32;
+
+		return hash;
+	}
+
+	private static long round(long acc, final long input) {
+
+		acc += input * PRIME64_2;
+		acc  = Long.rotateLeft(acc, 31);
+		acc *= PRIME64_1;
+
+		return acc;
+	}
+
+	private static long merge(long hash, final long value) {
+
+		hash ^= round(0, value);
+		hash  = hash * PRIME64_1 + PRIME64_4;
+
+		return hash;
+	}
+
+	private static MessageDigest getMessageDigest(final String algorithm) {
+
+		try {
+
+			return MessageDigest.getInstance(algorithm);
+
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalArgumentException(ex);
+		}
+	}
+}
@@ -18,6 +18,7 @@
  */
 package org.structr.web.common;
 
+import java.util.ArrayDeque;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Stack;
@@ -47,6 +48,7 @@ public class RenderContext extends ActionContext {
 
 	private final Map<String, GraphObject> dataObjects = new LinkedHashMap<>();
 	private final Stack<SecurityContext> scStack       = new Stack<>();
+	private ArrayDeque<FragmentCache.Capture> captures = new ArrayDeque<>();
 	private EditMode editMode                          = EditMode.NONE;
 	private AsyncBuffer buffer                         = new AsyncBuffer();
 	private int depth                                  = 0;
@@ -101,6 +103,7 @@ public class RenderContext extends ActionContext {
 		this.anyChildNodeCreatesNewLine = other.anyChildNodeCreatesNewLine;
 		this.locale = other.locale;
 		this.indentHtml = other.indentHtml;
+		this.captures = other.captures;
 
 	}
 
@@ -132,6 +135,7 @@ public class RenderContext extends ActionContext {
 
 	public void setDetailsDataObject(GraphObject detailsDataObject) {
 		this.detailsDataObject = detailsDataObject;
+		addFragmentDependency(detailsDataObject);
 	}
 
 	public GraphObject getDetailsDataObject() {
@@ -140,6 +144,7 @@ public class RenderContext extends ActionContext {
 
 	public void setDataObject(GraphObject currentDataObject) {
 		this.currentDataObject = currentDataObject;
+		addFragmentDependency(currentDataObject);
 	}
 
 	public GraphObject getDataObject() {
@@ -301,6 +306,58 @@ public class RenderContext extends ActionContext {
 		return buffer;
 	}
 
+	/**
+	 * Starts capturing the output and the dependencies of a cacheable
+	 * fragment. Nested captures also receive everything that is rendered
+	 * in the inner ones.
+	 *
+	 * @param capture
+	 */
+	public void startFragmentCapture(final FragmentCache.Capture capture) {
+
+		captures.push(capture);
+		capture.start(buffer);
+	}
+
+	public void stopFragmentCapture(final FragmentCache.Capture capture) {
+
+		captures.remove(capture);
+		capture.stop();
+	}
+
+	public void addFragmentDependency(final GraphObject obj) {
+
+		if (obj != null) {
+
+			for (final FragmentCache.Capture capture : captures) {
+				capture.addDependency(obj);
+			}
+		}
+	}
+
+	public void addFragmentDependencies(final FragmentCache.Fragment fragment) {
+
+		for (final FragmentCache.Capture capture : captures) {
+			capture.addDependencies(fragment);
+		}
+	}
+
+	@Override
+	public void registerDataDependency(final GraphObject obj) {
+		addFragmentDependency(obj);
+	}
+
+	@Override
+	public void registerTypeDependency(final Class type) {
+
+		if (type != null) {
+
+			for (final FragmentCache.Capture capture : captures) {
+				capture.addTypeDependency(type);
+			}
+		}
+	}
+
 	public void setInBody(final boolean inBody) {
 		this.inBody = inBody;
 	}
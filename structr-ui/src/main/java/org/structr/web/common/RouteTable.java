@@ -0,0 +1,626 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.common;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.api.Predicate;
+import org.structr.common.SecurityContext;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
+import org.structr.core.StructrTransactionListener;
+import org.structr.core.app.App;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.ModificationEvent;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.Tx;
+import org.structr.core.property.PropertyKey;
+import org.structr.web.entity.AbstractFile;
+import org.structr.web.entity.File;
+import org.structr.web.entity.Folder;
+import org.structr.web.entity.Site;
+import org.structr.web.entity.dom.Page;
+
+/**
+ * In-memory index of the entry points HtmlServlet can resolve a request
+ * path to, i.e. pages by path, name and UUID and files by path, name and
+ * UUID, including the site settings of each page.
+ *
+ * The table contains UUIDs only, the actual entities are loaded in the
+ * security context of the request. It is built on first use and updated
+ * from the modification events of pages, files, folders and sites. The
+ * table keeps the path of each folder, so renaming, moving or removing a
+ * folder only updates the files below the old path of that folder.
+ */
+public class RouteTable implements StructrTransactionListener {
+
+	private static final Logger logger                     = LoggerFactory.getLogger(RouteTable.class.getName());
+	private static final RouteTable instance               = new RouteTable();
+
+	private static final Comparator<Route> pageOrder       = Comparator.comparing((Route r) -> r.position, Comparator.nullsFirst(Comparator.naturalOrder())).thenComparing(r -> r.uuid);
+
+	private final Map<String, Route> routes                = new ConcurrentHashMap<>();
+	private final Map<String, List<Route>> pagesByPath     = new ConcurrentHashMap<>();
+	private final Map<String, List<Route>> pagesByName     = new ConcurrentHashMap<>();
+	private final Map<String, List<Route>> filesByPath     = new ConcurrentHashMap<>();
+	private final Map<String, List<Route>> filesByName     = new ConcurrentHashMap<>();
+	private final Map<String, String> folderPaths          = new ConcurrentHashMap<>();
+	private final AtomicLong rebuilds                      = new AtomicLong();
+	private volatile List<Route> indexPages                = Collections.emptyList();
+	private final AtomicLong generation                    = new AtomicLong();
+	private volatile boolean valid                         = false;
+	private int basicAuthRoutes                            = 0;
+
+	private RouteTable() {}
+
+	public static RouteTable getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Returns the routes of all pages with the given path, ordered by
+	 * position.
+	 *
+	 * @param path
+	 * @return the routes of all pages with the given path
+	 */
+	public List<Route> getPagesByPath(final String path) {
+		return lookup(pagesByPath, path);
+	}
+
+	public List<Route> getPagesByName(final String name) {
+		return lookup(pagesByName, name);
+	}
+
+	public List<Route> getFilesByPath(final String path) {
+		return lookup(filesByPath, path);
+	}
+
+	public List<Route> getFilesByName(final String name) {
+		return lookup(filesByName, name);
+	}
+
+	/**
+	 * Returns all pages with a position value, ordered by position.
+	 *
+	 * @return all pages that can be used as an index page
+	 */
+	public List<Route> getIndexPages() {
+
+		ensureValid();
+
+		return indexPages;
+	}
+
+	public Route get(final String uuid) {
+
+		ensureValid();
+
+		if (uuid != null) {
+			return routes.get(uuid);
+		}
+
+		return null;
+	}
+
+	public synchronized boolean hasBasicAuthRoutes() {
+
+		ensureValid();
+
+		return basicAuthRoutes > 0;
+	}
+
+	public void invalidate() {
+
+		generation.incrementAndGet();
+		valid = false;
+	}
+
+	public Map<String, Object> getStatistics() {
+
+		final Map<String, Object> stats = new LinkedHashMap<>();
+
+		stats.put("routes",   routes.size());
+		stats.put("folders",  folderPaths.size());
+		stats.put("rebuilds", rebuilds.get());
+
+		return stats;
+	}
+
+	// ----- interface StructrTransactionListener -----
+	@Override
+	public void beforeCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents) throws FrameworkException {
+	}
+
+	@Override
+	public void afterCommit(final SecurityContext securityContext, final Collection<ModificationEvent> modificationEvents) {
+
+		final PropertyKey<Folder> parentKey = StructrApp.key(AbstractFile.class, "parent");
+		final Set<String> folders           = new LinkedHashSet<>();
+		final Set<String> refresh           = new LinkedHashSet<>();
+
+		for (final ModificationEvent event : modificationEvents) {
+
+			final String uuid = event.getUuid();
+
+			try {
+
+				final GraphObject obj = event.getGraphObject();
+
+				if (event.isNode()) {
+
+					if (obj instanceof Folder) {
+
+						// renaming, moving or removing a folder changes the path of all files below it
+						if (event.isCreated() || event.isDeleted() || event.getModifiedProperties().containsKey(AbstractNode.name) || event.getModifiedProperties().containsKey(parentKey)) {
+							folders.add(uuid);
+						}
+
+					} else if (obj instanceof Site || obj instanceof Page || obj instanceof File || routes.containsKey(uuid)) {
+
+						refresh.add(uuid);
+					}
+
+				} else if (obj instanceof RelationshipInterface) {
+
+					final RelationshipInterface rel = (RelationshipInterface)obj;
+					final String sourceId           = rel.getSourceNodeId();
+					final String targetId           = rel.getTargetNodeId();
+
+					// site and folder membership is stored in relationships
+					if (routes.containsKey(sourceId) || routes.containsKey(targetId)) {
+
+						refresh.add(sourceId);
+						refresh.add(targetId);
+
+					} else if (folderPaths.containsKey(targetId)) {
+
+						// moving a folder changes the path of all files below it
+						folders.add(targetId);
+					}
+				}
+
+			} catch (Throwable t) {
+
+				// deleted objects can not always be accessed any more, so the known entries are refreshed by id
+				if (folderPaths.containsKey(uuid)) {
+
+					folders.add(uuid);
+
+				} else if (routes.containsKey(uuid)) {
+
+					refresh.add(uuid);
+
+				} else {
+
+					logger.debug("Unable to update route table for {}: {}", uuid, t.getMessage());
+				}
+			}
+		}
+
+		if (!valid) {
+
+			// the next lookup rebuilds the table anyway
+			if (!refresh.isEmpty() || !folders.isEmpty()) {
+				invalidate();
+			}
+
+		} else if (!refresh.isEmpty() || !folders.isEmpty()) {
+
+			final App app = StructrApp.getInstance();
+
+			synchronized (this) {
+
+				for (final String uuid : folders) {
+
+					try {
+
+						updateFolder(app, uuid, refresh);
+
+					} catch (FrameworkException fex) {
+
+						logger.warn("Unable to update route table for folder {}: {}", uuid, fex.getMessage());
+						invalidate();
+					}
+				}
+
+				for (final String uuid : refresh) {
+
+					try {
+
+						final NodeInterface node = app.getNodeById(uuid);
+						if (node instanceof Site) {
+
+							for (final String pageId : getPagesOfSite(uuid)) {
+								update(pageId, createRoute(app.getNodeById(pageId)));
+							}
+
+						} else if (node != null || routes.containsKey(uuid)) {
+
+							update(uuid, createRoute(node));
+						}
+
+					} catch (FrameworkException fex) {
+
+						logger.warn("Unable to update route table for {}: {}", uuid, fex.getMessage());
+						invalidate();
+					}
+				}
+
+				updateIndexPages();
+			}
+		}
+	}
+
+	@Override
+	public boolean requiresAllCommits() {
+
+		// imports and internal changes use contexts without transaction notifications
+		return true;
+	}
+
+	@Override
+	public void flushCaches() {
+		invalidate();
+	}
+
+	@Override
+	public void simpleBroadcast(final String messageName, final Map<String, Object> data, final Predicate<String> sessionIdPredicate) {
+	}
+
+	// ----- private methods -----
+	private List<Route> lookup(final Map<String, List<Route>> map, final String key) {
+
+		ensureValid();
+
+		if (key != null) {
+
+			final List<Route> result = map.get(key);
+			if (result != null) {
+
+				return result;
+			}
+		}
+
+		return Collections.emptyList();
+	}
+
+	private void ensureValid() {
+
+		if (!valid) {
+
+			synchronized (this) {
+
+				if (!valid) {
+
+					rebuild();
+				}
+			}
+		}
+	}
+
+	private void rebuild() {
+
+		final long start = generation.get();
+		final long t0    = System.currentTimeMillis();
+		final App app    = StructrApp.getInstance();
+
+		routes.clear();
+		pagesByPath.clear();
+		pagesByName.clear();
+		filesByPath.clear();
+		filesByName.clear();
+		folderPaths.clear();
+
+		basicAuthRoutes = 0;
+
+		rebuilds.incrementAndGet();
+
+		try (final Tx tx = app.tx(false, false, false)) {
+
+			for (final Page page : app.nodeQuery(Page.class).getAsList()) {
+				update(page.getUuid(), createRoute(page));
+			}
+
+			for (final File file : app.nodeQuery(File.class).getAsList()) {
+				update(file.getUuid(), createRoute(file));
+			}
+
+			for (final Folder folder : app.nodeQuery(Folder.class).getAsList()) {
+				folderPaths.put(folder.getUuid(), folder.getPath());
+			}
+
+			updateIndexPages();
+
+			tx.success();
+
+			// changes that were committed during the rebuild may be missing
+			valid = (generation.get() == start);
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("Unable to build route table: {}", fex.getMessage());
+		}
+
+		logger.debug("Route table with {} entries built in {} ms", routes.size(), System.currentTimeMillis() - t0);
+	}
+
+	/**
+	 * Updates the path of the given folder and all folders below it, and
+	 * adds the files below the old path of the folder to the given set of
+	 * entries to refresh.
+	 */
+	private void updateFolder(final App app, final String uuid, final Set<String> refresh) throws FrameworkException {
+
+		final NodeInterface node = app.getNodeById(uuid);
+		final String newPath     = node instanceof Folder ? ((Folder)node).getPath() : null;
+		final String oldPath     = newPath != null ? folderPaths.put(uuid, newPath) : folderPaths.remove(uuid);
+
+		if (oldPath != null && !oldPath.equals(newPath)) {
+
+			final String prefix = oldPath.concat("/");
+
+			for (final Route route : routes.values()) {
+
+				if (!route.page && route.path != null && route.path.startsWith(prefix)) {
+					refresh.add(route.uuid);
+				}
+			}
+
+			for (final Map.Entry<String, String> entry : folderPaths.entrySet()) {
+
+				if (entry.getValue().startsWith(prefix)) {
+
+					final NodeInterface child = app.getNodeById(entry.getKey());
+					if (child instanceof Folder) {
+
+						entry.setValue(((Folder)child).getPath());
+
+					} else {
+
+						folderPaths.remove(entry.getKey());
+					}
+				}
+			}
+		}
+	}
+
+	private void update(final String uuid, final Route route) {
+
+		final Route existing = routes.remove(uuid);
+		if (existing != null) {
+
+			remove(existing);
+		}
+
+		if (route != null) {
+
+			routes.put(uuid, route);
+
+			if (route.page) {
+
+				add(pagesByPath, route.path, route);
+				add(pagesByName, route.name, route);
+
+			} else {
+
+				add(filesByPath, route.path, route);
+				add(filesByName, route.name, route);
+			}
+
+			if (route.basicAuth) {
+				basicAuthRoutes++;
+			}
+		}
+	}
+
+	private void remove(final Route route) {
+
+		if (route.page) {
+
+			remove(pagesByPath, route.path, route);
+			remove(pagesByName, route.name, route);
+
+		} else {
+
+			remove(filesByPath, route.path, route);
+			remove(filesByName, route.name, route);
+		}
+
+		if (route.basicAuth) {
+			basicAuthRoutes--;
+		}
+	}
+
+	private void add(final Map<String, List<Route>> map, final String key, final Route route) {
+
+		if (key != null) {
+
+			final List<Route> existing = map.get(key);
+			final List<Route> list     = existing != null ? new ArrayList<>(existing) : new ArrayList<>(1);
+
+			list.add(route);
+
+			if (route.page) {
+				Collections.sort(list, pageOrder);
+			}
+
+			// lists are replaced instead of modified, so readers never need to lock
+			map.put(key, Collections.unmodifiableList(list));
+		}
+	}
+
+	private void remove(final Map<String, List<Route>> map, final String key, final Route route) {
+
+		if (key != null) {
+
+			final List<Route> existing = map.get(key);
+			if (existing != null) {
+
+				final List<Route> list = new ArrayList<>(existing);
+
+				list.remove(route);
+
+				if (list.isEmpty()) {
+
+					map.remove(key);
+
+				} else {
+
+					map.put(key, Collections.unmodifiableList(list));
+				}
+			}
+		}
+	}
+
+	private void updateIndexPages() {
+
+		final List<Route> list = new ArrayList<>();
+
+		for (final Route route : routes.values()) {
+
+			if (route.page && route.position != null) {
+				list.add(route);
+			}
+		}
+
+		Collections.sort(list, pageOrder);
+
+		indexPages = Collections.unmodifiableList(list);
+	}
+
+	private List<String> getPagesOfSite(final String siteId) {
+
+		final List<String> pages = new ArrayList<>();
+
+		for (final Route route : routes.values()) {
+
+			if (siteId.equals(route.siteId)) {
+				pages.add(route.uuid);
+			}
+		}
+
+		return pages;
+	}
+
+	private Route createRoute(final NodeInterface node) {
+
+		if (node instanceof Page) {
+
+			final Page page = (Page)node;
+			final Site site = page.getSite();
+
+			return new Route(page.getUuid(), true, page.getPath(), page.getName(), page.getProperty(StructrApp.key(Page.class, "position")), page.getEnableBasicAuth(), site);
+		}
+
+		if (node instanceof File) {
+
+			final File file = (File)node;
+
+			return new Route(file.getUuid(), false, file.getPath(), file.getName(), null, file.getEnableBasicAuth(), null);
+		}
+
+		return null;
+	}
+
+	// ----- nested classes -----
+	/**
+	 * An entry point in the route table.
+	 */
+	public static class Route {
+
+		private String uuid       = null;
+		private String path       = null;
+		private String name       = null;
+		private String siteId     = null;
+		private String hostname   = null;
+		private Integer sitePort  = null;
+		private Integer position  = null;
+		private boolean basicAuth = false;
+		private boolean page      = false;
+
+		private Route(final String uuid, final boolean page, final String path, final String name, final Integer position, final boolean basicAuth, final Site site) {
+
+			this.uuid      = uuid;
+			this.page      = page;
+			this.path      = path;
+			this.name      = name;
+			this.position  = position;
+			this.basicAuth = basicAuth;
+
+			if (site != null) {
+
+				this.siteId   = site.getUuid();
+				this.hostname = site.getHostname();
+				this.sitePort = site.getPort();
+			}
+		}
+
+		public String getUuid() {
+			return uuid;
+		}
+
+		public boolean isPage() {
+			return page;
+		}
+
+		public boolean hasPosition() {
+			return position != null;
+		}
+
+		public boolean hasBasicAuth() {
+			return basicAuth;
+		}
+
+		/**
+		 * Indicates whether this entry point belongs to the site with
+		 * the given host name and port, or to no site at all.
+		 *
+		 * @param serverName
+		 * @param serverPort
+		 * @return whether this entry point is visible for the given host
+		 */
+		public boolean isVisibleForSite(final String serverName, final int serverPort) {
+
+			if (siteId == null) {
+				return true;
+			}
+
+			if (StringUtils.isNotBlank(serverName) && !serverName.equals(hostname)) {
+				return false;
+			}
+
+			return sitePort == null || serverPort == sitePort;
+		}
+	}
+}
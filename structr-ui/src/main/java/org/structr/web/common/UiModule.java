@@ -23,7 +23,9 @@ import org.structr.api.service.LicenseManager;
 import org.structr.core.datasources.DataSources;
 import org.structr.core.entity.AbstractSchemaNode;
 import org.structr.core.function.Functions;
+import org.structr.core.graph.TransactionCommand;
 import org.structr.module.StructrModule;
+import org.structr.rest.resource.EnvResource;
 import org.structr.schema.SourceFile;
 import org.structr.schema.action.Actions;
 import org.structr.web.datasource.CypherGraphDataSource;
@@ -81,6 +83,10 @@ public class UiModule implements StructrModule {
 		DataSources.put(true, LicenseManager.Community, "cypherDataSource",             new CypherGraphDataSource());
 		DataSources.put(true, LicenseManager.Community, "functionDataSource",           new FunctionDataSource());
 		DataSources.put(true, LicenseManager.Community, "xpathDataSource",              new XPathGraphDataSource());
+
+		TransactionCommand.registerTransactionListener(FragmentCache.getInstance());
+		TransactionCommand.registerTransactionListener(RouteTable.getInstance());
+		EnvResource.registerCacheStatistics("fragments", FragmentCache::getStatistics);
 	}
 
 	@Override
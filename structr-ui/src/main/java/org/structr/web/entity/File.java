@@ -112,7 +112,7 @@ public interface File extends AbstractFile, Indexable, Linkable, JavaScriptSourc
 		type.addIntegerProperty("version",         PropertyView.Ui).setIndexed(true);
 		type.addLongProperty("checksum",           PropertyView.Ui).setIndexed(true);
 		type.addStringProperty("md5",              PropertyView.Ui);
-		type.addLongProperty("crc32").setIndexed(true);
+		type.addLongProperty("crc32").setIndexed(true).setHint("CRC32 checksum of the file content. Files whose checksums were computed by older versions contain the xxHash checksum here, the value is corrected when the checksums are computed again.");
 		type.addStringProperty("sha1");
 		type.addStringProperty("sha512");
 		type.addIntegerProperty("position").setIndexed(true);
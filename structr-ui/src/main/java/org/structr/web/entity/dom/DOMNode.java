@@ -70,6 +70,7 @@ import org.structr.schema.json.JsonObjectType;
 import org.structr.schema.json.JsonReferenceType;
 import org.structr.schema.json.JsonSchema;
 import org.structr.web.common.AsyncBuffer;
+import org.structr.web.common.FragmentCache;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
 import org.structr.web.common.StringRenderBuffer;
@@ -119,6 +120,8 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 		type.addBooleanProperty("hideOnIndex").setCategory(QUERY_CATEGORY);
 		type.addBooleanProperty("hideOnDetail").setCategory(QUERY_CATEGORY);
 		type.addBooleanProperty("dontCache").setDefaultValue("false");
+		type.addBooleanProperty("cacheRenderedOutput").setDefaultValue("false").setCategory(PAGE_CATEGORY).setHint("Cache the rendered output of this element and its children for anonymous requests. The cached output is invalidated when the element, one of its children or one of the data objects used for rendering is modified.");
+		type.addStringProperty("cacheKeyParameters").setCategory(PAGE_CATEGORY).setHint("Comma-separated list of request parameters the rendered output depends on. The output is cached separately for each combination of values.");
 		type.addBooleanProperty("isDOMNode").setReadOnly(true).addTransformer(ConstantBooleanTrue.class.getName()).setCategory(PAGE_CATEGORY);
 
 		type.addIntegerProperty("domSortPosition").setCategory(PAGE_CATEGORY);
@@ -130,6 +133,7 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 		type.addPropertyGetter("dataKey", String.class);
 		type.addPropertyGetter("showConditions", String.class);
 		type.addPropertyGetter("hideConditions", String.class);
+		type.addPropertyGetter("cacheKeyParameters", String.class);
 
 		type.addPropertyGetter("parent", DOMNode.class);
 		type.addPropertyGetter("children", Iterable.class);
@@ -170,6 +174,7 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 
 		type.overrideMethod("inTrash",                     false, "return getParent() == null && getOwnerDocumentAsSuperUser() == null;");
 		type.overrideMethod("dontCache",                   false, "return getProperty(dontCacheProperty);");
+		type.overrideMethod("cacheRenderedOutput",         false, "return getProperty(cacheRenderedOutputProperty);");
 		type.overrideMethod("renderDetails",               false, "return getProperty(renderDetailsProperty);");
 		type.overrideMethod("hideOnIndex",                 false, "return getProperty(hideOnIndexProperty);");
 		type.overrideMethod("hideOnDetail",                false, "return getProperty(hideOnDetailProperty);");
@@ -313,6 +318,7 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 	boolean avoidWhitespace();
 	boolean inTrash();
 	boolean dontCache();
+	boolean cacheRenderedOutput();
 	boolean hideOnIndex();
 	boolean hideOnDetail();
 	boolean renderDetails();
@@ -326,6 +332,7 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 	String getIdHashOrProperty();
 	String getShowConditions();
 	String getHideConditions();
+	String getCacheKeyParameters();
 	String getContent(final RenderContext.EditMode editMode) throws FrameworkException;
 	String getDataHash();
 	String getDataKey();
@@ -1469,6 +1476,10 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 	static void render(final DOMNode thisNode, final RenderContext renderContext, final int depth) throws FrameworkException {
 
 		final SecurityContext securityContext = renderContext.getSecurityContext();
+
+		// visibility changes of this node must invalidate enclosing cached fragments
+		renderContext.addFragmentDependency(thisNode);
+
 		final EditMode editMode = renderContext.getEditMode(securityContext.getUser(false));
 
 		// admin-only edit modes ==> visibility check not necessary
@@ -1489,6 +1500,50 @@ public interface DOMNode extends NodeInterface, Node, Renderable, DOMAdoptable,
 			return;
 		}
 
+		final String cacheKey = (!isAdminOnlyEditMode && thisNode.cacheRenderedOutput()) ? FragmentCache.getCacheKey(thisNode, renderContext, depth) : null;
+		if (cacheKey != null) {
+
+			final FragmentCache cache             = FragmentCache.getInstance();
+			final FragmentCache.Fragment fragment = cache.get(cacheKey, renderContext.getPage());
+
+			if (fragment != null) {
+
+				renderContext.getBuffer().append(fragment.getOutput());
+				renderContext.addFragmentDependencies(fragment);
+
+			} else {
+
+				final FragmentCache.Capture capture = cache.newCapture();
+
+				renderContext.startFragmentCapture(capture);
+
+				try {
+
+					renderContext.addFragmentDependency(thisNode);
+					renderUncached(thisNode, renderContext, depth);
+
+				} finally {
+
+					renderContext.stopFragmentCapture(capture);
+				}
+
+				cache.put(cacheKey, capture);
+			}
+
+		} else {
+
+			renderUncached(thisNode, renderContext, depth);
+		}
+	}
+
+	static void renderUncached(final DOMNode thisNode, final RenderContext renderContext, final int depth) throws FrameworkException {
+
+		final SecurityContext securityContext = renderContext.getSecurityContext();
+		final EditMode editMode               = renderContext.getEditMode(securityContext.getUser(false));
+		final boolean isAdminOnlyEditMode     = (EditMode.RAW.equals(editMode) || EditMode.WIDGET.equals(editMode) || EditMode.DEPLOYMENT.equals(editMode));
+		final GraphObject details             = renderContext.getDetailsDataObject();
+		final boolean detailMode              = details != null;
+
 		if (isAdminOnlyEditMode) {
 
 			thisNode.renderContent(renderContext, depth);
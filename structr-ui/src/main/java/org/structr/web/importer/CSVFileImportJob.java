@@ -22,9 +22,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,10 +40,11 @@ import org.structr.common.error.FrameworkException;
 import org.structr.core.JsonInput;
 import org.structr.core.app.App;
 import org.structr.core.app.StructrApp;
-import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Principal;
 import org.structr.core.entity.Relation;
+import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
+import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 import org.structr.module.StructrModule;
 import org.structr.module.api.APIBuilder;
@@ -119,8 +124,6 @@ public class CSVFileImportJob extends FileImportJob {
 					return;
 				}
 
-				final long startTime = System.currentTimeMillis();
-
 				reportBegin();
 
 				final ResultTransformer mapper     = builder.createMapping(app, targetType, importTypeName, importMappings, transforms);
@@ -147,56 +150,60 @@ public class CSVFileImportJob extends FileImportJob {
 				final Character quoteCharacter     = StringUtils.isNotEmpty(quoteChar) ? quoteChar.charAt(0) : null;
 				final Iterable<JsonInput> iterable = CsvHelper.cleanAndParseCSV(threadContext, new InputStreamReader(is, "utf-8"), targetEntityType, fieldSeparator, quoteCharacter, range, reverse(importMappings), strictQuotes);
 				final Iterator<JsonInput> iterator = iterable.iterator();
-				int chunks                         = 0;
-				int overallCount                   = 0;
+				final boolean bulk                 = canCreateInBulk(targetEntityType);
+				final boolean isNodeImport         = currentImportType.equals(IMPORT_TYPE.NODE);
+				final Class entityType             = targetEntityType;
+				final Class sourceNodeType         = relSourceType;
+				final Class targetNodeType         = relTargetType;
 
-				while (iterator.hasNext()) {
+				// transform and convert input
+				final ChunkConverter<JsonInput, ImportRow> converter = (workerContext, chunk) -> {
 
-					int count = 0;
+					final List<ImportRow> rows = new ArrayList<>(chunk.size());
 
-					try (final Tx tx = app.tx()) {
+					for (final JsonInput input : chunk) {
 
-						final long chunkStartTime = System.currentTimeMillis();
+						mapper.transformInput(workerContext, entityType, input);
 
-						while (iterator.hasNext() && count++ < commitInterval) {
+						rows.add(new ImportRow((String)input.get("sourceId"), (String)input.get("targetId"), PropertyMap.inputTypeToJavaType(workerContext, entityType, input)));
+					}
 
-							final JsonInput input = iterator.next();
+					return rows;
+				};
 
-							mapper.transformInput(threadContext, targetEntityType, input);
+				// create entities, one transaction per chunk
+				final ChunkWriter<ImportRow> writer = (chunk) -> {
 
-							if (currentImportType.equals(IMPORT_TYPE.NODE)) {
+					try (final Tx tx = app.tx()) {
 
-								app.create(targetEntityType, PropertyMap.inputTypeToJavaType(threadContext, targetEntityType, input));
+						final int count;
 
-							} else {
+						if (isNodeImport) {
 
-								final AbstractNode sourceNode = (AbstractNode)app.get(relSourceType, (String)input.get("sourceId"));
-								final AbstractNode targetNode = (AbstractNode)app.get(relTargetType, (String)input.get("targetId"));
+							count = writeNodes(app, entityType, chunk, bulk);
 
-								app.create(sourceNode, targetNode, targetEntityType, PropertyMap.inputTypeToJavaType(threadContext, targetEntityType, input));
-							}
+						} else {
 
-							overallCount++;
+							count = writeRelationships(app, entityType, sourceNodeType, targetNodeType, chunk, bulk);
 						}
 
 						tx.success();
 
-						chunks++;
+						return count;
+					}
+				};
 
-						chunkFinished(chunkStartTime, chunks, commitInterval, overallCount);
+				if (!transforms.isEmpty() || hasRelatedProperties(entityType, importMappings.keySet())) {
 
-					}
+					// transformation scripts and related properties can create nodes, so conversion
+					// must run in the same transaction in which the chunk is written
+					runSequentialImport(threadContext, iterator, commitInterval, converter, writer);
 
-					// do this outside of the transaction!
-					shouldPause();
-					if (shouldAbort()) {
-						return;
-					}
+				} else {
 
+					runImportPipeline(iterator, commitInterval, converter, writer);
 				}
 
-				importFinished(startTime, overallCount);
-
 			} catch (IOException | FrameworkException fex) {
 
 				reportException(fex);
@@ -233,4 +240,113 @@ public class CSVFileImportJob extends FileImportJob {
 	public String getJobExceptionMessageType() {
 		return "FILE_IMPORT_EXCEPTION";
 	}
+
+	// ----- private methods -----
+	private boolean hasRelatedProperties(final Class type, final Set<String> propertyNames) {
+
+		for (final String propertyName : propertyNames) {
+
+			final PropertyKey key = StructrApp.key(type, propertyName, false);
+			if (key != null && key.relatedType() != null) {
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private int writeNodes(final App app, final Class type, final List<ImportRow> rows, final boolean bulk) throws FrameworkException {
+
+		if (bulk) {
+
+			final List<PropertyMap> properties = new ArrayList<>(rows.size());
+
+			for (final ImportRow row : rows) {
+				properties.add(row.properties);
+			}
+
+			app.create(type, properties);
+
+		} else {
+
+			for (final ImportRow row : rows) {
+				app.create(type, row.properties);
+			}
+		}
+
+		return rows.size();
+	}
+
+	private int writeRelationships(final App app, final Class type, final Class sourceType, final Class targetType, final List<ImportRow> rows, final boolean bulk) throws FrameworkException {
+
+		final Set<String> sourceIds = new LinkedHashSet<>();
+		final Set<String> targetIds = new LinkedHashSet<>();
+
+		for (final ImportRow row : rows) {
+
+			if (row.sourceId != null) {
+				sourceIds.add(row.sourceId);
+			}
+
+			if (row.targetId != null) {
+				targetIds.add(row.targetId);
+			}
+		}
+
+		// resolve source and target nodes of the whole chunk with one query each
+		final Map<String, NodeInterface> sourceNodes = resolveNodes(app, sourceType, sourceIds);
+		final Map<String, NodeInterface> targetNodes = resolveNodes(app, targetType, targetIds);
+		final List<PropertyMap> properties           = new ArrayList<>(rows.size());
+		final List<NodeInterface> sources            = new ArrayList<>(rows.size());
+		final List<NodeInterface> targets            = new ArrayList<>(rows.size());
+		int count                                    = 0;
+
+		for (final ImportRow row : rows) {
+
+			final NodeInterface sourceNode = sourceNodes.get(row.sourceId);
+			final NodeInterface targetNode = targetNodes.get(row.targetId);
+
+			if (sourceNode == null || targetNode == null) {
+
+				// skip this row, the rest of the import can still succeed
+				logger.warn("{}: Cannot create relationship of type {}, source node {} or target node {} not found, skipping.", getJobType(), type.getSimpleName(), row.sourceId, row.targetId);
+				continue;
+			}
+
+			if (bulk) {
+
+				properties.add(row.properties);
+				sources.add(sourceNode);
+				targets.add(targetNode);
+
+			} else {
+
+				app.create(sourceNode, targetNode, type, row.properties);
+			}
+
+			count++;
+		}
+
+		if (bulk && !properties.isEmpty()) {
+			app.create(type, sources, targets, properties);
+		}
+
+		return count;
+	}
+
+	// ----- nested classes -----
+	private static class ImportRow {
+
+		private PropertyMap properties = null;
+		private String sourceId        = null;
+		private String targetId        = null;
+
+		public ImportRow(final String sourceId, final String targetId, final PropertyMap properties) {
+
+			this.properties = properties;
+			this.sourceId   = sourceId;
+			this.targetId   = targetId;
+		}
+	}
 }
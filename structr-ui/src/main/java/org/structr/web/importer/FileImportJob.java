@@ -21,17 +21,36 @@ package org.structr.web.importer;
 import java.io.InputStream;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.structr.common.AccessMode;
 import org.structr.common.ContextStore;
 import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
+import org.structr.core.GraphObject;
 import org.structr.core.app.App;
+import org.structr.core.app.Query;
 import org.structr.core.app.StructrApp;
 import org.structr.core.entity.Principal;
+import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.TransactionCommand;
 import org.structr.core.graph.Tx;
 import org.structr.core.scheduler.ScheduledJob;
@@ -77,6 +96,11 @@ abstract class FileImportJob extends ScheduledJob {
 		return processedChunks;
 	}
 
+	@Override
+	public String getJobClass() {
+		return "import";
+	}
+
 	@Override
 	public Map<String, Object> getStatusData (final JobStatusMessageSubtype subtype) {
 
@@ -113,6 +137,10 @@ abstract class FileImportJob extends ScheduledJob {
 	}
 
 	protected void chunkFinished(final long chunkStartTime, final int currentChunkNo, final int chunkSize, final int overallCount) {
+		chunkFinished(chunkStartTime, currentChunkNo, chunkSize, overallCount, null);
+	}
+
+	protected void chunkFinished(final long chunkStartTime, final int currentChunkNo, final int chunkSize, final int overallCount, final Map<String, Object> pipelineStatistics) {
 
 		processedChunks                   = currentChunkNo;
 
@@ -121,17 +149,38 @@ abstract class FileImportJob extends ScheduledJob {
 		final String formattedDuration    = decimalFormat.format((duration / 1000.0)) + "s";
 		final String objectsPerSecond     = decimalFormat.format(chunkSize / (duration / 1000.0));
 
-		logger.info("{}: Committing chunk {}. (Objects: {} - Time: {} - Objects/s: {} - Objects overall: {})", getJobType(), currentChunkNo, chunkSize, formattedDuration, objectsPerSecond, overallCount);
+		if (pipelineStatistics != null) {
+
+			logger.info("{}: Committing chunk {}. (Objects: {} - Time: {} - Objects/s: {} - Objects overall: {} - Pipeline: {})", getJobType(), currentChunkNo, chunkSize, formattedDuration, objectsPerSecond, overallCount, pipelineStatistics);
+
+		} else {
+
+			logger.info("{}: Committing chunk {}. (Objects: {} - Time: {} - Objects/s: {} - Objects overall: {})", getJobType(), currentChunkNo, chunkSize, formattedDuration, objectsPerSecond, overallCount);
+		}
 
 		final Map<String, Object> data = getStatusData(JobStatusMessageSubtype.CHUNK);
 		data.put("currentChunkNo",   currentChunkNo);
 		data.put("objectsCreated",   chunkSize);
 		data.put("duration",         formattedDuration);
 		data.put("objectsPerSecond", objectsPerSecond);
+
+		if (pipelineStatistics != null) {
+			data.put("pipeline", pipelineStatistics);
+		}
+
 		TransactionCommand.simpleBroadcastGenericMessage(data);
 
 	}
 
+	/**
+	 * Entities of the given type can be created in bulk if there are no
+	 * creation transformations that could depend on the entities created
+	 * before them in the same chunk.
+	 */
+	protected boolean canCreateInBulk(final Class type) {
+		return StructrApp.getConfiguration().getEntityCreationTransformations(type).isEmpty();
+	}
+
 	protected void importFinished(final long startTime, final int objectCount) {
 
 		final long duration               = System.currentTimeMillis() - startTime;
@@ -149,6 +198,185 @@ abstract class FileImportJob extends ScheduledJob {
 
 	}
 
+	/**
+	 * Imports the given input in three stages. The input is read and
+	 * parsed in chunks on a reader thread, because the parsers can only
+	 * be consumed sequentially. Each chunk is then converted by one of the
+	 * worker threads in a transaction that is always rolled back, and the
+	 * converted chunks are written on the current thread in input order.
+	 * At most queueSize chunks are waiting for the writer, reading blocks
+	 * when the queue is full.
+	 *
+	 * Because the worker transactions are rolled back, the converter must
+	 * not have side effects. Use runSequentialImport if converting the
+	 * input can create nodes, e.g. in transformation scripts.
+	 *
+	 * The number of worker threads and the queue size can be set with the
+	 * "threads" and "queueSize" configuration values.
+	 *
+	 * @param input
+	 * @param chunkSize
+	 * @param converter
+	 * @param writer
+	 * @throws FrameworkException
+	 */
+	protected <I, O> void runImportPipeline(final Iterator<I> input, final int chunkSize, final ChunkConverter<I, O> converter, final ChunkWriter<O> writer) throws FrameworkException {
+
+		final int threadCount                       = Math.max(1, parseInt(configuration.get("threads"), Math.min(4, Runtime.getRuntime().availableProcessors())));
+		final int queueSize                         = Math.max(1, parseInt(configuration.get("queueSize"), threadCount * 2));
+		final BlockingQueue<Future<Chunk<O>>> queue = new ArrayBlockingQueue<>(queueSize);
+		final ExecutorService workers               = Executors.newFixedThreadPool(threadCount, new ImportThreadFactory(getJobType()));
+		final AtomicBoolean stopped                 = new AtomicBoolean(false);
+		final Thread reader                         = new Thread(() -> readChunks(input, chunkSize, converter, workers, queue, stopped), getJobType() + "-import-reader");
+		final long startTime                        = System.currentTimeMillis();
+		int overallCount                            = 0;
+		int chunks                                  = 0;
+
+		reader.setDaemon(true);
+		reader.start();
+
+		try {
+
+			while (true) {
+
+				final int queueDepth = queue.size();
+				final Chunk<O> chunk = queue.take().get();
+
+				if (chunk == null) {
+					break;
+				}
+
+				final long chunkStartTime = System.currentTimeMillis();
+				final long t0             = System.nanoTime();
+				final int count           = writer.write(chunk.objects);
+
+				chunk.writeNanos = System.nanoTime() - t0;
+
+				overallCount += count;
+				chunks++;
+
+				chunkFinished(chunkStartTime, chunks, count, overallCount, chunk.getStatistics(queueDepth, queueSize));
+
+				// do this outside of the transaction!
+				shouldPause();
+				if (shouldAbort()) {
+					return;
+				}
+			}
+
+			importFinished(startTime, overallCount);
+
+		} catch (InterruptedException iex) {
+
+			throw new FrameworkException(500, "Import was interrupted");
+
+		} catch (ExecutionException eex) {
+
+			final Throwable cause = eex.getCause();
+
+			if (cause instanceof FrameworkException) {
+				throw (FrameworkException)cause;
+			}
+
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+
+			throw new FrameworkException(500, cause.getMessage());
+
+		} finally {
+
+			// unblock and stop the reader and the workers
+			stopped.set(true);
+			queue.clear();
+			reader.interrupt();
+			workers.shutdownNow();
+		}
+	}
+
+	/**
+	 * Imports the given input chunk by chunk on the current thread. Each
+	 * chunk is converted and written in the same transaction, so objects
+	 * that are created or looked up while converting (e.g. by scripts in
+	 * transformations, or by related properties) are committed together
+	 * with the imported data. Use this instead of runImportPipeline when
+	 * the conversion has side effects.
+	 *
+	 * @param securityContext
+	 * @param input
+	 * @param chunkSize
+	 * @param converter
+	 * @param writer
+	 * @throws FrameworkException
+	 */
+	protected <I, O> void runSequentialImport(final SecurityContext securityContext, final Iterator<I> input, final int chunkSize, final ChunkConverter<I, O> converter, final ChunkWriter<O> writer) throws FrameworkException {
+
+		final App app        = StructrApp.getInstance(securityContext);
+		final long startTime = System.currentTimeMillis();
+		int overallCount     = 0;
+		int chunks           = 0;
+
+		while (input.hasNext()) {
+
+			final long chunkStartTime = System.currentTimeMillis();
+			final List<I> objects     = new ArrayList<>(chunkSize);
+			final int count;
+
+			while (objects.size() < chunkSize && input.hasNext()) {
+				objects.add(input.next());
+			}
+
+			try (final Tx tx = app.tx()) {
+
+				count = writer.write(converter.convert(securityContext, objects));
+
+				tx.success();
+			}
+
+			overallCount += count;
+			chunks++;
+
+			chunkFinished(chunkStartTime, chunks, count, overallCount);
+
+			// do this outside of the transaction!
+			shouldPause();
+			if (shouldAbort()) {
+				return;
+			}
+		}
+
+		importFinished(startTime, overallCount);
+	}
+
+	/**
+	 * Looks up the nodes with the given UUIDs in a single query.
+	 *
+	 * @param app
+	 * @param type
+	 * @param uuids
+	 * @return a map from UUID to node, without entries for UUIDs that were not found
+	 * @throws FrameworkException
+	 */
+	protected Map<String, NodeInterface> resolveNodes(final App app, final Class type, final Collection<String> uuids) throws FrameworkException {
+
+		final Map<String, NodeInterface> nodes = new HashMap<>();
+
+		if (!uuids.isEmpty()) {
+
+			final Query<NodeInterface> query = app.nodeQuery(type).disableSorting().and();
+
+			for (final String uuid : uuids) {
+				query.or(GraphObject.id, uuid);
+			}
+
+			for (final NodeInterface node : query.getAsList()) {
+				nodes.put(node.getUuid(), node);
+			}
+		}
+
+		return nodes;
+	}
+
 	protected void reportException(Exception ex) {
 
 		final Map<String, Object> data = new LinkedHashMap();
@@ -186,4 +414,127 @@ abstract class FileImportJob extends ScheduledJob {
 
 		return is;
 	}
+
+	// ----- private methods -----
+	private <I, O> void readChunks(final Iterator<I> input, final int chunkSize, final ChunkConverter<I, O> converter, final ExecutorService workers, final BlockingQueue<Future<Chunk<O>>> queue, final AtomicBoolean stopped) {
+
+		try {
+
+			while (!stopped.get()) {
+
+				final List<I> objects = new ArrayList<>(chunkSize);
+				final long t0         = System.nanoTime();
+
+				while (objects.size() < chunkSize && input.hasNext()) {
+					objects.add(input.next());
+				}
+
+				if (objects.isEmpty()) {
+					break;
+				}
+
+				final long readNanos = System.nanoTime() - t0;
+
+				queue.put(workers.submit(() -> convertChunk(converter, objects, readNanos)));
+			}
+
+			// signal end of input
+			queue.put(CompletableFuture.completedFuture(null));
+
+		} catch (InterruptedException iex) {
+
+			// writer has stopped
+
+		} catch (Throwable t) {
+
+			final CompletableFuture<Chunk<O>> failed = new CompletableFuture<>();
+
+			failed.completeExceptionally(t);
+
+			try { queue.put(failed); } catch (InterruptedException iex) {}
+		}
+	}
+
+	private <I, O> Chunk<O> convertChunk(final ChunkConverter<I, O> converter, final List<I> objects, final long readNanos) throws FrameworkException {
+
+		final SecurityContext workerContext = SecurityContext.getInstance(user, AccessMode.Backend);
+		final App app                       = StructrApp.getInstance(workerContext);
+		final long t0                       = System.nanoTime();
+
+		workerContext.setContextStore(ctxStore);
+		workerContext.disableModificationOfAccessTime();
+		workerContext.ignoreResultCount(true);
+		workerContext.setDoTransactionNotifications(false);
+
+		// the transaction is never committed, the converter must not have side effects
+		try (final Tx tx = app.tx(false, false, false)) {
+
+			return new Chunk<>(converter.convert(workerContext, objects), readNanos, System.nanoTime() - t0);
+		}
+	}
+
+	// ----- nested classes -----
+	protected interface ChunkConverter<I, O> {
+
+		List<O> convert(final SecurityContext securityContext, final List<I> chunk) throws FrameworkException;
+	}
+
+	protected interface ChunkWriter<O> {
+
+		/**
+		 * Writes the given chunk and returns the number of objects that
+		 * were created.
+		 */
+		int write(final List<O> chunk) throws FrameworkException;
+	}
+
+	private static class Chunk<O> {
+
+		private List<O> objects   = null;
+		private long convertNanos = 0L;
+		private long readNanos    = 0L;
+		private long writeNanos   = 0L;
+
+		public Chunk(final List<O> objects, final long readNanos, final long convertNanos) {
+
+			this.convertNanos = convertNanos;
+			this.readNanos    = readNanos;
+			this.objects      = objects;
+		}
+
+		public Map<String, Object> getStatistics(final int queueDepth, final int queueSize) {
+
+			final DecimalFormat decimalFormat = new DecimalFormat("0.00", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+			final Map<String, Object> stats   = new LinkedHashMap<>();
+			final int size                    = objects.size();
+
+			stats.put("readObjectsPerSecond",    decimalFormat.format(size / (Math.max(1L, readNanos)    / 1000000000.0)));
+			stats.put("convertObjectsPerSecond", decimalFormat.format(size / (Math.max(1L, convertNanos) / 1000000000.0)));
+			stats.put("writeObjectsPerSecond",   decimalFormat.format(size / (Math.max(1L, writeNanos)   / 1000000000.0)));
+			stats.put("queueDepth",              queueDepth);
+			stats.put("queueSize",               queueSize);
+
+			return stats;
+		}
+	}
+
+	private static class ImportThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+		private String jobType            = null;
+
+		public ImportThreadFactory(final String jobType) {
+			this.jobType = jobType;
+		}
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+
+			final Thread thread = new Thread(runnable, jobType + "-import-worker-" + count.incrementAndGet());
+
+			thread.setDaemon(true);
+
+			return thread;
+		}
+	}
 }
@@ -103,6 +103,11 @@ public class ScriptJob extends ScheduledJob {
 		return "SCRIPT";
 	}
 
+	@Override
+	public String getJobClass() {
+		return "script";
+	}
+
 	@Override
 	public String getJobStatusType() {
 		return "SCRIPT_JOB_STATUS";
@@ -22,7 +22,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import javax.xml.stream.XMLStreamException;
 import org.slf4j.Logger;
@@ -107,47 +109,93 @@ public class XMLFileImportJob extends FileImportJob {
 
 					final Iterator<Map<String, Object>> iterator = new XMLHandler(configuration, reader);
 					final int batchSize                          = 100;
-					int chunks                                   = 0;
 
-					final long startTime = System.currentTimeMillis();
+					if (configuration.get("batchType") == null) {
 
-					while (iterator.hasNext()) {
+						// convert input
+						final ChunkConverter<Map<String, Object>, PropertyMap> converter = (workerContext, chunk) -> {
 
-						final long chunkStartTime = System.currentTimeMillis();
+							final List<PropertyMap> properties = new ArrayList<>(chunk.size());
 
-						int count = 0;
+							for (final Map<String, Object> input : chunk) {
+								properties.add(PropertyMap.inputTypeToJavaType(workerContext, input));
+							}
 
-						// test: open transaction
-						Tx tx = app.tx();
+							return properties;
+						};
 
-						// make transaction available in context
-						threadContext.setAttribute("currentTransaction", tx);
+						// create nodes, one transaction per chunk
+						final ChunkWriter<PropertyMap> writer = (chunk) -> {
 
-						while (iterator.hasNext() && ++count <= batchSize) {
+							try (final Tx tx = app.tx()) {
 
-							app.create(AbstractNode.class, PropertyMap.inputTypeToJavaType(threadContext, iterator.next()));
-							overallCount++;
+								// make transaction available in context
+								threadContext.setAttribute("currentTransaction", tx);
+
+								app.create(AbstractNode.class, chunk);
+
+								tx.success();
+
+								return chunk.size();
+							}
+						};
+
+						if (hasNestedNodes()) {
+
+							// nested nodes are created while the input is converted, so conversion
+							// must run in the same transaction in which the chunk is written
+							runSequentialImport(threadContext, iterator, batchSize, converter, writer);
+
+						} else {
+
+							runImportPipeline(iterator, batchSize, converter, writer);
 						}
 
-						// tx might have changed, reload from context
-						tx = (Tx)threadContext.getAttribute("currentTransaction");
-						tx.success();
-						tx.close();
+					} else {
+
+						// a batch type commits the current transaction while nested nodes are created,
+						// so conversion and creation must run sequentially in the same thread
+						final long startTime = System.currentTimeMillis();
+						int chunks           = 0;
+
+						while (iterator.hasNext()) {
+
+							final long chunkStartTime = System.currentTimeMillis();
+
+							int count = 0;
+
+							// test: open transaction
+							Tx tx = app.tx();
+
+							// make transaction available in context
+							threadContext.setAttribute("currentTransaction", tx);
+
+							while (iterator.hasNext() && ++count <= batchSize) {
 
-						chunks++;
+								app.create(AbstractNode.class, PropertyMap.inputTypeToJavaType(threadContext, iterator.next()));
+								overallCount++;
+							}
 
-						chunkFinished(chunkStartTime, chunks, batchSize, overallCount);
+							// tx might have changed, reload from context
+							tx = (Tx)threadContext.getAttribute("currentTransaction");
+							tx.success();
+							tx.close();
+
+							chunks++;
+
+							chunkFinished(chunkStartTime, chunks, batchSize, overallCount);
+
+							// do this outside of the transaction!
+							shouldPause();
+							if (shouldAbort()) {
+								return;
+							}
 
-						// do this outside of the transaction!
-						shouldPause();
-						if (shouldAbort()) {
-							return;
 						}
 
+						importFinished(startTime, overallCount);
 					}
 
-					importFinished(startTime, overallCount);
-
 				} catch (XMLStreamException | FrameworkException ex) {
 					reportException(ex);
 				}
@@ -177,4 +225,22 @@ public class XMLFileImportJob extends FileImportJob {
 	public String getJobExceptionMessageType() {
 		return "FILE_IMPORT_EXCEPTION";
 	}
+
+	// ----- private methods -----
+	private boolean hasNestedNodes() {
+
+		for (final Object value : configuration.values()) {
+
+			if (value instanceof Map) {
+
+				final Map<String, Object> typeHandler = (Map)value;
+
+				if (XMLHandler.CREATE_NODE.equals(typeHandler.get(XMLHandler.ACTION)) && !Boolean.TRUE.equals(typeHandler.get(XMLHandler.ISROOT))) {
+					return true;
+				}
+			}
+		}
+
+		return false;
+	}
 }
@@ -0,0 +1,413 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.web.servlet;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.eclipse.jetty.server.HttpOutput;
+
+/**
+ * Streams files from the local filesystem to the client, supporting
+ * single and multiple byte ranges and conditional range requests with
+ * If-Range.
+ *
+ * The content is read with positional FileChannel reads into a per-thread
+ * direct buffer that is handed to Jetty as is, so file data is never
+ * copied through the heap. Memory-mapping is not used because mappings
+ * are only released when the buffer is garbage-collected.
+ */
+public class FileStreamer {
+
+	private static final Pattern RangePattern                 = Pattern.compile("\\s*(\\d*)\\s*-\\s*(\\d*)\\s*");
+	private static final ThreadLocal<ByteBuffer> localBuffers = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(256 * 1024));
+	private static final int MAX_RANGES                       = 16;
+
+	/**
+	 * Writes the requested content of the given file to the response and
+	 * sets status, length and range headers. The content type must have
+	 * been set by the caller.
+	 *
+	 * @param request
+	 * @param response
+	 * @param fileOnDisk
+	 * @param etag the strong entity tag of the file, may be null
+	 * @param lastModified the last modification date of the file, may be null
+	 * @return the status code of the response
+	 * @throws IOException
+	 */
+	public static int streamFile(final HttpServletRequest request, final HttpServletResponse response, final java.io.File fileOnDisk, final String etag, final Date lastModified) throws IOException {
+
+		try (final FileChannel channel = FileChannel.open(fileOnDisk.toPath(), StandardOpenOption.READ)) {
+
+			final OutputStream out = response.getOutputStream();
+			final long length      = channel.size();
+			List<Range> ranges     = null;
+
+			response.setHeader("Accept-Ranges", "bytes");
+
+			if (isRangeValid(request.getHeader("If-Range"), etag, lastModified)) {
+				ranges = parseRanges(request.getHeader("Range"), length);
+			}
+
+			if (ranges == null) {
+
+				response.setStatus(HttpServletResponse.SC_OK);
+				response.setContentLengthLong(length);
+
+				transfer(channel, 0L, length, out);
+
+				return HttpServletResponse.SC_OK;
+			}
+
+			if (ranges.isEmpty()) {
+
+				response.setHeader("Content-Range", "bytes */" + length);
+				response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+
+				return HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE;
+			}
+
+			response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+
+			if (ranges.size() == 1) {
+
+				final Range range = ranges.get(0);
+
+				response.setHeader("Content-Range", range.getContentRange(length));
+				response.setContentLengthLong(range.getLength());
+
+				transfer(channel, range.getStart(), range.getLength(), out);
+
+			} else {
+
+				final String boundary          = Long.toHexString(ThreadLocalRandom.current().nextLong()) + Long.toHexString(System.nanoTime());
+				final String contentType       = response.getContentType();
+				final List<byte[]> partHeaders = new ArrayList<>();
+				final byte[] trailer           = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+				long contentLength             = trailer.length;
+
+				for (final Range range : ranges) {
+
+					final StringBuilder buf = new StringBuilder();
+
+					buf.append("\r\n--").append(boundary).append("\r\n");
+
+					if (contentType != null) {
+						buf.append("Content-Type: ").append(contentType).append("\r\n");
+					}
+
+					buf.append("Content-Range: ").append(range.getContentRange(length)).append("\r\n\r\n");
+
+					final byte[] header = buf.toString().getBytes(StandardCharsets.US_ASCII);
+
+					partHeaders.add(header);
+					contentLength += header.length + range.getLength();
+				}
+
+				response.setContentType("multipart/byteranges; boundary=" + boundary);
+				response.setContentLengthLong(contentLength);
+
+				for (int i=0; i<ranges.size(); i++) {
+
+					final Range range = ranges.get(i);
+
+					out.write(partHeaders.get(i));
+					transfer(channel, range.getStart(), range.getLength(), out);
+				}
+
+				out.write(trailer);
+			}
+
+			return HttpServletResponse.SC_PARTIAL_CONTENT;
+		}
+	}
+
+	/**
+	 * Creates a strong entity tag for the given file on disk. The size and
+	 * the modification time of the file are part of the tag because the
+	 * stored checksum is not updated when the file is modified outside of
+	 * Structr.
+	 *
+	 * @param checksum the stored checksum of the file, may be null
+	 * @param fileOnDisk
+	 * @return the entity tag, or null if the file does not exist
+	 */
+	public static String getETag(final Long checksum, final java.io.File fileOnDisk) {
+
+		if (fileOnDisk == null || !fileOnDisk.isFile()) {
+			return null;
+		}
+
+		final StringBuilder buf = new StringBuilder("\"");
+
+		if (checksum != null) {
+			buf.append(Long.toHexString(checksum)).append("-");
+		}
+
+		buf.append(Long.toHexString(fileOnDisk.length()));
+		buf.append("-");
+		buf.append(Long.toHexString(fileOnDisk.lastModified()));
+		buf.append("\"");
+
+		return buf.toString();
+	}
+
+	/**
+	 * Parses the given Range header. Overlapping and adjacent ranges are
+	 * coalesced, so the returned ranges are sorted and disjoint.
+	 *
+	 * @param header the value of the Range header, may be null
+	 * @param length the length of the file
+	 * @return the satisfiable ranges, an empty list if no range is
+	 * satisfiable, or null if the header is missing or invalid and
+	 * must be ignored
+	 */
+	public static List<Range> parseRanges(final String header, final long length) {
+
+		if (header == null || !header.startsWith("bytes=")) {
+			return null;
+		}
+
+		final List<Range> ranges = new ArrayList<>();
+
+		for (final String spec : header.substring(6).split(",")) {
+
+			final Matcher matcher = RangePattern.matcher(spec);
+			if (!matcher.matches()) {
+
+				return null;
+			}
+
+			final String first = matcher.group(1);
+			final String last  = matcher.group(2);
+
+			try {
+
+				if (first.isEmpty() && last.isEmpty()) {
+
+					return null;
+
+				} else if (first.isEmpty()) {
+
+					// suffix range, i.e. the last n bytes
+					final long suffix = Long.parseLong(last);
+					if (suffix > 0 && length > 0) {
+
+						ranges.add(new Range(Math.max(0L, length - suffix), length - 1));
+					}
+
+				} else {
+
+					final long start = Long.parseLong(first);
+					final long end   = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+
+					if (end < start) {
+						return null;
+					}
+
+					if (start < length) {
+						ranges.add(new Range(start, Math.min(end, length - 1)));
+					}
+				}
+
+			} catch (NumberFormatException nex) {
+				return null;
+			}
+		}
+
+		final List<Range> coalesced = coalesce(ranges);
+
+		// ignore requests with an excessive number of ranges and send the whole file
+		if (coalesced.size() > MAX_RANGES) {
+			return null;
+		}
+
+		return coalesced;
+	}
+
+	/**
+	 * Checks whether the given If-None-Match header matches the given
+	 * entity tag, using the weak comparison function.
+	 *
+	 * @param header the value of the If-None-Match header
+	 * @param etag
+	 * @return whether the header matches the entity tag
+	 */
+	public static boolean matchesETag(final String header, final String etag) {
+
+		if ("*".equals(header.trim())) {
+			return true;
+		}
+
+		for (final String tag : header.split(",")) {
+
+			final String value = tag.trim();
+
+			if (value.equals(etag) || (value.startsWith("W/") && value.substring(2).equals(etag))) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	// ----- private methods -----
+	private static List<Range> coalesce(final List<Range> ranges) {
+
+		if (ranges.size() < 2) {
+			return ranges;
+		}
+
+		final List<Range> result = new ArrayList<>();
+		Range current            = null;
+
+		ranges.sort(Comparator.comparingLong(Range::getStart));
+
+		for (final Range range : ranges) {
+
+			if (current != null && range.getStart() <= current.getEnd() + 1) {
+
+				current = new Range(current.getStart(), Math.max(current.getEnd(), range.getEnd()));
+
+			} else {
+
+				if (current != null) {
+					result.add(current);
+				}
+
+				current = range;
+			}
+		}
+
+		result.add(current);
+
+		return result;
+	}
+
+	private static boolean isRangeValid(final String ifRange, final String etag, final Date lastModified) {
+
+		if (ifRange == null) {
+			return true;
+		}
+
+		final String value = ifRange.trim();
+
+		// weak entity tags must not be used with If-Range
+		if (value.startsWith("\"")) {
+			return value.equals(etag);
+		}
+
+		if (value.startsWith("W/") || lastModified == null) {
+			return false;
+		}
+
+		final SimpleDateFormat httpDateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss z", Locale.US);
+		httpDateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+
+		try {
+
+			return httpDateFormat.parse(value).getTime() / 1000L == lastModified.getTime() / 1000L;
+
+		} catch (ParseException pex) {
+			return false;
+		}
+	}
+
+	private static void transfer(final FileChannel channel, final long offset, final long count, final OutputStream out) throws IOException {
+
+		final ByteBuffer buffer = localBuffers.get();
+		final long end          = offset + count;
+		long position           = offset;
+
+		while (position < end) {
+
+			buffer.clear();
+			buffer.limit((int)Math.min(buffer.capacity(), end - position));
+
+			final int read = channel.read(buffer, position);
+			if (read < 0) {
+
+				throw new IOException("Unexpected end of file, file was modified while being read");
+			}
+
+			position += read;
+
+			buffer.flip();
+
+			if (out instanceof HttpOutput) {
+
+				// blocking write, the buffer can be reused when it returns
+				((HttpOutput)out).write(buffer);
+
+			} else {
+
+				final byte[] data = new byte[buffer.remaining()];
+
+				buffer.get(data);
+				out.write(data);
+			}
+		}
+	}
+
+	// ----- nested classes -----
+	public static class Range {
+
+		private long start = 0L;
+		private long end   = 0L;
+
+		public Range(final long start, final long end) {
+
+			this.start = start;
+			this.end   = end;
+		}
+
+		public long getStart() {
+			return start;
+		}
+
+		public long getEnd() {
+			return end;
+		}
+
+		public long getLength() {
+			return end - start + 1;
+		}
+
+		public String getContentRange(final long length) {
+			return "bytes " + start + "-" + end + "/" + length;
+		}
+	}
+}
@@ -27,7 +27,6 @@ import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.LinkedHashMap;
@@ -51,7 +50,6 @@ import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateUtils;
@@ -61,12 +59,10 @@ import org.slf4j.LoggerFactory;
 import org.structr.api.config.Settings;
 import org.structr.api.util.Iterables;
 import org.structr.common.AccessMode;
-import org.structr.common.GraphObjectComparator;
 import org.structr.common.PathHelper;
 import org.structr.common.SecurityContext;
 import org.structr.common.ThreadLocalMatcher;
 import org.structr.common.error.FrameworkException;
-import org.structr.core.GraphObject;
 import org.structr.core.Services;
 import org.structr.core.app.App;
 import org.structr.core.app.Query;
@@ -88,8 +84,9 @@ import org.structr.web.auth.UiAuthenticator;
 import org.structr.web.common.FileHelper;
 import org.structr.web.common.RenderContext;
 import org.structr.web.common.RenderContext.EditMode;
+import org.structr.web.common.RouteTable;
+import org.structr.web.common.RouteTable.Route;
 import org.structr.web.common.StringRenderBuffer;
-import org.structr.web.entity.AbstractFile;
 import org.structr.web.entity.File;
 import org.structr.web.entity.Linkable;
 import org.structr.web.entity.Site;
@@ -181,7 +178,6 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 	protected void doGet(final HttpServletRequest request, final HttpServletResponse response) {
 
 		final Authenticator auth        = getConfig().getAuthenticator();
-		List<Page> pages                = null;
 		boolean requestUriContainsUuids = false;
 
 		SecurityContext securityContext;
@@ -261,7 +257,7 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 				if ((uriParts == null) || (uriParts.length == 0)) {
 
 					// find a visible page
-					rootElement = findIndexPage(securityContext, pages, edit);
+					rootElement = findIndexPage(securityContext, edit);
 
 					logger.debug("No path supplied, trying to find index page");
 
@@ -269,7 +265,7 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 
 					if (rootElement == null) {
 
-						rootElement = findPage(securityContext, pages, path, edit);
+						rootElement = findPage(securityContext, path, edit);
 
 					} else {
 
@@ -332,7 +328,7 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 						// clear possible entry points
 						request.removeAttribute(POSSIBLE_ENTRY_POINTS_KEY);
 
-						rootElement = findPage(securityContext, pages, StringUtils.substringBeforeLast(path, PathHelper.PATH_SEP), edit);
+						rootElement = findPage(securityContext, StringUtils.substringBeforeLast(path, PathHelper.PATH_SEP), edit);
 
 						renderContext.setDetailsDataObject(dataNode);
 
@@ -517,7 +513,6 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 
 		final Authenticator auth = getConfig().getAuthenticator();
 		SecurityContext securityContext;
-		List<Page> pages                = null;
 		boolean requestUriContainsUuids = false;
 		final App app;
 
@@ -578,7 +573,7 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 				if ((uriParts == null) || (uriParts.length == 0)) {
 
 					// find a visible page
-					rootElement = findIndexPage(securityContext, pages, edit);
+					rootElement = findIndexPage(securityContext, edit);
 
 					logger.debug("No path supplied, trying to find index page");
 
@@ -586,7 +581,7 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 
 					if (rootElement == null) {
 
-						rootElement = findPage(securityContext, pages, path, edit);
+						rootElement = findPage(securityContext, path, edit);
 
 					} else {
 						dontCache = true;
@@ -639,7 +634,7 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 						// clear possible entry points
 						request.removeAttribute(POSSIBLE_ENTRY_POINTS_KEY);
 
-						rootElement = findPage(securityContext, pages, StringUtils.substringBeforeLast(path, PathHelper.PATH_SEP), edit);
+						rootElement = findPage(securityContext, StringUtils.substringBeforeLast(path, PathHelper.PATH_SEP), edit);
 
 						renderContext.setDetailsDataObject(dataNode);
 
@@ -1029,25 +1024,18 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 	 */
 	private File findFile(final SecurityContext securityContext, final HttpServletRequest request, final String path) throws FrameworkException {
 
-		List<Linkable> entryPoints = findPossibleEntryPoints(securityContext, request, path);
+		File file = findFileForPath(securityContext, path);
 
 		// If no results were found, try to replace whitespace by '+' or '%20'
-		if (entryPoints.isEmpty()) {
-			entryPoints = findPossibleEntryPoints(securityContext, request, PathHelper.replaceWhitespaceByPlus(path));
+		if (file == null) {
+			file = findFileForPath(securityContext, PathHelper.replaceWhitespaceByPlus(path));
 		}
 
-		if (entryPoints.isEmpty()) {
-			entryPoints = findPossibleEntryPoints(securityContext, request, PathHelper.replaceWhitespaceByPercentTwenty(path));
+		if (file == null) {
+			file = findFileForPath(securityContext, PathHelper.replaceWhitespaceByPercentTwenty(path));
 		}
 
-		for (Linkable node : entryPoints) {
-
-			if (node instanceof File && (path.equals(node.getPath()) || node.getUuid().equals(PathHelper.getName(path)))) {
-				return (File) node;
-			}
-		}
-
-		return null;
+		return file;
 	}
 
 	/**
@@ -1056,50 +1044,32 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 	 * To be compatible with older versions, fallback to name-only lookup.
 	 *
 	 * @param securityContext
-	 * @param pages
 	 * @param path
 	 * @param edit
 	 * @return page
 	 * @throws FrameworkException
 	 */
-	private Page findPage(final SecurityContext securityContext, List<Page> pages, final String path, final EditMode edit) throws FrameworkException {
+	private Page findPage(final SecurityContext securityContext, final String path, final EditMode edit) throws FrameworkException {
 
-		if (pages == null) {
+		final RouteTable routeTable = RouteTable.getInstance();
+		final String name           = PathHelper.getName(path);
 
-			pages = StructrApp.getInstance(securityContext).nodeQuery(Page.class).getAsList();
-			Collections.sort(pages, new GraphObjectComparator(StructrApp.key(Page.class, "position"), GraphObjectComparator.ASCENDING));
-		}
-
-		for (final Page page : pages) {
+		Page page = findPage(securityContext, routeTable.getPagesByPath(path), edit);
 
-			final String pagePath = page.getPath();
-			if (pagePath != null && pagePath.equals(path) && (EditMode.CONTENT.equals(edit) || isVisibleForSite(securityContext.getRequest(), page))) {
-
-				return page;
-			}
+		if (page == null) {
+			page = findPage(securityContext, routeTable.getPagesByName(name), edit);
 		}
 
-		final String name     = PathHelper.getName(path);
-
-		for (final Page page : pages) {
+		if (page == null) {
 
-			final String pageName = page.getName();
-			if (pageName != null && pageName.equals(name) && (EditMode.CONTENT.equals(edit) || isVisibleForSite(securityContext.getRequest(), page))) {
+			final Route route = routeTable.get(name);
+			if (route != null && route.isPage()) {
 
-				return page;
+				page = findPage(securityContext, Arrays.asList(route), edit);
 			}
 		}
 
-		for (final Page page : pages) {
-
-			final String pageUuid = page.getUuid();
-			if (pageUuid != null && pageUuid.equals(name) && (EditMode.CONTENT.equals(edit) || isVisibleForSite(securityContext.getRequest(), page))) {
-
-				return page;
-			}
-		}
-
-		return null;
+		return page;
 	}
 
 	/**
@@ -1107,24 +1077,19 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 	 * current security context and for the given site.
 	 *
 	 * @param securityContext
-	 * @param pages
 	 * @param edit
 	 * @return page
 	 * @throws FrameworkException
 	 */
-	private Page findIndexPage(final SecurityContext securityContext, List<Page> pages, final EditMode edit) throws FrameworkException {
+	private Page findIndexPage(final SecurityContext securityContext, final EditMode edit) throws FrameworkException {
 
-		final PropertyKey<Integer> positionKey = StructrApp.key(Page.class, "position");
+		final App app = StructrApp.getInstance(securityContext);
 
-		if (pages == null) {
-
-			pages = StructrApp.getInstance(securityContext).nodeQuery(Page.class).getAsList();
-			Collections.sort(pages, new GraphObjectComparator(positionKey, GraphObjectComparator.ASCENDING));
-		}
+		for (final Route route : RouteTable.getInstance().getIndexPages()) {
 
-		for (Page page : pages) {
+			final Page page = app.get(Page.class, route.getUuid());
 
-			if (securityContext.isVisible(page) && page.getProperty(positionKey) != null && ((EditMode.CONTENT.equals(edit) || isVisibleForSite(securityContext.getRequest(), page)) || (page.getEnableBasicAuth() && page.isVisibleToAuthenticatedUsers()))) {
+			if (page != null && securityContext.isVisible(page) && ((EditMode.CONTENT.equals(edit) || isVisibleForSite(securityContext.getRequest(), route)) || (page.getEnableBasicAuth() && page.isVisibleToAuthenticatedUsers()))) {
 
 				return page;
 			}
@@ -1299,94 +1264,49 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 		return false;
 	}
 
-	private List<Linkable> findPossibleEntryPointsByUuid(final SecurityContext securityContext, final HttpServletRequest request, final String uuid) throws FrameworkException {
-
-		final List<Linkable> possibleEntryPoints = (List<Linkable>) request.getAttribute(POSSIBLE_ENTRY_POINTS_KEY);
-
-		if (CollectionUtils.isNotEmpty(possibleEntryPoints)) {
-			return possibleEntryPoints;
-		}
-
-		if (uuid.length() > 0) {
+	private Page findPage(final SecurityContext securityContext, final List<Route> routes, final EditMode edit) throws FrameworkException {
 
-			logger.debug("Requested id: {}", uuid);
-
-			final Query query = StructrApp.getInstance(securityContext).nodeQuery();
+		final App app = StructrApp.getInstance(securityContext);
 
-			query.and(GraphObject.id, uuid);
-			query.and().orType(Page.class).orTypes(File.class);
+		for (final Route route : routes) {
 
-			// Searching for pages needs super user context anyway
-			List<Linkable> results = query.getAsList();
+			if (EditMode.CONTENT.equals(edit) || isVisibleForSite(securityContext.getRequest(), route)) {
 
-			logger.debug("{} results", results.size());
-			request.setAttribute(POSSIBLE_ENTRY_POINTS_KEY, results);
+				final Page page = app.get(Page.class, route.getUuid());
+				if (page != null) {
 
-			return (List<Linkable>) results;
+					return page;
+				}
+			}
 		}
 
-		return Collections.EMPTY_LIST;
+		return null;
 	}
 
-	private List<Linkable> findPossibleEntryPointsByPath(final SecurityContext securityContext, final HttpServletRequest request, final String path) throws FrameworkException {
-
-		final List<Linkable> possibleEntryPoints = (List<Linkable>) request.getAttribute(POSSIBLE_ENTRY_POINTS_KEY);
+	private File findFileForPath(final SecurityContext securityContext, final String path) throws FrameworkException {
 
-		if (CollectionUtils.isNotEmpty(possibleEntryPoints)) {
-			return possibleEntryPoints;
-		}
-
-		if (path.length() > 0) {
-
-			logger.debug("Requested path: {}", path);
-
-			final Query pageQuery = StructrApp.getInstance(securityContext).nodeQuery();
-
-			pageQuery.and(StructrApp.key(Page.class, "path"), path).andType(Page.class);
-			final List<Linkable> pages = pageQuery.getAsList();
+		final RouteTable routeTable = RouteTable.getInstance();
+		final App app               = StructrApp.getInstance(securityContext);
 
-			final Query fileQuery = StructrApp.getInstance(securityContext).nodeQuery();
-			fileQuery.and(StructrApp.key(AbstractFile.class, "path"), path).andTypes(File.class);
+		for (final Route route : routeTable.getFilesByPath(path)) {
 
-			final List<Linkable> files = fileQuery.getAsList();
+			final File file = app.get(File.class, route.getUuid());
+			if (file != null) {
 
-			logger.debug("Found {} pages and {} files/folders", new Object[] { pages.size(), files.size() });
-
-			final List<Linkable> linkables = (List<Linkable>) pages;
-			linkables.addAll(files);
-
-			request.setAttribute(POSSIBLE_ENTRY_POINTS_KEY, linkables);
-
-			return linkables;
-		}
-
-		return Collections.EMPTY_LIST;
-	}
-
-	private List<Linkable> findPossibleEntryPoints(final SecurityContext securityContext, final HttpServletRequest request, final String path) throws FrameworkException {
-
-		List<Linkable> possibleEntryPoints = (List<Linkable>) request.getAttribute(POSSIBLE_ENTRY_POINTS_KEY);
-
-		if (CollectionUtils.isNotEmpty(possibleEntryPoints)) {
-			return possibleEntryPoints;
+				return file;
+			}
 		}
 
-		final int numberOfParts = PathHelper.getParts(path).length;
-
-		if (numberOfParts > 0) {
-
-			logger.debug("Requested name {}", path);
+		if (PathHelper.getParts(path).length == 1) {
 
-			possibleEntryPoints = findPossibleEntryPointsByPath(securityContext, request, path);
+			final Route route = routeTable.get(PathHelper.getName(path));
+			if (route != null && !route.isPage()) {
 
-			if (possibleEntryPoints.isEmpty() && numberOfParts == 1) {
-				possibleEntryPoints = findPossibleEntryPointsByUuid(securityContext, request, PathHelper.getName(path));
+				return app.get(File.class, route.getUuid());
 			}
-
-			return possibleEntryPoints;
 		}
 
-		return Collections.EMPTY_LIST;
+		return null;
 	}
 
 	//~--- set methods ----------------------------------------------------
@@ -1472,6 +1392,29 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 		return notModified;
 	}
 
+	/**
+	 * Check If-None-Match against the given entity tag, or If-Modified-Since
+	 * if there is no entity tag. The entity tag takes precedence over the
+	 * modification date, see RFC 7232, section 6.
+	 */
+	private static boolean notModified(final HttpServletRequest request, HttpServletResponse response, final File file, final String etag, final boolean dontCache) {
+
+		// always called because it sets the caching headers
+		final boolean notModifiedSince = notModifiedSince(request, response, file, dontCache);
+		final String ifNoneMatch       = request.getHeader("If-None-Match");
+
+		if (etag != null && ifNoneMatch != null) {
+
+			final boolean notModified = FileStreamer.matchesETag(ifNoneMatch, etag);
+
+			response.setStatus(notModified ? HttpServletResponse.SC_NOT_MODIFIED : HttpServletResponse.SC_OK);
+
+			return notModified;
+		}
+
+		return notModifiedSince;
+	}
+
 	private void streamFile(SecurityContext securityContext, final File file, HttpServletRequest request, HttpServletResponse response, final EditMode edit) throws IOException {
 
 		if (!securityContext.isVisible(file)) {
@@ -1504,7 +1447,17 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 
 		boolean dontCache = file.getProperty(StructrApp.key(File.class, "dontCache"));
 
-		if (!EditMode.WIDGET.equals(edit) && notModifiedSince(request, response, file, dontCache)) {
+		// templates are rendered and can only be streamed from the database
+		final java.io.File fileOnDisk = file.isTemplate() ? null : file.getFileOnDisk(false);
+
+		// strong entity tag from the stored checksum and the size and modification time on disk
+		final String etag = dontCache ? null : FileStreamer.getETag(file.getChecksum(), fileOnDisk);
+
+		if (etag != null) {
+			response.setHeader("ETag", etag);
+		}
+
+		if (!EditMode.WIDGET.equals(edit) && notModified(request, response, file, etag, dontCache)) {
 
 			out.flush();
 			out.close();
@@ -1528,7 +1481,6 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 			} else {
 
 				// 2b: stream file to response
-				final InputStream in = file.getInputStream();
 				final String contentType = file.getContentType();
 
 				if (contentType != null) {
@@ -1541,56 +1493,21 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 					response.setContentType("application/octet-stream");
 				}
 
-				final String range = request.getHeader("Range");
-
-				try {
-
-					if (StringUtils.isNotEmpty(range)) {
-
-						final long len = file.getSize();
-						long start     = 0;
-						long end       = len - 1;
-
-						final Matcher matcher = Pattern.compile("bytes=(?<start>\\d*)-(?<end>\\d*)").matcher(range);
-
-						if (matcher.matches()) {
-							String startGroup = matcher.group("start");
-							start = startGroup.isEmpty() ? start : Long.valueOf(startGroup);
-							start = Math.max(0, start);
-
-							String endGroup = matcher.group("end");
-							end = endGroup.isEmpty() ? end : Long.valueOf(endGroup);
-							end = end > len - 1 ? len - 1 : end;
-						}
+				// fast path for files on the local filesystem
+				if (fileOnDisk != null && fileOnDisk.isFile()) {
 
-						long contentLength = end - start + 1;
-
-						// Tell the client that we support byte ranges
-						response.setHeader("Accept-Ranges", "bytes");
-						response.setHeader("Content-Range", String.format("bytes %s-%s/%s", start, end, len));
-						response.setHeader("Content-Length", String.format("%s", contentLength));
-
-						response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
-						callbackMap.put("statusCode", HttpServletResponse.SC_PARTIAL_CONTENT);
-
-						IOUtils.copyLarge(in, out, start, contentLength);
-
-					} else {
+					try {
 
-						response.setStatus(HttpServletResponse.SC_OK);
-						callbackMap.put("statusCode", HttpServletResponse.SC_OK);
+						callbackMap.put("statusCode", FileStreamer.streamFile(request, response, fileOnDisk, etag, file.getLastModifiedDate()));
 
-						IOUtils.copyLarge(in, out);
-					}
+					} catch (IOException ioex) {
 
-				} catch (Throwable t) {
+						// most likely the client closed the connection
+						logger.debug("Unable to stream file {}: {}", file.getUuid(), ioex.getMessage());
 
-				} finally {
-
-					if (out != null) {
+					} finally {
 
 						try {
-							// 3: output content
 							out.flush();
 							out.close();
 
@@ -1598,16 +1515,13 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 						}
 					}
 
-					if (in != null) {
-						in.close();
-					}
+				} else {
 
-					response.setStatus(HttpServletResponse.SC_OK);
+					streamContent(file, request, response, callbackMap);
 				}
 			}
 		}
 
-
 		// WIDGET mode means "opened in frontend", which we don't want to count as an external download
 		if (!EditMode.WIDGET.equals(edit)) {
 
@@ -1622,6 +1536,61 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 		}
 	}
 
+	private void streamContent(final File file, final HttpServletRequest request, final HttpServletResponse response, final Map<String, Object> callbackMap) throws IOException {
+
+		final ServletOutputStream out = response.getOutputStream();
+
+		try (final InputStream in = file.getInputStream()) {
+
+			final Long size                       = file.getSize();
+			final List<FileStreamer.Range> ranges = size != null ? FileStreamer.parseRanges(request.getHeader("Range"), size) : null;
+
+			if (in == null) {
+
+				// the content could not be opened, the reason has already been logged
+				response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+				callbackMap.put("statusCode", HttpServletResponse.SC_NOT_FOUND);
+
+			} else if (ranges != null && !ranges.isEmpty()) {
+
+				final FileStreamer.Range range = ranges.get(0);
+
+				// Tell the client that we support byte ranges
+				response.setHeader("Accept-Ranges", "bytes");
+				response.setHeader("Content-Range", range.getContentRange(size));
+				response.setHeader("Content-Length", String.format("%s", range.getLength()));
+
+				response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+				callbackMap.put("statusCode", HttpServletResponse.SC_PARTIAL_CONTENT);
+
+				IOUtils.copyLarge(in, out, range.getStart(), range.getLength());
+
+			} else {
+
+				response.setStatus(HttpServletResponse.SC_OK);
+				callbackMap.put("statusCode", HttpServletResponse.SC_OK);
+
+				IOUtils.copyLarge(in, out);
+			}
+
+		} catch (IOException ioex) {
+
+			// most likely the client closed the connection
+			logger.debug("Unable to stream file {}: {}", file.getUuid(), ioex.getMessage());
+
+		} finally {
+
+			try {
+				// 3: output content
+				out.flush();
+				out.close();
+
+			} catch (IOException ioex) {
+				logger.debug("Unable to close output stream for file {}: {}", file.getUuid(), ioex.getMessage());
+			}
+		}
+	}
+
 	/**
 	 * Check if the given page is visible for the requested site defined by
 	 * a hostname and a port.
@@ -1655,6 +1624,10 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 
 	}
 
+	private boolean isVisibleForSite(final HttpServletRequest request, final Route route) {
+		return route.isVisibleForSite(request.getServerName(), request.getServerPort());
+	}
+
 	private void resolvePossiblePropertyNamesForObjectResolution(final ConfigurationProvider config, final Query query, final String name) {
 
 		for (final String possiblePropertyName : possiblePropertyNamesForEntityResolving) {
@@ -1714,33 +1687,37 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 
 	private HttpBasicAuthResult checkHttpBasicAuth(final HttpServletRequest request, final HttpServletResponse response, final String path) throws IOException, FrameworkException {
 
-		final PropertyKey<Boolean> basicAuthKey     = StructrApp.key(Linkable.class, "enableBasicAuth");
-		final PropertyKey<Integer> positionKey      = StructrApp.key(Page.class, "position");
-		final PropertyKey<String> filePathKey       = StructrApp.key(File.class, "path");
-		final PropertyKey<String> pagePathKey       = StructrApp.key(Page.class, "path");
+		final RouteTable routeTable = RouteTable.getInstance();
+
+		// fast path: no entry point has Http Basic Auth enabled
+		if (!routeTable.hasBasicAuthRoutes()) {
+			return HttpBasicAuthResult.NO_BASIC_AUTH;
+		}
 
 		// Look for renderable objects using a SuperUserSecurityContext,
 		// but dont actually render the page. We're only interested in
 		// the authentication settings.
-		Linkable possiblePage = null;
+		Route route = null;
 
 		// try the different methods..
-		if (possiblePage == null) {
-			possiblePage = StructrApp.getInstance().nodeQuery(Page.class).and(pagePathKey, path).and(basicAuthKey, true).sort(positionKey).getFirst();
+		if (route == null) {
+			route = findBasicAuthRoute(routeTable.getPagesByPath(path));
 		}
 
-		if (possiblePage == null) {
-			possiblePage = StructrApp.getInstance().nodeQuery(Page.class).and(Page.name, PathHelper.getName(path)).and(basicAuthKey, true).sort(positionKey).getFirst();
+		if (route == null) {
+			route = findBasicAuthRoute(routeTable.getPagesByName(PathHelper.getName(path)));
 		}
 
-		if (possiblePage == null) {
-			possiblePage = StructrApp.getInstance().nodeQuery(File.class).and(filePathKey, path).and(basicAuthKey, true).getFirst();
+		if (route == null) {
+			route = findBasicAuthRoute(routeTable.getFilesByPath(path));
 		}
 
-		if (possiblePage == null) {
-			possiblePage = StructrApp.getInstance().nodeQuery(File.class).and(File.name, PathHelper.getName(path)).and(basicAuthKey, true).getFirst();
+		if (route == null) {
+			route = findBasicAuthRoute(routeTable.getFilesByName(PathHelper.getName(path)));
 		}
 
+		final Linkable possiblePage = route != null ? StructrApp.getInstance().get(Linkable.class, route.getUuid()) : null;
+
 		if (possiblePage != null) {
 
 			String realm = possiblePage.getBasicAuthRealm();
@@ -1782,6 +1759,18 @@ public class HtmlServlet extends HttpServlet implements HttpServiceServlet {
 		return HttpBasicAuthResult.NO_BASIC_AUTH;
 	}
 
+	private Route findBasicAuthRoute(final List<Route> routes) {
+
+		for (final Route route : routes) {
+
+			if (route.hasBasicAuth()) {
+				return route;
+			}
+		}
+
+		return null;
+	}
+
 	private Principal getPrincipalForAuthorizationHeader(final String authHeader) {
 
 		if (authHeader != null) {
@@ -0,0 +1,158 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.websocket;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import org.structr.api.Predicate;
+import org.structr.websocket.message.WebSocketMessage;
+
+/**
+ * Bounded queue of the messages that are waiting to be broadcast.
+ *
+ * Messages are returned in the order they were added. An UPDATE message is
+ * merged into a queued UPDATE of the same object, unless another message
+ * was added in between, so that updates are never moved ahead of a DELETE
+ * or a structural change. Threads that add messages wait while the queue
+ * is full, so that the broadcast thread can keep up with the transactions.
+ */
+public class BroadcastQueue {
+
+	private final Queue<Broadcast> queue         = new ArrayDeque<>();
+	private final Map<String, Broadcast> updates = new HashMap<>();
+	private int maxSize                          = 0;
+
+	public BroadcastQueue(final int maxSize) {
+		this.maxSize = Math.max(1, maxSize);
+	}
+
+	/**
+	 * Adds the given message to the queue, waiting for free space if the
+	 * queue is full and wait is true.
+	 *
+	 * @param message
+	 * @param predicate
+	 * @param wait
+	 * @throws InterruptedException
+	 */
+	public synchronized void add(final WebSocketMessage message, final Predicate<String> predicate, final boolean wait) throws InterruptedException {
+
+		final String key = getCoalescingKey(message, predicate);
+		if (key != null) {
+
+			final Broadcast existing = updates.get(key);
+			if (existing != null) {
+
+				existing.merge(message);
+				return;
+			}
+		}
+
+		while (wait && queue.size() >= maxSize) {
+			wait();
+		}
+
+		final Broadcast broadcast = new Broadcast(message, predicate);
+
+		if (key != null) {
+
+			updates.put(key, broadcast);
+
+		} else {
+
+			// later updates must not be merged into updates queued before this message
+			updates.clear();
+		}
+
+		queue.add(broadcast);
+
+		notifyAll();
+	}
+
+	/**
+	 * Removes and returns all queued messages, waiting until at least one
+	 * message is available.
+	 *
+	 * @return the queued messages, in order
+	 * @throws InterruptedException
+	 */
+	public synchronized List<Broadcast> takeAll() throws InterruptedException {
+
+		while (queue.isEmpty()) {
+			wait();
+		}
+
+		final List<Broadcast> broadcasts = new ArrayList<>(queue);
+
+		queue.clear();
+		updates.clear();
+
+		notifyAll();
+
+		return broadcasts;
+	}
+
+	public synchronized int size() {
+		return queue.size();
+	}
+
+	// ----- private methods -----
+	private String getCoalescingKey(final WebSocketMessage message, final Predicate<String> predicate) {
+
+		if (predicate == null && "UPDATE".equals(message.getCommand()) && message.getId() != null) {
+			return message.getId() + ":" + message.getCallback();
+		}
+
+		return null;
+	}
+
+	// ----- nested classes -----
+	public static class Broadcast {
+
+		private WebSocketMessage message    = null;
+		private Predicate<String> predicate = null;
+
+		private Broadcast(final WebSocketMessage message, final Predicate<String> predicate) {
+
+			this.message   = message;
+			this.predicate = predicate;
+		}
+
+		public WebSocketMessage getMessage() {
+			return message;
+		}
+
+		public Predicate<String> getPredicate() {
+			return predicate;
+		}
+
+		private void merge(final WebSocketMessage update) {
+
+			message.getModifiedProperties().addAll(update.getModifiedProperties());
+			message.getRemovedProperties().addAll(update.getRemovedProperties());
+			message.setNodeData(update.getNodeData());
+			message.setGraphObject(update.getGraphObject());
+			message.setResult(update.getResult());
+		}
+	}
+}
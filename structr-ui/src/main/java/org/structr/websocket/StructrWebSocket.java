@@ -66,6 +66,7 @@ public class StructrWebSocket implements WebSocketListener {
 
 	//~--- fields ---------------------------------------------------------
 	private Session session = null;
+	private WebSocketOutbox outbox = null;
 	private Gson gson = null;
 	private HttpServletRequest request = null;
 	private SecurityContext securityContext = null;
@@ -99,6 +100,7 @@ public class StructrWebSocket implements WebSocketListener {
 		logger.debug("New connection with protocol {}", session.getProtocolVersion());
 
 		this.session = session;
+		this.outbox  = new WebSocketOutbox(session, Settings.WebsocketClientQueueSize.getValue());
 
 		syncController.registerClient(this);
 
@@ -119,6 +121,10 @@ public class StructrWebSocket implements WebSocketListener {
 
 			syncController.unregisterClient(this);
 
+			if (outbox != null) {
+				outbox.close();
+			}
+
 			// flush and close open uploads
 			for (FileUploadHandler upload : uploads.values()) {
 
@@ -355,7 +361,9 @@ public class StructrWebSocket implements WebSocketListener {
 				securityContext.clearCustomView();
 			}
 
-			session.getRemote().sendString(msg);
+			if (!enqueue(msg)) {
+				logger.warn("Unable to send websocket message to remote client, connection closed or too many pending messages");
+			}
 
 			tx.success();
 
@@ -366,6 +374,23 @@ public class StructrWebSocket implements WebSocketListener {
 
 	}
 
+	/**
+	 * Queues the given serialized message for non-blocking sending.
+	 *
+	 * @param message
+	 * @return false if the client is disconnected or too slow
+	 */
+	public boolean enqueue(final String message) {
+
+		final WebSocketOutbox currentOutbox = outbox;
+		if (currentOutbox != null) {
+
+			return currentOutbox.offer(message);
+		}
+
+		return false;
+	}
+
 	// ----- file handling -----
 	public void createFileUploadHandler(File file) {
 
@@ -0,0 +1,186 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.websocket;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Bounded queue of outgoing messages for a single websocket client.
+ *
+ * Messages are sent with non-blocking writes, one at a time and in the
+ * order they were offered. A client that does not keep up with the
+ * messages it is sent is disconnected when its queue is full, so that
+ * slow clients can not slow down the threads that send messages.
+ */
+public class WebSocketOutbox implements WriteCallback {
+
+	private static final Logger logger = LoggerFactory.getLogger(WebSocketOutbox.class.getName());
+
+	private final Queue<String> queue = new ArrayDeque<>();
+	private Session session           = null;
+	private int maxSize               = 0;
+	private boolean sending           = false;
+	private boolean writing           = false;
+	private boolean completed         = false;
+	private boolean closed            = false;
+
+	public WebSocketOutbox(final Session session, final int maxSize) {
+
+		this.session = session;
+		this.maxSize = Math.max(1, maxSize);
+	}
+
+	/**
+	 * Queues the given message for sending.
+	 *
+	 * @param message
+	 * @return false if the message was not queued because the client is
+	 * too slow or the connection is closed
+	 */
+	public boolean offer(final String message) {
+
+		final int pending;
+
+		synchronized (this) {
+
+			if (closed) {
+				return false;
+			}
+
+			pending = queue.size();
+
+			if (pending < maxSize) {
+
+				queue.add(message);
+
+				if (sending) {
+					return true;
+				}
+
+				sending = true;
+
+			} else {
+
+				close();
+			}
+		}
+
+		if (pending >= maxSize) {
+
+			// closing the session can block, so it is done without holding the lock
+			logger.warn("Disconnecting websocket client {}, {} messages pending", session.getRemoteAddress(), pending);
+			session.close(StatusCode.POLICY_VIOLATION, "Too many pending messages");
+
+			return false;
+		}
+
+		sendNext();
+
+		return true;
+	}
+
+	public synchronized int size() {
+		return queue.size();
+	}
+
+	public synchronized boolean isClosed() {
+		return closed;
+	}
+
+	public synchronized void close() {
+
+		closed  = true;
+		sending = false;
+
+		queue.clear();
+	}
+
+	// ----- interface WriteCallback -----
+	@Override
+	public void writeSuccess() {
+
+		synchronized (this) {
+
+			// continue in the sending loop if the write completed immediately
+			if (writing) {
+
+				completed = true;
+				return;
+			}
+		}
+
+		sendNext();
+	}
+
+	@Override
+	public void writeFailed(final Throwable t) {
+
+		logger.debug("Unable to send websocket message to {}: {}", session.getRemoteAddress(), t.getMessage());
+
+		close();
+	}
+
+	// ----- private methods -----
+	private void sendNext() {
+
+		while (true) {
+
+			final String next;
+
+			synchronized (this) {
+
+				next = queue.poll();
+				if (next == null || closed) {
+
+					sending = false;
+					return;
+				}
+
+				writing   = true;
+				completed = false;
+			}
+
+			try {
+
+				session.getRemote().sendString(next, this);
+
+			} catch (Throwable t) {
+
+				writeFailed(t);
+				return;
+			}
+
+			synchronized (this) {
+
+				writing = false;
+
+				// the callback will continue once the write has completed
+				if (!completed) {
+					return;
+				}
+			}
+		}
+	}
+}
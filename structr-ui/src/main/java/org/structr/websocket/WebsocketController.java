@@ -19,8 +19,10 @@
 package org.structr.websocket;
 
 import com.google.gson.Gson;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -31,10 +33,10 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.jetty.util.URIUtil;
 import org.eclipse.jetty.websocket.api.Session;
-import org.eclipse.jetty.websocket.api.WebSocketException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.structr.api.Predicate;
+import org.structr.api.config.Settings;
 import org.structr.api.graph.RelationshipType;
 import org.structr.api.util.Iterables;
 import org.structr.common.AccessControllable;
@@ -42,16 +44,19 @@ import org.structr.common.SecurityContext;
 import org.structr.common.error.FrameworkException;
 import org.structr.core.GraphObject;
 import org.structr.core.StructrTransactionListener;
+import org.structr.core.app.StructrApp;
 import org.structr.core.entity.AbstractNode;
 import org.structr.core.entity.Group;
 import org.structr.core.graph.ModificationEvent;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.RelationshipInterface;
+import org.structr.core.graph.Tx;
 import org.structr.core.property.PropertyKey;
 import org.structr.core.property.PropertyMap;
 import org.structr.web.entity.AbstractFile;
 import org.structr.web.entity.User;
 import org.structr.web.entity.dom.DOMNode;
+import org.structr.websocket.BroadcastQueue.Broadcast;
 import org.structr.websocket.message.MessageBuilder;
 import org.structr.websocket.message.WebSocketMessage;
 
@@ -64,12 +69,18 @@ public class WebsocketController implements StructrTransactionListener {
 	private static final Logger logger                 = LoggerFactory.getLogger(WebsocketController.class.getName());
 	private static final Set<String> BroadcastCommands = new HashSet<>(Arrays.asList(new String[] { "UPDATE", "ADD", "CREATE" } ));
 
-	private final Set<StructrWebSocket> clients = ConcurrentHashMap.newKeySet();
-	private Gson gson                           = null;
+	private final BroadcastQueue pending         = new BroadcastQueue(Settings.WebsocketBroadcastQueueSize.getValue());
+	private final Set<StructrWebSocket> clients  = ConcurrentHashMap.newKeySet();
+	private Thread dispatcher                    = null;
+	private Gson gson                            = null;
 
 	public WebsocketController(final Gson gson) {
 
 		this.gson = gson;
+
+		this.dispatcher = new Thread(this::dispatch, "WebsocketBroadcast");
+		this.dispatcher.setDaemon(true);
+		this.dispatcher.start();
 	}
 
 	public void registerClient(final StructrWebSocket client) {
@@ -82,12 +93,68 @@ public class WebsocketController implements StructrTransactionListener {
 		clients.remove(client);
 	}
 
-	private void broadcast(final WebSocketMessage webSocketData) {
+	/**
+	 * Queues the given message for broadcasting. Updates of the same object
+	 * that are queued before the dispatcher picks them up are merged into a
+	 * single message, so that the object is serialized and sent only once.
+	 * The calling thread waits while the queue is full.
+	 *
+	 * @param webSocketData
+	 * @param receiverSessionPredicate
+	 */
+	private void broadcast(final WebSocketMessage webSocketData, final Predicate<String> receiverSessionPredicate) {
+
+		try {
+
+			// the dispatcher must never wait for itself
+			pending.add(webSocketData, receiverSessionPredicate, Thread.currentThread() != dispatcher);
 
-		broadcast(webSocketData, null);
+		} catch (InterruptedException iex) {
+
+			logger.warn("Interrupted while waiting to broadcast {} message", webSocketData.getCommand());
+			Thread.currentThread().interrupt();
+		}
 	}
 
-	private void broadcast(final WebSocketMessage webSocketData, final Predicate<String> receiverSessionPredicate) {
+	private void dispatch() {
+
+		while (true) {
+
+			final List<Broadcast> broadcasts;
+
+			try {
+
+				broadcasts = pending.takeAll();
+
+			} catch (InterruptedException iex) {
+				return;
+			}
+
+			// serialization reads the current state of the objects
+			try (final Tx tx = StructrApp.getInstance().tx(false, false, false)) {
+
+				for (final Broadcast broadcast : broadcasts) {
+
+					try {
+
+						send(broadcast.getMessage(), broadcast.getPredicate());
+
+					} catch (Throwable t) {
+
+						logger.warn("Unable to broadcast {} message: {}", broadcast.getMessage().getCommand(), t.getMessage());
+					}
+				}
+
+				tx.success();
+
+			} catch (Throwable t) {
+
+				logger.warn("Unable to broadcast websocket messages: {}", t.getMessage());
+			}
+		}
+	}
+
+	private void send(final WebSocketMessage webSocketData, final Predicate<String> receiverSessionPredicate) {
 
 		// session must be valid to be received by the client
 		webSocketData.setSessionValid(true);
@@ -97,11 +164,10 @@ public class WebsocketController implements StructrTransactionListener {
 		final List<StructrWebSocket> clientsToRemove = new LinkedList<>();
 		final Iterable<? extends GraphObject> result = webSocketData.getResult();
 		final String command                         = webSocketData.getCommand();
-		final GraphObject obj                        = webSocketData.getGraphObject();
+		final boolean filterResult                   = result != null && BroadcastCommands.contains(command);
+		final List<GraphObject> all                  = filterResult ? Iterables.toList((Iterable<GraphObject>)result) : null;
+		final Map<String, String> messages           = new HashMap<>();
 
-		String message;
-
-		// create message
 		for (StructrWebSocket socket : clients) {
 
 			String clientPagePath = socket.getPagePath();
@@ -119,35 +185,30 @@ public class WebsocketController implements StructrTransactionListener {
 					continue;
 				}
 
-				if (result != null && BroadcastCommands.contains(command)) {
-
-					final WebSocketMessage clientData = webSocketData.copy();
+				final String message;
 
-					clientData.setResult(filter(securityContext, result));
+				if (filterResult) {
 
-					message = gson.toJson(clientData, WebSocketMessage.class);
+					// clients that can see the same objects share the serialized message
+					final List<GraphObject> visible = filter(securityContext, all);
+					final String visibilityClass    = getVisibilityClass(all, visible);
 
-				} else {
-
-					message = gson.toJson(webSocketData, WebSocketMessage.class);
-				}
+					message = messages.computeIfAbsent(visibilityClass, k -> {
 
-				try {
+						final WebSocketMessage clientData = webSocketData.copy();
 
-					session.getRemote().sendString(message);
+						clientData.setResult(visible);
 
-				} catch (Throwable t) {
+						return gson.toJson(clientData, WebSocketMessage.class);
+					});
 
-					if (t instanceof WebSocketException) {
-
-						WebSocketException wse = (WebSocketException) t;
+				} else {
 
-						if ("RemoteEndpoint unavailable, current state [CLOSED], expecting [OPEN or CONNECTED]".equals(wse.getMessage())) {
-							clientsToRemove.add(socket);
-						}
-					}
+					message = messages.computeIfAbsent("", k -> gson.toJson(webSocketData, WebSocketMessage.class));
+				}
 
-					logger.debug("Error sending message to client.", t);
+				if (!socket.enqueue(message)) {
+					clientsToRemove.add(socket);
 				}
 			}
 		}
@@ -160,8 +221,33 @@ public class WebsocketController implements StructrTransactionListener {
 		}
 	}
 
-	private <T extends GraphObject> Iterable<T> filter(final SecurityContext securityContext, final Iterable<T> all) {
-		return Iterables.filter(e -> { return securityContext.isVisible((AccessControllable)e); }, all);
+	private List<GraphObject> filter(final SecurityContext securityContext, final List<GraphObject> all) {
+
+		final List<GraphObject> visible = new ArrayList<>(all.size());
+
+		for (final GraphObject obj : all) {
+
+			if (securityContext.isVisible((AccessControllable)obj)) {
+				visible.add(obj);
+			}
+		}
+
+		return visible;
+	}
+
+	private String getVisibilityClass(final List<GraphObject> all, final List<GraphObject> visible) {
+
+		if (visible.size() == all.size()) {
+			return "all";
+		}
+
+		final StringBuilder buf = new StringBuilder();
+
+		for (final GraphObject obj : visible) {
+			buf.append(obj.getUuid()).append(",");
+		}
+
+		return buf.toString();
 	}
 
 	// ----- interface StructrTransactionListener -----
@@ -178,7 +264,7 @@ public class WebsocketController implements StructrTransactionListener {
 				final WebSocketMessage message = getMessageForEvent(securityContext, event);
 				if (message != null) {
 
-					broadcast(message);
+					broadcast(message, null);
 				}
 
 			} catch (FrameworkException ignore) {
@@ -0,0 +1,249 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.test.web.advanced;
+
+import com.jayway.restassured.RestAssured;
+import com.jayway.restassured.filter.log.ResponseLoggingFilter;
+import static org.hamcrest.Matchers.equalTo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.Tx;
+import org.structr.schema.export.StructrSchema;
+import org.structr.schema.json.JsonSchema;
+import org.structr.test.web.StructrUiTest;
+import org.structr.test.web.entity.TestOne;
+import org.structr.web.common.FragmentCache;
+import org.structr.web.entity.dom.Page;
+import org.structr.web.entity.dom.Template;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+import org.testng.annotations.Test;
+
+/**
+ */
+public class FragmentCacheTest extends StructrUiTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(FragmentCacheTest.class.getName());
+
+	@Test
+	public void testCachedOutputIsInvalidatedByQueriedData() {
+
+		FragmentCache.getInstance().clear();
+
+		String itemId = null;
+
+		try (final Tx tx = app.tx()) {
+
+			final JsonSchema schema = StructrSchema.createFromDatabase(app);
+
+			schema.addType("Item");
+
+			StructrSchema.extendDatabaseSchema(app, schema);
+
+			tx.success();
+
+		} catch (Throwable t) {
+
+			logger.warn("", t);
+			fail("Unexpected exception.");
+		}
+
+		try (final Tx tx = app.tx()) {
+
+			final Class type        = StructrApp.getConfiguration().getNodeEntityClass("Item");
+			final Page page         = (Page)app.create(Page.class, new NodeAttribute(Page.name, "test"), new NodeAttribute(Page.visibleToPublicUsers, true));
+			final Template template = (Template)app.create(Template.class,
+				new NodeAttribute(Page.visibleToPublicUsers, true),
+				new NodeAttribute(StructrApp.key(Template.class, "cacheRenderedOutput"), true)
+			);
+
+			// the script reads the items with a query, they are not data objects of the template
+			template.setContent("${join(extract(sort(find('Item'), 'name'), 'name'), ',')}");
+
+			page.appendChild(template);
+
+			itemId = app.create(type, new NodeAttribute(AbstractNode.name, "a"), new NodeAttribute(AbstractNode.visibleToPublicUsers, true)).getUuid();
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		assertRenderedOutput("a");
+
+		final long hits = getHitCount();
+
+		assertRenderedOutput("a");
+		assertTrue("Second request should use the cached output", getHitCount() > hits);
+
+		// modify an item that the script has read
+		try (final Tx tx = app.tx()) {
+
+			app.getNodeById(itemId).setProperty(AbstractNode.name, "b");
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		assertRenderedOutput("b");
+
+		// create an item that matches the query of the script
+		try (final Tx tx = app.tx()) {
+
+			app.create(StructrApp.getConfiguration().getNodeEntityClass("Item"), new NodeAttribute(AbstractNode.name, "c"), new NodeAttribute(AbstractNode.visibleToPublicUsers, true));
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		assertRenderedOutput("b,c");
+	}
+
+	@Test
+	public void testStaleOutputIsNotStored() {
+
+		final FragmentCache cache = FragmentCache.getInstance();
+
+		cache.clear();
+
+		// no commit while the fragment is rendered
+		cache.put("current", cache.newCapture());
+
+		assertNotNull("Fragment should be stored", cache.get("current", null));
+
+		// commit while the fragment is rendered
+		final FragmentCache.Capture capture = cache.newCapture();
+
+		try (final Tx tx = app.tx()) {
+
+			app.create(TestOne.class, "test");
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		cache.put("stale", capture);
+
+		assertNull("Fragment that was rendered during a commit should not be stored", cache.get("stale", null));
+	}
+
+	@Test
+	public void testInvalidation() {
+
+		final FragmentCache cache = FragmentCache.getInstance();
+		NodeInterface node1       = null;
+		NodeInterface node2       = null;
+
+		try (final Tx tx = app.tx()) {
+
+			node1 = app.create(TestOne.class, "node1");
+			node2 = app.create(TestOne.class, "node2");
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		cache.clear();
+
+		final FragmentCache.Capture capture1 = cache.newCapture();
+		final FragmentCache.Capture capture2 = cache.newCapture();
+		final FragmentCache.Capture capture3 = cache.newCapture();
+
+		capture1.addDependency(node1);
+		capture2.addDependency(node2);
+		capture3.addTypeDependency(TestOne.class);
+
+		cache.put("fragment1", capture1);
+		cache.put("fragment2", capture2);
+		cache.put("fragment3", capture3);
+
+		// modification of node1 invalidates its fragment and the query fragment
+		try (final Tx tx = app.tx()) {
+
+			node1.setProperty(AbstractNode.name, "modified");
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		assertNull("Fragment of modified node should be invalidated", cache.get("fragment1", null));
+		assertNotNull("Fragment of unmodified node should be kept", cache.get("fragment2", null));
+		assertNull("Fragment of queried type should be invalidated", cache.get("fragment3", null));
+
+		// creation of a node invalidates all fragments that depend on its type
+		try (final Tx tx = app.tx()) {
+
+			app.create(TestOne.class, "node3");
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		assertNull("Fragment of created type should be invalidated", cache.get("fragment2", null));
+	}
+
+	// ----- private methods -----
+	private void assertRenderedOutput(final String expected) {
+
+		RestAssured.basePath = "/";
+
+		RestAssured
+			.given()
+				.filter(ResponseLoggingFilter.logResponseIfStatusCodeIs(500))
+			.expect()
+				.statusCode(200)
+				.body(equalTo(expected))
+			.when()
+				.get("/test");
+	}
+
+	private long getHitCount() {
+		return ((Number)FragmentCache.getStatistics().get("hits")).longValue();
+	}
+}
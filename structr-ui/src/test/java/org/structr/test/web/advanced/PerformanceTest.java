@@ -43,12 +43,14 @@ import org.structr.core.graph.FlushCachesCommand;
 import org.structr.core.graph.NodeAttribute;
 import org.structr.core.graph.NodeInterface;
 import org.structr.core.graph.Tx;
+import org.structr.core.property.PropertyMap;
 import org.structr.test.web.StructrUiTest;
 import org.structr.test.web.entity.TestFive;
 import org.structr.test.web.entity.TestOne;
 import org.structr.test.web.entity.TestTwo;
 import org.structr.web.entity.User;
 import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNotNull;
 import static org.testng.AssertJUnit.assertTrue;
 import static org.testng.AssertJUnit.fail;
 
@@ -178,6 +180,108 @@ public class PerformanceTest extends StructrUiTest {
 		}
 	}
 
+	/**
+	 * Compares the throughput of bulk node and relationship creation with
+	 * the throughput of creating entities one by one. The rates are logged
+	 * only, as they depend on the hardware and the database setup.
+	 */
+	@Test
+	public void testPerformanceOfBulkCreation() {
+
+		final SecurityContext securityContext = setupSecurityContext();
+		final App app                         = StructrApp.getInstance(securityContext);
+		final DecimalFormat decimalFormat     = new DecimalFormat("0.00", DecimalFormatSymbols.getInstance(Locale.ENGLISH));
+		final int number                      = 1000;
+
+		// the CSV import disables cardinality checks as well
+		securityContext.disableEnsureCardinality();
+
+		try {
+
+			final List<TestOne> singleNodes = new ArrayList<>(number);
+			final List<TestOne> bulkNodes   = new ArrayList<>(number);
+			final List<PropertyMap> input   = new ArrayList<>(number);
+
+			for (int i=0; i<number; i++) {
+
+				final PropertyMap properties = new PropertyMap();
+
+				properties.put(TestOne.name,    "TestOne" + i);
+				properties.put(TestOne.aDouble, 1.234);
+				properties.put(TestOne.aLong,   12345L);
+				properties.put(TestOne.anInt,   123);
+
+				input.add(properties);
+			}
+
+			final long t0 = System.nanoTime();
+
+			try (final Tx tx = app.tx()) {
+
+				for (final PropertyMap properties : input) {
+					singleNodes.add(app.create(TestOne.class, properties));
+				}
+
+				tx.success();
+			}
+
+			final long t1 = System.nanoTime();
+
+			try (final Tx tx = app.tx()) {
+
+				bulkNodes.addAll(app.create(TestOne.class, input));
+				tx.success();
+			}
+
+			final long t2 = System.nanoTime();
+
+			try (final Tx tx = app.tx()) {
+
+				for (int i=0; i<number-1; i++) {
+					app.create(singleNodes.get(i), singleNodes.get(i+1), NodeHasLocation.class);
+				}
+
+				tx.success();
+			}
+
+			final long t3 = System.nanoTime();
+
+			try (final Tx tx = app.tx()) {
+
+				app.create(NodeHasLocation.class, bulkNodes.subList(0, number-1), bulkNodes.subList(1, number), null);
+				tx.success();
+			}
+
+			final long t4 = System.nanoTime();
+
+			logger.info("Node creation:         {} rows/s one by one, {} rows/s in bulk", decimalFormat.format(number / ((t1 - t0) / 1000000000.0)), decimalFormat.format(number / ((t2 - t1) / 1000000000.0)));
+			logger.info("Relationship creation: {} rows/s one by one, {} rows/s in bulk", decimalFormat.format((number-1) / ((t3 - t2) / 1000000000.0)), decimalFormat.format((number-1) / ((t4 - t3) / 1000000000.0)));
+
+			try (final Tx tx = app.tx()) {
+
+				assertEquals("Invalid bulk creation result", number, bulkNodes.size());
+
+				for (int i=0; i<number; i++) {
+
+					final TestOne node = bulkNodes.get(i);
+
+					assertEquals("Invalid bulk creation result", "TestOne" + i, node.getName());
+					assertEquals("Invalid bulk creation result", Long.valueOf(12345L), node.getProperty(TestOne.aLong));
+					assertNotNull("Bulk created node has no owner", node.getOwnerNode());
+				}
+
+				assertEquals("Invalid bulk creation result", 2 * (number-1), app.relationshipQuery(NodeHasLocation.class).getAsList().size());
+
+				tx.success();
+			}
+
+		} catch (FrameworkException ex) {
+
+			logger.error(ex.toString());
+			fail("Unexpected exception");
+		}
+	}
+
 	/**
 	 * Tests basic throughput of reading node properties.
 	 *
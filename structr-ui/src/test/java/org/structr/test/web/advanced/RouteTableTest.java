@@ -0,0 +1,180 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.test.web.advanced;
+
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.Tx;
+import org.structr.test.web.StructrUiTest;
+import org.structr.web.common.RouteTable;
+import org.structr.web.common.RouteTable.Route;
+import org.structr.web.entity.AbstractFile;
+import org.structr.web.entity.File;
+import org.structr.web.entity.Folder;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the incremental updates of the route table.
+ */
+public class RouteTableTest extends StructrUiTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(RouteTableTest.class.getName());
+
+	@Test
+	public void testFolderChanges() {
+
+		final RouteTable table = RouteTable.getInstance();
+		String fileId          = null;
+		String folder1Id       = null;
+		String folder2Id       = null;
+
+		try (final Tx tx = app.tx()) {
+
+			final Folder folder1 = app.create(Folder.class, "folder1");
+			final Folder folder2 = app.create(Folder.class, "folder2");
+			final Folder folder3 = app.create(Folder.class,
+				new NodeAttribute<>(AbstractNode.name, "folder3"),
+				new NodeAttribute<>(StructrApp.key(AbstractFile.class, "parent"), folder1)
+			);
+
+			final File file = app.create(File.class,
+				new NodeAttribute<>(AbstractNode.name, "test.txt"),
+				new NodeAttribute<>(StructrApp.key(AbstractFile.class, "parent"), folder3)
+			);
+
+			fileId    = file.getUuid();
+			folder1Id = folder1.getUuid();
+			folder2Id = folder2.getUuid();
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		assertFile(fileId, "/folder1/folder3/test.txt");
+
+		final long rebuilds = getRebuildCount();
+
+		// rename a folder above the file
+		try (final Tx tx = app.tx()) {
+
+			app.get(Folder.class, folder1Id).setProperty(AbstractNode.name, "renamed");
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		assertFile(fileId, "/renamed/folder3/test.txt");
+		assertNoFile("/folder1/folder3/test.txt");
+
+		// move the folder that contains the file
+		try (final Tx tx = app.tx()) {
+
+			final Folder folder3 = app.nodeQuery(Folder.class).andName("folder3").getFirst();
+
+			folder3.setProperty(StructrApp.key(AbstractFile.class, "parent"), app.get(Folder.class, folder2Id));
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		assertFile(fileId, "/folder2/folder3/test.txt");
+		assertNoFile("/renamed/folder3/test.txt");
+
+		// move the file itself
+		try (final Tx tx = app.tx()) {
+
+			app.get(File.class, fileId).setProperty(StructrApp.key(AbstractFile.class, "parent"), app.get(Folder.class, folder1Id));
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		assertFile(fileId, "/renamed/test.txt");
+		assertNoFile("/folder2/folder3/test.txt");
+
+		// rename the folder again after the move
+		try (final Tx tx = app.tx()) {
+
+			app.get(Folder.class, folder1Id).setProperty(AbstractNode.name, "folder1");
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		assertFile(fileId, "/folder1/test.txt");
+
+		// delete the file
+		try (final Tx tx = app.tx()) {
+
+			app.delete(app.get(File.class, fileId));
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		assertNoFile("/folder1/test.txt");
+		assertEquals("Deleted file should be removed from the route table", null, table.get(fileId));
+
+		assertEquals("Folder changes should not rebuild the route table", rebuilds, getRebuildCount());
+	}
+
+	// ----- private methods -----
+	private void assertFile(final String uuid, final String path) {
+
+		final List<Route> routes = RouteTable.getInstance().getFilesByPath(path);
+
+		assertEquals("Wrong number of files for path " + path, 1, routes.size());
+		assertEquals("Wrong file for path " + path, uuid, routes.get(0).getUuid());
+	}
+
+	private void assertNoFile(final String path) {
+		assertTrue("Path " + path + " should not resolve to a file", RouteTable.getInstance().getFilesByPath(path).isEmpty());
+	}
+
+	private long getRebuildCount() {
+		return ((Number)RouteTable.getInstance().getStatistics().get("rebuilds")).longValue();
+	}
+}
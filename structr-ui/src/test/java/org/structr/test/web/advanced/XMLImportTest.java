@@ -0,0 +1,242 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.test.web.advanced;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.structr.common.ContextStore;
+import org.structr.common.error.FrameworkException;
+import org.structr.core.app.StructrApp;
+import org.structr.core.entity.AbstractNode;
+import org.structr.core.graph.NodeAttribute;
+import org.structr.core.graph.NodeInterface;
+import org.structr.core.graph.Tx;
+import org.structr.core.scheduler.JobQueueManager;
+import org.structr.schema.export.StructrSchema;
+import org.structr.schema.json.JsonSchema;
+import org.structr.schema.json.JsonType;
+import org.structr.test.web.StructrUiTest;
+import org.structr.web.common.FileHelper;
+import org.structr.web.entity.File;
+import org.structr.web.entity.User;
+import org.structr.web.importer.XMLFileImportJob;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+import static org.testng.AssertJUnit.fail;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the chunked import pipeline with XML files.
+ */
+public class XMLImportTest extends StructrUiTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(XMLImportTest.class.getName());
+
+	@Test
+	public void testChunkedImport() {
+
+		createItemType();
+
+		// one thread with a single queue slot, and more threads than queue slots
+		final int[][] pipelines = { { 1, 1 }, { 4, 2 } };
+		final int count         = 1050;
+		int run                 = 0;
+
+		for (final int[] pipeline : pipelines) {
+
+			final String prefix = "run" + run++ + "-";
+
+			runImport(createFile(prefix, count, -1), pipeline[0], pipeline[1]);
+
+			try (final Tx tx = app.tx()) {
+
+				final Class type                = StructrApp.getConfiguration().getNodeEntityClass("Item");
+				final List<NodeInterface> items = app.nodeQuery(type).getAsList();
+				final Set<String> names         = new LinkedHashSet<>();
+
+				for (final NodeInterface item : items) {
+
+					final String name = item.getProperty(AbstractNode.name);
+					if (name.startsWith(prefix)) {
+
+						names.add(name);
+					}
+				}
+
+				assertEquals("All items should be imported exactly once", count, names.size());
+
+				for (int i=0; i<count; i++) {
+					assertTrue("Item " + i + " is missing", names.contains(prefix + i));
+				}
+
+				tx.success();
+
+			} catch (FrameworkException fex) {
+
+				logger.warn("", fex);
+				fail("Unexpected exception.");
+			}
+		}
+	}
+
+	@Test
+	public void testImportStopsAtFailedChunk() {
+
+		createItemType();
+
+		// the third chunk contains a duplicate identifier and cannot be committed
+		runImport(createFile("item-", 1050, 250), 4, 2);
+
+		try (final Tx tx = app.tx()) {
+
+			final Class type                = StructrApp.getConfiguration().getNodeEntityClass("Item");
+			final List<NodeInterface> items = app.nodeQuery(type).getAsList();
+
+			assertEquals("Only the chunks before the failed chunk should be imported", 200, items.size());
+
+			for (final NodeInterface item : items) {
+
+				final String name = item.getProperty(AbstractNode.name);
+				final int index   = Integer.valueOf(name.substring("item-".length()));
+
+				assertTrue("Item " + name + " should not be imported", index < 200);
+			}
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+	}
+
+	// ----- private methods -----
+	private void createItemType() {
+
+		try (final Tx tx = app.tx()) {
+
+			app.create(User.class,
+				new NodeAttribute<>(StructrApp.key(User.class, "name"),     "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "password"), "admin"),
+				new NodeAttribute<>(StructrApp.key(User.class, "isAdmin"),  true)
+			);
+
+			final JsonSchema schema = StructrSchema.createFromDatabase(app);
+			final JsonType type     = schema.addType("Item");
+
+			type.addStringProperty("identifier").setUnique(true);
+
+			StructrSchema.extendDatabaseSchema(app, schema);
+
+			tx.success();
+
+		} catch (Throwable t) {
+
+			logger.warn("", t);
+			fail("Unexpected exception.");
+		}
+	}
+
+	/**
+	 * Creates an XML file with the given number of items. If duplicate is
+	 * not negative, the item at that position gets the same identifier as
+	 * the item before it.
+	 */
+	private String createFile(final String prefix, final int count, final int duplicate) {
+
+		final StringBuilder buf = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<items>\n");
+
+		for (int i=0; i<count; i++) {
+
+			final String identifier = prefix + (i == duplicate ? i - 1 : i);
+
+			buf.append("\t<item name=\"").append(prefix).append(i).append("\" identifier=\"").append(identifier).append("\"/>\n");
+		}
+
+		buf.append("</items>\n");
+
+		try (final Tx tx = app.tx()) {
+
+			final File file = FileHelper.createFile(securityContext, buf.toString().getBytes("utf-8"), "text/xml", File.class, prefix + "import.xml", true);
+
+			tx.success();
+
+			return file.getUuid();
+
+		} catch (Throwable t) {
+
+			logger.warn("", t);
+			fail("Unexpected exception.");
+		}
+
+		return null;
+	}
+
+	private void runImport(final String fileId, final int threads, final int queueSize) {
+
+		final Map<String, Object> itemConfig = new LinkedHashMap<>();
+		final Map<String, Object> properties = new LinkedHashMap<>();
+		final Map<String, Object> config     = new LinkedHashMap<>();
+
+		properties.put("name",       "name");
+		properties.put("identifier", "identifier");
+
+		itemConfig.put("action",     "createNode");
+		itemConfig.put("type",       "Item");
+		itemConfig.put("isRoot",     true);
+		itemConfig.put("properties", properties);
+
+		config.put("/items/item", itemConfig);
+		config.put("threads",     threads);
+		config.put("queueSize",   queueSize);
+
+		try (final Tx tx = app.tx()) {
+
+			final User user = app.nodeQuery(User.class).andName("admin").getFirst();
+			final File file = app.get(File.class, fileId);
+
+			JobQueueManager.getInstance().addJob(new XMLFileImportJob(file, user, config, new ContextStore()));
+
+			tx.success();
+
+		} catch (FrameworkException fex) {
+
+			logger.warn("", fex);
+			fail("Unexpected exception.");
+		}
+
+		// wait for the job to finish
+		final long timeout = System.currentTimeMillis() + 120000;
+
+		while (!JobQueueManager.getInstance().listJobs().isEmpty()) {
+
+			if (System.currentTimeMillis() > timeout) {
+				fail("Import job did not finish in time.");
+			}
+
+			try { Thread.sleep(100); } catch (InterruptedException iex) {}
+		}
+	}
+}
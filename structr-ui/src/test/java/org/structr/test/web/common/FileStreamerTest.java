@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.test.web.common;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.structr.web.servlet.FileStreamer;
+import org.structr.web.servlet.FileStreamer.Range;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNotNull;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the parsing of Range headers and the entity tag handling of
+ * FileStreamer.
+ */
+public class FileStreamerTest {
+
+	@Test
+	public void testParseRanges() {
+
+		assertNull("Missing header should be ignored", FileStreamer.parseRanges(null, 1000));
+		assertNull("Other units should be ignored", FileStreamer.parseRanges("items=0-10", 1000));
+		assertNull("Malformed range should be ignored", FileStreamer.parseRanges("bytes=a-10", 1000));
+		assertNull("Empty range should be ignored", FileStreamer.parseRanges("bytes=-", 1000));
+		assertNull("Reversed range should be ignored", FileStreamer.parseRanges("bytes=10-5", 1000));
+		assertNull("Overflowing range should be ignored", FileStreamer.parseRanges("bytes=0-99999999999999999999", 1000));
+
+		assertRanges(FileStreamer.parseRanges("bytes=0-99", 1000), 0, 99);
+		assertRanges(FileStreamer.parseRanges("bytes= 10 - 19 ", 1000), 10, 19);
+
+		// open-ended and suffix ranges
+		assertRanges(FileStreamer.parseRanges("bytes=900-", 1000), 900, 999);
+		assertRanges(FileStreamer.parseRanges("bytes=-100", 1000), 900, 999);
+		assertRanges(FileStreamer.parseRanges("bytes=-5000", 1000), 0, 999);
+
+		// the end of a range is limited to the length of the file
+		assertRanges(FileStreamer.parseRanges("bytes=500-5000", 1000), 500, 999);
+
+		// unsatisfiable ranges are dropped
+		assertRanges(FileStreamer.parseRanges("bytes=2000-3000,0-9", 1000), 0, 9);
+		assertTrue("Unsatisfiable range should result in an empty list", FileStreamer.parseRanges("bytes=1000-", 1000).isEmpty());
+		assertTrue("Zero suffix should result in an empty list", FileStreamer.parseRanges("bytes=-0", 1000).isEmpty());
+		assertTrue("Empty file should not satisfy any range", FileStreamer.parseRanges("bytes=-100", 0).isEmpty());
+
+		assertRanges(FileStreamer.parseRanges("bytes=0-9,20-29", 1000), 0, 9, 20, 29);
+	}
+
+	@Test
+	public void testCoalesceRanges() {
+
+		// overlapping ranges
+		assertRanges(FileStreamer.parseRanges("bytes=0-99,50-149", 1000), 0, 149);
+
+		// adjacent ranges
+		assertRanges(FileStreamer.parseRanges("bytes=0-99,100-199", 1000), 0, 199);
+
+		// contained ranges
+		assertRanges(FileStreamer.parseRanges("bytes=0-999,10-19,-10", 1000), 0, 999);
+
+		// unordered ranges are sorted
+		assertRanges(FileStreamer.parseRanges("bytes=500-599,0-9,5-14,-100", 1000), 0, 14, 500, 599, 900, 999);
+
+		// many overlapping ranges are coalesced before the limit is checked
+		final StringBuilder overlapping = new StringBuilder("bytes=0-0");
+		for (int i=1; i<100; i++) {
+			overlapping.append(",").append(i).append("-").append(i + 10);
+		}
+
+		assertRanges(FileStreamer.parseRanges(overlapping.toString(), 1000), 0, 109);
+
+		// too many disjoint ranges are ignored
+		final StringBuilder disjoint = new StringBuilder("bytes=0-0");
+		for (int i=1; i<100; i++) {
+			disjoint.append(",").append(i * 2).append("-").append(i * 2);
+		}
+
+		assertNull("Excessive number of ranges should be ignored", FileStreamer.parseRanges(disjoint.toString(), 1000));
+	}
+
+	@Test
+	public void testMatchesETag() {
+
+		final String etag = "\"abc-10-20\"";
+
+		assertTrue("Wildcard should match", FileStreamer.matchesETag(" * ", etag));
+		assertTrue("Identical tag should match", FileStreamer.matchesETag("\"abc-10-20\"", etag));
+		assertTrue("Weak tag should match", FileStreamer.matchesETag("W/\"abc-10-20\"", etag));
+		assertTrue("Tag in list should match", FileStreamer.matchesETag("\"xyz\", W/\"abc-10-20\" ,\"def\"", etag));
+
+		assertFalse("Different tag should not match", FileStreamer.matchesETag("\"abc-10-21\"", etag));
+		assertFalse("Unquoted tag should not match", FileStreamer.matchesETag("abc-10-20", etag));
+		assertFalse("Empty header should not match", FileStreamer.matchesETag("", etag));
+	}
+
+	@Test
+	public void testETagChangesWithFile() throws IOException {
+
+		final Path path = Files.createTempFile("structr-etag", ".txt");
+
+		try {
+
+			Files.write(path, new byte[] { 1, 2, 3 });
+			path.toFile().setLastModified(1000000000000L);
+
+			final String etag = FileStreamer.getETag(42L, path.toFile());
+
+			assertNotNull("Existing file should have an entity tag", etag);
+			assertTrue("Entity tag should be quoted", etag.startsWith("\"") && etag.endsWith("\""));
+			assertEquals("Entity tag should be stable", etag, FileStreamer.getETag(42L, path.toFile()));
+			assertTrue("Entity tag should match itself", FileStreamer.matchesETag(etag, etag));
+
+			assertFalse("Checksum should be part of the entity tag", etag.equals(FileStreamer.getETag(43L, path.toFile())));
+			assertNotNull("File without checksum should have an entity tag", FileStreamer.getETag(null, path.toFile()));
+
+			// modification outside of Structr with the same checksum
+			path.toFile().setLastModified(1000000005000L);
+
+			final String touched = FileStreamer.getETag(42L, path.toFile());
+
+			assertFalse("Modification time should be part of the entity tag", etag.equals(touched));
+
+			Files.write(path, new byte[] { 1, 2, 3, 4 });
+			path.toFile().setLastModified(1000000005000L);
+
+			assertFalse("Size should be part of the entity tag", touched.equals(FileStreamer.getETag(42L, path.toFile())));
+
+		} finally {
+
+			Files.delete(path);
+		}
+
+		assertNull("Missing file should not have an entity tag", FileStreamer.getETag(42L, path.toFile()));
+		assertNull("Missing file should not have an entity tag", FileStreamer.getETag(42L, null));
+	}
+
+	// ----- private methods -----
+	private void assertRanges(final List<Range> ranges, final long... bounds) {
+
+		assertNotNull("Ranges should be satisfiable", ranges);
+		assertEquals("Wrong number of ranges", bounds.length / 2, ranges.size());
+
+		for (int i=0; i<ranges.size(); i++) {
+
+			assertEquals("Wrong start of range " + i, bounds[i * 2], ranges.get(i).getStart());
+			assertEquals("Wrong end of range " + i, bounds[i * 2 + 1], ranges.get(i).getEnd());
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.test.web.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.zip.CRC32;
+import net.openhft.hashing.LongHashFunction;
+import org.apache.commons.codec.binary.Hex;
+import org.structr.web.common.MultiDigest;
+import static org.testng.AssertJUnit.assertEquals;
+import org.testng.annotations.Test;
+
+/**
+ * Tests that MultiDigest computes the same values as the hash functions
+ * that were used before, for all kinds of input sizes and chunkings.
+ */
+public class MultiDigestTest {
+
+	private static final int MAX_SIZE = 3000001;
+
+	@Test
+	public void testXXHashMatchesLongHashFunction() {
+
+		final byte[] data = randomBytes(MAX_SIZE);
+
+		// all sizes around the stripe and tail boundaries
+		for (int size=0; size<=300; size++) {
+			assertXXHash(data, size);
+		}
+
+		// powers of two and their neighbours up to the buffer size and beyond
+		for (int size=512; size<=MAX_SIZE; size *= 2) {
+
+			assertXXHash(data, size - 1);
+			assertXXHash(data, size);
+			assertXXHash(data, size + 1);
+		}
+
+		assertXXHash(data, 1024 * 1024 - 1);
+		assertXXHash(data, 1024 * 1024);
+		assertXXHash(data, 1024 * 1024 + 1);
+		assertXXHash(data, MAX_SIZE);
+	}
+
+	@Test
+	public void testChunkedUpdates() {
+
+		final byte[] data   = randomBytes(MAX_SIZE);
+		final Random random = new Random(42);
+		final int[] sizes   = { 0, 1, 7, 31, 32, 33, 63, 64, 65, 1000, 65537, MAX_SIZE };
+		final int[] chunks  = { 1, 3, 8, 31, 32, 33, 100, 4096, 1024 * 1024 };
+
+		for (final int size : sizes) {
+
+			final long expected = LongHashFunction.xx().hashBytes(data, 0, size);
+
+			for (final int chunk : chunks) {
+
+				// one byte at a time is too slow for the large sizes
+				if (chunk < 8 && size > 100000) {
+					continue;
+				}
+
+				final MultiDigest digest = new MultiDigest(null);
+
+				for (int offset=0; offset<size; offset += chunk) {
+					digest.update(data, offset, Math.min(chunk, size - offset));
+				}
+
+				assertEquals("Wrong xxHash for size " + size + " in chunks of " + chunk, expected, (long)digest.getChecksum());
+				assertEquals("Wrong length for size " + size + " in chunks of " + chunk, size, digest.getLength());
+			}
+
+			// random chunk sizes
+			final MultiDigest digest = new MultiDigest(null);
+			int offset               = 0;
+
+			while (offset < size) {
+
+				final int len = Math.min(random.nextInt(100) + 1, size - offset);
+
+				digest.update(data, offset, len);
+				offset += len;
+			}
+
+			assertEquals("Wrong xxHash for size " + size + " in random chunks", expected, (long)digest.getChecksum());
+		}
+	}
+
+	@Test
+	public void testOptionalChecksums() throws Exception {
+
+		final byte[] data        = randomBytes(MAX_SIZE);
+		final MultiDigest digest = new MultiDigest("crc32,md5,sha1,sha512");
+		final CRC32 crc32        = new CRC32();
+
+		crc32.update(data);
+
+		// single bytes and arrays through the wrapped stream
+		try (final OutputStream out = digest.wrap(new ByteArrayOutputStream())) {
+
+			out.write(data[0]);
+			out.write(data, 1, data.length - 1);
+		}
+
+		assertEquals("Wrong xxHash",  LongHashFunction.xx().hashBytes(data), (long)digest.getChecksum());
+		assertEquals("Wrong CRC32",   crc32.getValue(),                       (long)digest.getCRC32());
+		assertEquals("Wrong MD5",     hex("MD5", data),                       digest.getMD5());
+		assertEquals("Wrong SHA-1",   hex("SHA-1", data),                     digest.getSHA1());
+		assertEquals("Wrong SHA-512", hex("SHA-512", data),                   digest.getSHA512());
+
+		final MultiDigest xxOnly = new MultiDigest("");
+
+		xxOnly.update(data, 0, data.length);
+
+		assertEquals("Disabled checksum should be null", null, xxOnly.getCRC32());
+		assertEquals("Disabled checksum should be null", null, xxOnly.getMD5());
+	}
+
+	@Test
+	public void testFileDigest() throws IOException {
+
+		for (final int size : new int[] { 0, 33, 1024 * 1024 + 1, MAX_SIZE }) {
+
+			final byte[] data = randomBytes(size);
+			final Path file   = Files.createTempFile("multidigest", ".bin");
+
+			try {
+
+				Files.write(file, data);
+
+				final MultiDigest digest = MultiDigest.digest(file.toFile(), "crc32");
+				final CRC32 crc32        = new CRC32();
+
+				crc32.update(data);
+
+				assertEquals("Wrong xxHash for file of size " + size, LongHashFunction.xx().hashBytes(data), (long)digest.getChecksum());
+				assertEquals("Wrong CRC32 for file of size " + size,  crc32.getValue(),                       (long)digest.getCRC32());
+
+			} finally {
+
+				Files.delete(file);
+			}
+		}
+	}
+
+	// ----- private methods -----
+	private void assertXXHash(final byte[] data, final int size) {
+
+		final MultiDigest digest = new MultiDigest(null);
+
+		digest.update(data, 0, size);
+
+		assertEquals("Wrong xxHash for size " + size, LongHashFunction.xx().hashBytes(data, 0, size), (long)digest.getChecksum());
+	}
+
+	private byte[] randomBytes(final int size) {
+
+		final byte[] data = new byte[size];
+
+		new Random(size).nextBytes(data);
+
+		return data;
+	}
+
+	private String hex(final String algorithm, final byte[] data) throws Exception {
+		return Hex.encodeHexString(MessageDigest.getInstance(algorithm).digest(data));
+	}
+}
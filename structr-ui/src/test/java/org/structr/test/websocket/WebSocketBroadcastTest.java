@@ -0,0 +1,223 @@
+/**
+ * Copyright (C) 2010-2019 Structr GmbH
+ *
+ * This file is part of Structr <http://structr.org>.
+ *
+ * Structr is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * Structr is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Structr.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.structr.test.websocket;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.structr.core.property.StringProperty;
+import org.structr.websocket.BroadcastQueue;
+import org.structr.websocket.BroadcastQueue.Broadcast;
+import org.structr.websocket.WebSocketOutbox;
+import org.structr.websocket.message.WebSocketMessage;
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+import org.testng.annotations.Test;
+
+/**
+ * Tests the queues that are used to broadcast websocket messages.
+ */
+public class WebSocketBroadcastTest {
+
+	@Test
+	public void testCoalescing() throws InterruptedException {
+
+		final BroadcastQueue queue = new BroadcastQueue(100);
+
+		queue.add(message("UPDATE", "a", "name"),  null, true);
+		queue.add(message("UPDATE", "b", "name"),  null, true);
+		queue.add(message("UPDATE", "a", "color"), null, true);
+
+		List<Broadcast> broadcasts = queue.takeAll();
+
+		// updates of the same object are merged, updates of other objects are kept
+		assertEquals("Wrong number of broadcasts", 2, broadcasts.size());
+		assertEquals("Wrong order of broadcasts", "a", broadcasts.get(0).getMessage().getId());
+		assertEquals("Wrong order of broadcasts", "b", broadcasts.get(1).getMessage().getId());
+		assertEquals("Modified properties should be merged", 2, broadcasts.get(0).getMessage().getModifiedProperties().size());
+
+		queue.add(message("UPDATE", "a", "name"),  null, true);
+		queue.add(message("DELETE", "a", null),    null, true);
+		queue.add(message("UPDATE", "a", "color"), null, true);
+
+		broadcasts = queue.takeAll();
+
+		// an update must not be moved ahead of a message that was queued before it
+		assertEquals("Wrong number of broadcasts", 3, broadcasts.size());
+		assertEquals("Wrong order of broadcasts", "UPDATE", broadcasts.get(0).getMessage().getCommand());
+		assertEquals("Wrong order of broadcasts", "DELETE", broadcasts.get(1).getMessage().getCommand());
+		assertEquals("Wrong order of broadcasts", "UPDATE", broadcasts.get(2).getMessage().getCommand());
+
+		// messages for selected sessions are never merged
+		queue.add(message("UPDATE", "a", "name"), s -> true, true);
+		queue.add(message("UPDATE", "a", "name"), s -> true, true);
+
+		assertEquals("Messages with a receiver predicate should not be merged", 2, queue.takeAll().size());
+	}
+
+	@Test
+	public void testBroadcastQueueBackpressure() throws InterruptedException {
+
+		final BroadcastQueue queue   = new BroadcastQueue(2);
+		final CountDownLatch started = new CountDownLatch(1);
+		final AtomicBoolean added    = new AtomicBoolean(false);
+
+		queue.add(message("CREATE", "a", null), null, true);
+		queue.add(message("CREATE", "b", null), null, true);
+
+		final Thread producer = new Thread(() -> {
+
+			try {
+
+				started.countDown();
+				queue.add(message("CREATE", "c", null), null, true);
+				added.set(true);
+
+			} catch (InterruptedException ignore) {}
+		});
+
+		producer.start();
+
+		assertTrue(started.await(10, TimeUnit.SECONDS));
+
+		// the producer waits while the queue is full
+		Thread.sleep(200);
+		assertFalse("Producer should wait while the queue is full", added.get());
+
+		// merging an update does not need space in the queue
+		queue.add(message("UPDATE", "x", "name"), null, false);
+		assertEquals("Queue should accept messages without waiting if requested", 3, queue.size());
+
+		assertEquals("Wrong number of broadcasts", 3, queue.takeAll().size());
+
+		producer.join(10000);
+
+		assertTrue("Producer should continue when the queue was drained", added.get());
+		assertEquals("Wrong number of broadcasts", 1, queue.takeAll().size());
+	}
+
+	@Test
+	public void testOutboxOrder() {
+
+		final List<String> sent     = new ArrayList<>();
+		final WebSocketOutbox outbox = new WebSocketOutbox(session(sent, true, null), 10);
+
+		for (int i=0; i<100; i++) {
+			assertTrue("Message should be accepted", outbox.offer(Integer.toString(i)));
+		}
+
+		assertEquals("All messages should be sent", 100, sent.size());
+
+		for (int i=0; i<100; i++) {
+			assertEquals("Messages should be sent in order", Integer.toString(i), sent.get(i));
+		}
+	}
+
+	@Test
+	public void testOutboxBackpressure() {
+
+		final List<String> sent       = new ArrayList<>();
+		final List<Boolean> closeLock = new ArrayList<>();
+		final WebSocketOutbox[] ref   = new WebSocketOutbox[1];
+
+		// the client never completes a write
+		ref[0] = new WebSocketOutbox(session(sent, false, () -> closeLock.add(Thread.holdsLock(ref[0]))), 10);
+
+		// the first message is being written, the next ten are queued
+		for (int i=0; i<11; i++) {
+			assertTrue("Message should be accepted", ref[0].offer(Integer.toString(i)));
+		}
+
+		assertEquals("Only one message should be in flight", 1, sent.size());
+		assertEquals("Messages should be queued", 10, ref[0].size());
+
+		assertFalse("Slow client should be disconnected", ref[0].offer("overflow"));
+		assertTrue("Outbox should be closed", ref[0].isClosed());
+		assertEquals("Session should be closed once", 1, closeLock.size());
+		assertFalse("Session should be closed without holding the outbox lock", closeLock.get(0));
+
+		assertFalse("Closed outbox should not accept messages", ref[0].offer("closed"));
+		assertEquals("Session should be closed once", 1, closeLock.size());
+	}
+
+	// ----- private methods -----
+	private WebSocketMessage message(final String command, final String id, final String property) {
+
+		final WebSocketMessage message = new WebSocketMessage();
+
+		message.setCommand(command);
+		message.setId(id);
+
+		if (property != null) {
+			message.getModifiedProperties().add(new StringProperty(property));
+		}
+
+		return message;
+	}
+
+	private Session session(final List<String> sent, final boolean complete, final Runnable onClose) {
+
+		final RemoteEndpoint remote = (RemoteEndpoint)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { RemoteEndpoint.class }, (proxy, method, args) -> {
+
+			if ("sendString".equals(method.getName()) && args.length == 2) {
+
+				sent.add((String)args[0]);
+
+				if (complete) {
+					((WriteCallback)args[1]).writeSuccess();
+				}
+			}
+
+			return null;
+		});
+
+		return (Session)Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { Session.class }, (proxy, method, args) -> {
+
+			switch (method.getName()) {
+
+				case "getRemote":
+					return remote;
+
+				case "close":
+					if (onClose != null) {
+						onClose.run();
+					}
+					return null;
+
+				case "hashCode":
+					return System.identityHashCode(proxy);
+
+				case "equals":
+					return proxy == args[0];
+
+				case "toString":
+					return "session";
+			}
+
+			return null;
+		});
+	}
+}